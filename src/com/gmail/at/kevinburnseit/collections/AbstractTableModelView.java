@@ -0,0 +1,274 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * A base class for {@link TableModelView}s. It passes column information and cell access
+ * through to the source model, listens to the source, and translates moves of view rows
+ * into moves of source rows for views which preserve the order of their source.
+ * </p>
+ * <p>
+ * Subclasses process each source event in {@link #sourceChanged(TableModelEvent)}. To
+ * report the rows affected, they may use {@link #queueInsert(int)},
+ * {@link #queueDelete(int)} and {@link #queueUpdate(int, int)}, which gather consecutive
+ * rows affected in the same way into a single event. Each of these must be called
+ * <em>before</em> the view's own state is changed to reflect the row in question, so that
+ * any event fired to make room for the new run describes a view which listeners can
+ * still query. The last run is fired once <code>sourceChanged</code> returns.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public abstract class AbstractTableModelView extends AbstractTableModel
+		implements TableModelView, CollectionReorderable {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -6270925860118591458L;
+	private static final int NO_EVENT = Integer.MIN_VALUE;
+
+	private TableModel source;
+	private TableModelListener sourceListener;
+	private int pendingType = NO_EVENT;
+	private int pendingFirst;
+	private int pendingLast;
+	private int pendingColumn;
+
+	/**
+	 * Constructor. The new view starts listening to its source immediately, so subclasses
+	 * should finish initializing themselves before returning control to the caller.
+	 * @param source The model whose rows are to be presented
+	 */
+	protected AbstractTableModelView(TableModel source) {
+		super();
+		if (source == null) {
+			throw new NullPointerException("source must not be null");
+		}
+		this.source = source;
+		this.sourceListener = new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				sourceChanged(e);
+				flushPendingEvent();
+			}
+		};
+		this.source.addTableModelListener(this.sourceListener);
+	}
+
+	/**
+	 * Brings the view up to date with a change to the source model.
+	 * @param e The event fired by the source
+	 */
+	protected abstract void sourceChanged(TableModelEvent e);
+
+	/**
+	 * Stops this view from listening to its source. Once disposed, the view no longer
+	 * reflects changes to the source and should not be used.
+	 */
+	public void dispose() {
+		this.source.removeTableModelListener(this.sourceListener);
+	}
+
+	@Override
+	public TableModel getSourceModel() {
+		return this.source;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return this.source.getColumnCount();
+	}
+
+	@Override
+	public String getColumnName(int columnIndex) {
+		return this.source.getColumnName(columnIndex);
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columnIndex) {
+		return this.source.getColumnClass(columnIndex);
+	}
+
+	@Override
+	public boolean isCellEditable(int rowIndex, int columnIndex) {
+		return this.source.isCellEditable(
+				this.convertRowIndexToSource(rowIndex), columnIndex);
+	}
+
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		return this.source.getValueAt(this.convertRowIndexToSource(rowIndex), columnIndex);
+	}
+
+	@Override
+	public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+		this.source.setValueAt(aValue, this.convertRowIndexToSource(rowIndex), columnIndex);
+	}
+
+	@Override
+	public int moveElementToTop(int record) {
+		return this.moveElement(record, 0);
+	}
+
+	@Override
+	public int moveElementUp(int record) {
+		return this.moveElement(record, record - 1);
+	}
+
+	@Override
+	public int moveElementDown(int record) {
+		return this.moveElement(record, record + 1);
+	}
+
+	@Override
+	public int moveElementToBottom(int record) {
+		return this.moveElement(record, this.getRowCount() - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The source row is moved so that it lands immediately before (when moving up) or
+	 * after (when moving down) the source row presented at <code>newIndex</code>. Rows
+	 * which the view does not present keep their places relative to the rows around them.
+	 * </p>
+	 * @throws UnsupportedOperationException if the view does not preserve the order of
+	 * its source, or its source does not implement {@link CollectionReorderable}
+	 * @throws IndexOutOfBoundsException if either index is outside the view
+	 */
+	@Override
+	public int moveElement(int record, int newIndex) {
+		CollectionReorderable target = this.getReorderableSource();
+		int from = this.convertRowIndexToSource(record);
+		int to = this.convertRowIndexToSource(newIndex);
+		if (from != to) target.moveElement(from, to);
+		return newIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the block's source rows are contiguous, this is one move in the source; otherwise
+	 * the rows are moved one at a time.
+	 * </p>
+	 * @throws UnsupportedOperationException if the view does not preserve the order of
+	 * its source, or its source does not implement {@link CollectionReorderable}
+	 * @throws IndexOutOfBoundsException if the block does not lie entirely within the view
+	 * either before or after the move
+	 */
+	@Override
+	public int moveRange(int record, int count, int newIndex) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative count: " + count);
+		}
+		if (count == 0) return newIndex;
+		CollectionReorderable target = this.getReorderableSource();
+		int first = this.convertRowIndexToSource(record);
+		int last = this.convertRowIndexToSource(record + count - 1);
+		int destFirst = this.convertRowIndexToSource(newIndex);
+		int destLast = this.convertRowIndexToSource(newIndex + count - 1);
+		if (record == newIndex) return newIndex;
+
+		if (last - first == count - 1) {
+			int to = (newIndex < record) ? destFirst : destLast - count + 1;
+			target.moveRange(first, count, to);
+		}
+		else if (newIndex < record) {
+			for (int i = 0; i < count; i++) {
+				this.moveElement(record + i, newIndex + i);
+			}
+		}
+		else {
+			for (int i = count - 1; i >= 0; i--) {
+				this.moveElement(record + i, newIndex + i);
+			}
+		}
+		return newIndex;
+	}
+
+	private CollectionReorderable getReorderableSource() {
+		if (!this.isOrderPreserving()) {
+			throw new UnsupportedOperationException(
+					"Rows cannot be reordered while the view is reordering them");
+		}
+		if (!(this.source instanceof CollectionReorderable)) {
+			throw new UnsupportedOperationException("The source model cannot be reordered");
+		}
+		return (CollectionReorderable)this.source;
+	}
+
+	/**
+	 * Reports that a row is about to appear at the given view index.
+	 * @param viewIndex Index the row will have, given the rows already reported
+	 */
+	protected final void queueInsert(int viewIndex) {
+		// a row inserted within or just after the run extends it
+		if (this.pendingType == TableModelEvent.INSERT &&
+				viewIndex >= this.pendingFirst && viewIndex <= this.pendingLast + 1) {
+			this.pendingLast++;
+			return;
+		}
+		this.startPendingEvent(TableModelEvent.INSERT, viewIndex, TableModelEvent.ALL_COLUMNS);
+	}
+
+	/**
+	 * Reports that the row at the given view index is about to disappear.
+	 * @param viewIndex Index the row has, given the rows already reported
+	 */
+	protected final void queueDelete(int viewIndex) {
+		/*
+		 * The run is already gone from the view, so a row deleted where the run began, or
+		 * just before it, extends it.
+		 */
+		if (this.pendingType == TableModelEvent.DELETE) {
+			if (viewIndex == this.pendingFirst) {
+				this.pendingLast++;
+				return;
+			}
+			if (viewIndex == this.pendingFirst - 1) {
+				this.pendingFirst--;
+				return;
+			}
+		}
+		this.startPendingEvent(TableModelEvent.DELETE, viewIndex, TableModelEvent.ALL_COLUMNS);
+	}
+
+	/**
+	 * Reports that the row at the given view index has changed in place.
+	 * @param viewIndex Index of the row
+	 * @param column The column which changed, or {@link TableModelEvent#ALL_COLUMNS}
+	 */
+	protected final void queueUpdate(int viewIndex, int column) {
+		if (this.pendingType == TableModelEvent.UPDATE && this.pendingColumn == column &&
+				viewIndex == this.pendingLast + 1) {
+			this.pendingLast++;
+			return;
+		}
+		this.startPendingEvent(TableModelEvent.UPDATE, viewIndex, column);
+	}
+
+	private void startPendingEvent(int type, int viewIndex, int column) {
+		this.flushPendingEvent();
+		this.pendingType = type;
+		this.pendingFirst = viewIndex;
+		this.pendingLast = viewIndex;
+		this.pendingColumn = column;
+	}
+
+	/**
+	 * Fires the event for the rows queued so far, if any. This must be called before
+	 * firing any other event while processing a source event.
+	 */
+	protected final void flushPendingEvent() {
+		if (this.pendingType == NO_EVENT) return;
+
+		int type = this.pendingType;
+		this.pendingType = NO_EVENT;
+		this.fireTableChanged(new TableModelEvent(this, this.pendingFirst, this.pendingLast,
+				this.pendingColumn, type));
+	}
+}
@@ -0,0 +1,104 @@
+package com.gmail.at.kevinburnseit.collections;
+
+/**
+ * The count, sum, minimum and maximum of the numbers in a column over some set of rows,
+ * as found by a {@link ColumnAggregator}. Instances are immutable.
+ * @author Kevin J. Burns
+ *
+ */
+public final class Aggregate {
+	/**
+	 * The aggregate of no numbers at all.
+	 */
+	public static final Aggregate EMPTY = new Aggregate(0, 0, Double.NaN, Double.NaN);
+
+	private final int count;
+	private final double sum;
+	private final double min;
+	private final double max;
+
+	/**
+	 * Constructor.
+	 * @param count The number of values
+	 * @param sum The sum of the values
+	 * @param min The least value, or {@link Double#NaN} if there are none
+	 * @param max The greatest value, or {@link Double#NaN} if there are none
+	 */
+	public Aggregate(int count, double sum, double min, double max) {
+		this.count = count;
+		this.sum = sum;
+		this.min = (count == 0) ? Double.NaN : min;
+		this.max = (count == 0) ? Double.NaN : max;
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the sum of the values, which is zero if there are none
+	 */
+	public double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * @return the mean of the values, or {@link Double#NaN} if there are none
+	 */
+	public double getAverage() {
+		return (this.count == 0) ? Double.NaN : this.sum / this.count;
+	}
+
+	/**
+	 * @return the least value, or {@link Double#NaN} if there are none
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * @return the greatest value, or {@link Double#NaN} if there are none
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Combines this aggregate with that of another, disjoint, set of values.
+	 * @param other The other aggregate
+	 * @return the aggregate of both sets of values together
+	 */
+	public Aggregate combine(Aggregate other) {
+		if (other.count == 0) return this;
+		if (this.count == 0) return other;
+		return new Aggregate(this.count + other.count, this.sum + other.sum,
+				Math.min(this.min, other.min), Math.max(this.max, other.max));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Aggregate)) return false;
+		
+		Aggregate other = (Aggregate)obj;
+		return this.count == other.count &&
+				Double.compare(this.sum, other.sum) == 0 &&
+				Double.compare(this.min, other.min) == 0 &&
+				Double.compare(this.max, other.max) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(this.sum) * 31 +
+				Double.doubleToLongBits(this.min) * 17 + Double.doubleToLongBits(this.max);
+		return this.count ^ (int)bits ^ (int)(bits >>> 32);
+	}
+
+	@Override
+	public String toString() {
+		return "Aggregate[count=" + this.count + ", sum=" + this.sum + ", min=" + this.min +
+				", max=" + this.max + "]";
+	}
+}
@@ -0,0 +1,205 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link RankedTree} whose nodes each hold a row of numbers, and which also keeps the
+ * count, sum, minimum and maximum of each column of numbers over every subtree. This lets
+ * the aggregates of any range of rows be found in O(log n), and keeps them up to date in
+ * O(log n) as rows are inserted, removed or changed.
+ * <p>
+ * A value of {@link Double#NaN} stands for a cell which holds no number; it is left out
+ * of the aggregates, as is every value of a node which is not included. A node is
+ * included if its weight is 1.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+class AggregateTree extends RankedTree<AggregateTree.Row> {
+	/*
+	 * Positions of the aggregates in the arrays filled by total and accumulate.
+	 */
+	static final int COUNT = 0;
+	static final int SUM = 1;
+	static final int MIN = 2;
+	static final int MAX = 3;
+
+	/**
+	 * The value of a node: a row of numbers, and the aggregates of the subtree of which
+	 * the node is the root.
+	 */
+	static final class Row {
+		double[] values;
+		int[] counts;
+		double[] sums;
+		double[] mins;
+		double[] maxs;
+
+		Row(double[] values) {
+			this.values = values;
+			this.counts = new int[values.length];
+			this.sums = new double[values.length];
+			this.mins = new double[values.length];
+			this.maxs = new double[values.length];
+		}
+
+		double[] getValues() {
+			return this.values;
+		}
+	}
+
+	private final int width;
+
+	/**
+	 * @param width The number of values in each row
+	 */
+	AggregateTree(int width) {
+		this.width = width;
+	}
+
+	@Override
+	void augment(Node<Row> n) {
+		Row row = n.value;
+		Row left = (n.left == null) ? null : n.left.value;
+		Row right = (n.right == null) ? null : n.right.value;
+		for (int c = 0; c < this.width; c++) {
+			int count = 0;
+			double sum = 0;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			double v = row.values[c];
+			if (n.weight == 1 && !Double.isNaN(v)) {
+				count = 1;
+				sum = v;
+				min = v;
+				max = v;
+			}
+			if (left != null) {
+				count += left.counts[c];
+				sum += left.sums[c];
+				min = Math.min(min, left.mins[c]);
+				max = Math.max(max, left.maxs[c]);
+			}
+			if (right != null) {
+				count += right.counts[c];
+				sum += right.sums[c];
+				min = Math.min(min, right.mins[c]);
+				max = Math.max(max, right.maxs[c]);
+			}
+			row.counts[c] = count;
+			row.sums[c] = sum;
+			row.mins[c] = min;
+			row.maxs[c] = max;
+		}
+	}
+
+	/**
+	 * Inserts a row of values so that its node has the given position. The node is
+	 * included.
+	 */
+	Node<Row> insertAt(int index, double[] values) {
+		return this.insertAt(index, new Row(values), 1);
+	}
+
+	/**
+	 * Replaces the values of a node.
+	 */
+	void setValues(Node<Row> n, double[] values) {
+		n.value.values = values;
+		this.updatePath(n);
+	}
+
+	/**
+	 * Includes a node in, or excludes it from, the aggregates.
+	 */
+	void setIncluded(Node<Row> n, boolean included) {
+		this.setWeight(n, included ? 1 : 0);
+	}
+
+	static boolean isIncluded(Node<Row> n) {
+		return n.getWeight() == 1;
+	}
+
+	/**
+	 * Replaces the contents of the tree with the given rows, in order, each of them
+	 * included or not as given. This takes O(n) time.
+	 * @param included Whether each row is included, or <code>null</code> to include all
+	 * @return the new nodes, in order
+	 */
+	List<Node<Row>> buildRows(List<double[]> rows, boolean[] included) {
+		ArrayList<Row> values = new ArrayList<>(rows.size());
+		int[] weights = new int[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			values.add(new Row(rows.get(i)));
+			weights[i] = (included == null || included[i]) ? 1 : 0;
+		}
+		return this.build(values, weights);
+	}
+
+	/**
+	 * Fills <code>ret</code> with the aggregates of one column over the whole tree,
+	 * indexed by {@link #COUNT}, {@link #SUM}, {@link #MIN} and {@link #MAX}.
+	 */
+	void total(int column, double[] ret) {
+		ret[COUNT] = 0;
+		ret[SUM] = 0;
+		ret[MIN] = Double.POSITIVE_INFINITY;
+		ret[MAX] = Double.NEGATIVE_INFINITY;
+		accumulateSubtree(this.getRoot(), column, ret);
+	}
+
+	/**
+	 * Combines the aggregates of one column over the rows from <code>from</code>
+	 * (inclusive) to <code>to</code> (exclusive) into <code>acc</code>, which is indexed
+	 * like the array filled by {@link #total(int, double[])}.
+	 */
+	void accumulate(int column, int from, int to, double[] acc) {
+		accumulate(this.getRoot(), column, Math.max(0, from), to, acc);
+	}
+
+	private static void accumulate(Node<Row> n, int column, int from, int to,
+			double[] acc) {
+		while (n != null && from < to) {
+			if (from <= 0 && to >= n.size) {
+				accumulateSubtree(n, column, acc);
+				return;
+			}
+
+			int ls = (n.left == null) ? 0 : n.left.size;
+			if (to <= ls) {
+				n = n.left;
+				continue;
+			}
+			if (from > ls) {
+				from -= ls + 1;
+				to -= ls + 1;
+				n = n.right;
+				continue;
+			}
+
+			// the range includes this node and extends into one or both subtrees
+			accumulate(n.left, column, from, ls, acc);
+			double v = n.value.values[column];
+			if (n.weight == 1 && !Double.isNaN(v)) {
+				acc[COUNT]++;
+				acc[SUM] += v;
+				acc[MIN] = Math.min(acc[MIN], v);
+				acc[MAX] = Math.max(acc[MAX], v);
+			}
+			from = 0;
+			to -= ls + 1;
+			n = n.right;
+		}
+	}
+
+	private static void accumulateSubtree(Node<Row> n, int column, double[] acc) {
+		if (n == null) return;
+
+		Row row = n.value;
+		acc[COUNT] += row.counts[column];
+		acc[SUM] += row.sums[column];
+		acc[MIN] = Math.min(acc[MIN], row.mins[column]);
+		acc[MAX] = Math.max(acc[MAX], row.maxs[column]);
+	}
+}
@@ -1,6 +1,8 @@
 package com.gmail.at.kevinburnseit.collections;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 
 /**
  * A subclass of ArrayList which provides for the reordering of records by implementing
@@ -18,37 +20,138 @@ public class ArrayListReorderable<T> extends ArrayList<T>
 
 	@Override
 	public int moveElementToTop(int record) {
-		T data = this.get(record);
-		this.remove(record);
-		this.add(0, data);
-		
-		return 0;
+		return this.moveElement(record, 0);
 	}
 	
 	@Override
 	public int moveElementUp(int record) {
-		T data = this.get(record);
-		this.remove(record);
-		this.add(record - 1, data);
-		
-		return record - 1;
+		return this.moveElement(record, record - 1);
 	}
 	
 	@Override
 	public int moveElementDown(int record) {
-		T data = this.get(record);
-		this.remove(record);
-		this.add(record + 1, data);
-		
-		return record + 1;
+		return this.moveElement(record, record + 1);
 	}
 	
 	@Override
 	public int moveElementToBottom(int record) {
-		T data = this.get(record);
-		this.remove(record);
-		this.add(data);
+		return this.moveElement(record, this.size() - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * All of the other move functions are routed through this one, so subclasses which
+	 * need to observe moves only have to override this function. The move is performed
+	 * with the ArrayList implementations of remove and add, so overrides of those
+	 * functions in subclasses are not invoked.
+	 * </p>
+	 * @throws IndexOutOfBoundsException if either index is outside the list
+	 */
+	@Override
+	public int moveElement(int record, int newIndex) {
+		this.checkMoveIndex(record);
+		this.checkMoveIndex(newIndex);
+		if (record == newIndex) return newIndex;
+		
+		T data = super.remove(record);
+		super.add(newIndex, data);
+		
+		return newIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * As with {@link #moveElement(int, int)}, the ArrayList implementations of the
+	 * underlying operations are used, so overrides of them in subclasses are not invoked.
+	 * </p>
+	 * @throws IndexOutOfBoundsException if the block does not lie entirely within the list
+	 * either before or after the move
+	 */
+	@Override
+	public int moveRange(int record, int count, int newIndex) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative count: " + count);
+		}
+		if (count == 0) return newIndex;
+		this.checkMoveIndex(record);
+		this.checkMoveIndex(record + count - 1);
+		this.checkMoveIndex(newIndex);
+		this.checkMoveIndex(newIndex + count - 1);
+		if (record == newIndex) return newIndex;
+		
+		ArrayList<T> block = new ArrayList<>(super.subList(record, record + count));
+		super.removeRange(record, record + count);
+		super.addAll(newIndex, block);
 		
-		return this.size() - 1;
+		return newIndex;
+	}
+
+	/**
+	 * Sorts the list with a stable sort, so that elements which compare as equal keep their
+	 * relative order. Large lists are sorted in parallel. The new order of the elements is
+	 * worked out in full before any of them is moved, and is then applied with
+	 * {@link #applyPermutation(int[])}, so subclasses which need to observe sorting only
+	 * have to override that function.
+	 * @param c Comparator for the elements
+	 * @return An array holding, at each index, the index which the element now there had
+	 * before the sort
+	 */
+	public int[] sortBy(Comparator<? super T> c) {
+		int[] order = this.sortedOrder(c);
+		this.applyPermutation(order);
+		return order;
+	}
+
+	/**
+	 * Works out the order {@link #sortBy(Comparator)} would put the list in, without
+	 * changing it. This may be called from a thread other than the one which modifies the
+	 * list, provided that the list is not modified until this function returns.
+	 * @param c Comparator for the elements
+	 * @return An array holding, at each index, the index of the element which belongs
+	 * there once sorted
+	 */
+	public int[] sortedOrder(Comparator<? super T> c) {
+		@SuppressWarnings("unchecked")
+		T[] snapshot = (T[])this.toArray();
+		return ParallelIndexSort.sortedOrder(snapshot, c);
+	}
+
+	/**
+	 * Rearranges the elements of the list. As with {@link #moveElement(int, int)}, the
+	 * ArrayList implementations of the underlying operations are used, so overrides of
+	 * them in subclasses are not invoked.
+	 * @param order An array as long as the list, holding at each index the current index
+	 * of the element which is to be moved there
+	 * @throws IllegalArgumentException if <code>order</code> is not a rearrangement of the
+	 * indices of this list
+	 */
+	public void applyPermutation(int[] order) {
+		if (order.length != this.size()) {
+			throw new IllegalArgumentException("Permutation length " + order.length +
+					" does not match size " + this.size());
+		}
+		BitSet seen = new BitSet(order.length);
+		for (int index : order) {
+			if (index < 0 || index >= order.length || seen.get(index)) {
+				throw new IllegalArgumentException("Not a permutation: " + index);
+			}
+			seen.set(index);
+		}
+
+		Object[] old = this.toArray();
+		for (int i = 0; i < order.length; i++) {
+			@SuppressWarnings("unchecked")
+			T element = (T)old[order[i]];
+			super.set(i, element);
+		}
+	}
+
+	private void checkMoveIndex(int index) {
+		if (index < 0 || index >= this.size()) {
+			throw new IndexOutOfBoundsException(
+					"Index: " + index + ", Size: " + this.size());
+		}
 	}
 }
@@ -1,8 +1,19 @@
 package com.gmail.at.kevinburnseit.collections;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.SwingWorker;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
@@ -25,7 +36,44 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	 * 
 	 */
 	private static final long serialVersionUID = 8418021814359679096L;
-	private ArrayList<TableModelListener> listeners = new ArrayList<>();
+	/**
+	 * Not serialized, as the listeners are usually tables and other widgets which should
+	 * not be saved with the data.
+	 */
+	private transient ArrayList<TableModelListener> listeners = new ArrayList<>();
+	private transient RecordKeyIndex<T> keyIndex = null;
+	private transient ComputedColumns computedColumns = null;
+	/**
+	 * Counts the events dispatched, so that work done against an earlier state of the
+	 * list can tell whether it is still valid.
+	 */
+	private transient int revision = 0;
+	/**
+	 * A copy of the contents shared with the snapshots taken of them, or
+	 * <code>null</code> if no snapshot has been taken.
+	 */
+	private transient ChunkRope shared = null;
+	/**
+	 * Whether {@link #setValuesAt(int[], int[], Object[][])} is collecting updates, and
+	 * the single update they have been combined into so far.
+	 */
+	private transient boolean collectingUpdates = false;
+	private transient TableModelEvent collectedUpdate = null;
+	/**
+	 * Told when {@link #applyChanges(Collection)} begins and ends, or <code>null</code> if
+	 * there are none.
+	 */
+	private transient ArrayList<BatchListener> batchListeners = null;
+
+	/**
+	 * Notified around a batch of changes which dispatches several events, so that they
+	 * can be treated as one change; see {@link EditJournal}.
+	 */
+	interface BatchListener {
+		void batchStarted();
+
+		void batchEnded();
+	}
 
 	/**
 	 * Constructor. The contents of this collection will be identical to an ArrayList
@@ -35,6 +83,11 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 		super();
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.listeners = new ArrayList<>();
+	}
+
 	@Override
 	public abstract void setValueAt(Object newValue, int row, int column);
 
@@ -71,7 +124,9 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	@Override
 	public void add(int index, T element) {
 		super.add(index, element);
-		TableModelEvent ev = new TableModelEvent(this, index, this.size() - 1, TableModelEvent.ALL_COLUMNS);
+		if (this.keyIndex != null) this.keyIndex.inserted(index, 1);
+		TableModelEvent ev = new TableModelEvent(this, index, index, 
+				TableModelEvent.ALL_COLUMNS, TableModelEvent.INSERT);
 		this.dispatchEvent(ev);
 	}
 
@@ -80,6 +135,79 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	 * @param ev The event to dispatch
 	 */
 	protected final void dispatchEvent(TableModelEvent ev) {
+		if (this.collectingUpdates) {
+			if (ev.getClass() == TableModelEvent.class && 
+					ev.getType() == TableModelEvent.UPDATE &&
+					ev.getFirstRow() != TableModelEvent.HEADER_ROW &&
+					ev.getLastRow() != Integer.MAX_VALUE) {
+				this.collectUpdate(ev);
+				return;
+			}
+			// anything else must not overtake the updates made before it
+			this.flushCollectedUpdate();
+		}
+		
+		if (this.shared != null) this.updateShared(ev);
+		
+		List<TableModelEvent> derived = null;
+		if (this.computedColumns != null) {
+			derived = this.computedColumns.modelChanged(ev);
+		}
+		
+		this.notifyListeners(ev);
+		if (derived == null) return;
+		for (TableModelEvent d : derived) {
+			this.notifyListeners(d);
+		}
+	}
+
+	/**
+	 * Brings the contents shared with snapshots up to date with a change described by an
+	 * event. The elements covered by the event are read from the list; all others are
+	 * carried over from the shared contents.
+	 */
+	private void updateShared(TableModelEvent ev) {
+		int first = ev.getFirstRow();
+		int last = ev.getLastRow();
+		int sharedSize = this.shared.size();
+		if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+			this.shared = ChunkRope.of(this.toArray());
+		}
+		else if (ev instanceof TableModelMoveEvent) {
+			TableModelMoveEvent me = (TableModelMoveEvent)ev;
+			int count = me.getMoveLength();
+			if (Math.max(me.getMoveSource(), me.getMoveDestination()) + count > sharedSize) {
+				this.shared = ChunkRope.of(this.toArray());
+				return;
+			}
+			this.shared = this.shared.move(me.getMoveSource(), count, me.getMoveDestination());
+		}
+		else if (ev.getType() == TableModelEvent.DELETE) {
+			this.shared = (last < sharedSize) ? this.shared.remove(first, last + 1) :
+				ChunkRope.of(this.toArray());
+		}
+		else if (ev.getType() == TableModelEvent.INSERT) {
+			this.shared = (first <= sharedSize && last < this.size()) ?
+					this.shared.insert(first, this.subList(first, last + 1).toArray()) :
+					ChunkRope.of(this.toArray());
+		}
+		else if (last >= sharedSize || last >= this.size()) {
+			this.shared = ChunkRope.of(this.toArray());
+		}
+		else if (last - first < ChunkRope.CHUNK_SIZE) {
+			// usually a single record, often not even replaced
+			for (int i = first; i <= last; i++) {
+				T element = this.get(i);
+				if (this.shared.get(i) != element) this.shared = this.shared.set(i, element);
+			}
+		}
+		else {
+			this.shared = this.shared.replace(first, this.subList(first, last + 1).toArray());
+		}
+	}
+
+	private void notifyListeners(TableModelEvent ev) {
+		this.revision++;
 		for (TableModelListener l : this.listeners) {
 			l.tableChanged(ev);
 		}
@@ -89,6 +217,7 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	public boolean add(T e) {
 		boolean ret = super.add(e);
 		int newLastRow = this.size() - 1;
+		if (this.keyIndex != null) this.keyIndex.inserted(newLastRow, 1);
 		TableModelEvent ev = new TableModelEvent(this, newLastRow, newLastRow, 
 				TableModelEvent.ALL_COLUMNS, TableModelEvent.INSERT);
 		this.dispatchEvent(ev);
@@ -100,6 +229,7 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 		boolean ret = super.addAll(c);
 		int endRange = this.size() - 1;
 		int beginRange = this.size() - c.size();
+		if (this.keyIndex != null) this.keyIndex.inserted(beginRange, c.size());
 		this.dispatchEvent(new TableModelEvent(this, beginRange, endRange, 
 				TableModelEvent.ALL_COLUMNS, TableModelEvent.INSERT));
 		return ret;
@@ -108,19 +238,25 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	@Override
 	public boolean addAll(int index, Collection<? extends T> c) {
 		boolean ret = super.addAll(index, c);
-		this.dispatchEvent(new TableModelEvent(this, index, this.size() - 1, TableModelEvent.ALL_COLUMNS));
+		if (ret) {
+			if (this.keyIndex != null) this.keyIndex.inserted(index, c.size());
+			this.dispatchEvent(new TableModelEvent(this, index, index + c.size() - 1, 
+					TableModelEvent.ALL_COLUMNS, TableModelEvent.INSERT));
+		}
 		return ret;
 	}
 
 	@Override
 	public void clear() {
 		super.clear();
+		if (this.keyIndex != null) this.keyIndex.cleared();
 		this.dispatchEvent(new TableModelEvent(this));
 	}
 
 	@Override
 	public T remove(int index) {
 		T ret = super.remove(index);
+		if (this.keyIndex != null) this.keyIndex.removed(index, ret);
 		this.dispatchEvent(new TableModelEvent(this, index, index, TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE));
 		return ret;
 	}
@@ -128,16 +264,16 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	@Override
 	public boolean remove(Object arg0) {
 		int index = this.indexOf(arg0);
-		boolean ret = super.remove(arg0);
-		if (ret) {
-			this.dispatchEvent(new TableModelEvent(this, index, index, TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE));
-		}
-		return ret;
+		if (index == -1) return false;
+		
+		this.remove(index);
+		return true;
 	}
 
 	@Override
 	public boolean removeAll(Collection<?> c) {
 		boolean ret = super.removeAll(c);
+		if (this.keyIndex != null) this.keyIndex.rebuild();
 		this.dispatchEvent(new TableModelEvent(this));
 		return ret;
 	}
@@ -145,6 +281,7 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	@Override
 	public boolean retainAll(Collection<?> c) {
 		boolean ret = super.retainAll(c);
+		if (this.keyIndex != null) this.keyIndex.rebuild();
 		this.dispatchEvent(new TableModelEvent(this));
 		return ret;
 	}
@@ -152,10 +289,67 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 	@Override
 	public T set(int index, T element) {
 		T ret = super.set(index, element);
-		requestTableUpdate(index);
+		if (this.keyIndex != null) this.keyIndex.replaced(index, ret, element);
+		// the record is replaced even if no column is reported as changed, in which case
+		// no event will bring the snapshots' contents up to date
+		if (this.shared != null && ret != element) {
+			this.shared = this.shared.set(index, element);
+		}
+		requestTableUpdate(index, index, this.getChangedColumns(ret, element));
 		return ret;
 	}
 
+	/**
+	 * Replaces a range of records at once. Listeners receive a single
+	 * {@link TableModelEvent#UPDATE} covering every row whose record was actually
+	 * replaced, or nothing if none was.
+	 * @param first Index of the first record to replace
+	 * @param records The replacement records, in order
+	 * @throws IndexOutOfBoundsException if the range extends beyond the list
+	 */
+	public void replaceRange(int first, List<? extends T> records) {
+		if (first < 0 || first + records.size() > this.size()) {
+			throw new IndexOutOfBoundsException("First: " + first + ", Count: " +
+					records.size() + ", Size: " + this.size());
+		}
+		
+		int changedFirst = -1;
+		int changedLast = -1;
+		for (int i = 0; i < records.size(); i++) {
+			int row = first + i;
+			T record = records.get(i);
+			T old = super.set(row, record);
+			if (old == record) continue;
+			
+			if (this.keyIndex != null) this.keyIndex.replaced(row, old, record);
+			if (changedFirst == -1) changedFirst = row;
+			changedLast = row;
+		}
+		if (changedFirst == -1) return;
+		
+		this.dispatchEvent(new TableModelEvent(this, changedFirst, changedLast, 
+				TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE));
+	}
+
+	/**
+	 * Determines which columns changed when {@link #set(int, Object)} replaced a record,
+	 * so that listeners are only notified about those columns. The default
+	 * implementation asks <code>newElement</code> if it implements
+	 * {@link ColumnChangeReporter}, and otherwise reports every column as changed.
+	 * Subclasses may override this to compare records themselves.
+	 * @param oldElement The record which was replaced
+	 * @param newElement The record which replaced it
+	 * @return the model column indices which changed, or <code>null</code> for all of
+	 * them
+	 */
+	@SuppressWarnings("unchecked")
+	protected BitSet getChangedColumns(T oldElement, T newElement) {
+		if (oldElement != null && newElement instanceof ColumnChangeReporter) {
+			return ((ColumnChangeReporter<T>)newElement).getChangedColumns(oldElement);
+		}
+		return null;
+	}
+
 	/**
 	 * This function should be called when a list element is modified externally; that is to
 	 * say:
@@ -171,10 +365,561 @@ public abstract class ArrayListWithTableModel<T> extends ArrayListReorderable<T>
 		this.dispatchEvent(new TableModelEvent(this, index, index, TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE));
 	}
 
+	/**
+	 * Like {@link #requestTableUpdate(int)}, but for a single cell. Listeners are told
+	 * that only the given column changed, so a table repaints only that cell and a
+	 * sorter only re-sorts if the column is one of its sort keys.
+	 * @param index Index of the item to be updated
+	 * @param column Model index of the column whose value changed
+	 */
+	public void requestTableUpdate(int index, int column) {
+		this.dispatchEvent(new TableModelEvent(this, index, index, column, TableModelEvent.UPDATE));
+	}
+
+	/**
+	 * Like {@link #requestTableUpdate(int)}, but for a range of rows and a set of
+	 * columns. Because a TableModelEvent describes either one column or all of them,
+	 * listeners receive one event per column in <code>columns</code>, or a single event
+	 * for all columns if <code>columns</code> is <code>null</code> or includes every
+	 * column. Nothing is dispatched if <code>columns</code> is empty.
+	 * @param firstIndex Index of the first item to be updated
+	 * @param lastIndex Index of the last item to be updated
+	 * @param columns Model indices of the columns whose values changed, or
+	 * <code>null</code> for all columns
+	 */
+	public void requestTableUpdate(int firstIndex, int lastIndex, BitSet columns) {
+		if (columns == null || columns.cardinality() >= this.getColumnCount()) {
+			this.dispatchEvent(new TableModelEvent(this, firstIndex, lastIndex, 
+					TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE));
+			return;
+		}
+		
+		for (int c = columns.nextSetBit(0); c >= 0; c = columns.nextSetBit(c + 1)) {
+			this.dispatchEvent(new TableModelEvent(this, firstIndex, lastIndex, c, 
+					TableModelEvent.UPDATE));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Sets the values of a block of cells with {@link #setValueAt(Object, int, int)},
+	 * for example to paste from the clipboard, and notifies listeners with a single
+	 * {@link TableModelEvent#UPDATE} spanning the first through the last row changed,
+	 * instead of an event per cell. The event is for the one column changed, or for all
+	 * columns if more than one was. Cells which are not editable are left alone.
+	 * </p>
+	 * <p>
+	 * Events for changes other than updates, if <code>setValueAt</code> makes any, are
+	 * dispatched as usual, after the updates made before them.
+	 * </p>
+	 * @param rows Model indices of the rows to set, in any order
+	 * @param columns Model indices of the columns to set, in any order
+	 * @param values The new values: <code>values[i][j]</code> is set in row
+	 * <code>rows[i]</code> and column <code>columns[j]</code>. A row of values which is
+	 * <code>null</code>, or shorter than <code>columns</code>, leaves the cells it does not
+	 * cover alone.
+	 */
+	public void setValuesAt(int[] rows, int[] columns, Object[][] values) {
+		if (this.collectingUpdates) {
+			this.setEditableValuesAt(rows, columns, values);
+			return;
+		}
+		
+		this.collectingUpdates = true;
+		try {
+			this.setEditableValuesAt(rows, columns, values);
+		}
+		finally {
+			this.collectingUpdates = false;
+			this.flushCollectedUpdate();
+		}
+	}
+
+	private void setEditableValuesAt(int[] rows, int[] columns, Object[][] values) {
+		for (int i = 0; i < rows.length && i < values.length; i++) {
+			Object[] rowValues = values[i];
+			if (rowValues == null) continue;
+			
+			for (int j = 0; j < columns.length && j < rowValues.length; j++) {
+				if (this.isCellEditable(rows[i], columns[j])) {
+					this.setValueAt(rowValues[j], rows[i], columns[j]);
+				}
+			}
+		}
+	}
+
+	private void collectUpdate(TableModelEvent ev) {
+		TableModelEvent c = this.collectedUpdate;
+		if (c == null) {
+			this.collectedUpdate = ev;
+			return;
+		}
+		
+		int column = (c.getColumn() == ev.getColumn()) ? c.getColumn() : 
+			TableModelEvent.ALL_COLUMNS;
+		this.collectedUpdate = new TableModelEvent(this, 
+				Math.min(c.getFirstRow(), ev.getFirstRow()), 
+				Math.max(c.getLastRow(), ev.getLastRow()), column, TableModelEvent.UPDATE);
+	}
+
+	private void flushCollectedUpdate() {
+		TableModelEvent ev = this.collectedUpdate;
+		if (ev == null) return;
+		
+		this.collectedUpdate = null;
+		boolean collecting = this.collectingUpdates;
+		this.collectingUpdates = false;
+		try {
+			this.dispatchEvent(ev);
+		}
+		finally {
+			this.collectingUpdates = collecting;
+		}
+	}
+
 	@Override
 	protected void removeRange(int begin, int end) {
+		if (this.keyIndex != null) {
+			for (int i = begin; i < end; i++) {
+				this.keyIndex.removed(begin, this.get(i));
+			}
+		}
 		super.removeRange(begin, end);
-		this.dispatchEvent(new TableModelEvent(this, begin, end, TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE));
+		if (end > begin) {
+			this.dispatchEvent(new TableModelEvent(this, begin, end - 1, 
+					TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Listeners are notified of the move with a single {@link TableModelMoveEvent}.
+	 * </p>
+	 */
+	@Override
+	public int moveElement(int record, int newIndex) {
+		int ret = super.moveElement(record, newIndex);
+		if (record != newIndex) {
+			if (this.keyIndex != null) {
+				this.keyIndex.moved(record, 1, ret);
+			}
+			this.dispatchEvent(new TableModelMoveEvent(this, record, 1, newIndex));
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Listeners are notified of the move with a single {@link TableModelMoveEvent}.
+	 * </p>
+	 */
+	@Override
+	public int moveRange(int record, int count, int newIndex) {
+		int ret = super.moveRange(record, count, newIndex);
+		if (count > 0 && record != newIndex) {
+			if (this.keyIndex != null) {
+				this.keyIndex.moved(record, count, ret);
+			}
+			this.dispatchEvent(new TableModelMoveEvent(this, record, count, newIndex));
+		}
+		return ret;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Listeners are notified with a single {@link TableModelPermutationEvent} covering the
+	 * rows which actually moved, or not at all if none did.
+	 * </p>
+	 */
+	@Override
+	public void applyPermutation(int[] order) {
+		super.applyPermutation(order);
+
+		int first = 0;
+		while (first < order.length && order[first] == first) first++;
+		if (first == order.length) return;
+		int last = order.length - 1;
+		while (order[last] == last) last--;
+
+		if (this.keyIndex != null) {
+			this.keyIndex.moved(first, last);
+		}
+		this.dispatchEvent(new TableModelPermutationEvent(this, first,
+				Arrays.copyOfRange(order, first, last + 1)));
+	}
+
+	/**
+	 * Sorts the list as {@link #sortBy(Comparator)} does, but works out the new order on a
+	 * background thread, from a copy of the list taken when this function is called. Only
+	 * the rearrangement itself, and the event reporting it, happen on the event dispatch
+	 * thread, which must be the thread calling this function. If the list changes while the
+	 * order is being worked out, the order is discarded and the list is sorted on the event
+	 * dispatch thread instead.
+	 * @param c Comparator for the elements, which is called on background threads
+	 * @return The worker doing the sort, which may be used to wait for it or to cancel it
+	 */
+	public SwingWorker<int[], Void> sortInBackground(final Comparator<? super T> c) {
+		@SuppressWarnings("unchecked")
+		final T[] snapshot = (T[])this.toArray();
+		final int startRevision = this.revision;
+		SwingWorker<int[], Void> ret = new SwingWorker<int[], Void>() {
+			@Override
+			protected int[] doInBackground() throws Exception {
+				return ParallelIndexSort.sortedOrder(snapshot, c);
+			}
+
+			@Override
+			protected void done() {
+				if (this.isCancelled()) return;
+
+				int[] order;
+				try {
+					order = this.get();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (ExecutionException ex) {
+					throw new IllegalStateException("Sorting failed", ex.getCause());
+				}
+
+				if (revision == startRevision && size() == order.length) {
+					applyPermutation(order);
+				}
+				else {
+					sortBy(c);
+				}
+			}
+		};
+		ret.execute();
+		return ret;
+	}
+
+	/**
+	 * <p>
+	 * Returns an unchangeable copy of the contents of this list, which other threads may
+	 * read while this list goes on being changed; see {@link ListSnapshot}. This must be
+	 * called on the thread which changes the list, normally the event dispatch thread.
+	 * </p>
+	 * <p>
+	 * The first snapshot of a list takes O(n) time to make, because it copies the list
+	 * into a form which can be shared. From then on, this list keeps that copy up to date
+	 * as it dispatches each change to its listeners, at a cost of O(log n) for most
+	 * changes, and further snapshots take constant time. Subclasses which change the list
+	 * must therefore dispatch an event describing each change, as this class does.
+	 * </p>
+	 * @return the snapshot
+	 */
+	public ListSnapshot<T> snapshot() {
+		if (this.shared == null) this.shared = ChunkRope.of(this.toArray());
+		return new ListSnapshot<>(this.shared);
+	}
+
+	/**
+	 * <p>
+	 * Declares a column whose values are computed from other columns, rather than read
+	 * from the records. The subclass's {@link #getValueAt(int, int)} should return
+	 * {@link #getComputedValue(int, int)} for such a column. A computed value is
+	 * remembered until one of its inputs changes, so painting a table does not
+	 * recompute it.
+	 * </p>
+	 * <p>
+	 * A formula's inputs are the values of <code>rowInputs</code> in the same row, which
+	 * may themselves be computed columns, and the {@link Aggregate} of each of
+	 * <code>aggregateInputs</code> over every row, which must not be. Whenever this list
+	 * dispatches an event, the computed cells whose inputs the event covers are
+	 * recomputed, in dependency order, before any listener is notified. Listeners then
+	 * receive, after the event itself, an {@link TableModelEvent#UPDATE} for each computed
+	 * column naming just the rows whose value changed. A change to an aggregate input
+	 * changes every row of the columns which read it. For the fewest recomputations,
+	 * report changes by column, through {@link #set(int, Object)} with records which
+	 * implement {@link ColumnChangeReporter}, or through
+	 * {@link #requestTableUpdate(int, int)}. Calling <code>requestTableUpdate</code> for
+	 * a computed column itself makes its formula be evaluated again.
+	 * </p>
+	 * <p>
+	 * Definitions are not serialized.
+	 * </p>
+	 * @param column Model index of the computed column
+	 * @param rowInputs Model indices of the columns read from the same row
+	 * @param aggregateInputs Model indices of the columns whose aggregates are read
+	 * @param formula Computes the column's values from its inputs
+	 * @throws IllegalArgumentException if an aggregate input is a computed column, or if
+	 * the definition would make a computed column depend on itself
+	 */
+	public void defineComputedColumn(int column, int[] rowInputs, int[] aggregateInputs,
+			ColumnFormula formula) {
+		if (this.computedColumns == null) {
+			this.computedColumns = new ComputedColumns(this);
+		}
+		this.computedColumns.define(column, rowInputs, aggregateInputs, formula);
+		if (!this.isEmpty()) {
+			this.dispatchEvent(new TableModelEvent(this, 0, this.size() - 1, column,
+					TableModelEvent.UPDATE));
+		}
+	}
+
+	/**
+	 * Removes the definition of a computed column made by
+	 * {@link #defineComputedColumn(int, int[], int[], ColumnFormula)}.
+	 * @param column Model index of the computed column
+	 * @throws IllegalArgumentException if another computed column reads this one
+	 */
+	public void removeComputedColumn(int column) {
+		if (this.computedColumns == null) return;
+		
+		this.computedColumns.remove(column);
+		if (this.computedColumns.isEmpty()) {
+			this.computedColumns = null;
+		}
+	}
+
+	/**
+	 * Tells whether a column is computed.
+	 * @param column Model column index
+	 * @return <code>true</code> if the column has been declared with
+	 * {@link #defineComputedColumn(int, int[], int[], ColumnFormula)}
+	 */
+	public boolean isComputedColumn(int column) {
+		return this.computedColumns != null && this.computedColumns.isComputed(column);
+	}
+
+	/**
+	 * Returns the value of a computed cell, computing it only if it is not remembered.
+	 * @param row Row index
+	 * @param column Model index of a computed column
+	 * @return the value of the cell
+	 * @throws IllegalArgumentException if the column is not computed
+	 */
+	protected Object getComputedValue(int row, int column) {
+		if (this.computedColumns == null) {
+			throw new IllegalArgumentException("Column " + column + " is not computed");
+		}
+		return this.computedColumns.getValue(row, column);
+	}
+
+	/**
+	 * Sets the function which supplies each record's key, and builds an index from keys
+	 * to rows. Once a key extractor is set, {@link #indexOfKey(Object)},
+	 * {@link #getByKey(Object)}, {@link #upsert(Object)} and {@link #removeByKey(Object)}
+	 * locate records through the index rather than by scanning the list. The index is
+	 * maintained through every insertion, removal, replacement and move. Keys must be
+	 * unique within this list and must not change while a record is in it; if a record
+	 * is modified in a way that changes its key, call {@link #set(int, Object)} with it
+	 * rather than {@link #requestTableUpdate(int)}. The index is not serialized.
+	 * @param extractor the key extractor, or <code>null</code> to discard the index
+	 */
+	public void setKeyExtractor(RecordKeyExtractor<? super T> extractor) {
+		if (extractor == null) {
+			this.keyIndex = null;
+		}
+		else this.keyIndex = new RecordKeyIndex<>(this, extractor);
+	}
+
+	/**
+	 * Returns the key extractor set by {@link #setKeyExtractor(RecordKeyExtractor)}.
+	 * @return the key extractor, or <code>null</code> if none has been set
+	 */
+	public RecordKeyExtractor<? super T> getKeyExtractor() {
+		return (this.keyIndex == null) ? null : this.keyIndex.getExtractor();
+	}
+
+	/**
+	 * Returns the row which holds the record with the given key. This takes O(log n)
+	 * time, however the list has been changed.
+	 * @param key The key to look up
+	 * @return the row index, or -1 if no record has the given key
+	 * @throws IllegalStateException if no key extractor has been set
+	 */
+	public int indexOfKey(Object key) {
+		return this.requireKeyIndex().indexOf(key);
+	}
+
+	/**
+	 * Returns the record with the given key.
+	 * @param key The key to look up
+	 * @return the record, or <code>null</code> if no record has the given key
+	 * @throws IllegalStateException if no key extractor has been set
+	 */
+	public T getByKey(Object key) {
+		int index = this.indexOfKey(key);
+		return (index == -1) ? null : this.get(index);
+	}
+
+	/**
+	 * Replaces the record which has the same key as <code>element</code>, or appends
+	 * <code>element</code> if there is no such record. Listeners are notified of an
+	 * update or an insertion, respectively.
+	 * @param element The new or replacement record
+	 * @return the row index of <code>element</code>
+	 * @throws IllegalStateException if no key extractor has been set
+	 */
+	public int upsert(T element) {
+		RecordKeyIndex<T> index = this.requireKeyIndex();
+		int row = index.indexOf(index.keyOf(element));
+		if (row == -1) {
+			this.add(element);
+			return this.size() - 1;
+		}
+		
+		this.set(row, element);
+		return row;
+	}
+
+	/**
+	 * Removes the record with the given key, if there is one. Listeners are notified of
+	 * the removal.
+	 * @param key The key of the record to remove
+	 * @return the removed record, or <code>null</code> if no record has the given key
+	 * @throws IllegalStateException if no key extractor has been set
+	 */
+	public T removeByKey(Object key) {
+		int index = this.indexOfKey(key);
+		return (index == -1) ? null : this.remove(index);
+	}
+
+	/**
+	 * <p>
+	 * Applies a batch of keyed changes, notifying listeners with as few events as
+	 * possible. The changes are resolved in order against the key index (see
+	 * {@link #setKeyExtractor(RecordKeyExtractor)}), so that only the net effect on each
+	 * key is applied: an upsert followed by a delete of a new key does nothing, and a
+	 * delete followed by an upsert of an existing key is an update. The net changes are
+	 * then applied in three steps:
+	 * </p>
+	 * <ol>
+	 * <li>Records which are replaced are overwritten in place. Listeners receive one
+	 * {@link TableModelEvent#UPDATE} per run of adjacent replaced rows.</li>
+	 * <li>Records which are deleted are removed a run of adjacent rows at a time,
+	 * starting with the last run. Listeners receive one {@link TableModelEvent#DELETE}
+	 * per run, sent as soon as the run is removed, so that each event describes the list
+	 * as it is when the event arrives, as a {@link javax.swing.table.TableRowSorter}
+	 * requires.</li>
+	 * <li>Records with new keys are appended in the order they were first upserted.
+	 * Listeners receive one {@link TableModelEvent#INSERT} covering all of them.</li>
+	 * </ol>
+	 * @param changes The changes to apply
+	 * @throws IllegalStateException if no key extractor has been set
+	 */
+	public void applyChanges(Collection<Change<T>> changes) {
+		RecordKeyIndex<T> index = this.requireKeyIndex();
+		HashMap<Integer, T> updates = new HashMap<>();
+		BitSet deletes = new BitSet();
+		LinkedHashMap<Object, T> appends = new LinkedHashMap<>();
+		
+		for (Change<T> change : changes) {
+			if (change.getType() == Change.Type.UPSERT) {
+				T record = change.getRecord();
+				Object key = index.keyOf(record);
+				int row = index.indexOf(key);
+				if (row == -1) {
+					appends.put(key, record);
+				}
+				else {
+					deletes.clear(row);
+					updates.put(Integer.valueOf(row), record);
+				}
+			}
+			else {
+				Object key = change.getKey();
+				if (appends.remove(key) != null) continue;
+				
+				int row = index.indexOf(key);
+				if (row != -1) {
+					deletes.set(row);
+					updates.remove(Integer.valueOf(row));
+				}
+			}
+		}
+		
+		if (updates.isEmpty() && deletes.isEmpty() && appends.isEmpty()) return;
+		
+		this.fireBatchStarted();
+		try {
+			this.applyUpdates(index, updates);
+			this.applyDeletes(index, deletes);
+			
+			if (!appends.isEmpty()) {
+				int begin = this.size();
+				super.addAll(appends.values());
+				index.inserted(begin, appends.size());
+				this.dispatchEvent(new TableModelEvent(this, begin, this.size() - 1, 
+						TableModelEvent.ALL_COLUMNS, TableModelEvent.INSERT));
+			}
+		}
+		finally {
+			this.fireBatchEnded();
+		}
+	}
+
+	void addBatchListener(BatchListener l) {
+		if (this.batchListeners == null) this.batchListeners = new ArrayList<>();
+		this.batchListeners.add(l);
+	}
+
+	void removeBatchListener(BatchListener l) {
+		if (this.batchListeners != null) this.batchListeners.remove(l);
+	}
+
+	private void fireBatchStarted() {
+		if (this.batchListeners == null) return;
+		for (BatchListener l : this.batchListeners) {
+			l.batchStarted();
+		}
+	}
+
+	private void fireBatchEnded() {
+		if (this.batchListeners == null) return;
+		for (BatchListener l : this.batchListeners) {
+			l.batchEnded();
+		}
+	}
+
+	private void applyUpdates(RecordKeyIndex<T> index, Map<Integer, T> updates) {
+		if (updates.isEmpty()) return;
+		
+		int[] rows = new int[updates.size()];
+		int next = 0;
+		for (Map.Entry<Integer, T> update : updates.entrySet()) {
+			int row = update.getKey().intValue();
+			T old = super.set(row, update.getValue());
+			index.replaced(row, old, update.getValue());
+			rows[next++] = row;
+		}
+		
+		Arrays.sort(rows);
+		int runStart = 0;
+		for (int i = 1; i <= rows.length; i++) {
+			if (i == rows.length || rows[i] != rows[i - 1] + 1) {
+				this.dispatchEvent(new TableModelEvent(this, rows[runStart], rows[i - 1], 
+						TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE));
+				runStart = i;
+			}
+		}
+	}
+
+	private void applyDeletes(RecordKeyIndex<T> index, BitSet deletes) {
+		int runEnd = deletes.length() - 1;
+		while (runEnd >= 0) {
+			int runStart = deletes.previousClearBit(runEnd) + 1;
+			for (int row = runEnd; row >= runStart; row--) {
+				index.removed(row, this.get(row));
+			}
+			super.removeRange(runStart, runEnd + 1);
+			this.dispatchEvent(new TableModelEvent(this, runStart, runEnd, 
+					TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE));
+			runEnd = deletes.previousSetBit(runStart - 1);
+		}
+	}
+
+	private RecordKeyIndex<T> requireKeyIndex() {
+		if (this.keyIndex == null) {
+			throw new IllegalStateException("No key extractor has been set");
+		}
+		return this.keyIndex;
+	}
+}
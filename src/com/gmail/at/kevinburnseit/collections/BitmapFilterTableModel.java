@@ -0,0 +1,505 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * A view of another table model which presents only the rows passing a set of column
+ * filters, and is meant for models far too large to filter a row at a time on the event
+ * dispatch thread. Each filter is a {@link ColumnPredicate} applied to one column, and its
+ * results are kept in a bitmap with one bit per source row. The bitmaps are combined,
+ * either requiring every filter to pass or any of them, into a bitmap of presented rows,
+ * which also serves to translate row indices: view to source in O(log n), and source to
+ * view in constant time.
+ * </p>
+ * <p>
+ * Adding a filter evaluates it over the whole model in parallel, in word-aligned chunks
+ * of rows on a fork-join pool. After that, the bitmaps follow events from the source:
+ * inserted rows are evaluated and spliced in, deleted, moved and rearranged rows are
+ * spliced out or across, and updated rows are evaluated again only by the filters on the changed column.
+ * Because predicates are evaluated on worker threads, the source must allow its cells to
+ * be read from several threads at once while it is not being modified, as
+ * {@link ArrayListWithTableModel} does.
+ * </p>
+ * <p>
+ * The view always preserves the order of its source, and so it can be reordered in the
+ * same way as an unsorted {@link SortedFilteredTableModel}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class BitmapFilterTableModel extends AbstractTableModelView {
+	/**
+	 * How the results of several filters are combined.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public enum Combination {
+		/**
+		 * A row is presented if it passes every filter.
+		 */
+		ALL,
+		/**
+		 * A row is presented if it passes at least one filter.
+		 */
+		ANY
+	}
+
+	private static final class Clause {
+		final int column;
+		final ColumnPredicate predicate;
+		final RowBitmap bits;
+
+		Clause(int column, ColumnPredicate predicate, RowBitmap bits) {
+			this.column = column;
+			this.predicate = predicate;
+			this.bits = bits;
+		}
+	}
+
+	/**
+	 * Evaluates a predicate over a range of rows into an array of words. Each leaf of the
+	 * task covers whole words, so no two threads write to the same word.
+	 */
+	private static final class EvaluateTask extends RecursiveAction {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -1851356417934217460L;
+		private final TableModel model;
+		private final int column;
+		private final ColumnPredicate predicate;
+		private final int firstRow;
+		private final int rowCount;
+		private final long[] out;
+		private final int fromWord;
+		private final int toWord;
+
+		EvaluateTask(TableModel model, int column, ColumnPredicate predicate, int firstRow,
+				int rowCount, long[] out, int fromWord, int toWord) {
+			this.model = model;
+			this.column = column;
+			this.predicate = predicate;
+			this.firstRow = firstRow;
+			this.rowCount = rowCount;
+			this.out = out;
+			this.fromWord = fromWord;
+			this.toWord = toWord;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toWord - this.fromWord <= TASK_WORDS) {
+				this.evaluate();
+				return;
+			}
+
+			int mid = (this.fromWord + this.toWord) >>> 1;
+			invokeAll(
+					new EvaluateTask(this.model, this.column, this.predicate, this.firstRow,
+							this.rowCount, this.out, this.fromWord, mid),
+					new EvaluateTask(this.model, this.column, this.predicate, this.firstRow,
+							this.rowCount, this.out, mid, this.toWord));
+		}
+
+		void evaluate() {
+			for (int w = this.fromWord; w < this.toWord; w++) {
+				int base = w << 6;
+				int n = Math.min(64, this.rowCount - base);
+				long bits = 0;
+				for (int b = 0; b < n; b++) {
+					Object value = this.model.getValueAt(this.firstRow + base + b, this.column);
+					if (this.predicate.accept(value)) bits |= 1L << b;
+				}
+				this.out[w] = bits;
+			}
+		}
+	}
+
+	/**
+	 * Ranges of at least this many rows are evaluated in parallel.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 15;
+	/**
+	 * The number of words of rows evaluated by each parallel task.
+	 */
+	static final int TASK_WORDS = 256;
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -4418377935510695372L;
+
+	private ArrayList<Clause> clauses = new ArrayList<>();
+	private Combination combination = Combination.ALL;
+	private RowBitmap presented;
+
+	/**
+	 * Constructor. The new view has no filters, and so presents every row.
+	 * @param source The model whose rows are to be presented
+	 */
+	public BitmapFilterTableModel(TableModel source) {
+		super(source);
+		this.presented = new RowBitmap(source.getRowCount());
+		this.recombine();
+	}
+
+	/**
+	 * Adds a filter on a column, evaluates it over every row, and reports the result to
+	 * listeners as a change to all of the data.
+	 * @param column Source model column to test
+	 * @param predicate The test
+	 */
+	public void addFilter(int column, ColumnPredicate predicate) {
+		if (predicate == null) {
+			throw new NullPointerException("predicate must not be null");
+		}
+		if (column < 0 || column >= this.getColumnCount()) {
+			throw new IndexOutOfBoundsException("Invalid column: " + column);
+		}
+
+		Clause c = new Clause(column, predicate, new RowBitmap(0));
+		int count = this.getSourceModel().getRowCount();
+		c.bits.replace(this.evaluate(c, 0, count), count);
+		this.clauses.add(c);
+		this.recombine();
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * Removes a filter previously added with {@link #addFilter(int, ColumnPredicate)},
+	 * and reports the result to listeners as a change to all of the data.
+	 * @param column The column passed when the filter was added
+	 * @param predicate The predicate passed when the filter was added
+	 * @return <code>true</code> if the filter was found and removed
+	 */
+	public boolean removeFilter(int column, ColumnPredicate predicate) {
+		for (Iterator<Clause> it = this.clauses.iterator(); it.hasNext(); ) {
+			Clause c = it.next();
+			if (c.column == column && c.predicate == predicate) {
+				it.remove();
+				this.recombine();
+				this.fireTableDataChanged();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes every filter, so that every row is presented.
+	 */
+	public void clearFilters() {
+		if (this.clauses.isEmpty()) return;
+
+		this.clauses.clear();
+		this.recombine();
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * Sets how the filters are combined. The default is {@link Combination#ALL}.
+	 * @param combination The new combination
+	 */
+	public void setCombination(Combination combination) {
+		if (combination == null) {
+			throw new NullPointerException("combination must not be null");
+		}
+		if (combination == this.combination) return;
+
+		this.combination = combination;
+		this.recombine();
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * @return how the filters are combined
+	 */
+	public Combination getCombination() {
+		return this.combination;
+	}
+
+	@Override
+	public boolean isOrderPreserving() {
+		return true;
+	}
+
+	@Override
+	public int getRowCount() {
+		return this.presented.cardinality();
+	}
+
+	@Override
+	public int convertRowIndexToSource(int viewRow) {
+		return this.presented.select(viewRow);
+	}
+
+	@Override
+	public int convertRowIndexToView(int sourceRow) {
+		if (sourceRow < 0 || sourceRow >= this.presented.size()) {
+			throw new IndexOutOfBoundsException("Index: " + sourceRow + ", Size: " +
+					this.presented.size());
+		}
+		if (!this.presented.get(sourceRow)) return -1;
+		return this.presented.rank(sourceRow);
+	}
+
+	@Override
+	protected void sourceChanged(TableModelEvent e) {
+		int count = this.getSourceModel().getRowCount();
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+			// filters on columns which no longer exist are dropped
+			int columns = this.getColumnCount();
+			for (Iterator<Clause> it = this.clauses.iterator(); it.hasNext(); ) {
+				if (it.next().column >= columns) it.remove();
+			}
+			this.reevaluate();
+			this.fireTableStructureChanged();
+			return;
+		}
+		if (e.getLastRow() == Integer.MAX_VALUE) {
+			this.reevaluate();
+			this.fireTableDataChanged();
+			return;
+		}
+
+		if (e instanceof TableModelMoveEvent) {
+			this.sourceRowsMoved((TableModelMoveEvent)e);
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			this.sourceRowsPermuted((TableModelPermutationEvent)e);
+		}
+		else if (e.getType() == TableModelEvent.INSERT) {
+			this.sourceRowsInserted(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+		}
+		else if (e.getType() == TableModelEvent.DELETE) {
+			this.sourceRowsDeleted(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+		}
+		else {
+			this.sourceRowsUpdated(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1,
+					e.getColumn());
+		}
+
+		if (this.presented.size() != count) {
+			// the source described its change inaccurately; start over
+			this.flushPendingEvent();
+			this.reevaluate();
+			this.fireTableDataChanged();
+		}
+	}
+
+	private void sourceRowsInserted(int first, int count) {
+		for (Clause c : this.clauses) {
+			c.bits.insert(first, count);
+			c.bits.write(first, this.evaluate(c, first, count), count);
+		}
+
+		int viewFirst = this.presented.rank(first);
+		long[] combined = this.combine(first, count);
+		this.presented.insert(first, count);
+		this.presented.write(first, combined, count);
+		int viewCount = bitCount(combined);
+		if (viewCount > 0) {
+			this.fireTableRowsInserted(viewFirst, viewFirst + viewCount - 1);
+		}
+	}
+
+	private void sourceRowsDeleted(int first, int count) {
+		int viewFirst = this.presented.rank(first);
+		int viewCount = this.presented.rank(first + count) - viewFirst;
+		for (Clause c : this.clauses) {
+			c.bits.remove(first, count);
+		}
+		this.presented.remove(first, count);
+		if (viewCount > 0) {
+			this.fireTableRowsDeleted(viewFirst, viewFirst + viewCount - 1);
+		}
+	}
+
+	private void sourceRowsUpdated(int first, int count, int column) {
+		boolean reevaluated = false;
+		for (Clause c : this.clauses) {
+			if (column != TableModelEvent.ALL_COLUMNS && column != c.column) continue;
+
+			c.bits.write(first, this.evaluate(c, first, count), count);
+			reevaluated = true;
+		}
+
+		int viewFirst = this.presented.rank(first);
+		long[] combined = reevaluated ? this.combine(first, count) : null;
+		if (combined == null || equalsBits(combined, this.presented.extract(first, count))) {
+			// the presented rows are the same ones, and consecutive in the view
+			int viewCount = this.presented.rank(first + count) - viewFirst;
+			if (viewCount > 0) {
+				this.fireTableChanged(new TableModelEvent(this, viewFirst,
+						viewFirst + viewCount - 1, column));
+			}
+			return;
+		}
+
+		int viewIndex = viewFirst;
+		for (int i = 0; i < count; i++) {
+			boolean was = this.presented.get(first + i);
+			boolean is = (combined[i >>> 6] & (1L << i)) != 0;
+			if (was && is) {
+				this.queueUpdate(viewIndex++, column);
+			}
+			else if (was) {
+				this.queueDelete(viewIndex);
+				this.presented.set(first + i, false);
+			}
+			else if (is) {
+				this.queueInsert(viewIndex++);
+				this.presented.set(first + i, true);
+			}
+		}
+	}
+
+	private void sourceRowsMoved(TableModelMoveEvent e) {
+		int from = e.getMoveSource();
+		int count = e.getMoveLength();
+		int to = e.getMoveDestination();
+		if (from == to || count == 0) return;
+
+		for (Clause c : this.clauses) {
+			moveBits(c.bits, from, count, to);
+		}
+		int viewFrom = this.presented.rank(from);
+		int viewCount = this.presented.rank(from + count) - viewFrom;
+		moveBits(this.presented, from, count, to);
+		int viewTo = this.presented.rank(to);
+		if (viewCount > 0 && viewTo != viewFrom) {
+			this.fireTableChanged(new TableModelMoveEvent(this, viewFrom, viewCount, viewTo));
+		}
+	}
+
+	private static void moveBits(RowBitmap bits, int from, int count, int to) {
+		long[] block = bits.extract(from, count);
+		bits.remove(from, count);
+		bits.insert(to, count);
+		bits.write(to, block, count);
+	}
+
+	private void sourceRowsPermuted(TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		int count = e.getLastRow() - first + 1;
+		for (Clause c : this.clauses) {
+			permuteBits(c.bits, e);
+		}
+
+		int viewFirst = this.presented.rank(first);
+		int[] oldViewIndices = new int[count];
+		int presentedCount = 0;
+		for (int i = 0; i < count; i++) {
+			oldViewIndices[i] = this.presented.get(first + i) ?
+					viewFirst + presentedCount++ : -1;
+		}
+		permuteBits(this.presented, e);
+		if (presentedCount == 0) return;
+
+		int[] viewOldIndices = new int[presentedCount];
+		int n = 0;
+		boolean changed = false;
+		for (int i = 0; i < count; i++) {
+			int old = oldViewIndices[e.getOldIndex(first + i) - first];
+			if (old == -1) continue;
+			viewOldIndices[n] = old;
+			changed = changed || (old != viewFirst + n);
+			n++;
+		}
+		if (changed) {
+			this.fireTableChanged(new TableModelPermutationEvent(this, viewFirst,
+					viewOldIndices));
+		}
+	}
+
+	private static void permuteBits(RowBitmap bits, TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		int count = e.getLastRow() - first + 1;
+		long[] old = bits.extract(first, count);
+		long[] permuted = new long[old.length];
+		for (int i = 0; i < count; i++) {
+			int j = e.getOldIndex(first + i) - first;
+			if ((old[j >>> 6] & (1L << j)) != 0) permuted[i >>> 6] |= 1L << i;
+		}
+		bits.write(first, permuted, count);
+	}
+
+	/**
+	 * Evaluates every filter again over the whole source, and combines the results.
+	 */
+	private void reevaluate() {
+		int count = this.getSourceModel().getRowCount();
+		for (Clause c : this.clauses) {
+			c.bits.replace(this.evaluate(c, 0, count), count);
+		}
+		this.recombine();
+	}
+
+	/**
+	 * Combines the current results of the filters over the whole source.
+	 */
+	private void recombine() {
+		int count = this.getSourceModel().getRowCount();
+		this.presented.replace(this.combine(0, count), count);
+	}
+
+	/**
+	 * Evaluates a filter over a range of source rows, in parallel if the range is large.
+	 */
+	private long[] evaluate(Clause c, int first, int count) {
+		long[] out = new long[RowBitmap.wordCount(count)];
+		EvaluateTask task = new EvaluateTask(this.getSourceModel(), c.column, c.predicate,
+				first, count, out, 0, out.length);
+		if (count >= PARALLEL_THRESHOLD) {
+			WorkerPool.get().invoke(task);
+		}
+		else {
+			task.evaluate();
+		}
+		return out;
+	}
+
+	/**
+	 * Combines the results of the filters over a range of source rows.
+	 */
+	private long[] combine(int first, int count) {
+		long[] ret = new long[RowBitmap.wordCount(count)];
+		boolean all = (this.combination == Combination.ALL) || this.clauses.isEmpty();
+		for (int j = 0; j < ret.length; j++) {
+			int index = first + (j << 6);
+			long bits = all ? -1L : 0L;
+			for (Clause c : this.clauses) {
+				if (all) {
+					bits &= c.bits.getBits(index);
+				}
+				else {
+					bits |= c.bits.getBits(index);
+				}
+			}
+			ret[j] = bits;
+		}
+		int rem = count & 63;
+		if (rem != 0) ret[ret.length - 1] &= (1L << rem) - 1;
+		return ret;
+	}
+
+	private static int bitCount(long[] words) {
+		int ret = 0;
+		for (long w : words) {
+			ret += Long.bitCount(w);
+		}
+		return ret;
+	}
+
+	private static boolean equalsBits(long[] a, long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+}
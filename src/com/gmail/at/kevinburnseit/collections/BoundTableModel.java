@@ -0,0 +1,143 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * An {@link ArrayListWithTableModel} whose columns are described by a list of
+ * {@link ColumnBinding}s, so that it need not be subclassed to implement
+ * <code>getValueAt</code>, <code>setValueAt</code>, <code>getColumnName</code>,
+ * <code>getColumnClass</code> and <code>isCellEditable</code>. For example:
+ * </p>
+ * <pre>
+ * BoundTableModel&lt;Person&gt; people = new BoundTableModel&lt;&gt;(
+ *     ColumnBinding.forProperty(Person.class, "name", "Name"),
+ *     ColumnBinding.forProperty(Person.class, "age", "Age"));
+ * </pre>
+ * <p>
+ * Editing a cell writes the new value into the record through its binding and then
+ * reports the change with {@link #requestTableUpdate(int, int)}. Columns may also be
+ * computed with {@link #defineComputedColumn(int, int[], int[], ColumnFormula)}, in which
+ * case their bindings only supply the name and class.
+ * </p>
+ * <p>
+ * Bindings are serialized with the model; see {@link ColumnBinding}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The object type stored in the collection.
+ */
+public class BoundTableModel<T> extends ArrayListWithTableModel<T> {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -4671923012783865130L;
+	private ArrayList<ColumnBinding<? super T>> bindings;
+
+	/**
+	 * Constructor.
+	 * @param bindings Describes each column, in order
+	 */
+	@SafeVarargs
+	public BoundTableModel(ColumnBinding<? super T>... bindings) {
+		super();
+		this.bindings = new ArrayList<ColumnBinding<? super T>>(bindings.length);
+		for (ColumnBinding<? super T> b : bindings) {
+			this.bindings.add(b);
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param bindings Describes each column, in order
+	 */
+	public BoundTableModel(List<? extends ColumnBinding<? super T>> bindings) {
+		super();
+		this.bindings = new ArrayList<ColumnBinding<? super T>>(bindings);
+	}
+
+	/**
+	 * @param column Model column index
+	 * @return the binding which describes the column
+	 */
+	public ColumnBinding<? super T> getBinding(int column) {
+		return this.bindings.get(column);
+	}
+
+	@Override
+	public int getColumnCount() {
+		return this.bindings.size();
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return this.bindings.get(column).getName();
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columnNumber) {
+		return this.bindings.get(columnNumber).getType();
+	}
+
+	@Override
+	public boolean isCellEditable(int row, int column) {
+		return this.bindings.get(column).isEditable() && !this.isComputedColumn(column);
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		if (this.isComputedColumn(column)) return this.getComputedValue(row, column);
+		return this.bindings.get(column).getValue(this.get(row));
+	}
+
+	@Override
+	public void setValueAt(Object newValue, int row, int column) {
+		this.bindings.get(column).setValue(this.get(row), newValue);
+		this.requestTableUpdate(row, column);
+	}
+
+	/**
+	 * Reads a cell holding a number as an <code>int</code>, without boxing it if its
+	 * binding allows; see {@link ColumnBinding#getInt(Object)}.
+	 * @param row Row index
+	 * @param column Model column index of a column which is not computed
+	 * @return the value of the cell
+	 */
+	public int getIntAt(int row, int column) {
+		return this.bindings.get(column).getInt(this.get(row));
+	}
+
+	/**
+	 * Reads a cell holding a number as a <code>long</code>, without boxing it if its
+	 * binding allows; see {@link ColumnBinding#getLong(Object)}.
+	 * @param row Row index
+	 * @param column Model column index of a column which is not computed
+	 * @return the value of the cell
+	 */
+	public long getLongAt(int row, int column) {
+		return this.bindings.get(column).getLong(this.get(row));
+	}
+
+	/**
+	 * Reads a cell holding a number as a <code>double</code>, without boxing it if its
+	 * binding allows; see {@link ColumnBinding#getDouble(Object)}.
+	 * @param row Row index
+	 * @param column Model column index of a column which is not computed
+	 * @return the value of the cell
+	 */
+	public double getDoubleAt(int row, int column) {
+		return this.bindings.get(column).getDouble(this.get(row));
+	}
+
+	/**
+	 * Reads a cell holding a <code>boolean</code> without boxing it if its binding allows;
+	 * see {@link ColumnBinding#getBoolean(Object)}.
+	 * @param row Row index
+	 * @param column Model column index of a column which is not computed
+	 * @return the value of the cell
+	 */
+	public boolean getBooleanAt(int row, int column) {
+		return this.bindings.get(column).getBoolean(this.get(row));
+	}
+}
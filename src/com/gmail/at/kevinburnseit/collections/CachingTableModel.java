@@ -0,0 +1,319 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * A {@link TableModelView} which presents every row of its source, in the same order, but
+ * remembers the values it reads from the source. It is meant for sources whose
+ * <code>getValueAt</code> is expensive, since a table asks for the same visible cells
+ * again and again to paint them, to show tooltips and for accessibility. Placing this
+ * view between the source and the table means each cell is read from the source once,
+ * until the source reports that it changed.
+ * </p>
+ * <p>
+ * Values are remembered a row at a time, for a bounded number of rows; when the bound is
+ * reached, the row least recently read is forgotten. The rows remembered are therefore
+ * usually the ones on screen. The source's events are used to forget exactly the cells
+ * which changed: an update of one column forgets only that column of the rows updated.
+ * When rows are inserted, deleted, moved ({@link TableModelMoveEvent}) or rearranged
+ * ({@link TableModelPermutationEvent}), the values remembered for the other rows are
+ * carried to their new positions rather than forgotten. Each event is then passed on to
+ * this view's listeners.
+ * </p>
+ * <p>
+ * The view counts how many reads it answered from memory and how many it passed to the
+ * source; see {@link #getHitCount()} and {@link #getMissCount()}.
+ * </p>
+ * <p>
+ * Because this is a view, an <code>RxTableWithAddedRecords</code> showing it still
+ * translates its record numbers to the source, so that records can be added, deleted and
+ * moved as usual.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class CachingTableModel extends AbstractTableModelView {
+	/**
+	 * The number of rows remembered by a view made with
+	 * {@link #CachingTableModel(TableModel)}.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * Stands for a cell of a remembered row which has not been read.
+	 */
+	private static final Object NOT_CACHED = new Object();
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -3157342205623907734L;
+	private int capacity;
+	/**
+	 * Remembered rows by row index, least recently read first.
+	 */
+	private LinkedHashMap<Integer, Object[]> rows;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Constructor for a view which remembers up to {@link #DEFAULT_CAPACITY} rows.
+	 * @param source The model whose values are to be remembered
+	 */
+	public CachingTableModel(TableModel source) {
+		this(source, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * @param source The model whose values are to be remembered
+	 * @param capacity The greatest number of rows to remember. A few screens' worth is
+	 * plenty.
+	 */
+	public CachingTableModel(TableModel source, int capacity) {
+		super(source);
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.rows = this.newRowMap();
+	}
+
+	private LinkedHashMap<Integer, Object[]> newRowMap() {
+		return new LinkedHashMap<Integer, Object[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+				if (this.size() <= capacity) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return the greatest number of rows remembered
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of reads answered without reading the source
+	 */
+	public long getHitCount() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of reads passed to the source
+	 */
+	public long getMissCount() {
+		return this.misses;
+	}
+
+	/**
+	 * @return the number of rows forgotten to make room for others
+	 */
+	public long getEvictionCount() {
+		return this.evictions;
+	}
+
+	/**
+	 * @return the proportion of reads answered without reading the source, or zero if
+	 * there have been none
+	 */
+	public double getHitRate() {
+		long total = this.hits + this.misses;
+		return (total == 0) ? 0 : (double)this.hits / total;
+	}
+
+	/**
+	 * Sets the hit, miss and eviction counts back to zero.
+	 */
+	public void resetStatistics() {
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Forgets every remembered value.
+	 */
+	public void clearCache() {
+		this.rows.clear();
+	}
+
+	@Override
+	public int getRowCount() {
+		return this.getSourceModel().getRowCount();
+	}
+
+	@Override
+	public int convertRowIndexToSource(int viewIndex) {
+		return viewIndex;
+	}
+
+	@Override
+	public int convertRowIndexToView(int sourceIndex) {
+		return sourceIndex;
+	}
+
+	@Override
+	public boolean isOrderPreserving() {
+		return true;
+	}
+
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		Integer key = Integer.valueOf(rowIndex);
+		Object[] cells = this.rows.get(key);
+		if (cells != null && columnIndex < cells.length &&
+				cells[columnIndex] != NOT_CACHED) {
+			this.hits++;
+			return cells[columnIndex];
+		}
+
+		this.misses++;
+		Object ret = this.getSourceModel().getValueAt(rowIndex, columnIndex);
+		if (cells == null || columnIndex >= cells.length) {
+			Object[] grown = new Object[Math.max(columnIndex + 1, this.getColumnCount())];
+			Arrays.fill(grown, NOT_CACHED);
+			if (cells != null) System.arraycopy(cells, 0, grown, 0, cells.length);
+			cells = grown;
+			this.rows.put(key, cells);
+		}
+		cells[columnIndex] = ret;
+		return ret;
+	}
+
+	@Override
+	public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+		// in case the source does not report the change
+		this.forget(rowIndex, rowIndex, columnIndex);
+		super.setValueAt(aValue, rowIndex, columnIndex);
+	}
+
+	@Override
+	protected void sourceChanged(TableModelEvent e) {
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+			this.rows.clear();
+			this.fireTableStructureChanged();
+			return;
+		}
+		if (e.getLastRow() == Integer.MAX_VALUE) {
+			this.rows.clear();
+			this.fireTableDataChanged();
+			return;
+		}
+
+		int first = e.getFirstRow();
+		int last = e.getLastRow();
+		if (e instanceof TableModelMoveEvent) {
+			TableModelMoveEvent me = (TableModelMoveEvent)e;
+			this.rowsMoved(me.getMoveSource(), me.getMoveLength(), me.getMoveDestination());
+			this.fireTableChanged(new TableModelMoveEvent(this, me.getMoveSource(),
+					me.getMoveLength(), me.getMoveDestination()));
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			TableModelPermutationEvent pe = (TableModelPermutationEvent)e;
+			int[] oldIndices = new int[last - first + 1];
+			for (int i = 0; i < oldIndices.length; i++) {
+				oldIndices[i] = pe.getOldIndex(first + i);
+			}
+			this.rowsPermuted(pe);
+			this.fireTableChanged(new TableModelPermutationEvent(this, first, oldIndices));
+		}
+		else {
+			if (e.getType() == TableModelEvent.INSERT) {
+				this.shift(first, last - first + 1);
+			}
+			else if (e.getType() == TableModelEvent.DELETE) {
+				this.forget(first, last, TableModelEvent.ALL_COLUMNS);
+				this.shift(last + 1, -(last - first + 1));
+			}
+			else {
+				this.forget(first, last, e.getColumn());
+			}
+			this.fireTableChanged(new TableModelEvent(this, first, last, e.getColumn(),
+					e.getType()));
+		}
+	}
+
+	/**
+	 * Forgets the remembered values of a column, or of every column, in a range of rows.
+	 */
+	private void forget(int first, int last, int column) {
+		if (this.rows.isEmpty()) return;
+
+		Object[][] remembered = this.rows.values().toArray(new Object[0][]);
+		Integer[] keys = this.rows.keySet().toArray(new Integer[0]);
+		for (int i = 0; i < keys.length; i++) {
+			int row = keys[i].intValue();
+			if (row < first || row > last) continue;
+
+			if (column == TableModelEvent.ALL_COLUMNS) {
+				this.rows.remove(keys[i]);
+			}
+			else if (column < remembered[i].length) {
+				remembered[i][column] = NOT_CACHED;
+			}
+		}
+	}
+
+	/**
+	 * Moves every remembered row at or after <code>from</code> by <code>delta</code>,
+	 * keeping the order in which they were last read.
+	 */
+	private void shift(int from, int delta) {
+		if (this.rows.isEmpty()) return;
+
+		LinkedHashMap<Integer, Object[]> shifted = this.newRowMap();
+		for (Map.Entry<Integer, Object[]> entry : this.rows.entrySet()) {
+			int row = entry.getKey().intValue();
+			shifted.put((row >= from) ? row + delta : row, entry.getValue());
+		}
+		this.rows = shifted;
+	}
+
+	private void rowsMoved(int from, int count, int to) {
+		if (this.rows.isEmpty() || from == to || count == 0) return;
+
+		int lo = Math.min(from, to);
+		int hi = Math.max(from, to) + count - 1;
+		LinkedHashMap<Integer, Object[]> moved = this.newRowMap();
+		for (Map.Entry<Integer, Object[]> entry : this.rows.entrySet()) {
+			int row = entry.getKey().intValue();
+			if (row >= from && row < from + count) {
+				row += to - from;
+			}
+			else if (row >= lo && row <= hi) {
+				// the rows the block passed over make room for it
+				row += (to > from) ? -count : count;
+			}
+			moved.put(row, entry.getValue());
+		}
+		this.rows = moved;
+	}
+
+	private void rowsPermuted(TableModelPermutationEvent e) {
+		if (this.rows.isEmpty()) return;
+
+		LinkedHashMap<Integer, Object[]> permuted = this.newRowMap();
+		for (Map.Entry<Integer, Object[]> entry : this.rows.entrySet()) {
+			int row = entry.getKey().intValue();
+			if (row >= e.getFirstRow() && row <= e.getLastRow()) {
+				row = e.getNewIndex(row);
+			}
+			permuted.put(row, entry.getValue());
+		}
+		this.rows = permuted;
+	}
+}
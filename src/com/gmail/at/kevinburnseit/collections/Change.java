@@ -0,0 +1,81 @@
+package com.gmail.at.kevinburnseit.collections;
+
+/**
+ * A single keyed change to be applied as part of a batch by
+ * {@link ArrayListWithTableModel#applyChanges(java.util.Collection)}. Instances are
+ * created with {@link #upsert(Object)} or {@link #delete(Object)}.
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record being changed.
+ */
+public final class Change<T> {
+	/**
+	 * The kinds of change which can be applied.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public enum Type {
+		/**
+		 * Replaces the record which has the same key as the change's record, or appends
+		 * the record if no record has that key.
+		 */
+		UPSERT,
+		/**
+		 * Removes the record which has the change's key, if there is one.
+		 */
+		DELETE;
+	}
+
+	private Type type;
+	private T record;
+	private Object key;
+
+	private Change(Type type, T record, Object key) {
+		this.type = type;
+		this.record = record;
+		this.key = key;
+	}
+
+	/**
+	 * Creates a change which replaces or appends a record.
+	 * @param record The new or replacement record. Cannot be <code>null</code>.
+	 * @return
+	 */
+	public static <T> Change<T> upsert(T record) {
+		if (record == null) throw new NullPointerException("record");
+		return new Change<>(Type.UPSERT, record, null);
+	}
+
+	/**
+	 * Creates a change which removes the record with the given key.
+	 * @param key The key of the record to remove. Cannot be <code>null</code>.
+	 * @return
+	 */
+	public static <T> Change<T> delete(Object key) {
+		if (key == null) throw new NullPointerException("key");
+		return new Change<>(Type.DELETE, null, key);
+	}
+
+	/**
+	 * @return the kind of change
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the new or replacement record for an {@link Type#UPSERT}, or
+	 * <code>null</code> for a {@link Type#DELETE}.
+	 */
+	public T getRecord() {
+		return record;
+	}
+
+	/**
+	 * @return the key of the record to remove for a {@link Type#DELETE}, or
+	 * <code>null</code> for an {@link Type#UPSERT}, whose key is taken from its record.
+	 */
+	public Object getKey() {
+		return key;
+	}
+}
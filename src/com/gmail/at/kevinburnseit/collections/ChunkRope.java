@@ -0,0 +1,396 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * <p>
+ * An immutable sequence of objects, held as a treap of chunks of up to
+ * {@link #CHUNK_SIZE} elements ordered by position. Every operation which would change
+ * the sequence instead returns a new one, which shares all but O(log n) nodes with the
+ * old; so keeping an old version costs memory only for the chunks which have been
+ * changed since, and any number of threads may read a version while another thread
+ * derives new ones from it.
+ * </p>
+ * <p>
+ * Splitting and joining sequences take O(log n) time, and the other operations are built
+ * from them. When a join brings two small chunks together they are combined, so that
+ * repeated small edits do not leave the sequence in tiny pieces.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+final class ChunkRope {
+	/**
+	 * The greatest number of elements in a chunk.
+	 */
+	static final int CHUNK_SIZE = 64;
+
+	private static final Random random = new Random();
+
+	/**
+	 * A node of the treap. Nodes are never modified once made.
+	 */
+	static final class Node {
+		final Node left;
+		final Node right;
+		final Object[] items;
+		final int size;
+		final int priority;
+
+		Node(Node left, Object[] items, Node right, int priority) {
+			this.left = left;
+			this.right = right;
+			this.items = items;
+			this.priority = priority;
+			this.size = size(left) + items.length + size(right);
+		}
+	}
+
+	private final Node root;
+
+	private ChunkRope(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Makes a sequence of the given elements, in order. This takes O(n) time.
+	 */
+	static ChunkRope of(Object[] elements) {
+		return new ChunkRope(build(elements, 0, elements.length));
+	}
+
+	private static int size(Node n) {
+		return (n == null) ? 0 : n.size;
+	}
+
+	int size() {
+		return size(this.root);
+	}
+
+	Object get(int index) {
+		this.checkIndex(index, this.size() - 1);
+		Node n = this.root;
+		while (true) {
+			int ls = size(n.left);
+			if (index < ls) {
+				n = n.left;
+			}
+			else if (index < ls + n.items.length) {
+				return n.items[index - ls];
+			}
+			else {
+				index -= ls + n.items.length;
+				n = n.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns a sequence in which the element at <code>index</code> is replaced.
+	 */
+	ChunkRope set(int index, Object element) {
+		this.checkIndex(index, this.size() - 1);
+		return new ChunkRope(set(this.root, index, element));
+	}
+
+	private static Node set(Node n, int index, Object element) {
+		int ls = size(n.left);
+		if (index < ls) {
+			return new Node(set(n.left, index, element), n.items, n.right, n.priority);
+		}
+		index -= ls;
+		if (index < n.items.length) {
+			Object[] items = n.items.clone();
+			items[index] = element;
+			return new Node(n.left, items, n.right, n.priority);
+		}
+		return new Node(n.left, n.items, set(n.right, index - n.items.length, element),
+				n.priority);
+	}
+
+	/**
+	 * Returns a sequence with <code>elements</code> inserted before <code>index</code>.
+	 */
+	ChunkRope insert(int index, Object[] elements) {
+		this.checkIndex(index, this.size());
+		Node[] parts = split(this.root, index);
+		return new ChunkRope(join(join(parts[0], build(elements, 0, elements.length)),
+				parts[1]));
+	}
+
+	/**
+	 * Returns a sequence without the elements from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive).
+	 */
+	ChunkRope remove(int from, int to) {
+		this.checkRange(from, to);
+		Node[] head = split(this.root, from);
+		Node[] tail = split(head[1], to - from);
+		return new ChunkRope(join(head[0], tail[1]));
+	}
+
+	/**
+	 * Returns the elements from <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive) as a sequence of their own.
+	 */
+	ChunkRope slice(int from, int to) {
+		this.checkRange(from, to);
+		if (from == 0 && to == this.size()) return this;
+		return new ChunkRope(split(split(this.root, from)[1], to - from)[0]);
+	}
+
+	/**
+	 * Returns a sequence in which the elements from <code>from</code> onward are
+	 * replaced by <code>elements</code>.
+	 */
+	ChunkRope replace(int from, Object[] elements) {
+		this.checkRange(from, from + elements.length);
+		Node[] head = split(this.root, from);
+		Node[] tail = split(head[1], elements.length);
+		return new ChunkRope(join(join(head[0], build(elements, 0, elements.length)),
+				tail[1]));
+	}
+
+	/**
+	 * Returns a sequence in which the <code>count</code> elements starting at
+	 * <code>from</code> are moved to start at <code>to</code>, as
+	 * {@link CollectionReorderable#moveRange(int, int, int)} moves records.
+	 */
+	ChunkRope move(int from, int count, int to) {
+		this.checkRange(from, from + count);
+		this.checkRange(to, to + count);
+		if (from == to || count == 0) return this;
+
+		Node[] head = split(this.root, from);
+		Node[] block = split(head[1], count);
+		Node rest = join(head[0], block[1]);
+		Node[] parts = split(rest, to);
+		return new ChunkRope(join(join(parts[0], block[0]), parts[1]));
+	}
+
+	/**
+	 * Copies the elements into an array.
+	 */
+	Object[] toArray() {
+		Object[] ret = new Object[this.size()];
+		int pos = 0;
+		for (ChunkIterator it = this.chunks(); it.hasNext();) {
+			Object[] items = it.next();
+			System.arraycopy(items, 0, ret, pos, items.length);
+			pos += items.length;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns an iterator over the chunks of the sequence, in order. The arrays returned
+	 * must not be modified.
+	 */
+	ChunkIterator chunks() {
+		return new ChunkIterator(this.root);
+	}
+
+	/**
+	 * Returns an iterator over the chunks of the sequence, in order, starting with the
+	 * chunk which holds the element at <code>index</code>. The position of that element
+	 * in the first chunk returned is given by {@link ChunkIterator#getOffset()}. If
+	 * <code>index</code> is the size of the sequence, the iterator returns no chunks.
+	 */
+	ChunkIterator chunks(int index) {
+		this.checkIndex(index, this.size());
+		return new ChunkIterator(this.root, index);
+	}
+
+	/**
+	 * Iterates over the chunks of a sequence in order, using a stack of the nodes whose
+	 * chunks are still to come.
+	 */
+	static final class ChunkIterator {
+		private final ArrayDeque<Node> stack = new ArrayDeque<>();
+		private int offset = 0;
+
+		ChunkIterator(Node root) {
+			this.pushLeft(root);
+		}
+
+		ChunkIterator(Node root, int index) {
+			// push the nodes whose chunks come at or after the index, as pushLeft would
+			// have left them once every chunk before it had been returned
+			Node n = root;
+			while (n != null) {
+				int ls = size(n.left);
+				if (index < ls) {
+					this.stack.push(n);
+					n = n.left;
+				}
+				else if (index < ls + n.items.length) {
+					this.stack.push(n);
+					this.offset = index - ls;
+					return;
+				}
+				else {
+					index -= ls + n.items.length;
+					n = n.right;
+				}
+			}
+		}
+
+		/**
+		 * Returns the position in the first chunk of the element at which the iterator
+		 * was asked to start, or 0 if it was made to start at the first chunk.
+		 */
+		int getOffset() {
+			return this.offset;
+		}
+
+		private void pushLeft(Node n) {
+			for (; n != null; n = n.left) {
+				this.stack.push(n);
+			}
+		}
+
+		boolean hasNext() {
+			return !this.stack.isEmpty();
+		}
+
+		Object[] next() {
+			if (this.stack.isEmpty()) throw new NoSuchElementException();
+
+			Node n = this.stack.pop();
+			this.pushLeft(n.right);
+			return n.items;
+		}
+	}
+
+	private void checkIndex(int index, int max) {
+		if (index < 0 || index > max) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+		}
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > this.size() || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + "-" + to + ", Size: " +
+					this.size());
+		}
+	}
+
+	/**
+	 * Splits a tree into the first <code>k</code> elements and the rest.
+	 */
+	private static Node[] split(Node n, int k) {
+		if (n == null) return new Node[2];
+
+		int ls = size(n.left);
+		int len = n.items.length;
+		if (k <= ls) {
+			Node[] r = split(n.left, k);
+			r[1] = new Node(r[1], n.items, n.right, n.priority);
+			return r;
+		}
+		if (k >= ls + len) {
+			Node[] r = split(n.right, k - ls - len);
+			r[0] = new Node(n.left, n.items, r[0], n.priority);
+			return r;
+		}
+
+		int j = k - ls;
+		return new Node[] {
+				new Node(n.left, Arrays.copyOfRange(n.items, 0, j), null, n.priority),
+				new Node(null, Arrays.copyOfRange(n.items, j, len), n.right, n.priority)
+		};
+	}
+
+	/**
+	 * Joins two trees, combining the last chunk of the first with the first chunk of the
+	 * second if they fit in one.
+	 */
+	private static Node join(Node a, Node b) {
+		if (a == null) return b;
+		if (b == null) return a;
+
+		Node last = a;
+		while (last.right != null) last = last.right;
+		Node first = b;
+		while (first.left != null) first = first.left;
+		if (last.items.length + first.items.length > CHUNK_SIZE) return merge(a, b);
+
+		Object[] items = Arrays.copyOf(last.items, last.items.length + first.items.length);
+		System.arraycopy(first.items, 0, items, last.items.length, first.items.length);
+		// a fresh priority, as for any new node; inheriting the higher of the two would
+		// let a chunk which keeps absorbing small appends rise to the root
+		Node middle = new Node(null, items, null, random.nextInt(Integer.MAX_VALUE));
+		return merge(merge(dropLast(a), middle), dropFirst(b));
+	}
+
+	private static Node merge(Node a, Node b) {
+		if (a == null) return b;
+		if (b == null) return a;
+
+		if (a.priority >= b.priority) {
+			return new Node(a.left, a.items, merge(a.right, b), a.priority);
+		}
+		return new Node(merge(a, b.left), b.items, b.right, b.priority);
+	}
+
+	private static Node dropLast(Node n) {
+		if (n.right == null) return n.left;
+		return new Node(n.left, n.items, dropLast(n.right), n.priority);
+	}
+
+	private static Node dropFirst(Node n) {
+		if (n.left == null) return n.right;
+		return new Node(dropFirst(n.left), n.items, n.right, n.priority);
+	}
+
+	/**
+	 * Builds a balanced tree of the elements from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive). Its nodes are given random priorities, the highest
+	 * nearest the root, so that it joins other trees as a treap of the same size would.
+	 */
+	private static Node build(Object[] elements, int from, int to) {
+		int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunks == 0) return null;
+
+		int[] depths = new int[chunks];
+		int maxDepth = depths(depths, 0, chunks - 1, 0);
+		int[] priorities = new int[chunks];
+		for (int i = 0; i < chunks; i++) {
+			priorities[i] = random.nextInt(Integer.MAX_VALUE);
+		}
+		Arrays.sort(priorities);
+
+		// hand out the priorities from the highest down, a level of the tree at a time
+		int[] byDepth = new int[chunks];
+		int next = chunks;
+		for (int d = 0; d <= maxDepth; d++) {
+			for (int i = 0; i < chunks; i++) {
+				if (depths[i] == d) byDepth[i] = priorities[--next];
+			}
+		}
+		return build(elements, from, to, byDepth, 0, chunks - 1);
+	}
+
+	private static int depths(int[] depths, int first, int last, int depth) {
+		if (first > last) return depth - 1;
+
+		int mid = (first + last) >>> 1;
+		depths[mid] = depth;
+		return Math.max(depths(depths, first, mid - 1, depth + 1),
+				depths(depths, mid + 1, last, depth + 1));
+	}
+
+	private static Node build(Object[] elements, int from, int to, int[] priorities,
+			int first, int last) {
+		if (first > last) return null;
+
+		int mid = (first + last) >>> 1;
+		int start = from + mid * CHUNK_SIZE;
+		Object[] items = Arrays.copyOfRange(elements, start, Math.min(to, start + CHUNK_SIZE));
+		return new Node(build(elements, from, to, priorities, first, mid - 1), items,
+				build(elements, from, to, priorities, mid + 1, last), priorities[mid]);
+	}
+}
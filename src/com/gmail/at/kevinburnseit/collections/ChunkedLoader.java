@@ -0,0 +1,196 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+/**
+ * <p>
+ * Loads a large number of records into a list, such as an
+ * {@link ArrayListWithTableModel}, without freezing the user interface. Records are read
+ * from an {@link Iterator} on a background thread and appended to the list on the event
+ * dispatch thread in chunks, each with a single <code>addAll</code>, so that a table
+ * showing the list receives one {@link javax.swing.event.TableModelEvent#INSERT} per
+ * chunk and can paint the rows loaded so far while the rest are read.
+ * </p>
+ * <p>
+ * The first chunk is small, so that the first screenful of rows appears almost at once.
+ * After that, chunks are sized from the time the list has been taking to append rows, so
+ * that each append occupies the event dispatch thread for about
+ * {@link #APPEND_BUDGET_MILLIS} milliseconds. Rows are also appended whenever reading
+ * them is slow, so that a slow source still shows its rows as they arrive.
+ * </p>
+ * <p>
+ * Progress, as a percentage of the expected number of records, is reported through the
+ * worker's <code>progress</code> property. The load can be stopped with
+ * {@link #cancel(boolean)}; rows already appended are kept. An exception thrown by the
+ * iterator stops the load and is rethrown on the event dispatch thread, wrapped in an
+ * {@link IllegalStateException}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record loaded.
+ */
+public class ChunkedLoader<T> extends SwingWorker<Integer, List<T>> {
+	/**
+	 * The number of rows in the first chunk.
+	 */
+	public static final int FIRST_CHUNK_SIZE = 64;
+	/**
+	 * The greatest number of rows in any chunk.
+	 */
+	public static final int MAX_CHUNK_SIZE = 1 << 16;
+	/**
+	 * The time each append should take, in milliseconds.
+	 */
+	public static final int APPEND_BUDGET_MILLIS = 10;
+	/**
+	 * The longest time, in milliseconds, for which rows are read without being appended.
+	 */
+	private static final long MAX_HOLD_MILLIS = 50;
+
+	private final List<? super T> target;
+	private final Iterator<? extends T> source;
+	private final int expectedCount;
+	/**
+	 * Written on the event dispatch thread and read by the loading thread.
+	 */
+	private volatile int chunkSize = FIRST_CHUNK_SIZE;
+	private int loadedCount = 0;
+	/**
+	 * The number of rows read but not yet appended. The loading thread waits on this
+	 * object while there are too many, so that it cannot get far ahead of the event
+	 * dispatch thread and make it append huge chunks.
+	 */
+	private final Object backlogLock = new Object();
+	private int backlog = 0;
+
+	/**
+	 * Constructor. Call {@link #execute()} to start loading.
+	 * @param target The list to which records are appended. It must only be changed on
+	 * the event dispatch thread.
+	 * @param source Supplies the records, and is only used on the loading thread
+	 * @param expectedCount The number of records expected, used to report progress, or a
+	 * negative number if it is unknown
+	 */
+	public ChunkedLoader(List<? super T> target, Iterator<? extends T> source,
+			int expectedCount) {
+		if (target == null || source == null) {
+			throw new NullPointerException("target and source must not be null");
+		}
+		this.target = target;
+		this.source = source;
+		this.expectedCount = expectedCount;
+	}
+
+	/**
+	 * Constructor for a load whose size is unknown. Call {@link #execute()} to start
+	 * loading.
+	 * @param target The list to which records are appended. It must only be changed on
+	 * the event dispatch thread.
+	 * @param source Supplies the records, and is only used on the loading thread
+	 */
+	public ChunkedLoader(List<? super T> target, Iterator<? extends T> source) {
+		this(target, source, -1);
+	}
+
+	/**
+	 * Returns the number of records appended to the list so far. This should be called
+	 * on the event dispatch thread.
+	 * @return the number of records appended
+	 */
+	public int getLoadedCount() {
+		return this.loadedCount;
+	}
+
+	@Override
+	protected Integer doInBackground() throws Exception {
+		int read = 0;
+		long holdNanos = MAX_HOLD_MILLIS * 1000000L;
+		long lastPublished = System.nanoTime();
+		ArrayList<T> chunk = new ArrayList<>(this.chunkSize);
+		while (!this.isCancelled() && this.source.hasNext()) {
+			chunk.add(this.source.next());
+			read++;
+
+			boolean full = chunk.size() >= this.chunkSize;
+			if (full || ((read & 63) == 0 && System.nanoTime() - lastPublished > holdNanos)) {
+				this.awaitBacklog(chunk.size());
+				this.publish(chunk);
+				chunk = new ArrayList<>(this.chunkSize);
+				lastPublished = System.nanoTime();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			this.awaitBacklog(chunk.size());
+			this.publish(chunk);
+		}
+		return read;
+	}
+
+	/**
+	 * Waits until the event dispatch thread has caught up enough to accept another
+	 * chunk, and then counts the chunk as read but not appended.
+	 */
+	private void awaitBacklog(int rows) throws InterruptedException {
+		synchronized (this.backlogLock) {
+			while (this.backlog > 0 && this.backlog + rows > 2 * this.chunkSize &&
+					!this.isCancelled()) {
+				this.backlogLock.wait(MAX_HOLD_MILLIS);
+			}
+			this.backlog += rows;
+		}
+	}
+
+	@Override
+	protected void process(List<List<T>> chunks) {
+		if (this.isCancelled()) return;
+
+		List<T> rows;
+		if (chunks.size() == 1) {
+			rows = chunks.get(0);
+		}
+		else {
+			// chunks published while the event dispatch thread was busy go in together
+			int count = 0;
+			for (List<T> chunk : chunks) count += chunk.size();
+			rows = new ArrayList<>(count);
+			for (List<T> chunk : chunks) rows.addAll(chunk);
+		}
+
+		long start = System.nanoTime();
+		this.target.addAll(rows);
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		this.loadedCount += rows.size();
+		synchronized (this.backlogLock) {
+			this.backlog -= rows.size();
+			this.backlogLock.notifyAll();
+		}
+
+		long fit = (APPEND_BUDGET_MILLIS * 1000000L) * rows.size() / elapsed;
+		this.chunkSize = (int)Math.max(FIRST_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, fit));
+		if (this.expectedCount > 0) {
+			this.setProgress((int)Math.min(100, 100L * this.loadedCount / this.expectedCount));
+		}
+	}
+
+	@Override
+	protected void done() {
+		if (this.isCancelled()) return;
+
+		try {
+			this.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Loading failed", ex.getCause());
+		}
+		if (this.expectedCount > 0) this.setProgress(100);
+	}
+}
@@ -32,4 +32,25 @@ public interface CollectionReorderable {
 	 * @return The new record index for this record
 	 */
 	int moveElementToTop(int record);
+	/**
+	 * Moves an element directly to an arbitrary slot in the collection. The elements
+	 * between the old and new positions each shift by one slot to make room. This is the
+	 * general form of the other move functions, and should be used in preference to
+	 * calling them repeatedly.
+	 * @param record Record number to move
+	 * @param newIndex The index the record should have once the move is complete
+	 * @return The new record index for this record
+	 */
+	int moveElement(int record, int newIndex);
+	/**
+	 * Moves a contiguous block of elements to a new position in the collection, keeping
+	 * the elements of the block in their existing order. The elements displaced by the
+	 * block each shift by the length of the block.
+	 * @param record Record number of the first element in the block
+	 * @param count Number of elements in the block
+	 * @param newIndex The index the first element of the block should have once the move
+	 * is complete
+	 * @return The new record index for the first element of the block
+	 */
+	int moveRange(int record, int count, int newIndex);
 }
@@ -0,0 +1,302 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * Keeps the count, sum, minimum and maximum of the numbers in chosen columns of a table
+ * model, so that footers and status displays need not scan the model whenever it changes.
+ * The numbers are held in an augmented balanced tree in the order of the model's rows, so
+ * that inserting, deleting or updating a row costs O(log n), and the {@link Aggregate} of
+ * a column over any range of rows can also be found in O(log n).
+ * </p>
+ * <p>
+ * Cells holding a {@link Number} are aggregated by their <code>doubleValue()</code>;
+ * other cells, including empty ones, are left out. Rows can also be left out with
+ * {@link #setIncluded(int, boolean)}, which allows aggregates to follow a filter.
+ * </p>
+ * <p>
+ * A {@link TableModelMoveEvent} or {@link TableModelPermutationEvent} only changes the
+ * order of the rows, so it costs the aggregator next to nothing: the model is not read,
+ * no total is recomputed and change listeners are not told about it. A moved block of
+ * rows is cut out of the tree and joined back in elsewhere in O(log n), however many rows
+ * it holds, and a permuted range is rebuilt in time proportional to its own length
+ * rather than the model's. Updates to columns which are not aggregated are ignored.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class ColumnAggregator {
+	private final TableModel model;
+	private final int[] columns;
+	private TableModelListener modelListener;
+	private EventListenerList listenerList = new EventListenerList();
+	private AggregateTree tree;
+	private double[] scratch = new double[4];
+
+	/**
+	 * Constructor. The aggregator starts listening to the model immediately.
+	 * @param model The model whose numbers are to be aggregated
+	 * @param columns Indices of the model columns to aggregate
+	 */
+	public ColumnAggregator(TableModel model, int... columns) {
+		this(model, columns, true);
+	}
+
+	/**
+	 * Constructor for an aggregator which is told about changes to the model by its owner,
+	 * through {@link #modelChanged(TableModelEvent)}, rather than listening for them.
+	 */
+	ColumnAggregator(TableModel model, int[] columns, boolean listen) {
+		if (model == null) {
+			throw new NullPointerException("model must not be null");
+		}
+		this.model = model;
+		this.columns = columns.clone();
+		this.tree = new AggregateTree(this.columns.length);
+		this.modelListener = new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				modelChanged(e);
+			}
+		};
+		this.rebuild();
+		if (listen) this.model.addTableModelListener(this.modelListener);
+	}
+
+	/**
+	 * Stops this aggregator from listening to its model. Once disposed, the aggregator no
+	 * longer reflects changes to the model and should not be used.
+	 */
+	public void dispose() {
+		this.model.removeTableModelListener(this.modelListener);
+	}
+
+	/**
+	 * @return the model being aggregated
+	 */
+	public TableModel getModel() {
+		return this.model;
+	}
+
+	/**
+	 * @return indices of the model columns being aggregated
+	 */
+	public int[] getColumns() {
+		return this.columns.clone();
+	}
+
+	/**
+	 * Tells whether a column of the model is aggregated.
+	 * @param column Model column index
+	 * @return <code>true</code> if the column's numbers are aggregated
+	 */
+	public boolean isAggregated(int column) {
+		return this.slotOf(column) >= 0;
+	}
+
+	/**
+	 * @return the number of rows known to the aggregator, which is the row count of the
+	 * model
+	 */
+	public int getRowCount() {
+		return this.tree.size();
+	}
+
+	/**
+	 * Returns the aggregate of a column over all included rows. This takes constant
+	 * time.
+	 * @param column Model column index, which must be aggregated
+	 * @return the aggregate
+	 */
+	public Aggregate getTotal(int column) {
+		this.tree.total(this.checkedSlotOf(column), this.scratch);
+		return this.toAggregate(this.scratch);
+	}
+
+	/**
+	 * Returns the aggregate of a column over the included rows among a range of rows.
+	 * This takes O(log n) time.
+	 * @param column Model column index, which must be aggregated
+	 * @param first Index of the first row of the range
+	 * @param last Index of the last row of the range, inclusive
+	 * @return the aggregate
+	 */
+	public Aggregate getAggregate(int column, int first, int last) {
+		int slot = this.checkedSlotOf(column);
+		this.scratch[AggregateTree.COUNT] = 0;
+		this.scratch[AggregateTree.SUM] = 0;
+		this.scratch[AggregateTree.MIN] = Double.POSITIVE_INFINITY;
+		this.scratch[AggregateTree.MAX] = Double.NEGATIVE_INFINITY;
+		this.tree.accumulate(slot, first, last + 1, this.scratch);
+		return this.toAggregate(this.scratch);
+	}
+
+	/**
+	 * Includes a row in, or excludes it from, the aggregates. Rows are included when they
+	 * are first seen.
+	 * @param row Model row index
+	 * @param included <code>true</code> to include the row
+	 */
+	public void setIncluded(int row, boolean included) {
+		this.tree.setIncluded(this.tree.get(row), included);
+	}
+
+	/**
+	 * @param row Model row index
+	 * @return <code>true</code> if the row is included in the aggregates
+	 */
+	public boolean isIncluded(int row) {
+		return AggregateTree.isIncluded(this.tree.get(row));
+	}
+
+	/**
+	 * Adds a listener which is notified whenever an aggregate may have changed.
+	 * @param l The listener to add
+	 */
+	public void addChangeListener(ChangeListener l) {
+		this.listenerList.add(ChangeListener.class, l);
+	}
+
+	/**
+	 * Removes a previously-added change listener.
+	 * @param l The listener to remove
+	 */
+	public void removeChangeListener(ChangeListener l) {
+		this.listenerList.remove(ChangeListener.class, l);
+	}
+
+	private void fireStateChanged() {
+		ChangeEvent ev = new ChangeEvent(this);
+		for (ChangeListener l : this.listenerList.getListeners(ChangeListener.class)) {
+			l.stateChanged(ev);
+		}
+	}
+
+	private Aggregate toAggregate(double[] acc) {
+		int count = (int)acc[AggregateTree.COUNT];
+		if (count == 0) return Aggregate.EMPTY;
+		return new Aggregate(count, acc[AggregateTree.SUM], acc[AggregateTree.MIN],
+				acc[AggregateTree.MAX]);
+	}
+
+	private int slotOf(int column) {
+		for (int i = 0; i < this.columns.length; i++) {
+			if (this.columns[i] == column) return i;
+		}
+		return -1;
+	}
+
+	private int checkedSlotOf(int column) {
+		int ret = this.slotOf(column);
+		if (ret < 0) {
+			throw new IllegalArgumentException("Column " + column + " is not aggregated");
+		}
+		return ret;
+	}
+
+	private double[] valuesOf(int row) {
+		double[] ret = new double[this.columns.length];
+		for (int i = 0; i < ret.length; i++) {
+			Object value = this.model.getValueAt(row, this.columns[i]);
+			ret[i] = (value instanceof Number) ? ((Number)value).doubleValue() : Double.NaN;
+		}
+		return ret;
+	}
+
+	private void rebuild() {
+		ArrayList<double[]> rows = new ArrayList<>(this.model.getRowCount());
+		for (int i = 0; i < this.model.getRowCount(); i++) {
+			rows.add(this.valuesOf(i));
+		}
+		this.tree.buildRows(rows, null);
+	}
+
+	void modelChanged(TableModelEvent e) {
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+				e.getLastRow() == Integer.MAX_VALUE) {
+			this.rebuild();
+		}
+		else if (e instanceof TableModelMoveEvent) {
+			// the totals are unchanged
+			this.rowsMoved((TableModelMoveEvent)e);
+			return;
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			this.rowsPermuted((TableModelPermutationEvent)e);
+			return;
+		}
+		else if (e.getType() == TableModelEvent.INSERT) {
+			this.rowsInserted(e.getFirstRow(), e.getLastRow());
+		}
+		else if (e.getType() == TableModelEvent.DELETE) {
+			this.rowsDeleted(e.getFirstRow(), e.getLastRow());
+		}
+		else if (!this.rowsUpdated(e.getFirstRow(), e.getLastRow(), e.getColumn())) {
+			return;
+		}
+
+		if (this.tree.size() != this.model.getRowCount()) {
+			// the model described its change inaccurately; start over
+			this.rebuild();
+		}
+		this.fireStateChanged();
+	}
+
+	private void rowsInserted(int first, int last) {
+		for (int i = first; i <= last; i++) {
+			this.tree.insertAt(i, this.valuesOf(i));
+		}
+	}
+
+	private void rowsDeleted(int first, int last) {
+		for (int i = last; i >= first; i--) {
+			this.tree.remove(this.tree.get(i));
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if no aggregated column was affected
+	 */
+	private boolean rowsUpdated(int first, int last, int column) {
+		if (column != TableModelEvent.ALL_COLUMNS && !this.isAggregated(column)) {
+			return false;
+		}
+
+		last = Math.min(last, this.tree.size() - 1);
+		if (first > last) return true;
+		RankedTree.Node<AggregateTree.Row> node = this.tree.get(first);
+		for (int i = first; i <= last; i++, node = this.tree.successor(node)) {
+			this.tree.setValues(node, this.valuesOf(i));
+		}
+		return true;
+	}
+
+	private void rowsMoved(TableModelMoveEvent e) {
+		this.tree.move(e.getMoveSource(), e.getMoveLength(), e.getMoveDestination());
+	}
+
+	private void rowsPermuted(TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		int count = e.getLastRow() - first + 1;
+		ArrayList<RankedTree.Node<AggregateTree.Row>> old = new ArrayList<>(count);
+		RankedTree.Node<AggregateTree.Row> node = this.tree.get(first);
+		for (int i = 0; i < count; i++, node = this.tree.successor(node)) {
+			old.add(node);
+		}
+
+		List<RankedTree.Node<AggregateTree.Row>> permuted = new ArrayList<>(old);
+		for (int i = 0; i < count; i++) {
+			permuted.set(i, old.get(e.getOldIndex(first + i) - first));
+		}
+		this.tree.reorder(first, permuted);
+	}
+}
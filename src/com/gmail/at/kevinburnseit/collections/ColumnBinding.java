@@ -0,0 +1,365 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * <p>
+ * Describes one column of a {@link BoundTableModel}: its name and class, whether it can be
+ * edited, and how to read and write its value in a record. A binding can be written as an
+ * anonymous subclass, overriding {@link #getValue(Object)} and, for an editable column,
+ * {@link #setValue(Object, Object)}; or it can be made from a record's bean property with
+ * {@link #forProperty(Class, String, String)}.
+ * </p>
+ * <p>
+ * Renderers which know that a column holds numbers can read it with
+ * {@link #getInt(Object)}, {@link #getLong(Object)}, {@link #getDouble(Object)} or
+ * {@link #getBoolean(Object)}. A binding made from a property of primitive type reads
+ * these without boxing; other bindings unbox the result of <code>getValue</code>, and an
+ * anonymous subclass may override them to avoid that.
+ * </p>
+ * <p>
+ * Bindings are serializable, so that a {@link BoundTableModel} can be. A binding made by
+ * <code>forProperty</code> is written as its record class and property, and looks its
+ * methods up again when it is read. A binding written as an anonymous subclass is
+ * serialized like any other object, so it should be declared where it captures nothing
+ * which cannot be.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record whose values are bound.
+ */
+public abstract class ColumnBinding<T> implements Serializable {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 3816790458257419652L;
+	private final String name;
+	private final Class<?> type;
+
+	/**
+	 * Constructor.
+	 * @param name The column's name, shown in the table header
+	 * @param type The class of the column's values, from which the table chooses a
+	 * renderer and editor
+	 */
+	protected ColumnBinding(String name, Class<?> type) {
+		if (name == null || type == null) {
+			throw new NullPointerException("name and type must not be null");
+		}
+		this.name = name;
+		this.type = type;
+	}
+
+	/**
+	 * @return the column's name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the class of the column's values
+	 */
+	public Class<?> getType() {
+		return this.type;
+	}
+
+	/**
+	 * Tells whether the column can be edited. The default implementation returns
+	 * <code>false</code>.
+	 * @return <code>true</code> if {@link #setValue(Object, Object)} is supported
+	 */
+	public boolean isEditable() {
+		return false;
+	}
+
+	/**
+	 * Reads the column's value in a record.
+	 * @param record The record
+	 * @return the value
+	 */
+	public abstract Object getValue(T record);
+
+	/**
+	 * Writes the column's value in a record. The default implementation throws
+	 * {@link UnsupportedOperationException}.
+	 * @param record The record
+	 * @param value The new value
+	 */
+	public void setValue(T record, Object value) {
+		throw new UnsupportedOperationException("Column " + this.name + " is not editable");
+	}
+
+	/**
+	 * Reads the column's value in a record as an <code>int</code>. The value must be a
+	 * {@link Number}.
+	 * @param record The record
+	 * @return the value
+	 */
+	public int getInt(T record) {
+		return ((Number)this.getValue(record)).intValue();
+	}
+
+	/**
+	 * Reads the column's value in a record as a <code>long</code>. The value must be a
+	 * {@link Number}.
+	 * @param record The record
+	 * @return the value
+	 */
+	public long getLong(T record) {
+		return ((Number)this.getValue(record)).longValue();
+	}
+
+	/**
+	 * Reads the column's value in a record as a <code>double</code>. The value must be a
+	 * {@link Number}.
+	 * @param record The record
+	 * @return the value
+	 */
+	public double getDouble(T record) {
+		return ((Number)this.getValue(record)).doubleValue();
+	}
+
+	/**
+	 * Reads the column's value in a record as a <code>boolean</code>. The value must be a
+	 * {@link Boolean}.
+	 * @param record The record
+	 * @return the value
+	 */
+	public boolean getBoolean(T record) {
+		return ((Boolean)this.getValue(record)).booleanValue();
+	}
+
+	/**
+	 * <p>
+	 * Makes a binding to a bean property of a record class: the value is read with the
+	 * public method <code>get<i>Property</i>()</code>, or <code>is<i>Property</i>()</code>
+	 * for a <code>boolean</code>, and the column is editable if there is also a public
+	 * method <code>set<i>Property</i>(value)</code>. The methods are looked up once, here,
+	 * and called through method handles, so reading a cell costs little more than calling
+	 * the getter directly.
+	 * </p>
+	 * <p>
+	 * The column's class is the getter's return type, or its wrapper class if it is
+	 * primitive, so that the table chooses suitable renderers.
+	 * </p>
+	 * @param recordClass The public class of the records
+	 * @param property The name of the property, such as <code>"name"</code> for
+	 * <code>getName()</code>
+	 * @param columnName The column's name
+	 * @return the binding
+	 * @throws IllegalArgumentException if the class has no public getter for the
+	 * property
+	 */
+	public static <T> ColumnBinding<T> forProperty(Class<T> recordClass, String property,
+			String columnName) {
+		String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+		Method getter = findMethod(recordClass, "get" + suffix);
+		if (getter == null) {
+			getter = findMethod(recordClass, "is" + suffix);
+			if (getter != null && getter.getReturnType() != boolean.class) getter = null;
+		}
+		if (getter == null || getter.getReturnType() == void.class) {
+			throw new IllegalArgumentException(recordClass.getName() + " has no getter for " +
+					property);
+		}
+		Method setter = findMethod(recordClass, "set" + suffix, getter.getReturnType());
+
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			MethodHandle get = lookup.unreflect(getter);
+			MethodHandle set = (setter == null) ? null : lookup.unreflect(setter);
+			return new PropertyBinding<>(columnName, get, set, recordClass, property);
+		}
+		catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(recordClass.getName() + "." + property +
+					" is not accessible", ex);
+		}
+	}
+
+	private static Method findMethod(Class<?> c, String name, Class<?>... parameterTypes) {
+		try {
+			Method ret = c.getMethod(name, parameterTypes);
+			return Modifier.isStatic(ret.getModifiers()) ? null : ret;
+		}
+		catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	private static Class<?> wrapperOf(Class<?> c) {
+		if (!c.isPrimitive()) return c;
+		return MethodType.methodType(c).wrap().returnType();
+	}
+
+	/**
+	 * Rethrows an exception thrown by a getter or setter called through a method handle.
+	 */
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException) return (RuntimeException)t;
+		if (t instanceof Error) throw (Error)t;
+		return new UndeclaredThrowableException(t);
+	}
+
+	/**
+	 * The serialized form of a {@link PropertyBinding}, whose method handles cannot be
+	 * serialized. Reading it makes the binding again with
+	 * {@link ColumnBinding#forProperty(Class, String, String)}.
+	 */
+	private static final class SerializedPropertyBinding implements Serializable {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -2214378536091874417L;
+		private final Class<?> recordClass;
+		private final String property;
+		private final String columnName;
+
+		SerializedPropertyBinding(Class<?> recordClass, String property, String columnName) {
+			this.recordClass = recordClass;
+			this.property = property;
+			this.columnName = columnName;
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			return forProperty(this.recordClass, this.property, this.columnName);
+		}
+	}
+
+	/**
+	 * A binding to a bean property, made by
+	 * {@link ColumnBinding#forProperty(Class, String, String)}. Each handle is adapted
+	 * once to a fixed type, so that it can be called with <code>invokeExact</code>.
+	 */
+	private static final class PropertyBinding<T> extends ColumnBinding<T> {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 7740916318521120585L;
+		private static final MethodType GET_OBJECT =
+				MethodType.methodType(Object.class, Object.class);
+		private static final MethodType SET_OBJECT =
+				MethodType.methodType(void.class, Object.class, Object.class);
+
+		private final transient MethodHandle getObject;
+		private final transient MethodHandle setObject;
+		/**
+		 * The getter with its own primitive return type, or <code>null</code> if it
+		 * returns an object.
+		 */
+		private final transient MethodHandle getPrimitive;
+		private final transient Class<?> primitiveType;
+		private final transient Class<?> recordClass;
+		private final transient String property;
+
+		PropertyBinding(String name, MethodHandle getter, MethodHandle setter,
+				Class<?> recordClass, String property) {
+			super(name, wrapperOf(getter.type().returnType()));
+			this.recordClass = recordClass;
+			this.property = property;
+			this.getObject = getter.asType(GET_OBJECT);
+			this.setObject = (setter == null) ? null : setter.asType(SET_OBJECT);
+			Class<?> rt = getter.type().returnType();
+			if (rt.isPrimitive()) {
+				this.primitiveType = rt;
+				this.getPrimitive = getter.asType(MethodType.methodType(rt, Object.class));
+			}
+			else {
+				this.primitiveType = null;
+				this.getPrimitive = null;
+			}
+		}
+
+		private Object writeReplace() throws ObjectStreamException {
+			return new SerializedPropertyBinding(this.recordClass, this.property,
+					this.getName());
+		}
+
+		@Override
+		public boolean isEditable() {
+			return this.setObject != null;
+		}
+
+		@Override
+		public Object getValue(T record) {
+			try {
+				return (Object)this.getObject.invokeExact((Object)record);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		public void setValue(T record, Object value) {
+			if (this.setObject == null) {
+				super.setValue(record, value);
+				return;
+			}
+			try {
+				this.setObject.invokeExact((Object)record, value);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		public int getInt(T record) {
+			if (this.primitiveType != int.class) return super.getInt(record);
+			try {
+				return (int)this.getPrimitive.invokeExact((Object)record);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		public long getLong(T record) {
+			if (this.primitiveType != long.class) {
+				return (this.primitiveType == int.class) ? this.getInt(record) :
+					super.getLong(record);
+			}
+			try {
+				return (long)this.getPrimitive.invokeExact((Object)record);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		public double getDouble(T record) {
+			if (this.primitiveType != double.class) {
+				return (this.primitiveType == int.class) ? this.getInt(record) :
+					(this.primitiveType == long.class) ? this.getLong(record) :
+					super.getDouble(record);
+			}
+			try {
+				return (double)this.getPrimitive.invokeExact((Object)record);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		@Override
+		public boolean getBoolean(T record) {
+			if (this.primitiveType != boolean.class) return super.getBoolean(record);
+			try {
+				return (boolean)this.getPrimitive.invokeExact((Object)record);
+			}
+			catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+}
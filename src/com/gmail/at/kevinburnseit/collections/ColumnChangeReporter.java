@@ -0,0 +1,23 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.BitSet;
+
+/**
+ * May be implemented by the records stored in an {@link ArrayListWithTableModel} so that
+ * replacing a record with {@link ArrayListWithTableModel#set(int, Object)} notifies
+ * listeners only about the columns whose values actually differ. Tables then repaint,
+ * and sorters re-sort, only those columns.
+ * @author Kevin J. Burns
+ *
+ * @param <T> The record type; normally the implementing class itself.
+ */
+public interface ColumnChangeReporter<T> {
+	/**
+	 * Compares this record, which is replacing <code>previous</code>, with the record it
+	 * replaces.
+	 * @param previous The record being replaced
+	 * @return the model column indices whose values differ between the two records, or
+	 * <code>null</code> if every column should be considered changed
+	 */
+	BitSet getChangedColumns(T previous);
+}
@@ -0,0 +1,21 @@
+package com.gmail.at.kevinburnseit.collections;
+
+/**
+ * Computes the value of a computed column of an {@link ArrayListWithTableModel}; see
+ * {@link ArrayListWithTableModel#defineComputedColumn(int, int[], int[], ColumnFormula)}.
+ * Results are remembered until an input changes, so a formula must depend on nothing but
+ * its inputs.
+ * @author Kevin J. Burns
+ *
+ */
+public interface ColumnFormula {
+	/**
+	 * Computes the value of one cell.
+	 * @param inputs The values of the row inputs in the same row, in the order they were
+	 * declared
+	 * @param aggregates The aggregates of the aggregate inputs over every row, in the
+	 * order they were declared
+	 * @return the value of the cell
+	 */
+	Object compute(Object[] inputs, Aggregate[] aggregates);
+}
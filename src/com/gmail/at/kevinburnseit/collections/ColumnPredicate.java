@@ -0,0 +1,17 @@
+package com.gmail.at.kevinburnseit.collections;
+
+/**
+ * A test applied to the values of one column by a {@link BitmapFilterTableModel}.
+ * Predicates are evaluated on worker threads, many rows at a time, so an implementation
+ * must not depend on the thread it runs on or on the order in which rows are tested.
+ * @author Kevin J. Burns
+ *
+ */
+public interface ColumnPredicate {
+	/**
+	 * Tests a value.
+	 * @param value The value of the column in some row
+	 * @return <code>true</code> if the row passes this test
+	 */
+	boolean accept(Object value);
+}
@@ -0,0 +1,385 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * Remembers the values of the computed columns of a table model, and works out which of
+ * them a change to the model affects. The model passes each of its events to
+ * {@link #modelChanged(TableModelEvent)} before its listeners see it; this brings the
+ * remembered values into line with the model's new rows, forgets the values whose inputs
+ * changed, and returns the further events listeners must be sent about the computed
+ * cells which changed as a result.
+ * <p>
+ * Computed columns are kept in dependency order, so a change works its way through the
+ * columns which depend on one another in a single pass. Where a cell's value was already
+ * known, it is computed again straight away and compared with the old value; if it did
+ * not change, nothing which depends on it is disturbed. Cells which have not yet been
+ * computed are simply left for the next read.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+class ComputedColumns {
+	private static final Object UNCOMPUTED = new Object();
+
+	private static final class Definition {
+		final int column;
+		final int[] rowInputs;
+		final int[] aggregateInputs;
+		final ColumnFormula formula;
+		int slot;
+
+		Definition(int column, int[] rowInputs, int[] aggregateInputs,
+				ColumnFormula formula) {
+			this.column = column;
+			this.rowInputs = rowInputs;
+			this.aggregateInputs = aggregateInputs;
+			this.formula = formula;
+		}
+	}
+
+	private final TableModel model;
+	private HashMap<Integer, Definition> definitions = new HashMap<>();
+	/**
+	 * The definitions, ordered so that each comes after every computed column it reads.
+	 */
+	private Definition[] order = new Definition[0];
+	/**
+	 * For each row, the remembered value of each computed column, indexed by slot. A row
+	 * with nothing remembered holds <code>null</code>.
+	 */
+	private ArrayList<Object[]> memo = new ArrayList<>();
+	private ColumnAggregator aggregator = null;
+	private int[] aggregatedColumns = new int[0];
+	private Aggregate[] totals = new Aggregate[0];
+
+	ComputedColumns(TableModel model) {
+		this.model = model;
+	}
+
+	boolean isEmpty() {
+		return this.definitions.isEmpty();
+	}
+
+	boolean isComputed(int column) {
+		return this.definitions.containsKey(column);
+	}
+
+	/**
+	 * Adds or replaces the definition of a computed column. Every remembered value is
+	 * forgotten.
+	 * @throws IllegalArgumentException if an aggregate input is a computed column, or if
+	 * the definition would make a column depend on itself
+	 */
+	void define(int column, int[] rowInputs, int[] aggregateInputs, ColumnFormula formula) {
+		for (int input : aggregateInputs) {
+			if (input == column || this.isComputed(input)) {
+				throw new IllegalArgumentException("Aggregate input " + input +
+						" is a computed column");
+			}
+		}
+		HashMap<Integer, Definition> newDefinitions = new HashMap<>(this.definitions);
+		newDefinitions.put(column, new Definition(column, rowInputs.clone(),
+				aggregateInputs.clone(), formula));
+		this.install(newDefinitions);
+	}
+
+	/**
+	 * Removes the definition of a computed column.
+	 * @return <code>false</code> if the column was not computed
+	 * @throws IllegalArgumentException if another computed column reads it
+	 */
+	boolean remove(int column) {
+		if (!this.isComputed(column)) return false;
+
+		HashMap<Integer, Definition> newDefinitions = new HashMap<>(this.definitions);
+		newDefinitions.remove(column);
+		for (Definition d : newDefinitions.values()) {
+			for (int input : d.rowInputs) {
+				if (input == column) {
+					throw new IllegalArgumentException("Column " + column +
+							" is read by computed column " + d.column);
+				}
+			}
+		}
+		this.install(newDefinitions);
+		return true;
+	}
+
+	private void install(HashMap<Integer, Definition> newDefinitions) {
+		this.order = sortByDependency(newDefinitions);
+		this.definitions = newDefinitions;
+		for (int i = 0; i < this.order.length; i++) {
+			this.order[i].slot = i;
+		}
+
+		TreeSet<Integer> aggregated = new TreeSet<>();
+		for (Definition d : this.order) {
+			for (int input : d.aggregateInputs) {
+				aggregated.add(input);
+			}
+		}
+		this.aggregatedColumns = new int[aggregated.size()];
+		int i = 0;
+		for (int c : aggregated) {
+			this.aggregatedColumns[i++] = c;
+		}
+		this.aggregator = aggregated.isEmpty() ? null :
+				new ColumnAggregator(this.model, this.aggregatedColumns, false);
+		this.totals = this.currentTotals();
+		this.resetMemo();
+	}
+
+	private static Definition[] sortByDependency(HashMap<Integer, Definition> definitions) {
+		Definition[] ret = new Definition[definitions.size()];
+		HashMap<Integer, Integer> pending = new HashMap<>();
+		ArrayList<Definition> ready = new ArrayList<>();
+		for (Definition d : definitions.values()) {
+			int count = 0;
+			for (int input : d.rowInputs) {
+				if (definitions.containsKey(input)) count++;
+			}
+			pending.put(d.column, count);
+			if (count == 0) ready.add(d);
+		}
+
+		int n = 0;
+		while (!ready.isEmpty()) {
+			Definition d = ready.remove(ready.size() - 1);
+			ret[n++] = d;
+			for (Definition other : definitions.values()) {
+				for (int input : other.rowInputs) {
+					if (input != d.column) continue;
+					int count = pending.get(other.column) - 1;
+					pending.put(other.column, count);
+					if (count == 0) ready.add(other);
+				}
+			}
+		}
+		if (n < ret.length) {
+			throw new IllegalArgumentException("Computed columns depend on one another " +
+					"in a cycle");
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the value of a computed cell, computing it if it is not remembered.
+	 */
+	Object getValue(int row, int column) {
+		Definition d = this.definitions.get(column);
+		if (d == null) {
+			throw new IllegalArgumentException("Column " + column + " is not computed");
+		}
+
+		Object[] cells = this.memo.get(row);
+		if (cells != null && cells[d.slot] != UNCOMPUTED) return cells[d.slot];
+
+		Object[] inputs = new Object[d.rowInputs.length];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = this.model.getValueAt(row, d.rowInputs[i]);
+		}
+		Aggregate[] aggregates = new Aggregate[d.aggregateInputs.length];
+		for (int i = 0; i < aggregates.length; i++) {
+			aggregates[i] = this.aggregator.getTotal(d.aggregateInputs[i]);
+		}
+		Object ret = d.formula.compute(inputs, aggregates);
+
+		// computing the inputs may have filled in this row's cells
+		cells = this.memo.get(row);
+		if (cells == null) {
+			cells = this.newCells();
+			this.memo.set(row, cells);
+		}
+		cells[d.slot] = ret;
+		return ret;
+	}
+
+	private Object[] newCells() {
+		Object[] ret = new Object[this.order.length];
+		Arrays.fill(ret, UNCOMPUTED);
+		return ret;
+	}
+
+	private void resetMemo() {
+		int rows = this.model.getRowCount();
+		this.memo = new ArrayList<>(Collections.<Object[]>nCopies(rows, null));
+	}
+
+	private Aggregate[] currentTotals() {
+		Aggregate[] ret = new Aggregate[this.aggregatedColumns.length];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = this.aggregator.getTotal(this.aggregatedColumns[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Forgets the value of one computed cell.
+	 * @return <code>true</code> if a value had been remembered
+	 */
+	private boolean forget(int row, Definition d) {
+		Object[] cells = this.memo.get(row);
+		if (cells == null || cells[d.slot] == UNCOMPUTED) return false;
+
+		cells[d.slot] = UNCOMPUTED;
+		return true;
+	}
+
+	/**
+	 * Brings the remembered values up to date with a change to the model.
+	 * @param e The event describing the change, which the model has already made
+	 * @return Events describing the computed cells which changed as a result, and which
+	 * <code>e</code> does not already cover
+	 */
+	List<TableModelEvent> modelChanged(TableModelEvent e) {
+		ArrayList<TableModelEvent> ret = new ArrayList<>();
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+				e.getLastRow() == Integer.MAX_VALUE) {
+			if (this.aggregator != null) this.aggregator.modelChanged(e);
+			this.totals = this.currentTotals();
+			this.resetMemo();
+			return ret;
+		}
+
+		if (e instanceof TableModelMoveEvent) {
+			this.rowsMoved((TableModelMoveEvent)e);
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			this.rowsPermuted((TableModelPermutationEvent)e);
+		}
+		else if (e.getType() == TableModelEvent.INSERT && e.getFirstRow() <= this.memo.size()) {
+			this.memo.addAll(e.getFirstRow(),
+					Collections.<Object[]>nCopies(e.getLastRow() - e.getFirstRow() + 1, null));
+		}
+		else if (e.getType() == TableModelEvent.DELETE && e.getFirstRow() < this.memo.size()) {
+			this.memo.subList(e.getFirstRow(),
+					Math.min(e.getLastRow() + 1, this.memo.size())).clear();
+		}
+
+		int rows = this.model.getRowCount();
+		boolean[] aggregateChanged = new boolean[this.aggregatedColumns.length];
+		if (this.aggregator != null) {
+			this.aggregator.modelChanged(e);
+			Aggregate[] now = this.currentTotals();
+			for (int i = 0; i < now.length; i++) {
+				aggregateChanged[i] = !now[i].equals(this.totals[i]);
+			}
+			this.totals = now;
+		}
+		if (this.memo.size() != rows) {
+			// the model described its change inaccurately; forget everything
+			this.resetMemo();
+		}
+		if (rows == 0) return ret;
+
+		// a move or permutation is reported as an update, but the memo has already
+		// followed the rows it reordered
+		boolean update = (e.getType() == TableModelEvent.UPDATE) &&
+				!(e instanceof TableModelMoveEvent) &&
+				!(e instanceof TableModelPermutationEvent);
+		int first = e.getFirstRow();
+		int last = Math.min(e.getLastRow(), rows - 1);
+		int[] changedFirst = new int[this.order.length];
+		int[] changedLast = new int[this.order.length];
+		for (Definition d : this.order) {
+			changedFirst[d.slot] = Integer.MAX_VALUE;
+			changedLast[d.slot] = -1;
+
+			if (this.readsChangedAggregate(d, aggregateChanged)) {
+				// every row reads the aggregate
+				for (int row = 0; row < rows; row++) {
+					this.forget(row, d);
+				}
+				changedFirst[d.slot] = 0;
+				changedLast[d.slot] = rows - 1;
+				ret.add(new TableModelEvent(this.model, 0, rows - 1, d.column,
+						TableModelEvent.UPDATE));
+				continue;
+			}
+			if (!update || first > last) continue;
+
+			if (e.getColumn() == TableModelEvent.ALL_COLUMNS || e.getColumn() == d.column) {
+				// listeners have already been told that every cell of the range changed
+				for (int row = first; row <= last; row++) {
+					this.forget(row, d);
+				}
+				changedFirst[d.slot] = first;
+				changedLast[d.slot] = last;
+				continue;
+			}
+
+			// the rows in which an input of this column changed
+			int lo = Integer.MAX_VALUE;
+			int hi = -1;
+			for (int input : d.rowInputs) {
+				Definition id = this.definitions.get(input);
+				if (input == e.getColumn()) {
+					lo = Math.min(lo, first);
+					hi = Math.max(hi, last);
+				}
+				else if (id != null && changedLast[id.slot] >= 0) {
+					lo = Math.min(lo, changedFirst[id.slot]);
+					hi = Math.max(hi, changedLast[id.slot]);
+				}
+			}
+
+			for (int row = lo; row <= hi; row++) {
+				Object[] cells = this.memo.get(row);
+				Object old = (cells == null) ? UNCOMPUTED : cells[d.slot];
+				if (old != UNCOMPUTED) {
+					cells[d.slot] = UNCOMPUTED;
+					Object now = this.getValue(row, d.column);
+					if ((old == null) ? now == null : old.equals(now)) continue;
+				}
+				changedFirst[d.slot] = Math.min(changedFirst[d.slot], row);
+				changedLast[d.slot] = row;
+			}
+			if (changedLast[d.slot] >= 0) {
+				ret.add(new TableModelEvent(this.model, changedFirst[d.slot],
+						changedLast[d.slot], d.column, TableModelEvent.UPDATE));
+			}
+		}
+		return ret;
+	}
+
+	private boolean readsChangedAggregate(Definition d, boolean[] aggregateChanged) {
+		for (int input : d.aggregateInputs) {
+			if (aggregateChanged[Arrays.binarySearch(this.aggregatedColumns, input)]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void rowsMoved(TableModelMoveEvent e) {
+		int from = e.getMoveSource();
+		int count = e.getMoveLength();
+		int to = e.getMoveDestination();
+		if (from == to || count == 0) return;
+
+		List<Object[]> block = this.memo.subList(from, from + count);
+		ArrayList<Object[]> moved = new ArrayList<>(block);
+		block.clear();
+		this.memo.addAll(to, moved);
+	}
+
+	private void rowsPermuted(TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		Object[][] old = new Object[e.getLastRow() - first + 1][];
+		for (int i = 0; i < old.length; i++) {
+			old[i] = this.memo.get(first + i);
+		}
+		for (int i = first; i <= e.getLastRow(); i++) {
+			this.memo.set(i, old[e.getOldIndex(i) - first]);
+		}
+	}
+}
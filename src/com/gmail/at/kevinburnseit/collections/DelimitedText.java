@@ -0,0 +1,714 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RecursiveTask;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * Writes tables as delimited text, such as CSV, and reads records back from it, a block
+ * at a time, so that tables of millions of rows can be exported and imported without
+ * holding the whole text in memory. Fields which contain the delimiter, the quote
+ * character or a line break are quoted, and quote characters within them are doubled, as
+ * RFC 4180 describes; lines are ended with CRLF, and either CRLF or LF is accepted.
+ * </p>
+ * <p>
+ * A TableModel shown in a table may only be read on the event dispatch thread, so
+ * {@link #writeInBackground(TableModel, WritableByteChannel, Charset, boolean)} copies
+ * the rows a block at a time on that thread and formats and writes them on a background
+ * thread. Records which can be read on any thread, such as an
+ * {@link ArrayListWithTableModel#snapshot()} with the {@link ColumnBinding}s which
+ * describe its columns, can be written directly with
+ * {@link #write(List, List, WritableByteChannel, Charset, boolean)}.
+ * </p>
+ * <p>
+ * {@link #reader(ReadableByteChannel, Charset, boolean, RecordParser)} reads records as
+ * an iterator, for example for a {@link ChunkedLoader}, which appends them to an
+ * {@link ArrayListWithTableModel} in batches. Each block of text read is divided at
+ * line breaks and its parts are parsed in parallel by the threads of the shared
+ * {@link WorkerPool}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public final class DelimitedText {
+	/**
+	 * Comma-separated values.
+	 */
+	public static final DelimitedText CSV = new DelimitedText(',', '"');
+	/**
+	 * Tab-separated values, quoted as CSV is.
+	 */
+	public static final DelimitedText TSV = new DelimitedText('\t', '"');
+
+	/**
+	 * Makes a record from the fields of one line of delimited text.
+	 * @param <T> The type of record made.
+	 */
+	public interface RecordParser<T> {
+		/**
+		 * Makes a record from the fields of a line. This is called by several threads at
+		 * once, so it must not depend on any state which is not thread-safe.
+		 * @param fields The fields of the line, unquoted
+		 * @return The record
+		 */
+		T parse(String[] fields);
+	}
+
+	/**
+	 * The number of rows copied from a table model on the event dispatch thread at once.
+	 */
+	private static final int COPY_ROWS = 4096;
+	private static final int CHAR_BUFFER_SIZE = 1 << 16;
+	private static final int BYTE_BUFFER_SIZE = 1 << 18;
+	/**
+	 * The number of characters read and parsed at once.
+	 */
+	private static final int BLOCK_SIZE = 1 << 20;
+	/**
+	 * The least number of characters parsed by each thread.
+	 */
+	private static final int PARSE_SLICE = 1 << 16;
+
+	private final char delimiter;
+	private final char quote;
+
+	/**
+	 * Constructor for a format with different delimiter or quote characters.
+	 * @param delimiter The character between fields
+	 * @param quote The character which encloses fields containing special characters
+	 */
+	public DelimitedText(char delimiter, char quote) {
+		if (delimiter == quote || delimiter == '\r' || delimiter == '\n' ||
+				quote == '\r' || quote == '\n') {
+			throw new IllegalArgumentException("Delimiter and quote must be distinct and " +
+					"must not be line breaks");
+		}
+		this.delimiter = delimiter;
+		this.quote = quote;
+	}
+
+	/**
+	 * @return the character between fields
+	 */
+	public char getDelimiter() {
+		return this.delimiter;
+	}
+
+	/**
+	 * @return the character which encloses fields containing special characters
+	 */
+	public char getQuote() {
+		return this.quote;
+	}
+
+	/**
+	 * Writes the rows of a table model on the calling thread, which must be one on which
+	 * the model may be read. Each value is written as its <code>toString()</code>;
+	 * <code>null</code> is written as an empty field. The channel is not closed.
+	 * @param model The table model
+	 * @param channel Where to write the text
+	 * @param charset The encoding of the text
+	 * @param header <code>true</code> to write a line of column names first
+	 * @return the number of rows written
+	 * @throws IOException if the text cannot be written
+	 */
+	public long write(TableModel model, WritableByteChannel channel, Charset charset,
+			boolean header) throws IOException {
+		Output out = new Output(channel, charset);
+		int columns = model.getColumnCount();
+		if (header) out.writeHeader(model);
+
+		int rows = model.getRowCount();
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				if (c > 0) out.write(this.delimiter);
+				out.writeField(model.getValueAt(r, c));
+			}
+			out.endLine();
+		}
+		out.close();
+		return rows;
+	}
+
+	/**
+	 * Writes records described by column bindings on the calling thread. Since the
+	 * records are read directly, this may be used on any thread with records which are
+	 * not being changed, such as a {@link ListSnapshot}. The channel is not closed.
+	 * @param records The records
+	 * @param columns The bindings which read the columns from the records
+	 * @param channel Where to write the text
+	 * @param charset The encoding of the text
+	 * @param header <code>true</code> to write a line of the bindings' names first
+	 * @return the number of records written
+	 * @throws IOException if the text cannot be written
+	 */
+	public <T> long write(List<? extends T> records,
+			List<? extends ColumnBinding<? super T>> columns, WritableByteChannel channel,
+			Charset charset, boolean header) throws IOException {
+		Output out = new Output(channel, charset);
+		int n = columns.size();
+		if (header) {
+			for (int c = 0; c < n; c++) {
+				if (c > 0) out.write(this.delimiter);
+				out.writeField(columns.get(c).getName());
+			}
+			out.endLine();
+		}
+
+		long rows = 0;
+		for (T record : records) {
+			for (int c = 0; c < n; c++) {
+				if (c > 0) out.write(this.delimiter);
+				out.writeField(columns.get(c).getValue(record));
+			}
+			out.endLine();
+			rows++;
+		}
+		out.close();
+		return rows;
+	}
+
+	/**
+	 * <p>
+	 * Writes the rows of a table model on a background thread. The model is read on the
+	 * event dispatch thread, {@value #COPY_ROWS} rows at a time, so a large table can be
+	 * exported while the user goes on working with it; the text is formatted and written
+	 * on the background thread. Rows added or removed during the export may or may not be
+	 * included.
+	 * </p>
+	 * <p>
+	 * Progress is reported through the worker's <code>progress</code> property, and the
+	 * export can be stopped with <code>cancel</code>. The channel is closed when the
+	 * export finishes, fails or is cancelled. An exception thrown while writing is
+	 * rethrown on the event dispatch thread, wrapped in an
+	 * {@link IllegalStateException}.
+	 * </p>
+	 * @param model The table model
+	 * @param channel Where to write the text
+	 * @param charset The encoding of the text
+	 * @param header <code>true</code> to write a line of column names first
+	 * @return The worker, which has been started. Its result is the number of rows
+	 * written.
+	 */
+	public SwingWorker<Long, Void> writeInBackground(final TableModel model,
+			final WritableByteChannel channel, final Charset charset, final boolean header) {
+		SwingWorker<Long, Void> ret = new SwingWorker<Long, Void>() {
+			@Override
+			protected Long doInBackground() throws Exception {
+				try {
+					return this.export();
+				}
+				finally {
+					channel.close();
+				}
+			}
+
+			private long export() throws IOException, InterruptedException {
+				Output out = new Output(channel, charset);
+				if (header) {
+					final Output o = out;
+					onEventThread(new Runnable() {
+						@Override
+						public void run() {
+							o.writeHeaderQuietly(model);
+						}
+					});
+					out.checkError();
+				}
+
+				final int[] total = new int[1];
+				long rows = 0;
+				while (!this.isCancelled()) {
+					final int from = (int)rows;
+					final Object[][][] block = new Object[1][][];
+					onEventThread(new Runnable() {
+						@Override
+						public void run() {
+							total[0] = model.getRowCount();
+							block[0] = copyRows(model, from,
+									Math.min(total[0], from + COPY_ROWS));
+						}
+					});
+					if (block[0].length == 0) break;
+
+					for (Object[] row : block[0]) {
+						for (int c = 0; c < row.length; c++) {
+							if (c > 0) out.write(delimiter);
+							out.writeField(row[c]);
+						}
+						out.endLine();
+					}
+					rows += block[0].length;
+					this.setProgress((int)Math.min(100, 100 * rows / Math.max(1, total[0])));
+				}
+				out.close();
+				return rows;
+			}
+
+			@Override
+			protected void done() {
+				if (this.isCancelled()) return;
+
+				try {
+					this.get();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException ex) {
+					throw new IllegalStateException("Export failed", ex.getCause());
+				}
+			}
+		};
+		ret.execute();
+		return ret;
+	}
+
+	private static Object[][] copyRows(TableModel model, int from, int to) {
+		int columns = model.getColumnCount();
+		Object[][] ret = new Object[Math.max(0, to - from)][columns];
+		for (int r = from; r < to; r++) {
+			for (int c = 0; c < columns; c++) {
+				ret[r - from][c] = model.getValueAt(r, c);
+			}
+		}
+		return ret;
+	}
+
+	private static void onEventThread(Runnable r) throws InterruptedException {
+		try {
+			SwingUtilities.invokeAndWait(r);
+		}
+		catch (InvocationTargetException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Formats text into a reusable character buffer and encodes it into a reusable byte
+	 * buffer, which is written to the channel whenever it fills.
+	 */
+	private final class Output {
+		private final WritableByteChannel channel;
+		private final CharsetEncoder encoder;
+		private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+		private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+		private IOException error = null;
+
+		Output(WritableByteChannel channel, Charset charset) {
+			this.channel = channel;
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		void write(char c) throws IOException {
+			if (!this.chars.hasRemaining()) this.encode(false);
+			this.chars.put(c);
+		}
+
+		void write(String s) throws IOException {
+			int pos = 0;
+			int len = s.length();
+			while (pos < len) {
+				if (!this.chars.hasRemaining()) this.encode(false);
+				int n = Math.min(len - pos, this.chars.remaining());
+				int at = this.chars.position();
+				s.getChars(pos, pos + n, this.chars.array(), at);
+				this.chars.position(at + n);
+				pos += n;
+			}
+		}
+
+		void writeField(Object value) throws IOException {
+			if (value == null) return;
+
+			String s = value.toString();
+			if (!this.needsQuotes(s)) {
+				this.write(s);
+				return;
+			}
+
+			this.write(quote);
+			int start = 0;
+			for (int i = s.indexOf(quote); i >= 0; i = s.indexOf(quote, i + 1)) {
+				this.write(s.substring(start, i + 1));
+				this.write(quote);
+				start = i + 1;
+			}
+			this.write(s.substring(start));
+			this.write(quote);
+		}
+
+		private boolean needsQuotes(String s) {
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == delimiter || c == quote || c == '\r' || c == '\n') return true;
+			}
+			return false;
+		}
+
+		void endLine() throws IOException {
+			this.write('\r');
+			this.write('\n');
+		}
+
+		void writeHeader(TableModel model) throws IOException {
+			for (int c = 0; c < model.getColumnCount(); c++) {
+				if (c > 0) this.write(delimiter);
+				this.writeField(model.getColumnName(c));
+			}
+			this.endLine();
+		}
+
+		/**
+		 * Writes the header on the event dispatch thread, keeping any exception for
+		 * {@link #checkError()} to throw on the background thread.
+		 */
+		void writeHeaderQuietly(TableModel model) {
+			try {
+				this.writeHeader(model);
+			}
+			catch (IOException ex) {
+				this.error = ex;
+			}
+		}
+
+		void checkError() throws IOException {
+			if (this.error != null) throw this.error;
+		}
+
+		private void encode(boolean endOfInput) throws IOException {
+			this.chars.flip();
+			while (true) {
+				CoderResult result = this.encoder.encode(this.chars, this.bytes, endOfInput);
+				if (result.isOverflow()) {
+					this.drain();
+					continue;
+				}
+				if (result.isError()) result.throwException();
+				break;
+			}
+			this.chars.compact();
+		}
+
+		private void drain() throws IOException {
+			this.bytes.flip();
+			while (this.bytes.hasRemaining()) {
+				this.channel.write(this.bytes);
+			}
+			this.bytes.clear();
+		}
+
+		void close() throws IOException {
+			this.encode(true);
+			while (this.encoder.flush(this.bytes).isOverflow()) {
+				this.drain();
+			}
+			this.drain();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns an iterator over the records in delimited text. The text is read a block
+	 * at a time as the iterator is used, and the lines of each block are parsed in
+	 * parallel, so the iterator is best used on a background thread, such as that of a
+	 * {@link ChunkedLoader}. Empty lines are skipped. The channel is read until the end
+	 * of the text, but not closed.
+	 * </p>
+	 * <p>
+	 * An IOException thrown while reading is rethrown by the iterator wrapped in an
+	 * {@link IllegalStateException}, as is malformed input for the charset.
+	 * </p>
+	 * @param channel Where to read the text
+	 * @param charset The encoding of the text
+	 * @param header <code>true</code> if the first line holds column names, and is to be
+	 * skipped
+	 * @param parser Makes records from the fields of each line
+	 * @return an iterator over the records
+	 */
+	public <T> Iterator<T> reader(ReadableByteChannel channel, Charset charset,
+			boolean header, RecordParser<? extends T> parser) {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		return new RecordIterator<T>(Channels.newReader(channel, decoder, BYTE_BUFFER_SIZE),
+				header, parser);
+	}
+
+	/**
+	 * Like {@link #reader(ReadableByteChannel, Charset, boolean, RecordParser)}, but reads
+	 * text which has already been decoded, such as text pasted from the clipboard. The
+	 * reader is not closed.
+	 * @param text Where to read the text
+	 * @param header <code>true</code> if the first line holds column names, and is to be
+	 * skipped
+	 * @param parser Makes records from the fields of each line
+	 * @return an iterator over the records
+	 */
+	public <T> Iterator<T> reader(Reader text, boolean header,
+			RecordParser<? extends T> parser) {
+		return new RecordIterator<T>(text, header, parser);
+	}
+
+	private final class RecordIterator<T> implements Iterator<T> {
+		private final Reader text;
+		private final RecordParser<? extends T> parser;
+		private CharBuffer chars = CharBuffer.allocate(BLOCK_SIZE);
+		private boolean skipHeader;
+		private boolean endOfInput = false;
+		private List<T> records = Collections.emptyList();
+		private int next = 0;
+
+		RecordIterator(Reader text, boolean header, RecordParser<? extends T> parser) {
+			this.text = text;
+			this.parser = parser;
+			this.skipHeader = header;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (this.next == this.records.size()) {
+				if (this.endOfInput && this.chars.position() == 0) return false;
+				try {
+					this.readBlock();
+				}
+				catch (IOException ex) {
+					throw new IllegalStateException("Cannot read delimited text", ex);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			return this.records.get(this.next++);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Fills the character buffer, parses the complete lines in it and keeps the rest
+		 * for the next block.
+		 */
+		private void readBlock() throws IOException {
+			this.fill();
+
+			char[] text = this.chars.array();
+			int length = this.chars.position();
+			int end = this.endOfInput ? length : lastLineEnd(text, length);
+			if (end < 0) {
+				// a single line longer than the buffer
+				this.chars = CharBuffer.allocate(this.chars.capacity() * 2).put(
+						(CharBuffer)this.chars.flip());
+				this.records = Collections.emptyList();
+				this.next = 0;
+				return;
+			}
+
+			int start = 0;
+			if (this.skipHeader) {
+				start = nextLine(text, 0, end);
+				this.skipHeader = false;
+			}
+			this.records = parseInParallel(text, start, end, this.parser);
+			this.next = 0;
+
+			this.chars.flip();
+			this.chars.position(end);
+			this.chars.compact();
+		}
+
+		private void fill() throws IOException {
+			while (this.chars.hasRemaining() && !this.endOfInput) {
+				int at = this.chars.position();
+				int n = this.text.read(this.chars.array(), at, this.chars.remaining());
+				if (n < 0) {
+					this.endOfInput = true;
+				}
+				else {
+					this.chars.position(at + n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the index just past the last line break outside quotes, or -1 if there is
+	 * none.
+	 */
+	private int lastLineEnd(char[] text, int length) {
+		boolean quoted = false;
+		int ret = -1;
+		for (int i = 0; i < length; i++) {
+			char c = text[i];
+			if (c == this.quote) quoted = !quoted;
+			else if (c == '\n' && !quoted) ret = i + 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the index just past the line break outside quotes which ends the line
+	 * beginning at <code>from</code>, or <code>to</code> if there is none.
+	 */
+	private int nextLine(char[] text, int from, int to) {
+		boolean quoted = false;
+		for (int i = from; i < to; i++) {
+			char c = text[i];
+			if (c == this.quote) quoted = !quoted;
+			else if (c == '\n' && !quoted) return i + 1;
+		}
+		return to;
+	}
+
+	private <T> List<T> parseInParallel(char[] text, int from, int to,
+			RecordParser<? extends T> parser) {
+		int threads = WorkerPool.get().getParallelism();
+		int slices = Math.max(1, Math.min(threads * 4, (to - from) / PARSE_SLICE));
+		if (slices == 1) return this.parseLines(text, from, to, parser);
+
+		// divide at the first line break after each even share; the quote state is known
+		// at 'from', so each division point is found by scanning from the previous one
+		List<ParseTask<T>> tasks = new ArrayList<>(slices);
+		int start = from;
+		for (int i = 1; i <= slices && start < to; i++) {
+			int target = (i == slices) ? to : from + (int)((long)(to - from) * i / slices);
+			int end = start;
+			while (end < target) end = this.nextLine(text, end, to);
+			tasks.add(new ParseTask<T>(text, start, end, parser));
+			start = end;
+		}
+		for (ParseTask<T> task : tasks) {
+			WorkerPool.get().execute(task);
+		}
+
+		ArrayList<T> ret = new ArrayList<>();
+		for (ParseTask<T> task : tasks) {
+			ret.addAll(task.join());
+		}
+		return ret;
+	}
+
+	private final class ParseTask<T> extends RecursiveTask<List<T>> {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -4863208716640938135L;
+		private final char[] text;
+		private final int from;
+		private final int to;
+		private final RecordParser<? extends T> parser;
+
+		ParseTask(char[] text, int from, int to, RecordParser<? extends T> parser) {
+			this.text = text;
+			this.from = from;
+			this.to = to;
+			this.parser = parser;
+		}
+
+		@Override
+		protected List<T> compute() {
+			return parseLines(this.text, this.from, this.to, this.parser);
+		}
+	}
+
+	private <T> List<T> parseLines(char[] text, int from, int to,
+			RecordParser<? extends T> parser) {
+		ArrayList<T> ret = new ArrayList<>();
+		ArrayList<String> fields = new ArrayList<>();
+		StringBuilder quoted = new StringBuilder();
+		int pos = from;
+		while (pos < to) {
+			if (text[pos] == '\n' ||
+					(text[pos] == '\r' && pos + 1 < to && text[pos + 1] == '\n')) {
+				// an empty line
+				pos += (text[pos] == '\n') ? 1 : 2;
+				continue;
+			}
+
+			fields.clear();
+			while (true) {
+				int end;
+				if (pos < to && text[pos] == this.quote) {
+					quoted.setLength(0);
+					int i = pos + 1;
+					while (i < to) {
+						if (text[i] == this.quote) {
+							if (i + 1 < to && text[i + 1] == this.quote) {
+								quoted.append(this.quote);
+								i += 2;
+								continue;
+							}
+							break;
+						}
+						quoted.append(text[i++]);
+					}
+					// anything between the closing quote and the delimiter is kept
+					end = i + 1;
+					while (end < to && text[end] != this.delimiter && text[end] != '\n') {
+						end++;
+					}
+					if (end > i + 1) {
+						quoted.append(text, i + 1, trimCr(text, i + 1, end, to) - i - 1);
+					}
+					fields.add(quoted.toString());
+				}
+				else {
+					end = pos;
+					while (end < to && text[end] != this.delimiter && text[end] != '\n') {
+						end++;
+					}
+					fields.add(new String(text, pos, trimCr(text, pos, end, to) - pos));
+				}
+
+				if (end < to && text[end] == this.delimiter) {
+					pos = end + 1;
+					continue;
+				}
+				pos = Math.min(to, end + 1);
+				break;
+			}
+			ret.add(parser.parse(fields.toArray(new String[fields.size()])));
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the end of a field, without the CR of a CRLF if the field ends the line.
+	 */
+	private static int trimCr(char[] text, int from, int end, int to) {
+		boolean lineEnd = (end == to || text[end] == '\n');
+		return (lineEnd && end > from && text[end - 1] == '\r') ? end - 1 : end;
+	}
+}
@@ -0,0 +1,612 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * <p>
+ * Records the changes made to an {@link ArrayListWithTableModel} so that they can be
+ * undone and redone. This is an {@link UndoManager}, so it can be used wherever Swing
+ * expects one, and other edits can be added to it alongside the list's own.
+ * </p>
+ * <p>
+ * The journal learns of each change from the event the list dispatches for it, and
+ * records the change compactly, as what is needed to reverse it: a move as its source,
+ * length and destination; an insertion as its position and the records inserted; a
+ * deletion as its position and the records deleted; a sort as the rows' previous
+ * positions. Records are held through {@link ArrayListWithTableModel#snapshot()}, so
+ * the journal shares their storage with the list rather than copying it. Consecutive
+ * moves of the same block, such as those made by pressing a move button repeatedly, are
+ * recorded as a single move, and the events of one call to
+ * {@link ArrayListWithTableModel#applyChanges(java.util.Collection)} are recorded as a
+ * single edit, which is undone and redone as a whole.
+ * </p>
+ * <p>
+ * Undoing or redoing a change makes it through the list's own functions, so that
+ * listeners are notified just as they were the first time: one
+ * {@link TableModelMoveEvent} for a move, one {@link TableModelEvent#INSERT} or
+ * {@link TableModelEvent#DELETE} for an insertion or deletion, one
+ * {@link TableModelEvent#UPDATE} for a replacement of records, and one
+ * {@link TableModelPermutationEvent} for a sort. Changes the list reported only as a
+ * change of all of its data, such as <code>clear()</code>, are reversed with a
+ * <code>clear()</code> and an <code>addAll</code>. An update which did not replace any
+ * record, such as {@link ArrayListWithTableModel#requestTableUpdate(int)} after a
+ * record was changed in place, cannot be undone and is not recorded.
+ * </p>
+ * <p>
+ * Instead of a limit on the number of edits, the journal has a budget of bytes, and
+ * forgets its oldest edits when the edits it holds would cost more. The cost of an edit
+ * is an estimate of the memory it keeps, including the records it keeps after they have
+ * left the list; see {@link #estimateRecordBytes(Object)}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record in the list.
+ */
+public class EditJournal<T> extends UndoManager {
+	/**
+	 * The cost of an edit apart from the records it holds.
+	 */
+	private static final long EDIT_BYTES = 48;
+	/**
+	 * The cost of holding a reference to a record.
+	 */
+	private static final long REFERENCE_BYTES = 8;
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 6512874603917254308L;
+	private final ArrayListWithTableModel<T> list;
+	private final TableModelListener listener;
+	private final ArrayListWithTableModel.BatchListener batchListener;
+	/**
+	 * The edit collecting the changes of the batch in progress, if any.
+	 */
+	private BatchEdit batch = null;
+	private int batchDepth = 0;
+	private long byteBudget;
+	private long byteCount = 0;
+	/**
+	 * The contents of the list before the change now being reported.
+	 */
+	private ListSnapshot<T> previous;
+	private boolean replaying = false;
+
+	/**
+	 * Constructor. The journal starts recording immediately.
+	 * @param list The list whose changes are to be recorded
+	 * @param byteBudget The most memory, in bytes, the recorded edits may cost
+	 */
+	public EditJournal(ArrayListWithTableModel<T> list, long byteBudget) {
+		this.list = list;
+		this.byteBudget = byteBudget;
+		this.setLimit(Integer.MAX_VALUE);
+		this.previous = list.snapshot();
+		this.listener = new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				listChanged(e);
+			}
+		};
+		list.addTableModelListener(this.listener);
+		this.batchListener = new ArrayListWithTableModel.BatchListener() {
+			@Override
+			public void batchStarted() {
+				startBatch();
+			}
+
+			@Override
+			public void batchEnded() {
+				endBatch();
+			}
+		};
+		list.addBatchListener(this.batchListener);
+	}
+
+	/**
+	 * Stops recording changes to the list, and forgets the edits recorded.
+	 */
+	public void dispose() {
+		this.list.removeTableModelListener(this.listener);
+		this.list.removeBatchListener(this.batchListener);
+		this.discardAllEdits();
+	}
+
+	/**
+	 * @return the list whose changes are recorded
+	 */
+	public ArrayListWithTableModel<T> getList() {
+		return this.list;
+	}
+
+	/**
+	 * @return the most memory, in bytes, the recorded edits may cost
+	 */
+	public synchronized long getByteBudget() {
+		return this.byteBudget;
+	}
+
+	/**
+	 * Sets the most memory the recorded edits may cost, forgetting the oldest edits if
+	 * they now cost more.
+	 * @param byteBudget The budget, in bytes
+	 */
+	public synchronized void setByteBudget(long byteBudget) {
+		this.byteBudget = byteBudget;
+		this.trimForBudget();
+	}
+
+	/**
+	 * @return the estimated memory, in bytes, the recorded edits cost
+	 */
+	public synchronized long getByteCount() {
+		return this.byteCount;
+	}
+
+	/**
+	 * Estimates the memory a record occupies, for records which the journal keeps after
+	 * they have been deleted or replaced. The default implementation returns 64; override
+	 * it for records which are much larger or smaller.
+	 * @param record The record
+	 * @return the estimated size of the record, in bytes
+	 */
+	protected long estimateRecordBytes(T record) {
+		return 64;
+	}
+
+	@Override
+	public synchronized boolean addEdit(UndoableEdit anEdit) {
+		boolean ret = super.addEdit(anEdit);
+		// an edit absorbed by the last one, such as a further move, costs nothing more
+		if (anEdit instanceof Sized && !this.edits.isEmpty() &&
+				this.edits.lastElement() == anEdit) {
+			this.byteCount += ((Sized)anEdit).getByteCount();
+		}
+		this.trimForBudget();
+		return ret;
+	}
+
+	@Override
+	protected void trimEdits(int from, int to) {
+		for (int i = from; i <= to; i++) {
+			UndoableEdit e = this.edits.get(i);
+			if (e instanceof Sized) this.byteCount -= ((Sized)e).getByteCount();
+		}
+		super.trimEdits(from, to);
+	}
+
+	@Override
+	public synchronized void discardAllEdits() {
+		super.discardAllEdits();
+		this.byteCount = 0;
+	}
+
+	private void trimForBudget() {
+		// the newest edit is kept whatever it costs, so that it can be undone
+		int keep = 1;
+		int trim = 0;
+		long count = this.byteCount;
+		while (this.edits.size() - trim > keep && count > this.byteBudget) {
+			UndoableEdit e = this.edits.get(trim);
+			if (e instanceof Sized) count -= ((Sized)e).getByteCount();
+			trim++;
+		}
+		if (trim > 0) this.trimEdits(0, trim - 1);
+	}
+
+	private void listChanged(TableModelEvent e) {
+		ListSnapshot<T> before = this.previous;
+		ListSnapshot<T> after = this.list.snapshot();
+		this.previous = after;
+		if (this.replaying) return;
+
+		ListEdit edit = this.editFor(e, before, after);
+		if (edit == null) return;
+		if (this.batch != null) {
+			this.batch.addEdit(edit);
+		}
+		else {
+			this.addEdit(edit);
+		}
+	}
+
+	private void startBatch() {
+		if (this.batchDepth++ == 0 && !this.replaying) this.batch = new BatchEdit();
+	}
+
+	private void endBatch() {
+		if (--this.batchDepth > 0 || this.batch == null) return;
+
+		BatchEdit edit = this.batch;
+		this.batch = null;
+		edit.end();
+		if (edit.size() == 1) {
+			this.addEdit(edit.only());
+		}
+		else if (edit.size() > 1) {
+			this.addEdit(edit);
+		}
+	}
+
+	private ListEdit editFor(TableModelEvent e, ListSnapshot<T> before, ListSnapshot<T> after) {
+		int first = e.getFirstRow();
+		int last = e.getLastRow();
+		if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+			if (before.equals(after)) return null;
+			return new ResetEdit(before, after);
+		}
+		if (e instanceof TableModelMoveEvent) {
+			TableModelMoveEvent me = (TableModelMoveEvent)e;
+			return new MoveEdit(me.getMoveSource(), me.getMoveLength(), me.getMoveDestination());
+		}
+		if (e instanceof TableModelPermutationEvent) {
+			TableModelPermutationEvent pe = (TableModelPermutationEvent)e;
+			int[] oldIndices = new int[last - first + 1];
+			for (int i = 0; i < oldIndices.length; i++) {
+				oldIndices[i] = pe.getOldIndex(first + i);
+			}
+			return new PermuteEdit(first, oldIndices);
+		}
+		if (e.getType() == TableModelEvent.INSERT) {
+			return new InsertEdit(first, after.subList(first, last + 1));
+		}
+		if (e.getType() == TableModelEvent.DELETE) {
+			return new DeleteEdit(first, before.subList(first, last + 1));
+		}
+
+		// an update only matters if it replaced records
+		last = Math.min(last, Math.min(before.size(), after.size()) - 1);
+		for (int i = first; i <= last; i++) {
+			if (before.get(i) != after.get(i)) {
+				return new ReplaceEdit(first, before.subList(first, last + 1),
+						after.subList(first, last + 1));
+			}
+		}
+		return null;
+	}
+
+	private long recordBytes(List<T> records) {
+		long ret = 0;
+		for (T record : records) {
+			ret += REFERENCE_BYTES + this.estimateRecordBytes(record);
+		}
+		return ret;
+	}
+
+	/**
+	 * An edit whose cost counts against the budget.
+	 */
+	private interface Sized {
+		long getByteCount();
+	}
+
+	/**
+	 * An edit of the list. Undoing or redoing it changes the list without the change
+	 * being recorded again.
+	 */
+	private abstract class ListEdit extends AbstractUndoableEdit implements Sized {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -2791264913450273187L;
+
+		abstract void revert();
+
+		abstract void reapply();
+
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			replaying = true;
+			try {
+				this.revert();
+			}
+			finally {
+				replaying = false;
+			}
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			replaying = true;
+			try {
+				this.reapply();
+			}
+			finally {
+				replaying = false;
+			}
+		}
+	}
+
+	private class MoveEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 4035287361978422035L;
+		private final int from;
+		private final int count;
+		private int to;
+
+		MoveEdit(int from, int count, int to) {
+			this.from = from;
+			this.count = count;
+			this.to = to;
+		}
+
+		@Override
+		void revert() {
+			list.moveRange(this.to, this.count, this.from);
+		}
+
+		@Override
+		void reapply() {
+			list.moveRange(this.from, this.count, this.to);
+		}
+
+		@Override
+		public long getByteCount() {
+			return EDIT_BYTES;
+		}
+
+		@Override
+		public boolean addEdit(UndoableEdit anEdit) {
+			if (!(anEdit instanceof EditJournal<?>.MoveEdit)) return false;
+
+			// a further move of the same block extends this one
+			EditJournal<?>.MoveEdit next = (EditJournal<?>.MoveEdit)anEdit;
+			if (next.count != this.count || next.from != this.to) return false;
+
+			this.to = next.to;
+			next.die();
+			return true;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Move";
+		}
+	}
+
+	private class InsertEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -4428003541712695066L;
+		private final int first;
+		private final ListSnapshot<T> records;
+
+		InsertEdit(int first, ListSnapshot<T> records) {
+			this.first = first;
+			this.records = records;
+		}
+
+		@Override
+		void revert() {
+			list.subList(this.first, this.first + this.records.size()).clear();
+		}
+
+		@Override
+		void reapply() {
+			list.addAll(this.first, this.records);
+		}
+
+		@Override
+		public long getByteCount() {
+			// the records are still in the list, so only the references count
+			return EDIT_BYTES + REFERENCE_BYTES * this.records.size();
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Add";
+		}
+	}
+
+	private class DeleteEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 2308877209538715512L;
+		private final int first;
+		private final ListSnapshot<T> records;
+		private final long bytes;
+
+		DeleteEdit(int first, ListSnapshot<T> records) {
+			this.first = first;
+			this.records = records;
+			this.bytes = EDIT_BYTES + recordBytes(records);
+		}
+
+		@Override
+		void revert() {
+			list.addAll(this.first, this.records);
+		}
+
+		@Override
+		void reapply() {
+			list.subList(this.first, this.first + this.records.size()).clear();
+		}
+
+		@Override
+		public long getByteCount() {
+			return this.bytes;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Remove";
+		}
+	}
+
+	private class ReplaceEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -6930518871623389510L;
+		private final int first;
+		private final ListSnapshot<T> before;
+		private final ListSnapshot<T> after;
+		private final long bytes;
+
+		ReplaceEdit(int first, ListSnapshot<T> before, ListSnapshot<T> after) {
+			this.first = first;
+			this.before = before;
+			this.after = after;
+			this.bytes = EDIT_BYTES + recordBytes(before) + REFERENCE_BYTES * after.size();
+		}
+
+		private void replace(ListSnapshot<T> records) {
+			list.replaceRange(this.first, records);
+		}
+
+		@Override
+		void revert() {
+			this.replace(this.before);
+		}
+
+		@Override
+		void reapply() {
+			this.replace(this.after);
+		}
+
+		@Override
+		public long getByteCount() {
+			return this.bytes;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Change";
+		}
+	}
+
+	private class PermuteEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 7716233512893004718L;
+		private final int first;
+		private final int[] oldIndices;
+
+		PermuteEdit(int first, int[] oldIndices) {
+			this.first = first;
+			this.oldIndices = oldIndices;
+		}
+
+		private int[] identity() {
+			int[] ret = new int[list.size()];
+			for (int i = 0; i < ret.length; i++) ret[i] = i;
+			return ret;
+		}
+
+		@Override
+		void revert() {
+			int[] order = this.identity();
+			for (int i = 0; i < this.oldIndices.length; i++) {
+				order[this.oldIndices[i]] = this.first + i;
+			}
+			list.applyPermutation(order);
+		}
+
+		@Override
+		void reapply() {
+			int[] order = this.identity();
+			System.arraycopy(this.oldIndices, 0, order, this.first, this.oldIndices.length);
+			list.applyPermutation(order);
+		}
+
+		@Override
+		public long getByteCount() {
+			return EDIT_BYTES + 4L * this.oldIndices.length;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Sort";
+		}
+	}
+
+	private class ResetEdit extends ListEdit {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -1198632440562519973L;
+		private final ListSnapshot<T> before;
+		private final ListSnapshot<T> after;
+		private final long bytes;
+
+		ResetEdit(ListSnapshot<T> before, ListSnapshot<T> after) {
+			this.before = before;
+			this.after = after;
+			this.bytes = EDIT_BYTES + recordBytes(before) + REFERENCE_BYTES * after.size();
+		}
+
+		private void reset(ListSnapshot<T> records) {
+			list.clear();
+			list.addAll(records);
+		}
+
+		@Override
+		void revert() {
+			this.reset(this.before);
+		}
+
+		@Override
+		void reapply() {
+			this.reset(this.after);
+		}
+
+		@Override
+		public long getByteCount() {
+			return this.bytes;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Change";
+		}
+	}
+
+	/**
+	 * The edits of one batch of changes, undone and redone together.
+	 */
+	private class BatchEdit extends CompoundEdit implements Sized {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -5270318846417032981L;
+
+		int size() {
+			return this.edits.size();
+		}
+
+		UndoableEdit only() {
+			return this.edits.get(0);
+		}
+
+		@Override
+		public long getByteCount() {
+			long ret = 0;
+			for (UndoableEdit e : this.edits) {
+				if (e instanceof Sized) ret += ((Sized)e).getByteCount();
+			}
+			return ret;
+		}
+
+		@Override
+		public String getPresentationName() {
+			return "Change";
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * An unchangeable copy of the contents of an {@link ArrayListWithTableModel} at one
+ * moment, made by {@link ArrayListWithTableModel#snapshot()}, or a version of a
+ * {@link PersistentReorderableList}, made by {@link PersistentReorderableList#version()}.
+ * A snapshot can be read, iterated and divided among any number of threads while the
+ * list itself goes on being changed and reordered, without locking and without ever
+ * throwing a {@link java.util.ConcurrentModificationException}.
+ * </p>
+ * <p>
+ * Taking a snapshot does not copy the list. The list and its snapshots share chunks of
+ * elements, and a chunk is only copied when the list changes it while a snapshot still
+ * refers to it, so the memory a snapshot costs is proportional to how much of the list
+ * has changed since it was taken. A snapshot holds the same records as the list did, not
+ * copies of them, so a record which is itself changed afterwards is seen changed.
+ * </p>
+ * <p>
+ * {@link #get(int)} takes O(log n) time; iterating takes constant time per element.
+ * {@link #subList(int, int)} returns another snapshot in O(log n) time, and
+ * {@link #partition(int)} uses it to divide a snapshot for parallel work.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of element in the list.
+ */
+public final class ListSnapshot<T> extends AbstractList<T> implements RandomAccess {
+	private final ChunkRope rope;
+
+	ListSnapshot(ChunkRope rope) {
+		this.rope = rope;
+	}
+
+	ChunkRope getRope() {
+		return this.rope;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T)this.rope.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.rope.size();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		final ChunkRope.ChunkIterator chunks = this.rope.chunks();
+		return new Iterator<T>() {
+			private Object[] items = new Object[0];
+			private int pos = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (this.pos == this.items.length) {
+					if (!chunks.hasNext()) return false;
+					this.items = chunks.next();
+					this.pos = 0;
+				}
+				return true;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (!this.hasNext()) throw new NoSuchElementException();
+				return (T)this.items[this.pos++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		return this.rope.toArray();
+	}
+
+	/**
+	 * Returns the elements from <code>fromIndex</code> (inclusive) to
+	 * <code>toIndex</code> (exclusive) as a snapshot of their own, in O(log n) time.
+	 */
+	@Override
+	public ListSnapshot<T> subList(int fromIndex, int toIndex) {
+		return new ListSnapshot<>(this.rope.slice(fromIndex, toIndex));
+	}
+
+	/**
+	 * Divides this snapshot into consecutive parts of nearly equal size, for example so
+	 * that each part can be processed by its own thread.
+	 * @param parts The number of parts wanted
+	 * @return The parts, in order. There are fewer than <code>parts</code> of them if
+	 * there are fewer elements than that.
+	 */
+	public List<ListSnapshot<T>> partition(int parts) {
+		if (parts < 1) throw new IllegalArgumentException("parts must be positive: " + parts);
+
+		int size = this.size();
+		parts = Math.max(1, Math.min(parts, size));
+		ArrayList<ListSnapshot<T>> ret = new ArrayList<>(parts);
+		for (int i = 0; i < parts; i++) {
+			ret.add(this.subList((int)((long)size * i / parts),
+					(int)((long)size * (i + 1) / parts)));
+		}
+		return ret;
+	}
+}
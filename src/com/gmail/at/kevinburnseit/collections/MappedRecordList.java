@@ -0,0 +1,150 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * An unchangeable list of the records in a file written by {@link SnapshotFile}, which
+ * has been mapped into memory by {@link SnapshotFile#map}. A record is decoded from the
+ * file when it is asked for, and kept in a small direct-mapped cache: record
+ * <code>i</code> can only be kept in slot <code>i</code> modulo 256, where it replaces
+ * whatever record was there. Any 256 consecutive records therefore fit in the cache
+ * together, so a table showing the list decodes only the rows it paints, and each of
+ * them once while it stays in view; records 256 rows apart evict one another.
+ * </p>
+ * <p>
+ * A table can show the list through a {@link MappedRecordTableModel}, without copying
+ * it. Use {@link #getRecords(int, int)} to copy a range of records into an ordinary
+ * list, for example to fill an {@link ArrayListWithTableModel} with the rows that are to
+ * be edited.
+ * </p>
+ * <p>
+ * Any number of threads may read the list at once. A record which cannot be decoded is
+ * reported with an {@link IllegalStateException} whose cause is the IOException thrown by
+ * the codec.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record in the list.
+ */
+public final class MappedRecordList<T> extends AbstractList<T> implements RandomAccess {
+	/**
+	 * The number of slots in the cache of decoded records; a power of 2. Record
+	 * <code>i</code> is kept in slot <code>i &amp; (CACHE_SIZE - 1)</code>.
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * A decoded record and its index. Entries are never changed, so a thread which reads
+	 * one sees both fields as they were set.
+	 */
+	private static final class Entry {
+		final int index;
+		final Object record;
+
+		Entry(int index, Object record) {
+			this.index = index;
+			this.record = record;
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final RecordCodec<T> codec;
+	private final SnapshotFile.Layout layout;
+	private final int fields;
+	private final int rows;
+	private final int indexPosition;
+	private final Entry[] cache = new Entry[CACHE_SIZE];
+
+	MappedRecordList(ByteBuffer buffer, RecordCodec<T> codec, SnapshotFile.Layout layout,
+			int fields, int rows, int indexPosition) {
+		this.buffer = buffer;
+		this.codec = codec;
+		this.layout = layout;
+		this.fields = fields;
+		this.rows = rows;
+		this.indexPosition = indexPosition;
+	}
+
+	/**
+	 * @return how the fields of the records are arranged in the file
+	 */
+	public SnapshotFile.Layout getLayout() {
+		return this.layout;
+	}
+
+	@Override
+	public int size() {
+		return this.rows;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index < 0 || index >= this.rows) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.rows);
+		}
+
+		int slot = index & (CACHE_SIZE - 1);
+		Entry e = this.cache[slot];
+		if (e == null || e.index != index) {
+			e = new Entry(index, this.decode(index));
+			this.cache[slot] = e;
+		}
+		return (T)e.record;
+	}
+
+	/**
+	 * Decodes a range of records into a new list. The records are decoded afresh, not
+	 * taken from those kept by {@link #get(int)}.
+	 * @param fromIndex The index of the first record, inclusive
+	 * @param toIndex The index of the last record, exclusive
+	 * @return the records, in order
+	 */
+	public ArrayList<T> getRecords(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > this.rows || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("Range: " + fromIndex + "-" + toIndex +
+					", Size: " + this.rows);
+		}
+
+		ArrayList<T> ret = new ArrayList<>(toIndex - fromIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			ret.add(this.decode(i));
+		}
+		return ret;
+	}
+
+	private T decode(int index) {
+		try {
+			Object[] values = new Object[this.fields];
+			if (this.layout == SnapshotFile.Layout.ROWS) {
+				DataInputStream in = this.input(index);
+				for (int f = 0; f < this.fields; f++) {
+					values[f] = this.codec.read(f, in);
+				}
+			}
+			else {
+				for (int f = 0; f < this.fields; f++) {
+					values[f] = this.codec.read(f, this.input(f * this.rows + index));
+				}
+			}
+			return this.codec.assemble(values);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Cannot decode record " + index, ex);
+		}
+	}
+
+	/**
+	 * Returns a stream positioned at an entry of the file's index.
+	 */
+	private DataInputStream input(int entry) {
+		long offset = this.buffer.getLong(this.indexPosition + 8 * entry);
+		return new DataInputStream(new SnapshotFile.BufferInput(this.buffer, (int)offset));
+	}
+}
@@ -0,0 +1,106 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * <p>
+ * A read-only table model which shows a {@link MappedRecordList} without copying it. Its
+ * columns are described by {@link ColumnBinding}s, as those of a {@link BoundTableModel}
+ * are, and each cell is read from the record as it is asked for, so a table decodes only
+ * the rows it paints. For example:
+ * </p>
+ * <pre>
+ * MappedRecordList&lt;Person&gt; people = SnapshotFile.map(channel, codec);
+ * table.setModel(new MappedRecordTableModel&lt;&gt;(people,
+ *     ColumnBinding.forProperty(Person.class, "name", "Name"),
+ *     ColumnBinding.forProperty(Person.class, "age", "Age")));
+ * </pre>
+ * <p>
+ * The list cannot change, so the model never fires events. No cell is editable; to edit
+ * some of the records, copy them into an {@link ArrayListWithTableModel} with
+ * {@link MappedRecordList#getRecords(int, int)}. The mapped records are not serialized
+ * with the model, which is of no use once deserialized.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record in the list.
+ */
+public class MappedRecordTableModel<T> extends AbstractTableModel {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -3357401826614830915L;
+	private final transient MappedRecordList<T> records;
+	private final ArrayList<ColumnBinding<? super T>> bindings;
+
+	/**
+	 * Constructor.
+	 * @param records The records to show, one per row
+	 * @param bindings Describes each column, in order
+	 */
+	@SafeVarargs
+	public MappedRecordTableModel(MappedRecordList<T> records,
+			ColumnBinding<? super T>... bindings) {
+		super();
+		this.records = records;
+		this.bindings = new ArrayList<ColumnBinding<? super T>>(bindings.length);
+		for (ColumnBinding<? super T> b : bindings) {
+			this.bindings.add(b);
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param records The records to show, one per row
+	 * @param bindings Describes each column, in order
+	 */
+	public MappedRecordTableModel(MappedRecordList<T> records,
+			List<? extends ColumnBinding<? super T>> bindings) {
+		super();
+		this.records = records;
+		this.bindings = new ArrayList<ColumnBinding<? super T>>(bindings);
+	}
+
+	/**
+	 * @return the records shown by the model
+	 */
+	public MappedRecordList<T> getRecords() {
+		return this.records;
+	}
+
+	/**
+	 * @param column Model column index
+	 * @return the binding which describes the column
+	 */
+	public ColumnBinding<? super T> getBinding(int column) {
+		return this.bindings.get(column);
+	}
+
+	@Override
+	public int getRowCount() {
+		return this.records.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return this.bindings.size();
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return this.bindings.get(column).getName();
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columnIndex) {
+		return this.bindings.get(columnIndex).getType();
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		return this.bindings.get(column).getValue(this.records.get(row));
+	}
+}
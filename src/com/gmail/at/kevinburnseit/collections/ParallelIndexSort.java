@@ -0,0 +1,129 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.Comparator;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A stable merge sort which, rather than rearranging an array of elements, works out the
+ * order they would be in once sorted. Large arrays are split between the threads of the
+ * shared {@link WorkerPool}, each of which sorts its part before the parts are merged.
+ * @author Kevin J. Burns
+ *
+ */
+final class ParallelIndexSort {
+	/**
+	 * Arrays of at least this many elements are sorted in parallel; it is also the size
+	 * of the part each thread sorts on its own.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 13;
+	private static final int INSERTION_THRESHOLD = 16;
+
+	private static final class SortTask extends RecursiveAction {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 5716289010938839744L;
+		private final ParallelIndexSort sort;
+		private final int lo;
+		private final int hi;
+
+		SortTask(ParallelIndexSort sort, int lo, int hi) {
+			this.sort = sort;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.hi - this.lo <= PARALLEL_THRESHOLD) {
+				this.sort.sort(this.lo, this.hi);
+				return;
+			}
+
+			int mid = (this.lo + this.hi) >>> 1;
+			invokeAll(new SortTask(this.sort, this.lo, mid),
+					new SortTask(this.sort, mid, this.hi));
+			this.sort.merge(this.lo, mid, this.hi);
+		}
+	}
+
+	private final Object[] elements;
+	private final Comparator<Object> comparator;
+	private final int[] order;
+	private final int[] scratch;
+
+	@SuppressWarnings("unchecked")
+	private ParallelIndexSort(Object[] elements, Comparator<?> comparator) {
+		this.elements = elements;
+		this.comparator = (Comparator<Object>)comparator;
+		this.order = new int[elements.length];
+		for (int i = 0; i < this.order.length; i++) {
+			this.order[i] = i;
+		}
+		this.scratch = new int[elements.length];
+	}
+
+	/**
+	 * Works out the stable sorted order of an array. The array is not modified, and is
+	 * read from several threads; it must not change until this function returns.
+	 * @param elements The elements to sort
+	 * @param comparator Comparator for the elements
+	 * @return An array holding, at each position, the index in <code>elements</code> of
+	 * the element which belongs at that position once sorted
+	 */
+	static <T> int[] sortedOrder(T[] elements, Comparator<? super T> comparator) {
+		ParallelIndexSort s = new ParallelIndexSort(elements, comparator);
+		if (elements.length >= PARALLEL_THRESHOLD) {
+			WorkerPool.get().invoke(new SortTask(s, 0, elements.length));
+		}
+		else {
+			s.sort(0, elements.length);
+		}
+		return s.order;
+	}
+
+	private int compare(int a, int b) {
+		return this.comparator.compare(this.elements[a], this.elements[b]);
+	}
+
+	private void sort(int lo, int hi) {
+		if (hi - lo <= INSERTION_THRESHOLD) {
+			for (int i = lo + 1; i < hi; i++) {
+				int v = this.order[i];
+				int j = i - 1;
+				for (; j >= lo && this.compare(this.order[j], v) > 0; j--) {
+					this.order[j + 1] = this.order[j];
+				}
+				this.order[j + 1] = v;
+			}
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		this.sort(lo, mid);
+		this.sort(mid, hi);
+		this.merge(lo, mid, hi);
+	}
+
+	private void merge(int lo, int mid, int hi) {
+		// already in order, which is common when sorting data which is nearly sorted
+		if (this.compare(this.order[mid - 1], this.order[mid]) <= 0) return;
+
+		System.arraycopy(this.order, lo, this.scratch, lo, mid - lo);
+		int i = lo;
+		int j = mid;
+		int k = lo;
+		while (i < mid && j < hi) {
+			// ties go to the left half, which keeps the sort stable
+			if (this.compare(this.scratch[i], this.order[j]) <= 0) {
+				this.order[k++] = this.scratch[i++];
+			}
+			else {
+				this.order[k++] = this.order[j++];
+			}
+		}
+		while (i < mid) {
+			this.order[k++] = this.scratch[i++];
+		}
+	}
+}
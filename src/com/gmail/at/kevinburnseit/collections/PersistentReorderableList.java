@@ -0,0 +1,254 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * A reorderable list whose past versions can be kept cheaply. The elements are held in
+ * an immutable tree of chunks which each change replaces with a new tree sharing all but
+ * O(log n) of its nodes with the old one. {@link #version()} therefore captures the
+ * current contents in constant time, and a version costs memory only for the parts of
+ * the list changed since it was captured, typically a few kilobytes per change however
+ * long the list is. A version can be read by any thread, and the list can be returned to
+ * it with {@link #revert(ListSnapshot)}, which also takes constant time. This suits undo
+ * histories and audit trails which would otherwise copy the whole list each time.
+ * </p>
+ * <p>
+ * Reading, inserting, removing and replacing an element, and every move of
+ * {@link CollectionReorderable}, take O(log n) time. Inserting or removing a block of
+ * elements, including through <code>addAll</code> and <code>subList(...).clear()</code>,
+ * takes O(log n) time plus the time to copy the elements inserted. Iterating takes
+ * constant time per element, and removing the current element through an iterator
+ * takes O(log n) time. The iterators fail fast like those of
+ * {@link java.util.ArrayList}.
+ * </p>
+ * <p>
+ * This class is not synchronized; like ArrayList, it must only be changed by one thread
+ * at a time.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of element in the list.
+ */
+public class PersistentReorderableList<T> extends AbstractList<T>
+		implements CollectionReorderable, RandomAccess {
+	private ChunkRope rope;
+
+	/**
+	 * Constructor for an empty list.
+	 */
+	public PersistentReorderableList() {
+		this.rope = ChunkRope.of(new Object[0]);
+	}
+
+	/**
+	 * Constructor for a list holding the elements of a collection, in the order its
+	 * iterator returns them.
+	 * @param c The collection whose elements are to be placed in the list
+	 */
+	public PersistentReorderableList(Collection<? extends T> c) {
+		this.rope = ChunkRope.of(c.toArray());
+	}
+
+	/**
+	 * Returns the current contents of the list as an unchangeable list which shares its
+	 * storage with this one. This takes constant time.
+	 * @return the current version
+	 */
+	public ListSnapshot<T> version() {
+		return new ListSnapshot<>(this.rope);
+	}
+
+	/**
+	 * Returns the list to a version captured earlier with {@link #version()}, or to the
+	 * contents of any other {@link ListSnapshot}. This takes constant time.
+	 * @param version The version to return to
+	 */
+	public void revert(ListSnapshot<? extends T> version) {
+		this.rope = version.getRope();
+		this.modCount++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T)this.rope.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.rope.size();
+	}
+
+	@Override
+	public T set(int index, T element) {
+		T ret = this.get(index);
+		this.rope = this.rope.set(index, element);
+		return ret;
+	}
+
+	@Override
+	public void add(int index, T element) {
+		this.rope = this.rope.insert(index, new Object[] { element });
+		this.modCount++;
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends T> c) {
+		Object[] elements = c.toArray();
+		this.rope = this.rope.insert(index, elements);
+		this.modCount++;
+		return elements.length > 0;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends T> c) {
+		return this.addAll(this.size(), c);
+	}
+
+	@Override
+	public T remove(int index) {
+		T ret = this.get(index);
+		this.rope = this.rope.remove(index, index + 1);
+		this.modCount++;
+		return ret;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		this.rope = this.rope.remove(fromIndex, toIndex);
+		this.modCount++;
+	}
+
+	@Override
+	public void clear() {
+		this.rope = ChunkRope.of(new Object[0]);
+		this.modCount++;
+	}
+
+	@Override
+	public Object[] toArray() {
+		return this.rope.toArray();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private ChunkRope.ChunkIterator chunks = rope.chunks();
+			private int expectedModCount = modCount;
+			private Object[] items = new Object[0];
+			private int pos = 0;
+			private int index = 0;
+			private int lastReturned = -1;
+
+			@Override
+			public boolean hasNext() {
+				while (this.pos == this.items.length) {
+					if (!this.chunks.hasNext()) return false;
+					this.items = this.chunks.next();
+					this.pos = 0;
+				}
+				return true;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (!this.hasNext()) throw new NoSuchElementException();
+				this.lastReturned = this.index++;
+				return (T)this.items[this.pos++];
+			}
+
+			@Override
+			public void remove() {
+				if (this.lastReturned < 0) throw new IllegalStateException();
+				if (modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+
+				PersistentReorderableList.this.remove(this.lastReturned);
+				this.expectedModCount = modCount;
+				this.index = this.lastReturned;
+				this.lastReturned = -1;
+				// the chunks being iterated over belong to the old rope, so carry on from
+				// the same index in the new one
+				this.chunks = rope.chunks(this.index);
+				if (this.chunks.hasNext()) {
+					this.items = this.chunks.next();
+					this.pos = this.chunks.getOffset();
+				}
+				else {
+					this.items = new Object[0];
+					this.pos = 0;
+				}
+			}
+		};
+	}
+
+	@Override
+	public int moveElementToTop(int record) {
+		return this.moveElement(record, 0);
+	}
+
+	@Override
+	public int moveElementUp(int record) {
+		return this.moveElement(record, record - 1);
+	}
+
+	@Override
+	public int moveElementDown(int record) {
+		return this.moveElement(record, record + 1);
+	}
+
+	@Override
+	public int moveElementToBottom(int record) {
+		return this.moveElement(record, this.size() - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IndexOutOfBoundsException if either index is out of range.
+	 */
+	@Override
+	public int moveElement(int record, int newIndex) {
+		return this.moveRange(record, 1, newIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IndexOutOfBoundsException if the block would extend past either end of
+	 * the list, before or after the move.
+	 * @throws IllegalArgumentException if <code>count</code> is negative.
+	 */
+	@Override
+	public int moveRange(int record, int count, int newIndex) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative count: " + count);
+		}
+		if (count == 0) return newIndex;
+		this.checkMoveIndex(record);
+		this.checkMoveIndex(record + count - 1);
+		this.checkMoveIndex(newIndex);
+		this.checkMoveIndex(newIndex + count - 1);
+		if (record == newIndex) return newIndex;
+
+		this.rope = this.rope.move(record, count, newIndex);
+		this.modCount++;
+		return newIndex;
+	}
+
+	private void checkMoveIndex(int index) {
+		if (index < 0 || index >= this.size()) {
+			throw new IndexOutOfBoundsException(
+					"Index: " + index + ", Size: " + this.size());
+		}
+	}
+}
@@ -0,0 +1,547 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An order-statistic tree: a randomized balanced binary tree (a treap) whose nodes know
+ * the size of their subtrees, so that a node can be found from its rank and a rank can be
+ * found from its node in O(log n). Nodes also have parent links, so a caller which holds
+ * on to a node can find or remove it without searching.
+ * <p>
+ * The tree can be used either positionally, inserting at a given rank, or ordered by a
+ * comparator. Each node also carries a weight of 0 or 1, and the tree can be searched by
+ * weighted rank, which lets it answer "which is the k-th node of weight 1" and "how many
+ * nodes of weight 1 precede this one" in O(log n) as well.
+ * </p>
+ * <p>
+ * A block of nodes can be moved to another position in O(log n), however long it is, by
+ * splitting and rejoining the tree, and a range of nodes can be put in a new order in
+ * time proportional to its length. Neither creates or discards nodes. Subclasses which
+ * keep further data about each subtree can do so by overriding {@link #augment(Node)},
+ * which is called whenever a node's subtree changes.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <E> The type of value stored in each node.
+ */
+class RankedTree<E> {
+	/**
+	 * A node of the tree. Callers may hold on to nodes, but must not modify them.
+	 * @param <E> The type of value stored in the node.
+	 */
+	static final class Node<E> {
+		E value;
+		Node<E> left;
+		Node<E> right;
+		Node<E> parent;
+		int priority;
+		int size = 1;
+		int weight;
+		int weightSum;
+
+		Node(E value, int priority, int weight) {
+			this.value = value;
+			this.priority = priority;
+			this.weight = weight;
+			this.weightSum = weight;
+		}
+
+		E getValue() {
+			return this.value;
+		}
+
+		int getWeight() {
+			return this.weight;
+		}
+	}
+
+	/**
+	 * Priorities above this value are reserved for trees built by {@link #build(List)},
+	 * whose shape is fixed by position rather than by chance.
+	 */
+	private static final int MAX_RANDOM_PRIORITY = Integer.MAX_VALUE - 64;
+
+	private Node<E> root = null;
+	private Random random = new Random();
+	/*
+	 * The results of the last call to split.
+	 */
+	private Node<E> splitLeft;
+	private Node<E> splitRight;
+
+	int size() {
+		return size(this.root);
+	}
+
+	int weightSum() {
+		return weightSum(this.root);
+	}
+
+	void clear() {
+		this.root = null;
+	}
+
+	private static int size(Node<?> n) {
+		return (n == null) ? 0 : n.size;
+	}
+
+	private static int weightSum(Node<?> n) {
+		return (n == null) ? 0 : n.weightSum;
+	}
+
+	Node<E> getRoot() {
+		return this.root;
+	}
+
+	private void update(Node<E> n) {
+		n.size = 1 + size(n.left) + size(n.right);
+		n.weightSum = n.weight + weightSum(n.left) + weightSum(n.right);
+		this.augment(n);
+	}
+
+	/**
+	 * Called whenever the children, weight or value of a node have changed, after its size
+	 * and weight sum have been recomputed, and after the same has been done for its
+	 * children. Does nothing; subclasses which keep further data about each subtree
+	 * recompute it here.
+	 */
+	void augment(Node<E> n) {
+	}
+
+	/**
+	 * Recomputes the data kept about the subtrees containing a node, after a change to its
+	 * value which the subclass keeps data about.
+	 */
+	void updatePath(Node<E> n) {
+		for (Node<E> p = n; p != null; p = p.parent) {
+			this.update(p);
+		}
+	}
+
+	/**
+	 * Returns the node at the given position.
+	 */
+	Node<E> get(int index) {
+		if (index < 0 || index >= this.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+		}
+
+		Node<E> cur = this.root;
+		while (true) {
+			int ls = size(cur.left);
+			if (index < ls) {
+				cur = cur.left;
+			}
+			else if (index == ls) {
+				return cur;
+			}
+			else {
+				index -= ls + 1;
+				cur = cur.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns the <code>k</code>-th node (counting from zero) among those of weight 1.
+	 */
+	Node<E> getWeighted(int k) {
+		if (k < 0 || k >= this.weightSum()) {
+			throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + this.weightSum());
+		}
+
+		Node<E> cur = this.root;
+		while (true) {
+			int lw = weightSum(cur.left);
+			if (k < lw) {
+				cur = cur.left;
+			}
+			else if (k == lw && cur.weight == 1) {
+				return cur;
+			}
+			else {
+				k -= lw + cur.weight;
+				cur = cur.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the given node.
+	 */
+	int rankOf(Node<E> n) {
+		int ret = size(n.left);
+		while (n.parent != null) {
+			if (n == n.parent.right) {
+				ret += size(n.parent.left) + 1;
+			}
+			n = n.parent;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of nodes of weight 1 which precede the given node.
+	 */
+	int weightedRankOf(Node<E> n) {
+		int ret = weightSum(n.left);
+		while (n.parent != null) {
+			if (n == n.parent.right) {
+				ret += weightSum(n.parent.left) + n.parent.weight;
+			}
+			n = n.parent;
+		}
+		return ret;
+	}
+
+	/**
+	 * Inserts a value so that its node has the given position.
+	 */
+	Node<E> insertAt(int index, E value, int weight) {
+		if (index < 0 || index > this.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+		}
+
+		Node<E> n = new Node<>(value, this.random.nextInt(MAX_RANDOM_PRIORITY), weight);
+		this.update(n);
+		if (this.root == null) {
+			this.root = n;
+			return n;
+		}
+
+		Node<E> cur = this.root;
+		while (true) {
+			int ls = size(cur.left);
+			if (index <= ls) {
+				if (cur.left == null) {
+					cur.left = n;
+					break;
+				}
+				cur = cur.left;
+			}
+			else {
+				index -= ls + 1;
+				if (cur.right == null) {
+					cur.right = n;
+					break;
+				}
+				cur = cur.right;
+			}
+		}
+		this.attach(n, cur);
+		return n;
+	}
+
+	/**
+	 * Inserts a value in the order defined by <code>c</code>, after any equal values.
+	 * The new node has weight 1.
+	 */
+	Node<E> insert(E value, Comparator<? super E> c) {
+		Node<E> n = new Node<>(value, this.random.nextInt(MAX_RANDOM_PRIORITY), 1);
+		this.update(n);
+		if (this.root == null) {
+			this.root = n;
+			return n;
+		}
+
+		Node<E> cur = this.root;
+		while (true) {
+			if (c.compare(value, cur.value) < 0) {
+				if (cur.left == null) {
+					cur.left = n;
+					break;
+				}
+				cur = cur.left;
+			}
+			else {
+				if (cur.right == null) {
+					cur.right = n;
+					break;
+				}
+				cur = cur.right;
+			}
+		}
+		this.attach(n, cur);
+		return n;
+	}
+
+	/**
+	 * Returns the position which {@link #insert(Object, Comparator)} would give the value,
+	 * without inserting it.
+	 */
+	int insertionRank(E value, Comparator<? super E> c) {
+		int ret = 0;
+		Node<E> cur = this.root;
+		while (cur != null) {
+			if (c.compare(value, cur.value) < 0) {
+				cur = cur.left;
+			}
+			else {
+				ret += size(cur.left) + 1;
+				cur = cur.right;
+			}
+		}
+		return ret;
+	}
+
+	private void attach(Node<E> n, Node<E> parent) {
+		n.parent = parent;
+		this.updatePath(parent);
+		while (n.parent != null && n.priority > n.parent.priority) {
+			this.rotateUp(n);
+		}
+	}
+
+	/**
+	 * Removes the given node from the tree.
+	 */
+	void remove(Node<E> n) {
+		while (n.left != null && n.right != null) {
+			this.rotateUp((n.left.priority > n.right.priority) ? n.left : n.right);
+		}
+
+		Node<E> child = (n.left != null) ? n.left : n.right;
+		Node<E> parent = n.parent;
+		this.replaceChild(parent, n, child);
+		n.parent = null;
+		n.left = null;
+		n.right = null;
+		this.updatePath(parent);
+	}
+
+	/**
+	 * Changes the weight of a node.
+	 */
+	void setWeight(Node<E> n, int weight) {
+		if (n.weight == weight) return;
+
+		n.weight = weight;
+		this.updatePath(n);
+	}
+
+	/**
+	 * Moves a block of nodes to another position. The nodes themselves are kept, so
+	 * callers holding on to them need not find them again. This takes O(log n) time,
+	 * whatever the length of the block.
+	 * @param from Position of the first node of the block
+	 * @param count Number of nodes in the block
+	 * @param to Position of the first node of the block once it has been moved
+	 */
+	void move(int from, int count, int to) {
+		int size = this.size();
+		if (from < 0 || count < 0 || from + count > size || to < 0 || to + count > size) {
+			throw new IndexOutOfBoundsException("From: " + from + ", Count: " + count +
+					", To: " + to + ", Size: " + size);
+		}
+		if (from == to || count == 0) return;
+
+		this.split(this.root, from);
+		Node<E> before = this.splitLeft;
+		this.split(this.splitRight, count);
+		Node<E> block = this.splitLeft;
+		Node<E> others = this.merge(before, this.splitRight);
+
+		this.split(others, to);
+		Node<E> after = this.splitRight;
+		this.setRoot(this.merge(this.merge(this.splitLeft, block), after));
+	}
+
+	/**
+	 * Puts a range of nodes in a new order. This takes time proportional to the length of
+	 * the range, plus O(log n).
+	 * @param first Position of the first node of the range
+	 * @param nodes The nodes of the range, in their new order. These must be exactly the
+	 * nodes which are now at positions <code>first</code> onwards.
+	 */
+	void reorder(int first, List<Node<E>> nodes) {
+		int count = nodes.size();
+		if (first < 0 || first + count > this.size()) {
+			throw new IndexOutOfBoundsException("First: " + first + ", Count: " + count +
+					", Size: " + this.size());
+		}
+		if (count == 0) return;
+
+		this.split(this.root, first);
+		Node<E> before = this.splitLeft;
+		this.split(this.splitRight, count);
+		Node<E> after = this.splitRight;
+
+		for (Node<E> n : nodes) {
+			n.left = null;
+			n.right = null;
+			n.parent = null;
+		}
+		Node<E> range = this.buildRange(nodes, 0, count - 1, 0);
+		this.setRoot(this.merge(this.merge(before, range), after));
+	}
+
+	/**
+	 * Splits a subtree into its first <code>count</code> nodes and the rest, leaving the
+	 * roots of the two parts in {@link #splitLeft} and {@link #splitRight}.
+	 */
+	private void split(Node<E> n, int count) {
+		if (n == null) {
+			this.splitLeft = null;
+			this.splitRight = null;
+			return;
+		}
+
+		int ls = size(n.left);
+		if (count <= ls) {
+			this.split(n.left, count);
+			n.left = this.splitRight;
+			if (n.left != null) n.left.parent = n;
+			this.update(n);
+			this.splitRight = n;
+		}
+		else {
+			this.split(n.right, count - ls - 1);
+			n.right = this.splitLeft;
+			if (n.right != null) n.right.parent = n;
+			this.update(n);
+			this.splitLeft = n;
+		}
+		if (this.splitLeft != null) this.splitLeft.parent = null;
+		if (this.splitRight != null) this.splitRight.parent = null;
+	}
+
+	/**
+	 * Joins two subtrees, all of whose nodes of <code>a</code> come before those of
+	 * <code>b</code>, and returns the root of the result.
+	 */
+	private Node<E> merge(Node<E> a, Node<E> b) {
+		if (a == null) return b;
+		if (b == null) return a;
+
+		if (a.priority > b.priority) {
+			a.right = this.merge(a.right, b);
+			a.right.parent = a;
+			this.update(a);
+			return a;
+		}
+		b.left = this.merge(a, b.left);
+		b.left.parent = b;
+		this.update(b);
+		return b;
+	}
+
+	private void setRoot(Node<E> n) {
+		this.root = n;
+		if (n != null) n.parent = null;
+	}
+
+	/**
+	 * Replaces the contents of the tree with the given values, in order, each with the
+	 * corresponding weight. The new tree is perfectly balanced. This takes O(n) time,
+	 * rather than the O(n log n) of inserting the values one at a time.
+	 * @return the new nodes, in order
+	 */
+	List<Node<E>> build(List<? extends E> values, int[] weights) {
+		ArrayList<Node<E>> nodes = new ArrayList<>(values.size());
+		for (int i = 0; i < values.size(); i++) {
+			nodes.add(new Node<E>(values.get(i), 0, (weights == null) ? 1 : weights[i]));
+		}
+		this.root = this.buildRange(nodes, 0, nodes.size() - 1, 0);
+		if (this.root != null) this.root.parent = null;
+		return nodes;
+	}
+
+	/**
+	 * Equivalent to {@link #build(List, int[])} with every weight equal to 1.
+	 */
+	List<Node<E>> build(List<? extends E> values) {
+		return this.build(values, null);
+	}
+
+	private Node<E> buildRange(List<Node<E>> nodes, int first, int last, int depth) {
+		if (first > last) return null;
+
+		int mid = (first + last) >>> 1;
+		Node<E> n = nodes.get(mid);
+		n.priority = Integer.MAX_VALUE - Math.min(depth, 63);
+		n.left = this.buildRange(nodes, first, mid - 1, depth + 1);
+		n.right = this.buildRange(nodes, mid + 1, last, depth + 1);
+		if (n.left != null) n.left.parent = n;
+		if (n.right != null) n.right.parent = n;
+		this.update(n);
+		return n;
+	}
+
+	/**
+	 * Returns the node after the given one in order, or <code>null</code> if it is the
+	 * last.
+	 */
+	Node<E> successor(Node<E> n) {
+		if (n.right != null) {
+			n = n.right;
+			while (n.left != null) n = n.left;
+			return n;
+		}
+		while (n.parent != null && n == n.parent.right) {
+			n = n.parent;
+		}
+		return n.parent;
+	}
+
+	/**
+	 * Returns the node before the given one in order, or <code>null</code> if it is the
+	 * first.
+	 */
+	Node<E> predecessor(Node<E> n) {
+		if (n.left != null) {
+			n = n.left;
+			while (n.right != null) n = n.right;
+			return n;
+		}
+		while (n.parent != null && n == n.parent.left) {
+			n = n.parent;
+		}
+		return n.parent;
+	}
+
+	/**
+	 * Returns the first node in order, or <code>null</code> if the tree is empty.
+	 */
+	Node<E> first() {
+		Node<E> n = this.root;
+		if (n == null) return null;
+		while (n.left != null) n = n.left;
+		return n;
+	}
+
+	private void replaceChild(Node<E> parent, Node<E> oldChild, Node<E> newChild) {
+		if (parent == null) {
+			this.root = newChild;
+		}
+		else if (parent.left == oldChild) {
+			parent.left = newChild;
+		}
+		else {
+			parent.right = newChild;
+		}
+		if (newChild != null) newChild.parent = parent;
+	}
+
+	private void rotateUp(Node<E> x) {
+		Node<E> p = x.parent;
+		Node<E> g = p.parent;
+
+		if (x == p.left) {
+			p.left = x.right;
+			if (x.right != null) x.right.parent = p;
+			x.right = p;
+		}
+		else {
+			p.right = x.left;
+			if (x.left != null) x.left.parent = p;
+			x.left = p;
+		}
+		p.parent = x;
+		this.replaceChild(g, p, x);
+		this.update(p);
+		this.update(x);
+	}
+}
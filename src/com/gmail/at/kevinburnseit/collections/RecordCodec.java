@@ -0,0 +1,64 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Converts records to and from bytes for {@link SnapshotFile}. A record is written as
+ * one or more fields, numbered from zero, which are read back separately and then
+ * assembled into a record again. A file in row layout holds each record's fields
+ * together; a file in column layout holds the same field of every record together, which
+ * usually compresses better and suits records with a few large fields.
+ * </p>
+ * <p>
+ * The simplest codec treats the whole record as its only field: it overrides
+ * {@link #write(Object, int, DataOutput)} and {@link #read(int, DataInput)} and keeps
+ * the defaults of the other functions. A field must be read back with exactly the bytes
+ * that were written for it. A codec may be used by several threads at once.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record converted.
+ */
+public abstract class RecordCodec<T> {
+	/**
+	 * Returns the number of fields into which each record is divided. The default
+	 * implementation returns 1.
+	 * @return the number of fields, at least 1
+	 */
+	public int getFieldCount() {
+		return 1;
+	}
+
+	/**
+	 * Writes one field of a record.
+	 * @param record The record
+	 * @param field The number of the field to write
+	 * @param out Where to write it
+	 * @throws IOException if the field cannot be written
+	 */
+	public abstract void write(T record, int field, DataOutput out) throws IOException;
+
+	/**
+	 * Reads one field of a record.
+	 * @param field The number of the field to read
+	 * @param in Where to read it from
+	 * @return The value of the field, to be passed to {@link #assemble(Object[])}
+	 * @throws IOException if the field cannot be read
+	 */
+	public abstract Object read(int field, DataInput in) throws IOException;
+
+	/**
+	 * Makes a record from the values of its fields. The default implementation, for
+	 * codecs with a single field, returns the value of that field.
+	 * @param fields The values returned by {@link #read(int, DataInput)}, in order of
+	 * field number. The array is not used again, so it may be kept.
+	 * @return The record
+	 */
+	@SuppressWarnings("unchecked")
+	public T assemble(Object[] fields) {
+		return (T)fields[0];
+	}
+}
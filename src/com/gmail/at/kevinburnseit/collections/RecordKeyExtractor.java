@@ -0,0 +1,19 @@
+package com.gmail.at.kevinburnseit.collections;
+
+/**
+ * Supplies the identifying key of a record, for collections which can look records up by
+ * key, such as {@link ArrayListWithTableModel#setKeyExtractor(RecordKeyExtractor)}. Keys
+ * must be suitable for use as HashMap keys, must be unique within a collection, and must
+ * not change while the record is in the collection.
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record from which keys are extracted.
+ */
+public interface RecordKeyExtractor<T> {
+	/**
+	 * Returns the key which identifies a record.
+	 * @param record The record in question
+	 * @return The record's key. Must not be <code>null</code>.
+	 */
+	Object getKey(T record);
+}
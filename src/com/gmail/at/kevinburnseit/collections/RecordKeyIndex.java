@@ -0,0 +1,142 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Maps record keys to their current positions in a list. Each row of the list has a node
+ * in a {@link RankedTree}, in list order, and each key maps to its row's node. The
+ * position of a key is the rank of its node, found in O(log n) by walking up from the
+ * node, so positions never have to be recomputed: an insertion or removal anywhere in
+ * the list adds or removes one node in O(log n), and every later row's position follows
+ * from the tree's subtree sizes. A move re-places the nodes of only the rows it moves.
+ * @author Kevin J. Burns
+ *
+ * @param <T> The type of record in the list.
+ */
+class RecordKeyIndex<T> {
+	private List<T> list;
+	private RecordKeyExtractor<? super T> extractor;
+	/**
+	 * One node per row, in list order; each node holds its row's key.
+	 */
+	private RankedTree<Object> rows = new RankedTree<>();
+	private HashMap<Object, RankedTree.Node<Object>> nodes = new HashMap<>();
+
+	/**
+	 * Constructor. The index is built immediately.
+	 * @param list The list being indexed
+	 * @param extractor Supplies the key of each record
+	 */
+	RecordKeyIndex(List<T> list, RecordKeyExtractor<? super T> extractor) {
+		this.list = list;
+		this.extractor = extractor;
+		this.rebuild();
+	}
+
+	RecordKeyExtractor<? super T> getExtractor() {
+		return this.extractor;
+	}
+
+	Object keyOf(T record) {
+		return this.extractor.getKey(record);
+	}
+
+	/**
+	 * Returns the current position of the record with the given key, or -1 if there is
+	 * no such record.
+	 */
+	int indexOf(Object key) {
+		RankedTree.Node<Object> n = this.nodes.get(key);
+		return (n == null) ? -1 : this.rows.rankOf(n);
+	}
+
+	boolean containsKey(Object key) {
+		return this.nodes.containsKey(key);
+	}
+
+	void rebuild() {
+		ArrayList<Object> keys = new ArrayList<>(this.list.size());
+		for (T record : this.list) {
+			keys.add(this.keyOf(record));
+		}
+		this.nodes.clear();
+		for (RankedTree.Node<Object> n : this.rows.build(keys)) {
+			this.nodes.put(n.getValue(), n);
+		}
+	}
+
+	/**
+	 * Called after <code>count</code> records have been inserted at <code>index</code>.
+	 */
+	void inserted(int index, int count) {
+		for (int i = index; i < index + count; i++) {
+			this.insertNode(i);
+		}
+	}
+
+	/**
+	 * Called when the record at <code>index</code> is removed. The index must still
+	 * count the rows before it as they were, whether or not the list itself has yet
+	 * been changed.
+	 */
+	void removed(int index, T record) {
+		this.removeNode(index);
+	}
+
+	/**
+	 * Called after the record at <code>index</code> has been replaced.
+	 */
+	void replaced(int index, T oldRecord, T newRecord) {
+		Object oldKey = this.keyOf(oldRecord);
+		Object newKey = this.keyOf(newRecord);
+		if (oldKey.equals(newKey)) return;
+
+		this.removeNode(index);
+		this.insertNode(index);
+	}
+
+	/**
+	 * Called after a block of <code>count</code> records has been moved from
+	 * <code>record</code> to <code>newIndex</code>. Only the nodes of the block are
+	 * re-placed; the rows it passed over keep theirs.
+	 */
+	void moved(int record, int count, int newIndex) {
+		for (int i = 0; i < count; i++) {
+			this.removeNode(record);
+		}
+		for (int i = 0; i < count; i++) {
+			this.insertNode(newIndex + i);
+		}
+	}
+
+	/**
+	 * Called after records have been moved such that only positions <code>first</code>
+	 * through <code>last</code> (inclusive) changed.
+	 */
+	void moved(int first, int last) {
+		for (int i = first; i <= last; i++) {
+			this.removeNode(first);
+		}
+		for (int i = first; i <= last; i++) {
+			this.insertNode(i);
+		}
+	}
+
+	void cleared() {
+		this.rows.clear();
+		this.nodes.clear();
+	}
+
+	private void insertNode(int index) {
+		Object key = this.keyOf(this.list.get(index));
+		this.nodes.put(key, this.rows.insertAt(index, key, 1));
+	}
+
+	private void removeNode(int index) {
+		RankedTree.Node<Object> n = this.rows.get(index);
+		this.rows.remove(n);
+		if (this.nodes.get(n.getValue()) == n) this.nodes.remove(n.getValue());
+	}
+}
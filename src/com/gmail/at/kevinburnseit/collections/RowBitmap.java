@@ -0,0 +1,279 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of bits, one per table row, which can also answer "how many bits are
+ * set before this one" (rank) and "where is the k-th set bit" (select) quickly. The bits
+ * are kept in words of 64, and a directory holds the number of set bits preceding every
+ * block of {@link #BLOCK_WORDS} words, so that rank needs at most that many word
+ * operations and select a binary search of the directory besides. The directory is
+ * brought up to date lazily, from the first block changed since it was last used.
+ * <p>
+ * Rows can be inserted or removed anywhere; the bits after them are shifted a word at a
+ * time.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+class RowBitmap {
+	/**
+	 * The number of words covered by each directory entry.
+	 */
+	static final int BLOCK_WORDS = 8;
+
+	private long[] words;
+	private int size = 0;
+	private int cardinality = 0;
+	private int[] blockRanks = new int[1];
+	/**
+	 * The first directory entry which may be out of date.
+	 */
+	private int dirtyBlock = 0;
+
+	RowBitmap(int capacity) {
+		this.words = new long[Math.max(1, wordCount(capacity))];
+	}
+
+	static int wordCount(int bits) {
+		return (bits + 63) >>> 6;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of bits set
+	 */
+	int cardinality() {
+		return this.cardinality;
+	}
+
+	boolean get(int index) {
+		return (this.words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	void set(int index, boolean value) {
+		long mask = 1L << index;
+		int w = index >>> 6;
+		boolean old = (this.words[w] & mask) != 0;
+		if (old == value) return;
+
+		if (value) {
+			this.words[w] |= mask;
+			this.cardinality++;
+		}
+		else {
+			this.words[w] &= ~mask;
+			this.cardinality--;
+		}
+		this.markDirty(w);
+	}
+
+	/**
+	 * Returns up to 64 bits starting at <code>index</code>, the first in the lowest bit of
+	 * the result. Bits past the end are zero.
+	 */
+	long getBits(int index) {
+		int w = index >>> 6;
+		int off = index & 63;
+		long ret = this.words[w] >>> off;
+		if (off != 0 && w + 1 < this.words.length) {
+			ret |= this.words[w + 1] << (64 - off);
+		}
+		return ret;
+	}
+
+	/**
+	 * Replaces <code>count</code> bits (at most 64) starting at <code>index</code> with
+	 * the low bits of <code>bits</code>.
+	 */
+	void setBits(int index, long bits, int count) {
+		if (count == 0) return;
+
+		long mask = (count == 64) ? -1L : (1L << count) - 1;
+		bits &= mask;
+		int w = index >>> 6;
+		int off = index & 63;
+		long old = this.getBits(index) & mask;
+		this.cardinality += Long.bitCount(bits) - Long.bitCount(old);
+
+		this.words[w] = (this.words[w] & ~(mask << off)) | (bits << off);
+		if (off != 0 && off + count > 64) {
+			this.words[w + 1] = (this.words[w + 1] & ~(mask >>> (64 - off))) |
+					(bits >>> (64 - off));
+		}
+		this.markDirty(w);
+	}
+
+	/**
+	 * Inserts <code>count</code> clear bits at <code>index</code>.
+	 */
+	void insert(int index, int count) {
+		if (count == 0) return;
+
+		int tailLength = this.size - index;
+		long[] tail = this.extract(index, tailLength);
+		this.ensureCapacity(this.size + count);
+		this.size += count;
+		this.fill(index, index + count, false);
+		this.write(index + count, tail, tailLength);
+	}
+
+	/**
+	 * Removes <code>count</code> bits at <code>index</code>, shifting the following bits
+	 * down.
+	 */
+	void remove(int index, int count) {
+		if (count == 0) return;
+
+		int tailLength = this.size - index - count;
+		long[] tail = this.extract(index + count, tailLength);
+		this.fill(index, this.size, false);
+		this.write(index, tail, tailLength);
+		this.size -= count;
+	}
+
+	/**
+	 * Sets or clears every bit from <code>from</code> (inclusive) to <code>to</code>
+	 * (exclusive).
+	 */
+	void fill(int from, int to, boolean value) {
+		for (int i = from; i < to; i += 64) {
+			this.setBits(i, value ? -1L : 0L, Math.min(64, to - i));
+		}
+	}
+
+	/**
+	 * Copies <code>length</code> bits starting at <code>from</code> into a new array of
+	 * words.
+	 */
+	long[] extract(int from, int length) {
+		long[] ret = new long[wordCount(length)];
+		for (int j = 0; j < ret.length; j++) {
+			ret[j] = this.getBits(from + (j << 6));
+		}
+		int rem = length & 63;
+		if (rem != 0) ret[ret.length - 1] &= (1L << rem) - 1;
+		return ret;
+	}
+
+	/**
+	 * Copies <code>length</code> bits from an array of words into this bitmap, starting
+	 * at <code>index</code>.
+	 */
+	void write(int index, long[] src, int length) {
+		for (int j = 0; length > 0; j++, length -= 64) {
+			this.setBits(index + (j << 6), src[j], Math.min(64, length));
+		}
+	}
+
+	/**
+	 * Replaces the whole contents of the bitmap.
+	 * @param src Words holding the new bits; it is used directly rather than copied
+	 * @param length The number of bits
+	 */
+	void replace(long[] src, int length) {
+		this.words = (src.length == 0) ? new long[1] : src;
+		this.size = length;
+		this.cardinality = 0;
+		for (long w : src) {
+			this.cardinality += Long.bitCount(w);
+		}
+		this.dirtyBlock = 0;
+	}
+
+	/**
+	 * @return the number of set bits before <code>index</code>
+	 */
+	int rank(int index) {
+		this.updateDirectory();
+		int w = index >>> 6;
+		int b = w / BLOCK_WORDS;
+		int ret = this.blockRanks[b];
+		for (int i = b * BLOCK_WORDS; i < w; i++) {
+			ret += Long.bitCount(this.words[i]);
+		}
+		if ((index & 63) != 0) {
+			ret += Long.bitCount(this.words[w] & ((1L << index) - 1));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the index of the <code>k</code>-th set bit, counting from zero
+	 */
+	int select(int k) {
+		if (k < 0 || k >= this.cardinality) {
+			throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + this.cardinality);
+		}
+		this.updateDirectory();
+
+		// the last block which starts with at most k bits before it
+		int lo = 0;
+		int hi = this.blockCount() - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (this.blockRanks[mid] <= k) {
+				lo = mid;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+
+		int rem = k - this.blockRanks[lo];
+		for (int w = lo * BLOCK_WORDS; ; w++) {
+			long bits = this.words[w];
+			int c = Long.bitCount(bits);
+			if (rem < c) {
+				for (int i = 0; i < rem; i++) {
+					bits &= bits - 1;
+				}
+				return (w << 6) + Long.numberOfTrailingZeros(bits);
+			}
+			rem -= c;
+		}
+	}
+
+	/**
+	 * Direct access to the words, for bulk operations. Bits past {@link #size()} are zero.
+	 */
+	long[] words() {
+		return this.words;
+	}
+
+	private int blockCount() {
+		return (wordCount(this.size) + BLOCK_WORDS - 1) / BLOCK_WORDS + 1;
+	}
+
+	private void markDirty(int word) {
+		this.dirtyBlock = Math.min(this.dirtyBlock, word / BLOCK_WORDS + 1);
+	}
+
+	private void updateDirectory() {
+		int blocks = this.blockCount();
+		if (this.blockRanks.length < blocks) {
+			this.blockRanks = Arrays.copyOf(this.blockRanks, blocks * 3 / 2 + 1);
+		}
+		if (this.dirtyBlock >= blocks) return;
+
+		int b = Math.max(1, this.dirtyBlock);
+		int r = this.blockRanks[b - 1];
+		for (int w = (b - 1) * BLOCK_WORDS; b < blocks; w++) {
+			if (w < this.words.length) r += Long.bitCount(this.words[w]);
+			if ((w + 1) % BLOCK_WORDS == 0) {
+				this.blockRanks[b++] = r;
+			}
+		}
+		this.dirtyBlock = Integer.MAX_VALUE;
+	}
+
+	private void ensureCapacity(int bits) {
+		int needed = wordCount(bits) + 1;
+		if (needed > this.words.length) {
+			this.words = Arrays.copyOf(this.words, Math.max(needed, this.words.length * 3 / 2));
+		}
+	}
+}
@@ -0,0 +1,660 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * An index of the text in chosen columns of a table model, which finds the rows containing
+ * a string without reading the model. For each row, the index keeps the lower-case text of
+ * the indexed cells, and for every sequence of three characters (trigram) the list of rows
+ * whose text contains it. A search looks up the least common trigram of the search string
+ * and checks only the rows listed for it; strings shorter than a trigram are checked
+ * against the kept text of every row. Either way the result is exact, and the model is not
+ * consulted.
+ * </p>
+ * <p>
+ * The index listens to the model and keeps itself up to date with every insertion,
+ * deletion, update, {@link TableModelMoveEvent} and {@link TableModelPermutationEvent}.
+ * Row positions are kept in an order-statistic tree, so moves and deletions do not
+ * require the trigram lists to be rewritten. Instead, when a row's text changes or the row
+ * is removed, its entries are left in place, to be discarded by the next search which
+ * meets them; once such stale entries outnumber the live ones, the lists are rebuilt.
+ * </p>
+ * <p>
+ * Building the trigram lists for a large model, whether initially or to discard stale
+ * entries, is done by a {@link SwingWorker}. The model's text is read on the event
+ * dispatch thread beforehand, so the model is never touched by another thread. Until the
+ * first build finishes, searches check every row, and so still give correct results.
+ * Listeners registered with {@link #addChangeListener(ChangeListener)} are notified
+ * whenever search results may have changed.
+ * </p>
+ * <p>
+ * Like the table model it indexes, this class must only be used on the event dispatch
+ * thread.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class RowSearchIndex {
+	/**
+	 * Models with fewer rows than this are indexed immediately rather than in the
+	 * background.
+	 */
+	public static final int BACKGROUND_THRESHOLD = 1 << 14;
+	/**
+	 * Separates the text of neighbouring cells, so that a match cannot span two cells.
+	 */
+	private static final char CELL_SEPARATOR = '\u0000';
+	/**
+	 * Stale trigram entries are only cleared once there are at least this many.
+	 */
+	private static final int MIN_STALE_ENTRIES = 1 << 16;
+
+	private static final class Row {
+		final int id;
+		RankedTree.Node<Row> node;
+		String text;
+
+		Row(int id, String text) {
+			this.id = id;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * An open-addressed hash table from trigram to the list of ids of rows whose text
+	 * contains it. A list may name a row more than once, or name a row which no longer
+	 * contains the trigram.
+	 */
+	private static final class Postings {
+		private long[] keys = new long[1 << 12];
+		private int[][] ids = new int[1 << 12][];
+		private int[] counts = new int[1 << 12];
+		private int size = 0;
+		private long entries = 0;
+
+		private int slotOf(long key) {
+			int mask = this.keys.length - 1;
+			int slot = (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while (this.keys[slot] != 0 && this.keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * @return the slot holding the list for a trigram, or -1 if no row contains it
+		 */
+		int find(long key) {
+			int slot = this.slotOf(key);
+			return (this.keys[slot] == 0) ? -1 : slot;
+		}
+
+		int count(int slot) {
+			return this.counts[slot];
+		}
+
+		int[] ids(int slot) {
+			return this.ids[slot];
+		}
+
+		long entries() {
+			return this.entries;
+		}
+
+		void addRow(int id, String text) {
+			for (int i = 0; i + 3 <= text.length(); i++) {
+				long key = trigramKey(text, i);
+				if (key != 0) this.add(key, id);
+			}
+		}
+
+		private void add(long key, int id) {
+			int slot = this.slotOf(key);
+			if (this.keys[slot] == 0) {
+				this.keys[slot] = key;
+				this.ids[slot] = new int[2];
+				if (++this.size * 2 > this.keys.length) {
+					this.grow();
+					slot = this.slotOf(key);
+				}
+			}
+
+			int count = this.counts[slot];
+			int[] list = this.ids[slot];
+			// a row containing the trigram more than once only needs to be listed once
+			if (count > 0 && list[count - 1] == id) return;
+			if (count == list.length) {
+				list = Arrays.copyOf(list, count * 2);
+				this.ids[slot] = list;
+			}
+			list[count] = id;
+			this.counts[slot] = count + 1;
+			this.entries++;
+		}
+
+		private void grow() {
+			long[] oldKeys = this.keys;
+			int[][] oldIds = this.ids;
+			int[] oldCounts = this.counts;
+			this.keys = new long[oldKeys.length * 2];
+			this.ids = new int[oldKeys.length * 2][];
+			this.counts = new int[oldKeys.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == 0) continue;
+				int slot = this.slotOf(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.ids[slot] = oldIds[i];
+				this.counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	private TableModel model;
+	private final int[] columns;
+	private TableModelListener modelListener;
+	private EventListenerList listenerList = new EventListenerList();
+	private RankedTree<Row> tree = new RankedTree<>();
+	private Row[] rowsById = new Row[16];
+	private int[] freeIds = new int[16];
+	private int freeCount = 0;
+	private int nextId = 0;
+	private Postings postings = null;
+	/**
+	 * The number of trigram entries made stale since the current postings were built.
+	 */
+	private long staleEntries = 0;
+	/**
+	 * The running background build, if any, and the ids of rows whose text has changed
+	 * since it read the text it is indexing.
+	 */
+	private SwingWorker<Postings, Void> builder = null;
+	private int[] changedDuringBuild = new int[16];
+	private int changedDuringBuildCount = 0;
+	private int[] searchMarks = new int[16];
+	private int searchStamp = 0;
+
+	/**
+	 * Constructor. The index starts listening to the model immediately.
+	 * @param model The model whose text is to be indexed
+	 * @param columns Indices of the model columns to index. If none are given, every
+	 * column is indexed.
+	 */
+	public RowSearchIndex(TableModel model, int... columns) {
+		if (model == null) {
+			throw new NullPointerException("model must not be null");
+		}
+		this.model = model;
+		this.columns = columns.clone();
+		this.modelListener = new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				modelChanged(e);
+			}
+		};
+		this.rebuild();
+		this.model.addTableModelListener(this.modelListener);
+	}
+
+	/**
+	 * Stops this index from listening to its model and abandons any build in progress.
+	 * Once disposed, the index no longer reflects changes to the model and should not be
+	 * used.
+	 */
+	public void dispose() {
+		this.model.removeTableModelListener(this.modelListener);
+		if (this.builder != null) {
+			this.builder.cancel(false);
+			this.builder = null;
+		}
+	}
+
+	/**
+	 * Indexes another model in place of the current one, with the same columns. The
+	 * index stops listening to the old model and is rebuilt from the new one; its change
+	 * listeners are kept, and are notified.
+	 * @param model The model to index
+	 */
+	public void setModel(TableModel model) {
+		if (model == null) {
+			throw new NullPointerException("model must not be null");
+		}
+		if (model == this.model) return;
+
+		this.model.removeTableModelListener(this.modelListener);
+		this.model = model;
+		this.rebuild();
+		this.model.addTableModelListener(this.modelListener);
+		this.fireStateChanged();
+	}
+
+	/**
+	 * @return the model being indexed
+	 */
+	public TableModel getModel() {
+		return this.model;
+	}
+
+	/**
+	 * @return indices of the model columns being indexed; an empty array means every
+	 * column
+	 */
+	public int[] getColumns() {
+		return this.columns.clone();
+	}
+
+	/**
+	 * Tells whether a column of the model is indexed.
+	 * @param column Model column index
+	 * @return <code>true</code> if the text of the column is searched
+	 */
+	public boolean isIndexed(int column) {
+		if (this.columns.length == 0) return true;
+		for (int c : this.columns) {
+			if (c == column) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return <code>true</code> once the trigram lists have been built. Searches are
+	 * correct either way, but before then they check every row.
+	 */
+	public boolean isReady() {
+		return this.postings != null;
+	}
+
+	/**
+	 * Finds the rows whose indexed text contains a string. Case is ignored. Text from
+	 * different cells of a row is searched separately, so a match never spans two
+	 * cells.
+	 * @param query The string to search for
+	 * @return The indices of the model rows containing <code>query</code>, in increasing
+	 * order. If <code>query</code> is empty, no rows are returned.
+	 */
+	public int[] find(String query) {
+		if (query == null || query.isEmpty()) return new int[0];
+		String q = query.toLowerCase(Locale.ROOT);
+
+		if (this.postings == null || q.length() < 3) {
+			return this.findByScanning(q);
+		}
+
+		// the least common trigram of the query gives the fewest rows to check
+		int best = -1;
+		for (int i = 0; i + 3 <= q.length(); i++) {
+			long key = trigramKey(q, i);
+			if (key == 0) continue;
+			int slot = this.postings.find(key);
+			if (slot == -1) return new int[0];
+			if (best == -1 || this.postings.count(slot) < this.postings.count(best)) {
+				best = slot;
+			}
+		}
+		if (best == -1) return this.findByScanning(q);
+
+		int stamp = this.nextSearchStamp();
+		int[] ids = this.postings.ids(best);
+		int count = this.postings.count(best);
+		int[] ret = new int[Math.min(count, this.tree.size())];
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			int id = ids[i];
+			if (this.searchMarks[id] == stamp) continue;
+			this.searchMarks[id] = stamp;
+
+			Row row = this.rowsById[id];
+			if (row != null && row.text.contains(q)) {
+				ret[found++] = this.tree.rankOf(row.node);
+			}
+		}
+		ret = Arrays.copyOf(ret, found);
+		Arrays.sort(ret);
+		return ret;
+	}
+
+	/**
+	 * Tells whether the indexed text of one row contains a string, without reading the
+	 * model.
+	 * @param row Index of the model row
+	 * @param query The string to search for; case is ignored
+	 * @return <code>true</code> if the row contains <code>query</code>
+	 */
+	public boolean rowContains(int row, String query) {
+		if (query == null || query.isEmpty()) return false;
+		return this.tree.get(row).getValue().text.contains(query.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Adds a listener which is notified whenever the results of a search may have
+	 * changed: after the index has processed a change to the model, and when a background
+	 * build completes.
+	 * @param l The listener to add
+	 */
+	public void addChangeListener(ChangeListener l) {
+		this.listenerList.add(ChangeListener.class, l);
+	}
+
+	/**
+	 * Removes a previously-added change listener.
+	 * @param l The listener to remove
+	 */
+	public void removeChangeListener(ChangeListener l) {
+		this.listenerList.remove(ChangeListener.class, l);
+	}
+
+	private void fireStateChanged() {
+		ChangeEvent ev = new ChangeEvent(this);
+		for (ChangeListener l : this.listenerList.getListeners(ChangeListener.class)) {
+			l.stateChanged(ev);
+		}
+	}
+
+	private int[] findByScanning(String q) {
+		int[] ret = new int[16];
+		int found = 0;
+		int index = 0;
+		RankedTree.Node<Row> node = this.tree.first();
+		for (; node != null; node = this.tree.successor(node), index++) {
+			if (!node.getValue().text.contains(q)) continue;
+			if (found == ret.length) ret = Arrays.copyOf(ret, found * 2);
+			ret[found++] = index;
+		}
+		return Arrays.copyOf(ret, found);
+	}
+
+	private int nextSearchStamp() {
+		if (this.searchMarks.length < this.rowsById.length) {
+			this.searchMarks = new int[this.rowsById.length];
+			this.searchStamp = 0;
+		}
+		if (++this.searchStamp == 0) {
+			Arrays.fill(this.searchMarks, 0);
+			this.searchStamp = 1;
+		}
+		return this.searchStamp;
+	}
+
+	/**
+	 * Packs three characters of a string into a non-zero key, or returns zero if they
+	 * span a cell boundary.
+	 */
+	private static long trigramKey(String s, int index) {
+		char c0 = s.charAt(index);
+		char c1 = s.charAt(index + 1);
+		char c2 = s.charAt(index + 2);
+		if (c0 == CELL_SEPARATOR || c1 == CELL_SEPARATOR || c2 == CELL_SEPARATOR) return 0;
+		return (1L << 48) | ((long)c0 << 32) | ((long)c1 << 16) | c2;
+	}
+
+	private static int entryCount(String text) {
+		return Math.max(0, text.length() - 2);
+	}
+
+	private String textOf(int row) {
+		StringBuilder sb = new StringBuilder();
+		if (this.columns.length == 0) {
+			for (int c = 0; c < this.model.getColumnCount(); c++) {
+				this.appendCell(sb, row, c);
+			}
+		}
+		else {
+			for (int c : this.columns) {
+				this.appendCell(sb, row, c);
+			}
+		}
+		return sb.toString().toLowerCase(Locale.ROOT);
+	}
+
+	private void appendCell(StringBuilder sb, int row, int column) {
+		if (sb.length() > 0) sb.append(CELL_SEPARATOR);
+		Object value = this.model.getValueAt(row, column);
+		if (value != null) sb.append(value);
+	}
+
+	private Row newRow(String text) {
+		int id;
+		if (this.freeCount > 0) {
+			id = this.freeIds[--this.freeCount];
+		}
+		else {
+			id = this.nextId++;
+			if (id == this.rowsById.length) {
+				this.rowsById = Arrays.copyOf(this.rowsById, id * 2);
+			}
+		}
+		Row row = new Row(id, text);
+		this.rowsById[id] = row;
+		this.textChanged(row);
+		return row;
+	}
+
+	private void retire(Row row) {
+		this.rowsById[row.id] = null;
+		this.staleEntries += entryCount(row.text);
+		if (this.freeCount == this.freeIds.length) {
+			this.freeIds = Arrays.copyOf(this.freeIds, this.freeCount * 2);
+		}
+		this.freeIds[this.freeCount++] = row.id;
+	}
+
+	/**
+	 * Lists a row under the trigrams of its current text, and remembers to do the same in
+	 * the lists being built, which were started from older text.
+	 */
+	private void textChanged(Row row) {
+		if (this.postings != null) this.postings.addRow(row.id, row.text);
+		if (this.builder != null) {
+			if (this.changedDuringBuildCount == this.changedDuringBuild.length) {
+				this.changedDuringBuild = Arrays.copyOf(this.changedDuringBuild,
+						this.changedDuringBuildCount * 2);
+			}
+			this.changedDuringBuild[this.changedDuringBuildCount++] = row.id;
+		}
+	}
+
+	/**
+	 * Reads the text of every row of the model and starts indexing it afresh.
+	 */
+	private void rebuild() {
+		if (this.builder != null) {
+			this.builder.cancel(false);
+			this.builder = null;
+		}
+		this.tree.clear();
+		this.rowsById = new Row[Math.max(16, this.model.getRowCount())];
+		this.freeCount = 0;
+		this.nextId = 0;
+		this.postings = null;
+		this.staleEntries = 0;
+
+		ArrayList<Row> rows = new ArrayList<>(this.model.getRowCount());
+		for (int i = 0; i < this.model.getRowCount(); i++) {
+			rows.add(this.newRow(this.textOf(i)));
+		}
+		List<RankedTree.Node<Row>> nodes = this.tree.build(rows);
+		for (RankedTree.Node<Row> node : nodes) {
+			node.getValue().node = node;
+		}
+		this.buildPostings();
+	}
+
+	/**
+	 * Builds trigram lists for the current text of every row, in the background if there
+	 * are many rows. The current lists, if any, remain in use until the new ones are
+	 * ready.
+	 */
+	private void buildPostings() {
+		final String[] texts = new String[this.nextId];
+		for (int id = 0; id < texts.length; id++) {
+			Row row = this.rowsById[id];
+			if (row != null) texts[id] = row.text;
+		}
+
+		if (this.tree.size() < BACKGROUND_THRESHOLD) {
+			this.postings = indexTexts(texts);
+			this.staleEntries = 0;
+			return;
+		}
+
+		this.changedDuringBuildCount = 0;
+		this.builder = new SwingWorker<Postings, Void>() {
+			@Override
+			protected Postings doInBackground() throws Exception {
+				return indexTexts(texts);
+			}
+
+			@Override
+			protected void done() {
+				if (builder != this || this.isCancelled()) return;
+				builder = null;
+				try {
+					installPostings(this.get());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException e) {
+					throw new IllegalStateException("Indexing failed", e.getCause());
+				}
+			}
+		};
+		this.builder.execute();
+	}
+
+	private static Postings indexTexts(String[] texts) {
+		Postings ret = new Postings();
+		for (int id = 0; id < texts.length; id++) {
+			if (texts[id] != null) ret.addRow(id, texts[id]);
+		}
+		return ret;
+	}
+
+	private void installPostings(Postings p) {
+		this.postings = p;
+		this.staleEntries = 0;
+		for (int i = 0; i < this.changedDuringBuildCount; i++) {
+			Row row = this.rowsById[this.changedDuringBuild[i]];
+			if (row == null) continue;
+			this.postings.addRow(row.id, row.text);
+			this.staleEntries += entryCount(row.text);
+		}
+		this.changedDuringBuildCount = 0;
+		this.fireStateChanged();
+	}
+
+	private void modelChanged(TableModelEvent e) {
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+				e.getLastRow() == Integer.MAX_VALUE) {
+			this.rebuild();
+		}
+		else if (e instanceof TableModelMoveEvent) {
+			this.rowsMoved((TableModelMoveEvent)e);
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			this.rowsPermuted((TableModelPermutationEvent)e);
+		}
+		else if (e.getType() == TableModelEvent.INSERT) {
+			this.rowsInserted(e.getFirstRow(), e.getLastRow());
+		}
+		else if (e.getType() == TableModelEvent.DELETE) {
+			this.rowsDeleted(e.getFirstRow(), e.getLastRow());
+		}
+		else {
+			this.rowsUpdated(e.getFirstRow(), e.getLastRow(), e.getColumn());
+		}
+
+		if (this.tree.size() != this.model.getRowCount()) {
+			// the model described its change inaccurately; start over
+			this.rebuild();
+		}
+		else if (this.postings != null && this.builder == null &&
+				this.staleEntries >= MIN_STALE_ENTRIES &&
+				this.staleEntries > this.postings.entries() - this.staleEntries) {
+			this.buildPostings();
+		}
+		this.fireStateChanged();
+	}
+
+	private void rowsInserted(int first, int last) {
+		for (int i = first; i <= last; i++) {
+			Row row = this.newRow(this.textOf(i));
+			row.node = this.tree.insertAt(i, row, 1);
+		}
+	}
+
+	private void rowsDeleted(int first, int last) {
+		for (int i = last; i >= first; i--) {
+			RankedTree.Node<Row> node = this.tree.get(i);
+			this.tree.remove(node);
+			this.retire(node.getValue());
+		}
+	}
+
+	private void rowsUpdated(int first, int last, int column) {
+		if (column != TableModelEvent.ALL_COLUMNS && !this.isIndexed(column)) return;
+
+		last = Math.min(last, this.tree.size() - 1);
+		if (first > last) return;
+		RankedTree.Node<Row> node = this.tree.get(first);
+		for (int i = first; i <= last; i++, node = this.tree.successor(node)) {
+			Row row = node.getValue();
+			String text = this.textOf(i);
+			if (text.equals(row.text)) continue;
+
+			this.staleEntries += entryCount(row.text);
+			row.text = text;
+			this.textChanged(row);
+		}
+	}
+
+	private void rowsMoved(TableModelMoveEvent e) {
+		int from = e.getMoveSource();
+		int count = e.getMoveLength();
+		int to = e.getMoveDestination();
+		if (from == to || count == 0) return;
+
+		ArrayList<Row> block = new ArrayList<>(count);
+		RankedTree.Node<Row> node = this.tree.get(from);
+		for (int i = 0; i < count; i++, node = this.tree.successor(node)) {
+			block.add(node.getValue());
+		}
+		for (Row row : block) {
+			this.tree.remove(row.node);
+		}
+		for (int i = 0; i < count; i++) {
+			Row row = block.get(i);
+			row.node = this.tree.insertAt(to + i, row, 1);
+		}
+	}
+
+	private void rowsPermuted(TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		ArrayList<Row> rows = new ArrayList<>(this.tree.size());
+		RankedTree.Node<Row> node = this.tree.first();
+		for (; node != null; node = this.tree.successor(node)) {
+			rows.add(node.getValue());
+		}
+
+		ArrayList<Row> permuted = new ArrayList<>(rows);
+		for (int i = first; i <= e.getLastRow(); i++) {
+			permuted.set(i, rows.get(e.getOldIndex(i)));
+		}
+		List<RankedTree.Node<Row>> nodes = this.tree.build(permuted);
+		for (RankedTree.Node<Row> n : nodes) {
+			n.getValue().node = n;
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * Saves lists of records, such as the contents of an {@link ArrayListWithTableModel}, in
+ * a compact binary format, and reads them back. Only the records are saved, converted by
+ * a {@link RecordCodec}; unlike Java serialization of the list, nothing else which
+ * happens to be reachable from it is saved with it. A list can be saved on a background
+ * thread while it goes on being changed by passing
+ * {@link ArrayListWithTableModel#snapshot()} to {@link #write}.
+ * </p>
+ * <p>
+ * Files are written and read through NIO channels, in a single pass. A file can also be
+ * opened with {@link #map(FileChannel, RecordCodec)}, which maps it into memory and
+ * decodes each record only when it is first asked for, so that a large file can be shown
+ * almost at once.
+ * </p>
+ * <p>
+ * A file consists of a header, the records, an index of where each record (or, in
+ * column layout, each field of each record) begins, and a footer giving the position of
+ * the index. All numbers are big-endian.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public final class SnapshotFile {
+	/**
+	 * How the fields of the records are arranged in a file.
+	 */
+	public enum Layout {
+		/**
+		 * The fields of each record are kept together, record after record.
+		 */
+		ROWS,
+		/**
+		 * Each field of every record is kept together, field after field.
+		 */
+		COLUMNS
+	}
+
+	private static final int MAGIC = 0x52585453;
+	private static final short VERSION = 1;
+	private static final int HEADER_BYTES = 15;
+	private static final int FOOTER_BYTES = 12;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private SnapshotFile() {
+	}
+
+	/**
+	 * Writes a list of records to a channel. The channel is not closed.
+	 * @param records The records to write. The list must not be changed while it is
+	 * written; pass a {@link ListSnapshot} to write a list which may be.
+	 * @param codec Converts the records to bytes
+	 * @param layout How to arrange the fields of the records
+	 * @param channel Where to write the records
+	 * @throws IOException if the records cannot be written
+	 */
+	public static <T> void write(List<? extends T> records, RecordCodec<T> codec,
+			Layout layout, WritableByteChannel channel) throws IOException {
+		int rows = records.size();
+		int fields = codec.getFieldCount();
+		int streams = (layout == Layout.ROWS) ? 1 : fields;
+		if ((long)rows * streams > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many fields to index: " + rows +
+					" records of " + fields + " fields");
+		}
+
+		ChannelOutput counter = new ChannelOutput(channel);
+		DataOutputStream out = new DataOutputStream(counter);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeByte(layout.ordinal());
+		out.writeInt(fields);
+		out.writeInt(rows);
+
+		long[] offsets = new long[rows * streams];
+		int next = 0;
+		if (layout == Layout.ROWS) {
+			for (T record : records) {
+				offsets[next++] = counter.getPosition();
+				for (int f = 0; f < fields; f++) {
+					codec.write(record, f, out);
+				}
+			}
+		}
+		else {
+			for (int f = 0; f < fields; f++) {
+				for (T record : records) {
+					offsets[next++] = counter.getPosition();
+					codec.write(record, f, out);
+				}
+			}
+		}
+		if (next != offsets.length) {
+			throw new IllegalStateException("The records were changed while being written");
+		}
+
+		long indexPosition = counter.getPosition();
+		for (long offset : offsets) {
+			out.writeLong(offset);
+		}
+		out.writeLong(indexPosition);
+		out.writeInt(MAGIC);
+		out.flush();
+	}
+
+	/**
+	 * Reads the records from a channel and adds them to a collection with a single
+	 * <code>addAll</code>, so that an {@link ArrayListWithTableModel} reports them with a
+	 * single {@link javax.swing.event.TableModelEvent#INSERT}. The channel is read from
+	 * its current position and is not closed. A file in row layout is decoded as it is
+	 * read; a file in column layout is decoded a field at a time, so the fields of all of
+	 * the records are held until the last field has been read.
+	 * @param channel The channel from which to read the records
+	 * @param codec Converts the bytes to records
+	 * @param target The collection to which the records are added
+	 * @return the number of records read
+	 * @throws IOException if the records cannot be read, or were not written with
+	 * {@link #write} or by a codec with the same number of fields
+	 */
+	public static <T> int read(ReadableByteChannel channel, RecordCodec<T> codec,
+			Collection<? super T> target) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel), BUFFER_SIZE));
+		if (in.readInt() != MAGIC) throw new IOException("Not a snapshot file");
+		short version = in.readShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot file version " + version);
+		}
+		Layout layout = layoutOf(in.readByte());
+		int fields = checkFieldCount(in.readInt(), codec);
+		int rows = in.readInt();
+
+		ArrayList<T> records = new ArrayList<>(rows);
+		if (layout == Layout.ROWS) {
+			for (int r = 0; r < rows; r++) {
+				Object[] values = new Object[fields];
+				for (int f = 0; f < fields; f++) {
+					values[f] = codec.read(f, in);
+				}
+				records.add(codec.assemble(values));
+			}
+		}
+		else {
+			Object[][] values = new Object[rows][fields];
+			for (int f = 0; f < fields; f++) {
+				for (int r = 0; r < rows; r++) {
+					values[r][f] = codec.read(f, in);
+				}
+			}
+			for (int r = 0; r < rows; r++) {
+				records.add(codec.assemble(values[r]));
+				values[r] = null;
+			}
+		}
+		target.addAll(records);
+		return rows;
+	}
+
+	/**
+	 * Maps a file written by {@link #write} into memory and returns a list of its
+	 * records which decodes each record only when it is asked for. Opening the file
+	 * therefore takes constant time however many records it holds. The file must be no
+	 * larger than 2 GB, and must not be changed while the list is in use.
+	 * @param channel The file to map. It may be closed once this function returns.
+	 * @param codec Converts the bytes to records
+	 * @return a list of the records in the file
+	 * @throws IOException if the file cannot be mapped, or was not written with
+	 * {@link #write} or by a codec with the same number of fields
+	 */
+	public static <T> MappedRecordList<T> map(FileChannel channel, RecordCodec<T> codec)
+			throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot file is too large to map: " + size + " bytes");
+		}
+		if (size < HEADER_BYTES + FOOTER_BYTES) throw new IOException("Not a snapshot file");
+
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		if (buffer.getInt(0) != MAGIC || buffer.getInt((int)size - 4) != MAGIC) {
+			throw new IOException("Not a snapshot file");
+		}
+		short version = buffer.getShort(4);
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot file version " + version);
+		}
+		Layout layout = layoutOf(buffer.get(6));
+		int fields = checkFieldCount(buffer.getInt(7), codec);
+		int rows = buffer.getInt(11);
+		long indexPosition = buffer.getLong((int)size - FOOTER_BYTES);
+		long streams = (layout == Layout.ROWS) ? 1 : fields;
+		if (indexPosition < HEADER_BYTES ||
+				indexPosition + 8 * streams * rows != size - FOOTER_BYTES) {
+			throw new IOException("Snapshot file is damaged");
+		}
+		return new MappedRecordList<>(buffer, codec, layout, fields, rows, (int)indexPosition);
+	}
+
+	private static Layout layoutOf(byte ordinal) throws IOException {
+		Layout[] layouts = Layout.values();
+		if (ordinal < 0 || ordinal >= layouts.length) {
+			throw new IOException("Unknown snapshot file layout " + ordinal);
+		}
+		return layouts[ordinal];
+	}
+
+	private static int checkFieldCount(int fields, RecordCodec<?> codec) throws IOException {
+		if (fields != codec.getFieldCount()) {
+			throw new IOException("Snapshot file has " + fields + " fields per record; " +
+					"codec expects " + codec.getFieldCount());
+		}
+		return fields;
+	}
+
+	/**
+	 * Buffers output for a channel and counts the bytes written, as DataOutputStream
+	 * only counts up to 2 GB.
+	 */
+	private static final class ChannelOutput extends OutputStream {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long flushed = 0;
+
+		ChannelOutput(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		long getPosition() {
+			return this.flushed + this.buffer.position();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!this.buffer.hasRemaining()) this.flush();
+			this.buffer.put((byte)b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (!this.buffer.hasRemaining()) this.flush();
+				int n = Math.min(len, this.buffer.remaining());
+				this.buffer.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.buffer.flip();
+			while (this.buffer.hasRemaining()) {
+				this.flushed += this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads a buffer from a given position, without changing the buffer's own position
+	 * so that any number of threads can read it at once.
+	 */
+	static final class BufferInput extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInput(ByteBuffer buffer, int position) {
+			this.buffer = buffer.duplicate();
+			this.buffer.position(position);
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? (this.buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!this.buffer.hasRemaining()) return -1;
+
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			int k = (int)Math.max(0, Math.min(n, this.buffer.remaining()));
+			this.buffer.position(this.buffer.position() + k);
+			return k;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,558 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * A view of another table model which presents its rows sorted, filtered, or both. Unlike
+ * a {@link javax.swing.table.TableRowSorter}, which sorts the whole model again whenever
+ * many kinds of event arrive, this view keeps its rows in a pair of order-statistic trees
+ * and applies each inserted, deleted, updated or moved source row in O(log n). Row indices
+ * are translated between the view and the source in O(log n) as well.
+ * </p>
+ * <p>
+ * Sorting is configured the same way as for a RowSorter, with
+ * {@link #setSortKeys(List)} and {@link #setComparator(int, Comparator)}, and filtering
+ * with {@link #setRowFilter(RowFilter)}, whose entries identify each row by its index in
+ * the source model. Rows which compare as equal are presented in the order in which they
+ * entered the view; a full sort (as caused by changing the sort keys) puts them in source
+ * order again.
+ * </p>
+ * <p>
+ * While the view is not sorted, it preserves the order of the source, and so it can be
+ * reordered. Moves of view rows are translated to moves of the corresponding source rows,
+ * which requires the source to implement {@link CollectionReorderable}; moves in the source
+ * reach listeners of this view as {@link TableModelMoveEvent}s, and rearrangements as
+ * {@link TableModelPermutationEvent}s. A view can therefore be
+ * used as the model of a {@link com.gmail.at.kevinburnseit.rxtable.RxTableWithMovableRecordControls}
+ * in place of the list it presents.
+ * </p>
+ * <p>
+ * The view listens to its source for as long as it exists. Call {@link #dispose()} to
+ * detach it once it is no longer needed.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class SortedFilteredTableModel extends AbstractTableModelView {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 3049136553264158512L;
+
+	/**
+	 * The view's record of one source row.
+	 */
+	private static final class Row {
+		/**
+		 * The row's node in the tree of all source rows, in source order. Its weight is 1
+		 * if the row is presented by the view and 0 if it is filtered out.
+		 */
+		RankedTree.Node<Row> sourceNode;
+		/**
+		 * The row's node in the tree of presented rows, in sorted order; <code>null</code>
+		 * if the view is not sorted or the row is filtered out.
+		 */
+		RankedTree.Node<Row> viewNode;
+		/**
+		 * The values of the sort columns, in sort key order, when the row was last sorted.
+		 */
+		Object[] keys;
+		/**
+		 * Breaks ties between rows whose keys compare as equal.
+		 */
+		long sequence;
+
+		Row(long sequence) {
+			this.sequence = sequence;
+		}
+	}
+
+	private class FilterEntry extends RowFilter.Entry<TableModel, Integer> {
+		int row;
+
+		@Override
+		public TableModel getModel() {
+			return getSourceModel();
+		}
+
+		@Override
+		public int getValueCount() {
+			return getSourceModel().getColumnCount();
+		}
+
+		@Override
+		public Object getValue(int index) {
+			return getSourceModel().getValueAt(this.row, index);
+		}
+
+		@Override
+		public Integer getIdentifier() {
+			return this.row;
+		}
+	}
+
+	private RankedTree<Row> sourceTree = new RankedTree<>();
+	private RankedTree<Row> viewTree = new RankedTree<>();
+	private List<? extends RowSorter.SortKey> sortKeys = Collections.emptyList();
+	private HashMap<Integer, Comparator<?>> comparators = new HashMap<>();
+	private RowFilter<? super TableModel, ? super Integer> filter = null;
+	private FilterEntry filterEntry = new FilterEntry();
+	private long nextSequence = 0;
+	private Comparator<Row> rowComparator = new Comparator<Row>() {
+		@Override
+		public int compare(Row a, Row b) {
+			return compareRows(a, b);
+		}
+	};
+
+	/**
+	 * Constructor. The new view is unsorted and unfiltered.
+	 * @param source The model whose rows are to be presented
+	 */
+	public SortedFilteredTableModel(TableModel source) {
+		super(source);
+		this.rebuild();
+	}
+
+	/**
+	 * Sets the columns by which the view is sorted, most significant first. Keys whose
+	 * order is {@link SortOrder#UNSORTED} are ignored. An empty list or <code>null</code>
+	 * leaves the view unsorted, in source order. Changing the sort keys sorts the whole
+	 * view and reports it to listeners as a change to all of the data.
+	 * @param keys The new sort keys
+	 * @throws IndexOutOfBoundsException if a key names a column not in the source model
+	 */
+	public void setSortKeys(List<? extends RowSorter.SortKey> keys) {
+		List<RowSorter.SortKey> newKeys = new ArrayList<>();
+		if (keys != null) {
+			for (RowSorter.SortKey key : keys) {
+				if (key.getColumn() < 0 || key.getColumn() >= this.getSourceModel().getColumnCount()) {
+					throw new IndexOutOfBoundsException("Invalid sort column: " +
+							key.getColumn());
+				}
+				if (key.getSortOrder() != SortOrder.UNSORTED) newKeys.add(key);
+			}
+		}
+		if (newKeys.equals(this.sortKeys)) return;
+
+		this.sortKeys = Collections.unmodifiableList(newKeys);
+		this.resort();
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * @return the current sort keys, which are never <code>null</code>
+	 */
+	public List<? extends RowSorter.SortKey> getSortKeys() {
+		return this.sortKeys;
+	}
+
+	/**
+	 * Sets the comparator used to sort a column. Without one, values which are mutually
+	 * Comparable are compared naturally, and others by their string representations.
+	 * Null values sort before all others.
+	 * @param column Source model column
+	 * @param comparator The comparator, or <code>null</code> to use the default
+	 */
+	public void setComparator(int column, Comparator<?> comparator) {
+		if (comparator == null) {
+			this.comparators.remove(column);
+		}
+		else {
+			this.comparators.put(column, comparator);
+		}
+		if (this.isSorted()) {
+			this.resort();
+			this.fireTableDataChanged();
+		}
+	}
+
+	/**
+	 * @param column Source model column
+	 * @return the comparator set for the column, or <code>null</code> if the default is used
+	 */
+	public Comparator<?> getComparator(int column) {
+		return this.comparators.get(column);
+	}
+
+	/**
+	 * Sets the filter which decides which source rows are presented. The identifier of
+	 * each entry passed to the filter is the row's index in the source model. Changing the
+	 * filter is reported to listeners as a change to all of the data.
+	 * @param filter The filter, or <code>null</code> to present every row
+	 */
+	public void setRowFilter(RowFilter<? super TableModel, ? super Integer> filter) {
+		this.filter = filter;
+		this.rebuild();
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * @return the current filter, or <code>null</code> if every row is presented
+	 */
+	public RowFilter<? super TableModel, ? super Integer> getRowFilter() {
+		return this.filter;
+	}
+
+	/**
+	 * @return <code>true</code> if the view currently has sort keys
+	 */
+	public boolean isSorted() {
+		return !this.sortKeys.isEmpty();
+	}
+
+	@Override
+	public boolean isOrderPreserving() {
+		return !this.isSorted();
+	}
+
+	@Override
+	public int convertRowIndexToSource(int viewRow) {
+		return this.sourceTree.rankOf(this.getRow(viewRow).sourceNode);
+	}
+
+	@Override
+	public int convertRowIndexToView(int sourceRow) {
+		Row row = this.sourceTree.get(sourceRow).getValue();
+		if (!this.isPresented(row)) return -1;
+		return this.viewIndexOf(row);
+	}
+
+	private Row getRow(int viewRow) {
+		if (this.isSorted()) {
+			return this.viewTree.get(viewRow).getValue();
+		}
+		return this.sourceTree.getWeighted(viewRow).getValue();
+	}
+
+	private boolean isPresented(Row row) {
+		return row.sourceNode.getWeight() == 1;
+	}
+
+	private int viewIndexOf(Row row) {
+		if (this.isSorted()) {
+			return this.viewTree.rankOf(row.viewNode);
+		}
+		return this.sourceTree.weightedRankOf(row.sourceNode);
+	}
+
+	/**
+	 * Returns the view index a row which is not presented would have if it were.
+	 */
+	private int prospectiveViewIndexOf(Row row) {
+		if (this.isSorted()) {
+			return this.viewTree.insertionRank(row, this.rowComparator);
+		}
+		return this.sourceTree.weightedRankOf(row.sourceNode);
+	}
+
+	@Override
+	public int getRowCount() {
+		return this.sourceTree.weightSum();
+	}
+
+	@Override
+	protected void sourceChanged(TableModelEvent e) {
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+			this.sortKeys = Collections.emptyList();
+			this.rebuild();
+			this.fireTableStructureChanged();
+			return;
+		}
+		if (e.getLastRow() == Integer.MAX_VALUE) {
+			this.rebuild();
+			this.fireTableDataChanged();
+			return;
+		}
+
+		if (e instanceof TableModelMoveEvent) {
+			this.sourceRowsMoved((TableModelMoveEvent)e);
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			this.sourceRowsPermuted((TableModelPermutationEvent)e);
+		}
+		else if (e.getType() == TableModelEvent.INSERT) {
+			this.sourceRowsInserted(e.getFirstRow(), e.getLastRow());
+		}
+		else if (e.getType() == TableModelEvent.DELETE) {
+			this.sourceRowsDeleted(e.getFirstRow(), e.getLastRow());
+		}
+		else {
+			this.sourceRowsUpdated(e.getFirstRow(), e.getLastRow(), e.getColumn());
+		}
+		this.flushPendingEvent();
+
+		if (this.sourceTree.size() != this.getSourceModel().getRowCount()) {
+			// the source described its change inaccurately; start over
+			this.rebuild();
+			this.fireTableDataChanged();
+		}
+	}
+
+	private void sourceRowsInserted(int first, int last) {
+		for (int i = first; i <= last; i++) {
+			Row row = new Row(this.nextSequence++);
+			row.sourceNode = this.sourceTree.insertAt(i, row, 0);
+			if (!this.include(i)) continue;
+
+			if (this.isSorted()) row.keys = this.extractKeys(i);
+			this.queueInsert(this.prospectiveViewIndexOf(row));
+			this.present(row);
+		}
+	}
+
+	private void sourceRowsDeleted(int first, int last) {
+		for (int i = last; i >= first; i--) {
+			RankedTree.Node<Row> node = this.sourceTree.get(i);
+			Row row = node.getValue();
+			if (this.isPresented(row)) {
+				this.queueDelete(this.viewIndexOf(row));
+				this.withdraw(row);
+			}
+			this.sourceTree.remove(node);
+		}
+	}
+
+	private void sourceRowsUpdated(int first, int last, int column) {
+		RankedTree.Node<Row> node = this.sourceTree.get(first);
+		for (int i = first; i <= last; i++, node = this.sourceTree.successor(node)) {
+			Row row = node.getValue();
+			boolean wasPresented = this.isPresented(row);
+			boolean presented = this.include(i);
+
+			if (wasPresented && !presented) {
+				this.queueDelete(this.viewIndexOf(row));
+				this.withdraw(row);
+			}
+			else if (presented && !wasPresented) {
+				if (this.isSorted()) row.keys = this.extractKeys(i);
+				this.queueInsert(this.prospectiveViewIndexOf(row));
+				this.present(row);
+			}
+			else if (presented) {
+				int viewIndex = this.viewIndexOf(row);
+				if (this.isSorted()) {
+					row.keys = this.extractKeys(i);
+					if (!this.isInOrder(row)) {
+						this.flushPendingEvent();
+						this.viewTree.remove(row.viewNode);
+						row.viewNode = this.viewTree.insert(row, this.rowComparator);
+						int newIndex = this.viewIndexOf(row);
+						if (newIndex != viewIndex) {
+							this.fireTableChanged(
+									new TableModelMoveEvent(this, viewIndex, 1, newIndex));
+							continue;
+						}
+					}
+				}
+				this.queueUpdate(viewIndex, column);
+			}
+		}
+	}
+
+	private void sourceRowsMoved(TableModelMoveEvent e) {
+		int from = e.getMoveSource();
+		int count = e.getMoveLength();
+		int to = e.getMoveDestination();
+		if (from == to || count == 0) return;
+
+		ArrayList<Row> block = new ArrayList<>(count);
+		RankedTree.Node<Row> node = this.sourceTree.get(from);
+		int viewFrom = this.sourceTree.weightedRankOf(node);
+		int presentedCount = 0;
+		for (int i = 0; i < count; i++) {
+			Row row = node.getValue();
+			block.add(row);
+			if (this.isPresented(row)) presentedCount++;
+			node = this.sourceTree.successor(node);
+		}
+		for (Row row : block) {
+			this.sourceTree.remove(row.sourceNode);
+		}
+		for (int i = 0; i < count; i++) {
+			Row row = block.get(i);
+			row.sourceNode = this.sourceTree.insertAt(to + i, row,
+					row.sourceNode.getWeight());
+		}
+
+		// a sorted view is not affected by the order of its source
+		if (this.isSorted() || presentedCount == 0) return;
+		int viewTo = this.sourceTree.weightedRankOf(block.get(0).sourceNode);
+		if (viewTo != viewFrom) {
+			this.fireTableChanged(new TableModelMoveEvent(this, viewFrom, presentedCount,
+					viewTo));
+		}
+	}
+
+	private void sourceRowsPermuted(TableModelPermutationEvent e) {
+		int first = e.getFirstRow();
+		int count = e.getLastRow() - first + 1;
+		ArrayList<Row> rows = new ArrayList<>(this.sourceTree.size());
+		RankedTree.Node<Row> node = this.sourceTree.first();
+		for (; node != null; node = this.sourceTree.successor(node)) {
+			rows.add(node.getValue());
+		}
+
+		int viewFirst = this.sourceTree.weightedRankOf(rows.get(first).sourceNode);
+		int[] oldViewIndices = new int[count];
+		int presentedCount = 0;
+		for (int i = 0; i < count; i++) {
+			oldViewIndices[i] = this.isPresented(rows.get(first + i)) ?
+					viewFirst + presentedCount++ : -1;
+		}
+
+		// the tree is rebuilt, which is quicker than moving every row of a large range
+		ArrayList<Row> permuted = new ArrayList<>(rows);
+		for (int i = 0; i < count; i++) {
+			permuted.set(first + i, rows.get(e.getOldIndex(first + i)));
+		}
+		int[] weights = new int[permuted.size()];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = permuted.get(i).sourceNode.getWeight();
+		}
+		List<RankedTree.Node<Row>> nodes = this.sourceTree.build(permuted, weights);
+		for (int i = 0; i < nodes.size(); i++) {
+			permuted.get(i).sourceNode = nodes.get(i);
+		}
+
+		// a sorted view is not affected by the order of its source
+		if (this.isSorted() || presentedCount == 0) return;
+		int[] viewOldIndices = new int[presentedCount];
+		int n = 0;
+		boolean changed = false;
+		for (int i = 0; i < count; i++) {
+			int old = oldViewIndices[e.getOldIndex(first + i) - first];
+			if (old == -1) continue;
+			viewOldIndices[n] = old;
+			changed = changed || (old != viewFirst + n);
+			n++;
+		}
+		if (changed) {
+			this.fireTableChanged(new TableModelPermutationEvent(this, viewFirst,
+					viewOldIndices));
+		}
+	}
+
+	/**
+	 * Discards everything known about the source and reads it again.
+	 */
+	private void rebuild() {
+		int count = this.getSourceModel().getRowCount();
+		ArrayList<Row> rows = new ArrayList<>(count);
+		int[] weights = new int[count];
+		for (int i = 0; i < count; i++) {
+			rows.add(new Row(i));
+			weights[i] = this.include(i) ? 1 : 0;
+		}
+
+		List<RankedTree.Node<Row>> nodes = this.sourceTree.build(rows, weights);
+		for (int i = 0; i < count; i++) {
+			rows.get(i).sourceNode = nodes.get(i);
+		}
+		this.resort();
+	}
+
+	/**
+	 * Sorts all presented rows again from scratch.
+	 */
+	private void resort() {
+		this.viewTree.clear();
+		ArrayList<Row> presented = new ArrayList<>(this.sourceTree.weightSum());
+		RankedTree.Node<Row> node = this.sourceTree.first();
+		for (int i = 0; node != null; i++, node = this.sourceTree.successor(node)) {
+			Row row = node.getValue();
+			row.sequence = i;
+			row.viewNode = null;
+			row.keys = null;
+			if (this.isSorted() && this.isPresented(row)) {
+				row.keys = this.extractKeys(i);
+				presented.add(row);
+			}
+		}
+		this.nextSequence = this.sourceTree.size();
+		if (!this.isSorted()) return;
+
+		Collections.sort(presented, this.rowComparator);
+		List<RankedTree.Node<Row>> nodes = this.viewTree.build(presented);
+		for (int i = 0; i < presented.size(); i++) {
+			presented.get(i).viewNode = nodes.get(i);
+		}
+	}
+
+	private void present(Row row) {
+		this.sourceTree.setWeight(row.sourceNode, 1);
+		if (this.isSorted()) {
+			row.viewNode = this.viewTree.insert(row, this.rowComparator);
+		}
+	}
+
+	private void withdraw(Row row) {
+		this.sourceTree.setWeight(row.sourceNode, 0);
+		if (row.viewNode != null) {
+			this.viewTree.remove(row.viewNode);
+			row.viewNode = null;
+		}
+	}
+
+	private boolean include(int sourceRow) {
+		if (this.filter == null) return true;
+
+		this.filterEntry.row = sourceRow;
+		return this.filter.include(this.filterEntry);
+	}
+
+	private Object[] extractKeys(int sourceRow) {
+		Object[] ret = new Object[this.sortKeys.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = this.getSourceModel().getValueAt(sourceRow, this.sortKeys.get(i).getColumn());
+		}
+		return ret;
+	}
+
+	/**
+	 * Checks whether a row in the sorted tree is still correctly placed relative to its
+	 * neighbours, after its keys have been extracted again.
+	 */
+	private boolean isInOrder(Row row) {
+		RankedTree.Node<Row> prev = this.viewTree.predecessor(row.viewNode);
+		if (prev != null && this.compareRows(prev.getValue(), row) > 0) return false;
+		RankedTree.Node<Row> next = this.viewTree.successor(row.viewNode);
+		if (next != null && this.compareRows(row, next.getValue()) > 0) return false;
+		return true;
+	}
+
+	private int compareRows(Row a, Row b) {
+		for (int i = 0; i < this.sortKeys.size(); i++) {
+			RowSorter.SortKey key = this.sortKeys.get(i);
+			int c = this.compareValues(key.getColumn(), a.keys[i], b.keys[i]);
+			if (c != 0) {
+				return (key.getSortOrder() == SortOrder.DESCENDING) ? -c : c;
+			}
+		}
+		return (a.sequence < b.sequence) ? -1 : ((a.sequence == b.sequence) ? 0 : 1);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compareValues(int column, Object a, Object b) {
+		if (a == null) return (b == null) ? 0 : -1;
+		if (b == null) return 1;
+
+		Comparator<Object> c = (Comparator<Object>)this.comparators.get(column);
+		if (c != null) return c.compare(a, b);
+		if (a instanceof Comparable && a.getClass().isInstance(b)) {
+			return ((Comparable)a).compareTo(b);
+		}
+		return a.toString().compareTo(b.toString());
+	}
+}
@@ -0,0 +1,63 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * A TableModelEvent which describes a block of rows being moved to a new position in a
+ * {@link CollectionReorderable} table model. To listeners which are not aware of this
+ * class, the event looks like an ordinary {@link TableModelEvent#UPDATE} covering every row
+ * whose index changed, so they will simply repaint those rows. Listeners which are aware of
+ * it can use {@link #getMoveSource()}, {@link #getMoveDestination()} and
+ * {@link #getMoveLength()} to carry row-related state (such as the selection) along with
+ * the data, rather than having the move appear as a deletion followed by an insertion.
+ * @author Kevin J. Burns
+ *
+ */
+public class TableModelMoveEvent extends TableModelEvent {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -2497710853391203215L;
+	private int moveSource;
+	private int moveDestination;
+	private int moveLength;
+
+	/**
+	 * Constructor.
+	 * @param source The table model in which the rows were moved
+	 * @param moveSource Index of the first moved row, before the move
+	 * @param moveLength Number of rows moved
+	 * @param moveDestination Index of the first moved row, after the move
+	 */
+	public TableModelMoveEvent(TableModel source, int moveSource, int moveLength,
+			int moveDestination) {
+		super(source, Math.min(moveSource, moveDestination),
+				Math.max(moveSource, moveDestination) + moveLength - 1,
+				TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE);
+		this.moveSource = moveSource;
+		this.moveLength = moveLength;
+		this.moveDestination = moveDestination;
+	}
+
+	/**
+	 * @return the index of the first moved row, before the move took place
+	 */
+	public int getMoveSource() {
+		return moveSource;
+	}
+
+	/**
+	 * @return the index of the first moved row, after the move took place
+	 */
+	public int getMoveDestination() {
+		return moveDestination;
+	}
+
+	/**
+	 * @return the number of rows which were moved as a block
+	 */
+	public int getMoveLength() {
+		return moveLength;
+	}
+}
@@ -0,0 +1,69 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * A TableModelEvent which describes the rows of a range being rearranged among
+ * themselves, as happens when a table model is sorted. To listeners which are not aware
+ * of this class, the event looks like an ordinary {@link TableModelEvent#UPDATE} of the
+ * range, so they will simply repaint it. Listeners which are aware of it can use
+ * {@link #getOldIndex(int)} and {@link #getNewIndex(int)} to carry row-related state,
+ * such as the selection, along with the rows.
+ * @author Kevin J. Burns
+ *
+ */
+public class TableModelPermutationEvent extends TableModelEvent {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 7705186014000911623L;
+	private int[] oldIndices;
+	private int[] newIndices = null;
+
+	/**
+	 * Constructor.
+	 * @param source The table model whose rows were rearranged
+	 * @param firstRow Index of the first row of the rearranged range
+	 * @param oldIndices For each row of the range, in order, the index that row had
+	 * before the rearrangement. The array is kept by the event, not copied.
+	 */
+	public TableModelPermutationEvent(TableModel source, int firstRow, int[] oldIndices) {
+		super(source, firstRow, firstRow + oldIndices.length - 1,
+				TableModelEvent.ALL_COLUMNS, TableModelEvent.UPDATE);
+		this.oldIndices = oldIndices;
+	}
+
+	/**
+	 * @param newIndex Index of a row within the range, after the rearrangement
+	 * @return the index the same row had before the rearrangement
+	 */
+	public int getOldIndex(int newIndex) {
+		return this.oldIndices[newIndex - this.getFirstRow()];
+	}
+
+	/**
+	 * @param oldIndex Index of a row within the range, before the rearrangement
+	 * @return the index the same row has after the rearrangement
+	 */
+	public int getNewIndex(int oldIndex) {
+		return this.getNewIndices()[oldIndex - this.getFirstRow()];
+	}
+
+	/**
+	 * Returns, for each row of the range in its order before the rearrangement, the index
+	 * the row has after it. The array is shared; do not modify it.
+	 * @return the new indices
+	 */
+	public int[] getNewIndices() {
+		if (this.newIndices == null) {
+			int first = this.getFirstRow();
+			int[] ret = new int[this.oldIndices.length];
+			for (int i = 0; i < ret.length; i++) {
+				ret[this.oldIndices[i] - first] = first + i;
+			}
+			this.newIndices = ret;
+		}
+		return this.newIndices;
+	}
+}
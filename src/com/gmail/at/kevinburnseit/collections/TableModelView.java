@@ -0,0 +1,40 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import javax.swing.table.TableModel;
+
+/**
+ * A table model which presents the rows of another table model, possibly omitting some of
+ * them or presenting them in a different order. Row indices of the view and of its source
+ * are different things; use {@link #convertRowIndexToSource(int)} and
+ * {@link #convertRowIndexToView(int)} to translate between them.
+ * @author Kevin J. Burns
+ *
+ */
+public interface TableModelView extends TableModel {
+	/**
+	 * @return the model whose rows this view presents
+	 */
+	TableModel getSourceModel();
+	/**
+	 * Translates a row index of this view to the index of the same row in the source model.
+	 * @param viewRow Row index in this view
+	 * @return The corresponding row index in the source model
+	 * @throws IndexOutOfBoundsException if <code>viewRow</code> is not a row of this view
+	 */
+	int convertRowIndexToSource(int viewRow);
+	/**
+	 * Translates a row index of the source model to the index of the same row in this view.
+	 * @param sourceRow Row index in the source model
+	 * @return The corresponding row index in this view, or -1 if the row is not presented
+	 * by this view
+	 * @throws IndexOutOfBoundsException if <code>sourceRow</code> is not a row of the
+	 * source model
+	 */
+	int convertRowIndexToView(int sourceRow);
+	/**
+	 * Reports whether the rows of this view appear in the same relative order as they do in
+	 * the source model. Only then does moving a row of the view have a meaning.
+	 * @return <code>true</code> if the view preserves the order of the source model
+	 */
+	boolean isOrderPreserving();
+}
@@ -0,0 +1,27 @@
+package com.gmail.at.kevinburnseit.collections;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Holds the fork-join pool shared by the parallel operations of this package. The pool is
+ * created the first time it is needed, and its threads are daemons, so it never keeps the
+ * application alive.
+ * @author Kevin J. Burns
+ *
+ */
+final class WorkerPool {
+	private static class Holder {
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+
+	private WorkerPool() {
+		// not instantiable
+	}
+
+	/**
+	 * @return the shared pool
+	 */
+	static ForkJoinPool get() {
+		return Holder.POOL;
+	}
+}
@@ -0,0 +1,408 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.RowSorter;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
+import javax.swing.table.AbstractTableModel;
+
+import com.gmail.at.kevinburnseit.collections.Aggregate;
+import com.gmail.at.kevinburnseit.collections.ColumnAggregator;
+import com.gmail.at.kevinburnseit.collections.TableModelView;
+
+/**
+ * <p>
+ * A single-row table, shown under another table, which displays the sum, average,
+ * minimum, maximum or count of the numbers in chosen columns of that table. The footer
+ * shares the other table's column model, so its cells stay lined up with the columns
+ * however they are resized or rearranged.
+ * </p>
+ * <p>
+ * The figures come from a {@link ColumnAggregator}, which keeps them up to date in
+ * O(log n) as rows are inserted, deleted and updated, and which is not affected by rows
+ * being moved. They can cover either every row the table displays, or only the selected
+ * rows; see {@link #setScope(Scope)}. Selected rows are aggregated a run of consecutive
+ * rows at a time, which is fastest with a {@link ReorderTrackingSelectionModel}.
+ * </p>
+ * <p>
+ * Rows can be filtered either by the table's model, if it is a {@link TableModelView},
+ * or by the table's RowSorter. A filtering model is preferred: the footer then simply
+ * aggregates the rows the model presents. Rows hidden by a RowSorter are instead found by
+ * checking every row whenever the sorter changes.
+ * </p>
+ * <p>
+ * {@link RxTableWithMovableRecordControls#getAggregateFooter()} creates a footer and
+ * places it under the widget's table.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class AggregateFooter extends JTable {
+	/**
+	 * The figures which a footer can show for a column.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public enum Function {
+		/**
+		 * The sum of the numbers in the column
+		 */
+		SUM,
+		/**
+		 * The mean of the numbers in the column
+		 */
+		AVERAGE,
+		/**
+		 * The least number in the column
+		 */
+		MIN,
+		/**
+		 * The greatest number in the column
+		 */
+		MAX,
+		/**
+		 * How many cells of the column hold numbers
+		 */
+		COUNT;
+	}
+
+	/**
+	 * The rows which a footer aggregates.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public enum Scope {
+		/**
+		 * Every row displayed by the table
+		 */
+		VISIBLE_ROWS,
+		/**
+		 * The rows selected in the table
+		 */
+		SELECTED_ROWS;
+	}
+
+	private class FooterModel extends AbstractTableModel {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 2261906458227314021L;
+
+		@Override
+		public int getRowCount() {
+			return 1;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return table.getModel().getColumnCount();
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			return (functions.get(column) == Function.COUNT) ? Integer.class : Double.class;
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			return valueFor(column);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2940473659818522593L;
+
+	private final JTable table;
+	private FooterModel footerModel = new FooterModel();
+	private HashMap<Integer, Function> functions = new HashMap<>();
+	private Scope scope = Scope.VISIBLE_ROWS;
+	private ColumnAggregator aggregator = null;
+	/**
+	 * <code>true</code> if the rows hidden by the table's RowSorter must be found again.
+	 */
+	private boolean inclusionDirty = false;
+	/**
+	 * <code>true</code> if the aggregator has been told that some rows are hidden.
+	 */
+	private boolean excluding = false;
+	private RowSorter<?> sorter = null;
+	private ListSelectionModel selectionModel = null;
+	private ChangeListener aggregatorListener;
+	private RowSorterListener sorterListener;
+	private ListSelectionListener selectionListener;
+	private PropertyChangeListener tableListener;
+
+	/**
+	 * Constructor. The footer starts following the table immediately. It must be
+	 * displayed by the caller, below the table.
+	 * @param table The table whose columns are to be aggregated
+	 */
+	public AggregateFooter(JTable table) {
+		super();
+		this.table = table;
+		this.setAutoCreateColumnsFromModel(false);
+		this.setModel(this.footerModel);
+		this.setColumnModel(table.getColumnModel());
+		// the table lays out the shared columns; the footer must not fight it
+		this.setAutoResizeMode(AUTO_RESIZE_OFF);
+		this.setFocusable(false);
+		this.setRowSelectionAllowed(false);
+		this.setRowHeight(table.getRowHeight());
+
+		this.aggregatorListener = new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				if (sorter != null) inclusionDirty = true;
+				footerModel.fireTableRowsUpdated(0, 0);
+			}
+		};
+		this.sorterListener = new RowSorterListener() {
+			@Override
+			public void sorterChanged(RowSorterEvent e) {
+				inclusionDirty = true;
+				footerModel.fireTableRowsUpdated(0, 0);
+			}
+		};
+		this.selectionListener = new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				if (scope == Scope.SELECTED_ROWS && !e.getValueIsAdjusting()) {
+					footerModel.fireTableRowsUpdated(0, 0);
+				}
+			}
+		};
+		this.tableListener = new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent e) {
+				String name = e.getPropertyName();
+				if ("model".equals(name)) {
+					createAggregator();
+					footerModel.fireTableStructureChanged();
+				}
+				else if ("rowSorter".equals(name)) {
+					followSorter();
+				}
+				else if ("selectionModel".equals(name)) {
+					followSelectionModel();
+				}
+				else if ("columnModel".equals(name)) {
+					setColumnModel(AggregateFooter.this.table.getColumnModel());
+				}
+			}
+		};
+		this.table.addPropertyChangeListener(this.tableListener);
+		this.followSorter();
+		this.followSelectionModel();
+	}
+
+	/**
+	 * Stops the footer from following its table.
+	 */
+	public void dispose() {
+		this.table.removePropertyChangeListener(this.tableListener);
+		if (this.aggregator != null) {
+			this.aggregator.removeChangeListener(this.aggregatorListener);
+			this.aggregator.dispose();
+			this.aggregator = null;
+		}
+		if (this.sorter != null) this.sorter.removeRowSorterListener(this.sorterListener);
+		if (this.selectionModel != null) {
+			this.selectionModel.removeListSelectionListener(this.selectionListener);
+		}
+	}
+
+	/**
+	 * @return the table whose columns are aggregated
+	 */
+	public JTable getTable() {
+		return this.table;
+	}
+
+	/**
+	 * Chooses the figure shown under a column.
+	 * @param column Index of the column in the table's model
+	 * @param function The figure to show, or <code>null</code> to leave the cell under the
+	 * column empty
+	 */
+	public void setFunction(int column, Function function) {
+		boolean wasAggregated = this.functions.containsKey(column);
+		if (function == null) {
+			this.functions.remove(column);
+		}
+		else {
+			this.functions.put(column, function);
+		}
+		if (wasAggregated != (function != null)) this.createAggregator();
+		this.footerModel.fireTableStructureChanged();
+	}
+
+	/**
+	 * @param column Index of the column in the table's model
+	 * @return the figure shown under the column, or <code>null</code> if there is none
+	 */
+	public Function getFunction(int column) {
+		return this.functions.get(column);
+	}
+
+	/**
+	 * @return the rows which are aggregated
+	 */
+	public Scope getScope() {
+		return this.scope;
+	}
+
+	/**
+	 * Chooses the rows which are aggregated.
+	 * @param scope The rows to aggregate
+	 */
+	public void setScope(Scope scope) {
+		this.scope = scope;
+		this.footerModel.fireTableRowsUpdated(0, 0);
+	}
+
+	/**
+	 * Returns the aggregate shown under a column, over the rows chosen by the scope.
+	 * @param column Index of the column in the table's model
+	 * @return the aggregate, or <code>null</code> if no figure is shown under the column
+	 */
+	public Aggregate getAggregate(int column) {
+		if (this.aggregator == null || !this.functions.containsKey(column)) return null;
+		if (this.aggregator.getRowCount() != this.table.getModel().getRowCount()) {
+			// the table has been told of a change which the aggregator has not
+			return Aggregate.EMPTY;
+		}
+
+		this.updateInclusion();
+		if (this.scope == Scope.VISIBLE_ROWS) {
+			return this.aggregator.getTotal(column);
+		}
+		return this.selectedAggregate(column);
+	}
+
+	private Object valueFor(int column) {
+		Aggregate a = this.getAggregate(column);
+		if (a == null) return null;
+
+		switch (this.functions.get(column)) {
+		case SUM:
+			return a.getSum();
+		case AVERAGE:
+			return (a.getCount() == 0) ? null : a.getAverage();
+		case MIN:
+			return (a.getCount() == 0) ? null : a.getMin();
+		case MAX:
+			return (a.getCount() == 0) ? null : a.getMax();
+		case COUNT:
+			return a.getCount();
+		default:
+			return null;
+		}
+	}
+
+	private Aggregate selectedAggregate(int column) {
+		ListSelectionModel sm = this.table.getSelectionModel();
+		Aggregate ret = Aggregate.EMPTY;
+		if (sm.isSelectionEmpty()) return ret;
+
+		if (this.table.getRowSorter() != null) {
+			// the selected rows need not be consecutive in the model
+			for (int i = sm.getMinSelectionIndex(); i <= sm.getMaxSelectionIndex(); i++) {
+				if (!sm.isSelectedIndex(i)) continue;
+				int row = this.table.convertRowIndexToModel(i);
+				ret = ret.combine(this.aggregator.getAggregate(column, row, row));
+			}
+			return ret;
+		}
+
+		if (sm instanceof ReorderTrackingSelectionModel) {
+			ReorderTrackingSelectionModel rtsm = (ReorderTrackingSelectionModel)sm;
+			for (int i = 0; i < rtsm.getSelectedIntervalCount(); i++) {
+				ret = ret.combine(this.aggregator.getAggregate(column,
+						rtsm.getSelectedIntervalStart(i), rtsm.getSelectedIntervalEnd(i)));
+			}
+			return ret;
+		}
+
+		int runStart = -1;
+		int max = sm.getMaxSelectionIndex();
+		for (int i = sm.getMinSelectionIndex(); i <= max + 1; i++) {
+			boolean selected = (i <= max) && sm.isSelectedIndex(i);
+			if (selected && runStart == -1) {
+				runStart = i;
+			}
+			else if (!selected && runStart != -1) {
+				ret = ret.combine(this.aggregator.getAggregate(column, runStart, i - 1));
+				runStart = -1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Tells the aggregator which rows are hidden by the table's RowSorter, if that may
+	 * have changed.
+	 */
+	private void updateInclusion() {
+		if (!this.inclusionDirty) return;
+		this.inclusionDirty = false;
+
+		int rows = this.aggregator.getRowCount();
+		boolean filtering = (this.sorter != null && this.sorter.getViewRowCount() != rows);
+		if (!filtering && !this.excluding) return;
+
+		for (int i = 0; i < rows; i++) {
+			boolean included = !filtering || this.sorter.convertRowIndexToView(i) >= 0;
+			this.aggregator.setIncluded(i, included);
+		}
+		this.excluding = filtering;
+	}
+
+	private void createAggregator() {
+		if (this.aggregator != null) {
+			this.aggregator.removeChangeListener(this.aggregatorListener);
+			this.aggregator.dispose();
+			this.aggregator = null;
+		}
+		this.excluding = false;
+		this.inclusionDirty = true;
+		if (this.functions.isEmpty() || this.table.getModel() == null) return;
+
+		int[] columns = new int[this.functions.size()];
+		int i = 0;
+		for (int c : this.functions.keySet()) {
+			columns[i++] = c;
+		}
+		this.aggregator = new ColumnAggregator(this.table.getModel(), columns);
+		this.aggregator.addChangeListener(this.aggregatorListener);
+	}
+
+	private void followSorter() {
+		if (this.sorter != null) this.sorter.removeRowSorterListener(this.sorterListener);
+		this.sorter = this.table.getRowSorter();
+		if (this.sorter != null) this.sorter.addRowSorterListener(this.sorterListener);
+		this.inclusionDirty = true;
+		this.footerModel.fireTableRowsUpdated(0, 0);
+	}
+
+	private void followSelectionModel() {
+		if (this.selectionModel != null) {
+			this.selectionModel.removeListSelectionListener(this.selectionListener);
+		}
+		this.selectionModel = this.table.getSelectionModel();
+		if (this.selectionModel != null) {
+			this.selectionModel.addListSelectionListener(this.selectionListener);
+		}
+		this.footerModel.fireTableRowsUpdated(0, 0);
+	}
+}
@@ -0,0 +1,412 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.Component;
+import java.awt.FontMetrics;
+import java.awt.Insets;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JLabel;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * Sizes the columns of a table to fit their contents, from a sample of the rows rather
+ * than all of them. Used by {@link RXTable#setColumnAutoSizing(boolean)} and
+ * {@link RXTable#autoSizeColumns()}.
+ * </p>
+ * <p>
+ * The sample is the first and last few rows, some rows chosen at random, and, for each
+ * column, the rows whose values are the longest as text among a larger number of rows
+ * whose values are looked at but not rendered. The renderers are called for the sampled
+ * rows on the event dispatch thread. A renderer which is a JLabel showing plain text and
+ * no icon is not asked for its size; its text and font are noted instead, and the text
+ * is measured on a background thread, through a cache of the widths of the texts most
+ * recently measured in each font. Other renderers are measured as they are.
+ * </p>
+ * <p>
+ * When installed, the sizer listens to the table's model. Rows which are added or
+ * changed are sampled in the same way, and columns are widened, but never narrowed, to
+ * fit them. Replacing all of the data or the columns sizes the columns afresh.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+final class ColumnAutoSizer implements TableModelListener, PropertyChangeListener {
+	/**
+	 * The number of rows sampled from each end of the rows being measured.
+	 */
+	private static final int END_ROWS = 20;
+	/**
+	 * The number of rows sampled at random.
+	 */
+	private static final int RANDOM_ROWS = 60;
+	/**
+	 * The number of rows with the longest values sampled for each column.
+	 */
+	private static final int LONGEST_ROWS = 20;
+	/**
+	 * The number of rows whose values are looked at to find the longest.
+	 */
+	private static final int CANDIDATE_ROWS = 2000;
+	/**
+	 * The number of widths kept for each font.
+	 */
+	private static final int CACHE_SIZE = 4096;
+	/**
+	 * The number of fonts for which widths are kept.
+	 */
+	private static final int CACHE_FONTS = 16;
+
+	/**
+	 * The width of a text in a font, to be measured off the event dispatch thread.
+	 */
+	private static final class TextCell {
+		final TableColumn column;
+		final FontMetrics metrics;
+		final String text;
+		final int insets;
+
+		TextCell(TableColumn column, FontMetrics metrics, String text, int insets) {
+			this.column = column;
+			this.metrics = metrics;
+			this.text = text;
+			this.insets = insets;
+		}
+	}
+
+	private final JTable table;
+	private final Random random = new Random();
+	/**
+	 * Widths of texts by font, least recently used first. Used only by a worker, while
+	 * holding its lock, so that workers measure one at a time.
+	 */
+	private final Map<FontMetrics, LinkedHashMap<String, Integer>> widthCache =
+			new HashMap<>();
+	private TableModel model = null;
+	private boolean installed = false;
+	/**
+	 * Counts the times all of the columns were sized afresh, so that widths measured
+	 * before then are not applied.
+	 */
+	private int generation = 0;
+	private boolean scheduled = false;
+	private boolean allRowsPending = false;
+	private int firstPendingRow = Integer.MAX_VALUE;
+	private int lastPendingRow = -1;
+
+	ColumnAutoSizer(JTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Sizes the columns, and then goes on sizing them as the table's model changes.
+	 */
+	void install() {
+		if (this.installed) return;
+
+		this.installed = true;
+		this.table.addPropertyChangeListener("model", this);
+		this.listenTo(this.table.getModel());
+		this.sizeAllColumns();
+	}
+
+	/**
+	 * Stops sizing the columns as the table's model changes. Widths which are still being
+	 * measured are not applied.
+	 */
+	void uninstall() {
+		if (!this.installed) return;
+
+		this.installed = false;
+		this.table.removePropertyChangeListener("model", this);
+		this.listenTo(null);
+		this.generation++;
+		this.allRowsPending = false;
+		this.firstPendingRow = Integer.MAX_VALUE;
+		this.lastPendingRow = -1;
+	}
+
+	/**
+	 * Sizes all of the columns afresh, from a sample of all of the rows.
+	 */
+	void sizeAllColumns() {
+		this.allRowsPending = true;
+		this.schedule();
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		this.listenTo(this.table.getModel());
+		this.sizeAllColumns();
+	}
+
+	@Override
+	public void tableChanged(TableModelEvent e) {
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+				e.getLastRow() == Integer.MAX_VALUE) {
+			this.sizeAllColumns();
+			return;
+		}
+		if (e.getType() == TableModelEvent.DELETE) return;
+
+		this.firstPendingRow = Math.min(this.firstPendingRow, e.getFirstRow());
+		this.lastPendingRow = Math.max(this.lastPendingRow, e.getLastRow());
+		this.schedule();
+	}
+
+	private void listenTo(TableModel model) {
+		if (this.model != null) this.model.removeTableModelListener(this);
+		this.model = model;
+		if (this.model != null) this.model.addTableModelListener(this);
+	}
+
+	/**
+	 * Measures the pending rows once the table has caught up with the change to its
+	 * model, as it may hear of the change after this sizer does.
+	 */
+	private void schedule() {
+		if (this.scheduled) return;
+
+		this.scheduled = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				ColumnAutoSizer.this.scheduled = false;
+				ColumnAutoSizer.this.measurePending();
+			}
+		});
+	}
+
+	private void measurePending() {
+		TableModel model = this.table.getModel();
+		int rowCount = (model == null) ? 0 : model.getRowCount();
+		boolean allRows = this.allRowsPending;
+		int first = allRows ? 0 : this.firstPendingRow;
+		int last = allRows ? rowCount - 1 : Math.min(this.lastPendingRow, rowCount - 1);
+		this.allRowsPending = false;
+		this.firstPendingRow = Integer.MAX_VALUE;
+		this.lastPendingRow = -1;
+		if (allRows) this.generation++;
+		if (model == null || (!allRows && first > last)) return;
+
+		Map<TableColumn, Integer> widths = new IdentityHashMap<>();
+		List<TextCell> texts = new ArrayList<>();
+		int[] rows = (first > last) ? new int[0] : this.chooseRows(first, last);
+		TableColumnModel tcm = this.table.getColumnModel();
+		for (int c = 0; c < tcm.getColumnCount(); c++) {
+			TableColumn column = tcm.getColumn(c);
+			int width = allRows ? this.measureHeader(column, c) : 0;
+			int[] longest = this.findLongest(model, column.getModelIndex(), first, last);
+			width = Math.max(width, this.measureRows(column, c, rows, texts));
+			width = Math.max(width, this.measureRows(column, c, longest, texts));
+			widths.put(column, width);
+		}
+		new Measurement(this, this.generation, allRows, widths, texts).execute();
+	}
+
+	/**
+	 * Chooses the rows which every column samples: all of the rows if they are few,
+	 * and otherwise those at the ends and some at random.
+	 * @return model indices of rows, without duplicates
+	 */
+	private int[] chooseRows(int first, int last) {
+		int count = last - first + 1;
+		if (count <= 2 * END_ROWS + RANDOM_ROWS) {
+			int[] ret = new int[count];
+			for (int i = 0; i < count; i++) {
+				ret[i] = first + i;
+			}
+			return ret;
+		}
+
+		BitSet chosen = new BitSet();
+		for (int i = 0; i < END_ROWS; i++) {
+			chosen.set(i);
+			chosen.set(count - 1 - i);
+		}
+		for (int i = 0; i < RANDOM_ROWS; i++) {
+			chosen.set(this.random.nextInt(count));
+		}
+		int[] ret = new int[chosen.cardinality()];
+		int next = 0;
+		for (int i = chosen.nextSetBit(0); i >= 0; i = chosen.nextSetBit(i + 1)) {
+			ret[next++] = first + i;
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds the rows whose values in a column are the longest as text, among evenly
+	 * spaced rows if there are too many to look at all of them.
+	 * @return model indices of rows
+	 */
+	private int[] findLongest(TableModel model, int modelColumn, int first, int last) {
+		int count = last - first + 1;
+		if (count <= 2 * END_ROWS + RANDOM_ROWS) return new int[0];
+
+		// the shortest of the longest found so far is at the head; each entry holds the
+		// length above the row
+		PriorityQueue<Long> longest = new PriorityQueue<>(LONGEST_ROWS + 1);
+		double step = Math.max(1.0, (double)count / CANDIDATE_ROWS);
+		for (double d = 0; d < count; d += step) {
+			int row = first + (int)d;
+			Object value = model.getValueAt(row, modelColumn);
+			int length = (value == null) ? 0 : value.toString().length();
+			longest.add(((long)length << 32) | row);
+			if (longest.size() > LONGEST_ROWS) longest.poll();
+		}
+
+		int[] ret = new int[longest.size()];
+		int next = 0;
+		for (Long entry : longest) {
+			ret[next++] = (int)entry.longValue();
+		}
+		return ret;
+	}
+
+	/**
+	 * Renders a column's cells in some rows. Cells which are plain text in a JLabel are
+	 * added to <code>texts</code> to be measured later; the others are measured now.
+	 * @return the width of the widest cell measured now
+	 */
+	private int measureRows(TableColumn column, int viewColumn, int[] modelRows,
+			List<TextCell> texts) {
+		int width = 0;
+		for (int modelRow : modelRows) {
+			int row = this.table.convertRowIndexToView(modelRow);
+			if (row == -1) continue;
+
+			TableCellRenderer renderer = this.table.getCellRenderer(row, viewColumn);
+			Component c = this.table.prepareRenderer(renderer, row, viewColumn);
+			if (c instanceof JLabel) {
+				JLabel label = (JLabel)c;
+				String text = label.getText();
+				if (label.getIcon() == null && !BasicHTML.isHTMLString(text)) {
+					Insets insets = label.getInsets();
+					texts.add(new TextCell(column, label.getFontMetrics(label.getFont()),
+							(text == null) ? "" : text, insets.left + insets.right));
+					continue;
+				}
+			}
+			width = Math.max(width, c.getPreferredSize().width);
+		}
+		return width;
+	}
+
+	private int measureHeader(TableColumn column, int viewColumn) {
+		JTableHeader header = this.table.getTableHeader();
+		TableCellRenderer renderer = column.getHeaderRenderer();
+		if (renderer == null) {
+			if (header == null) return 0;
+			renderer = header.getDefaultRenderer();
+		}
+		Component c = renderer.getTableCellRendererComponent(this.table,
+				column.getHeaderValue(), false, false, -1, viewColumn);
+		return c.getPreferredSize().width;
+	}
+
+	/**
+	 * Measures the texts on a background thread, then widens or sizes the columns.
+	 */
+	private static final class Measurement
+			extends SwingWorker<Map<TableColumn, Integer>, Void> {
+		private final ColumnAutoSizer sizer;
+		private final int generation;
+		private final boolean allRows;
+		private final Map<TableColumn, Integer> widths;
+		private final List<TextCell> texts;
+
+		Measurement(ColumnAutoSizer sizer, int generation, boolean allRows,
+				Map<TableColumn, Integer> widths, List<TextCell> texts) {
+			this.sizer = sizer;
+			this.generation = generation;
+			this.allRows = allRows;
+			this.widths = widths;
+			this.texts = texts;
+		}
+
+		@Override
+		protected Map<TableColumn, Integer> doInBackground() throws Exception {
+			Map<FontMetrics, LinkedHashMap<String, Integer>> cache = this.sizer.widthCache;
+			synchronized (cache) {
+				for (TextCell cell : this.texts) {
+					LinkedHashMap<String, Integer> fontCache = cache.get(cell.metrics);
+					if (fontCache == null) {
+						if (cache.size() >= CACHE_FONTS) cache.clear();
+						fontCache = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+							/**
+							 *
+							 */
+							private static final long serialVersionUID =
+									3190672250436381127L;
+
+							@Override
+							protected boolean removeEldestEntry(
+									Map.Entry<String, Integer> eldest) {
+								return this.size() > CACHE_SIZE;
+							}
+						};
+						cache.put(cell.metrics, fontCache);
+					}
+					Integer textWidth = fontCache.get(cell.text);
+					if (textWidth == null) {
+						textWidth = cell.metrics.stringWidth(cell.text);
+						fontCache.put(cell.text, textWidth);
+					}
+
+					int width = cell.insets + textWidth;
+					Integer widest = this.widths.get(cell.column);
+					if (widest == null || widest < width) this.widths.put(cell.column, width);
+				}
+			}
+			return this.widths;
+		}
+
+		@Override
+		protected void done() {
+			Map<TableColumn, Integer> widths;
+			try {
+				widths = this.get();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException ex) {
+				throw new IllegalStateException("Sizing columns failed", ex.getCause());
+			}
+			if (this.generation != this.sizer.generation) return;
+
+			int spacing = this.sizer.table.getIntercellSpacing().width;
+			for (Map.Entry<TableColumn, Integer> e : widths.entrySet()) {
+				TableColumn column = e.getKey();
+				int width = Math.max(column.getMinWidth(),
+						Math.min(column.getMaxWidth(), e.getValue() + spacing));
+				if (this.allRows || width > column.getPreferredWidth()) {
+					column.setPreferredWidth(width);
+				}
+			}
+		}
+	}
+}
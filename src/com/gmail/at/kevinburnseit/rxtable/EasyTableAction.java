@@ -134,6 +134,24 @@ public abstract class EasyTableAction extends AbstractAction {
 		this.setEnabled(this.shouldBeEnabledGeneral());
 	}
 
+	/**
+	 * Adds a check which must also pass for this action to be enabled. The check is
+	 * consulted the next time {@link #checkEnabled()} is called.
+	 * @param check The check to add, made with
+	 * <code>action.new SupplementalEnabledCheck() {...}</code>
+	 */
+	public final void addSupplementalEnabledCheck(SupplementalEnabledCheck check) {
+		this.supplementalEnabledChecks.add(check);
+	}
+
+	/**
+	 * Removes a check added by {@link #addSupplementalEnabledCheck(SupplementalEnabledCheck)}.
+	 * @param check The check to remove
+	 */
+	public final void removeSupplementalEnabledCheck(SupplementalEnabledCheck check) {
+		this.supplementalEnabledChecks.remove(check);
+	}
+
 	private final boolean shouldBeEnabledGeneral() {
 		boolean result = this.shouldBeEnabled();
 		
@@ -0,0 +1,509 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.swing.ListSelectionModel;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.table.DefaultTableColumnModel;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableModel;
+
+/**
+ * <p>
+ * A column model for very wide tables, which creates the TableColumn for a column of the
+ * table model only when the column is first asked for. Until then, the column is held as
+ * no more than its model index, and is taken to have the width of a new TableColumn and
+ * the table model's name for the column as its identifier. A table which shows a few of
+ * a model's thousands of columns therefore creates the TableColumns for only the columns
+ * it has shown. Positions and widths are kept as running totals, so that finding the
+ * column at a point takes O(log n) time, and columns are found by identifier through a
+ * map rather than by comparing every column.
+ * </p>
+ * <p>
+ * {@link RXTable} finds the bounds of cells and headers from this model's totals when it
+ * has one, rather than by asking for every column to the left. Other code which asks for
+ * every column, such as {@link #getColumns()} or a table which resizes its columns to
+ * fit its width, creates them all, and then works as it would with a
+ * DefaultTableColumnModel. Tables with thousands of columns should therefore turn
+ * automatic resizing off.
+ * </p>
+ * <p>
+ * {@link #setColumnOrder(int[])} rearranges any number of columns at once and reports
+ * the change with a single event; {@link RXTable#reorderColumns(javax.swing.JTable,
+ * Object...)} uses it when it is given a table with this model. The event reports a move
+ * from the first column to the last, which listeners should take as a change to the
+ * whole order rather than as the move of one column.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class LazyTableColumnModel extends DefaultTableColumnModel {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2811635496184709183L;
+	/**
+	 * The width of a TableColumn which has not been created.
+	 */
+	private static final int DEFAULT_WIDTH;
+	private static final int DEFAULT_PREFERRED_WIDTH;
+	private static final int DEFAULT_MIN_WIDTH;
+	private static final int DEFAULT_MAX_WIDTH;
+	static {
+		TableColumn column = new TableColumn();
+		DEFAULT_WIDTH = column.getWidth();
+		DEFAULT_PREFERRED_WIDTH = column.getPreferredWidth();
+		DEFAULT_MIN_WIDTH = column.getMinWidth();
+		DEFAULT_MAX_WIDTH = column.getMaxWidth();
+	}
+	private static final int PREFERRED = 0;
+	private static final int MIN = 1;
+	private static final int MAX = 2;
+
+	private TableModel tableModel = null;
+	/**
+	 * The model index of the column at each view index.
+	 */
+	private int[] modelIndices = new int[0];
+	/**
+	 * The column at each view index, or null if it has not yet been created.
+	 */
+	private TableColumn[] columns = new TableColumn[0];
+	private int count = 0;
+	/**
+	 * The x coordinate of the left side of each column and, last, the total width, or
+	 * null if they must be worked out again.
+	 */
+	private transient int[] offsets = null;
+	/**
+	 * The view index of the first column with each identifier, or null if it must be
+	 * built again.
+	 */
+	private transient HashMap<Object, Integer> indexByIdentifier = null;
+
+	/**
+	 * Constructor for a model with no columns.
+	 */
+	public LazyTableColumnModel() {
+		super();
+	}
+
+	/**
+	 * Constructor for a model with a column for each column of a table model, in model
+	 * order.
+	 * @param tableModel The table model
+	 */
+	public LazyTableColumnModel(TableModel tableModel) {
+		super();
+		this.setColumnsFromModel(tableModel);
+	}
+
+	/**
+	 * Replaces all of the columns with a column for each column of a table model, in
+	 * model order. None of the columns is created until it is asked for. A single
+	 * {@link TableColumnModelEvent} reports the change.
+	 * @param model The table model, or null for no columns
+	 */
+	public void setColumnsFromModel(TableModel model) {
+		for (int i = 0; i < this.count; i++) {
+			if (this.columns[i] != null) this.columns[i].removePropertyChangeListener(this);
+		}
+
+		int oldCount = this.count;
+		this.tableModel = model;
+		this.count = (model == null) ? 0 : model.getColumnCount();
+		this.modelIndices = new int[this.count];
+		for (int i = 0; i < this.count; i++) {
+			this.modelIndices[i] = i;
+		}
+		this.columns = new TableColumn[this.count];
+		this.invalidateColumnCaches();
+		if (this.selectionModel != null) this.selectionModel.clearSelection();
+
+		if (this.count > 0) {
+			this.fireColumnAdded(new TableColumnModelEvent(this, 0, this.count - 1));
+		}
+		else if (oldCount > 0) {
+			this.fireColumnRemoved(new TableColumnModelEvent(this, 0, oldCount - 1));
+		}
+	}
+
+	/**
+	 * @return the table model whose columns were last set with
+	 * {@link #setColumnsFromModel(TableModel)}, or null
+	 */
+	public TableModel getTableModel() {
+		return this.tableModel;
+	}
+
+	/**
+	 * Rearranges the columns. A single {@link TableColumnModelEvent}, reporting a move
+	 * from the first to the last column (<code>columnMoved(0, count - 1)</code>) whichever
+	 * columns actually moved, reports the change, and selected columns stay selected.
+	 * @param order The current view index of the column to be placed at each view index;
+	 * a permutation of the view indices
+	 * @throws IllegalArgumentException if <code>order</code> is not a permutation of the
+	 * view indices
+	 */
+	public void setColumnOrder(int[] order) {
+		if (order.length != this.count) {
+			throw new IllegalArgumentException("Order has " + order.length +
+					" columns; model has " + this.count);
+		}
+		boolean[] used = new boolean[this.count];
+		boolean moved = false;
+		for (int i = 0; i < order.length; i++) {
+			int from = order[i];
+			if (from < 0 || from >= this.count || used[from]) {
+				throw new IllegalArgumentException("Not a permutation: " +
+						Arrays.toString(order));
+			}
+			used[from] = true;
+			if (from != i) moved = true;
+		}
+		if (!moved) return;
+
+		int[] modelIndices = new int[this.count];
+		TableColumn[] columns = new TableColumn[this.count];
+		for (int i = 0; i < order.length; i++) {
+			modelIndices[i] = this.modelIndices[order[i]];
+			columns[i] = this.columns[order[i]];
+		}
+		this.modelIndices = modelIndices;
+		this.columns = columns;
+		this.invalidateColumnCaches();
+
+		ListSelectionModel sm = this.selectionModel;
+		if (sm != null && sm.getMinSelectionIndex() != -1) {
+			boolean[] selected = new boolean[this.count];
+			for (int i = sm.getMinSelectionIndex(); i <= sm.getMaxSelectionIndex(); i++) {
+				selected[i] = sm.isSelectedIndex(i);
+			}
+			sm.setValueIsAdjusting(true);
+			sm.clearSelection();
+			for (int i = 0; i < order.length; i++) {
+				if (selected[order[i]]) sm.addSelectionInterval(i, i);
+			}
+			sm.setValueIsAdjusting(false);
+		}
+
+		this.fireColumnMoved(new TableColumnModelEvent(this, 0, this.count - 1));
+	}
+
+	/**
+	 * Returns the x coordinate of the left side of a column, without creating the
+	 * columns to its left.
+	 * @param columnIndex The view index of the column
+	 * @return the sum of the widths of the columns before it
+	 */
+	public int getColumnX(int columnIndex) {
+		if (columnIndex < 0 || columnIndex > this.count) {
+			throw new IllegalArgumentException("Index out of range: " + columnIndex);
+		}
+		return this.getOffsets()[columnIndex];
+	}
+
+	/**
+	 * Adds up the preferred widths of the columns, without creating them.
+	 * @return the total preferred width
+	 */
+	public long getTotalPreferredColumnWidth() {
+		return this.sumWidths(PREFERRED);
+	}
+
+	/**
+	 * Adds up the minimum widths of the columns, without creating them.
+	 * @return the total minimum width
+	 */
+	public long getTotalMinColumnWidth() {
+		return this.sumWidths(MIN);
+	}
+
+	/**
+	 * Adds up the maximum widths of the columns, without creating them.
+	 * @return the total maximum width
+	 */
+	public long getTotalMaxColumnWidth() {
+		return this.sumWidths(MAX);
+	}
+
+	/**
+	 * @return the columns which have been created, in view order
+	 */
+	public List<TableColumn> getCreatedColumns() {
+		ArrayList<TableColumn> ret = new ArrayList<>();
+		for (int i = 0; i < this.count; i++) {
+			if (this.columns[i] != null) ret.add(this.columns[i]);
+		}
+		return ret;
+	}
+
+	@Override
+	public void addColumn(TableColumn aColumn) {
+		if (aColumn == null) throw new IllegalArgumentException("Object is null");
+
+		this.ensureCapacity(this.count + 1);
+		this.modelIndices[this.count] = aColumn.getModelIndex();
+		this.columns[this.count] = aColumn;
+		this.count++;
+		aColumn.addPropertyChangeListener(this);
+		this.invalidateColumnCaches();
+		this.fireColumnAdded(new TableColumnModelEvent(this, 0, this.count - 1));
+	}
+
+	@Override
+	public void removeColumn(TableColumn column) {
+		int columnIndex = -1;
+		for (int i = 0; i < this.count; i++) {
+			if (this.columns[i] == column) {
+				columnIndex = i;
+				break;
+			}
+		}
+		if (columnIndex == -1) return;
+
+		if (this.selectionModel != null) {
+			this.selectionModel.removeIndexInterval(columnIndex, columnIndex);
+		}
+		column.removePropertyChangeListener(this);
+		int after = this.count - columnIndex - 1;
+		System.arraycopy(this.modelIndices, columnIndex + 1, this.modelIndices, columnIndex,
+				after);
+		System.arraycopy(this.columns, columnIndex + 1, this.columns, columnIndex, after);
+		this.count--;
+		this.columns[this.count] = null;
+		this.invalidateColumnCaches();
+		this.fireColumnRemoved(new TableColumnModelEvent(this, columnIndex, 0));
+	}
+
+	@Override
+	public void moveColumn(int columnIndex, int newIndex) {
+		if (columnIndex < 0 || columnIndex >= this.count || newIndex < 0 ||
+				newIndex >= this.count) {
+			throw new IllegalArgumentException("moveColumn() - Index out of range");
+		}
+		if (columnIndex == newIndex) {
+			this.fireColumnMoved(new TableColumnModelEvent(this, columnIndex, newIndex));
+			return;
+		}
+
+		int modelIndex = this.modelIndices[columnIndex];
+		TableColumn column = this.columns[columnIndex];
+		if (columnIndex < newIndex) {
+			int n = newIndex - columnIndex;
+			System.arraycopy(this.modelIndices, columnIndex + 1, this.modelIndices,
+					columnIndex, n);
+			System.arraycopy(this.columns, columnIndex + 1, this.columns, columnIndex, n);
+		}
+		else {
+			int n = columnIndex - newIndex;
+			System.arraycopy(this.modelIndices, newIndex, this.modelIndices, newIndex + 1, n);
+			System.arraycopy(this.columns, newIndex, this.columns, newIndex + 1, n);
+		}
+		this.modelIndices[newIndex] = modelIndex;
+		this.columns[newIndex] = column;
+		this.invalidateColumnCaches();
+
+		ListSelectionModel sm = this.selectionModel;
+		if (sm != null) {
+			boolean selected = sm.isSelectedIndex(columnIndex);
+			sm.removeIndexInterval(columnIndex, columnIndex);
+			sm.insertIndexInterval(newIndex, 1, true);
+			if (selected) {
+				sm.addSelectionInterval(newIndex, newIndex);
+			}
+			else {
+				sm.removeSelectionInterval(newIndex, newIndex);
+			}
+		}
+
+		this.fireColumnMoved(new TableColumnModelEvent(this, columnIndex, newIndex));
+	}
+
+	@Override
+	public int getColumnCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns all of the columns, creating any which have not been created.
+	 */
+	@Override
+	public Enumeration<TableColumn> getColumns() {
+		TableColumn[] all = new TableColumn[this.count];
+		for (int i = 0; i < this.count; i++) {
+			all[i] = this.getColumn(i);
+		}
+		return Collections.enumeration(Arrays.asList(all));
+	}
+
+	@Override
+	public int getColumnIndex(Object identifier) {
+		if (identifier == null) throw new IllegalArgumentException("Identifier is null");
+
+		if (this.indexByIdentifier == null) {
+			HashMap<Object, Integer> map = new HashMap<>(this.count * 2);
+			for (int i = this.count - 1; i >= 0; i--) {
+				Object id = this.getIdentifier(i);
+				if (id != null) map.put(id, i);
+			}
+			this.indexByIdentifier = map;
+		}
+		Integer index = this.indexByIdentifier.get(identifier);
+		if (index == null) throw new IllegalArgumentException("Identifier not found");
+		return index;
+	}
+
+	/**
+	 * Returns a column, creating it if it has not been created. A column is created as
+	 * JTable would create it, with the table model's name for it as its header value.
+	 */
+	@Override
+	public TableColumn getColumn(int columnIndex) {
+		if (columnIndex < 0 || columnIndex >= this.count) {
+			throw new ArrayIndexOutOfBoundsException(columnIndex + " >= " + this.count);
+		}
+
+		TableColumn column = this.columns[columnIndex];
+		if (column == null) {
+			int modelIndex = this.modelIndices[columnIndex];
+			column = new TableColumn(modelIndex);
+			column.setHeaderValue(this.getColumnName(modelIndex));
+			column.addPropertyChangeListener(this);
+			this.columns[columnIndex] = column;
+		}
+		return column;
+	}
+
+	@Override
+	public int getColumnIndexAtX(int x) {
+		if (x < 0) return -1;
+
+		int[] offsets = this.getOffsets();
+		if (x >= offsets[this.count]) return -1;
+		int index = Arrays.binarySearch(offsets, 0, this.count + 1, x);
+		if (index < 0) return -index - 2;
+		// skip columns of no width which start at x
+		while (index < this.count - 1 && offsets[index + 1] == x) {
+			index++;
+		}
+		return index;
+	}
+
+	@Override
+	public int getTotalColumnWidth() {
+		return this.getOffsets()[this.count];
+	}
+
+	@Override
+	public void setColumnMargin(int newMargin) {
+		this.offsets = null;
+		super.setColumnMargin(newMargin);
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		String name = evt.getPropertyName();
+		if ("identifier".equals(name) || "headerValue".equals(name)) {
+			this.indexByIdentifier = null;
+		}
+		if ("width".equals(name) || "preferredWidth".equals(name)) {
+			this.offsets = null;
+		}
+		super.propertyChange(evt);
+	}
+
+	@Override
+	protected void recalcWidthCache() {
+		this.offsets = null;
+		this.totalColumnWidth = this.getTotalColumnWidth();
+	}
+
+	private int[] getOffsets() {
+		if (this.offsets == null) {
+			int[] offsets = new int[this.count + 1];
+			int x = 0;
+			for (int i = 0; i < this.count; i++) {
+				offsets[i] = x;
+				x += (this.columns[i] == null) ? DEFAULT_WIDTH : this.columns[i].getWidth();
+			}
+			offsets[this.count] = x;
+			this.offsets = offsets;
+		}
+		return this.offsets;
+	}
+
+	private long sumWidths(int which) {
+		long total = 0;
+		for (int i = 0; i < this.count; i++) {
+			TableColumn column = this.columns[i];
+			switch (which) {
+			case PREFERRED:
+				total += (column == null) ? DEFAULT_PREFERRED_WIDTH : column.getPreferredWidth();
+				break;
+			case MIN:
+				total += (column == null) ? DEFAULT_MIN_WIDTH : column.getMinWidth();
+				break;
+			default:
+				total += (column == null) ? DEFAULT_MAX_WIDTH : column.getMaxWidth();
+				break;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns a column if it has been created, without creating it.
+	 * @param columnIndex View index of the column
+	 * @return the column, or null if it has not been created
+	 */
+	TableColumn getCreatedColumn(int columnIndex) {
+		return this.columns[columnIndex];
+	}
+
+	/**
+	 * Returns the header value of a column without creating it.
+	 * @param columnIndex View index of the column
+	 * @return the header value
+	 */
+	Object getHeaderValue(int columnIndex) {
+		TableColumn column = this.columns[columnIndex];
+		if (column != null) return column.getHeaderValue();
+		return this.getColumnName(this.modelIndices[columnIndex]);
+	}
+
+	/**
+	 * Returns the identifier of a column without creating it.
+	 */
+	private Object getIdentifier(int columnIndex) {
+		TableColumn column = this.columns[columnIndex];
+		if (column != null) return column.getIdentifier();
+		return this.getColumnName(this.modelIndices[columnIndex]);
+	}
+
+	private String getColumnName(int modelIndex) {
+		if (this.tableModel == null || modelIndex >= this.tableModel.getColumnCount()) {
+			return null;
+		}
+		return this.tableModel.getColumnName(modelIndex);
+	}
+
+	private void invalidateColumnCaches() {
+		this.offsets = null;
+		this.indexByIdentifier = null;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= this.columns.length) return;
+
+		int newCapacity = Math.max(capacity, this.columns.length * 2);
+		this.modelIndices = Arrays.copyOf(this.modelIndices, newCapacity);
+		this.columns = Arrays.copyOf(this.columns, newCapacity);
+	}
+}
@@ -0,0 +1,139 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+
+import com.gmail.at.kevinburnseit.collections.CollectionReorderable;
+
+/**
+ * Performs keyboard-driven one-slot moves for a {@link RxTableWithMovableRecordControls},
+ * combining key presses which arrive faster than the table can show them. The first press
+ * after a quiet period is applied at once, and opens a window one frame long. Presses
+ * arriving during the window (typically key repeats which queued up behind a paint) are
+ * only counted, and when the window closes their net effect is applied as a single
+ * {@link CollectionReorderable#moveElement(int, int)} followed by a single scroll. The
+ * user therefore sees the record move one slot per key press whenever the table keeps up,
+ * and in the largest steps the table can paint when it does not.
+ * <p>
+ * Nothing is moved while the table has a row sorter, since the selection is then in
+ * view order, and the position of a record in a sorted view is not the user's to
+ * choose.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+class MoveKeyCoalescer implements ActionListener {
+	/**
+	 * The length of the coalescing window, in milliseconds.
+	 */
+	static final int FRAME_MILLIS = 16;
+
+	private class StepAction extends AbstractAction {
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = -3418840221327718560L;
+		private int delta;
+		private EasyTableAction moveAction;
+
+		public StepAction(int delta, EasyTableAction moveAction) {
+			super();
+			this.delta = delta;
+			this.moveAction = moveAction;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent ev) {
+			if (!this.moveAction.isEnabled() && !timer.isRunning()) return;
+
+			step(this.delta);
+		}
+	}
+
+	private RxTableWithMovableRecordControls<?> widget;
+	private Timer timer;
+	private int pendingDelta = 0;
+
+	/**
+	 * Constructor.
+	 * @param widget The widget whose records are moved
+	 */
+	MoveKeyCoalescer(RxTableWithMovableRecordControls<?> widget) {
+		this.widget = widget;
+		this.timer = new Timer(FRAME_MILLIS, this);
+		this.timer.setRepeats(false);
+	}
+
+	/**
+	 * Creates an action which moves the selected record by the given number of slots,
+	 * coalescing with other presses as described for this class. The action does nothing
+	 * while <code>moveAction</code> is disabled.
+	 * @param delta -1 to move up, 1 to move down
+	 * @param moveAction The widget action which performs the same move one press at a time
+	 * @return
+	 */
+	Action createStepAction(int delta, EasyTableAction moveAction) {
+		return new StepAction(delta, moveAction);
+	}
+
+	/**
+	 * Requests that the selected record be moved by <code>delta</code> slots.
+	 * @param delta Number of slots to move; negative values move toward the top
+	 */
+	void step(int delta) {
+		if (this.widget.getTable().getRowSorter() != null) {
+			this.pendingDelta = 0;
+			return;
+		}
+		if (!this.timer.isRunning()) {
+			this.apply(delta);
+			this.timer.start();
+			return;
+		}
+
+		// clamp as we go, so that pressing past an end is not remembered
+		int record = this.getSelectedRecord();
+		if (record == -1) return;
+		int count = this.widget.getTable().getModel().getRowCount();
+		int target = Math.max(0, Math.min(count - 1, record + this.pendingDelta + delta));
+		this.pendingDelta = target - record;
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent ev) {
+		if (this.pendingDelta == 0) return;
+
+		int delta = this.pendingDelta;
+		this.pendingDelta = 0;
+		this.apply(delta);
+		this.timer.restart();
+	}
+
+	private int getSelectedRecord() {
+		ListSelectionModel lsm = this.widget.getTable().getSelectionModel();
+		return lsm.getMinSelectionIndex();
+	}
+
+	private void apply(int delta) {
+		RxTableWithAddedRecords table = this.widget.getTable();
+		CollectionReorderable model = this.widget.getModel();
+		int record = this.getSelectedRecord();
+		if (record == -1 || model == null || table.getRowSorter() != null) return;
+
+		int count = table.getModel().getRowCount();
+		int target = Math.max(0, Math.min(count - 1, record + delta));
+		if (target == record) return;
+
+		if (table.isEditing()) {
+			table.getCellEditor().stopCellEditing();
+		}
+		model.moveElement(record, target);
+		table.setSelection(target);
+		table.scrollRectToVisible(table.getCellRect(target, 0, true));
+	}
+}
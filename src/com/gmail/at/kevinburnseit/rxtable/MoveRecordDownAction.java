@@ -39,6 +39,7 @@ public class MoveRecordDownAction extends EasyTableWidgetAction {
 
 	@Override
 	protected boolean shouldBeEnabled() {
+		if (!this.widget.isReorderingAllowed()) return false;
 		int record = this.table.getSelectedRow();
 		if (record == -1) return false;
 		
@@ -38,6 +38,7 @@ public class MoveRecordUpAction extends EasyTableWidgetAction {
 
 	@Override
 	protected boolean shouldBeEnabled() {
+		if (!this.widget.isReorderingAllowed()) return false;
 		return (this.table.getSelectedRow() > 0);
 	}
 }
@@ -4,6 +4,8 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import javax.swing.*;
+import javax.swing.plaf.basic.BasicTableHeaderUI;
+import javax.swing.plaf.basic.BasicTableUI;
 import javax.swing.table.*;
 import javax.swing.text.*;
 
@@ -20,6 +22,18 @@ import javax.swing.text.*;
  *    the text is selected. Controlled by invoking a "setSelectAll..." method.
  *
  * 2) reorderColumns - static convenience method for reodering table columns
+ *
+ * 3) Row strip caching - rows are painted from images of them, each rendered
+ *    once until the row changes, so that scrolling is fast however expensive
+ *    the renderers. Controlled by invoking "setRowStripCaching".
+ *
+ * 4) Lazy columns - with a LazyTableColumnModel, cell and header bounds are
+ *    found without creating the columns to their left, so that only the
+ *    columns shown are created.
+ *
+ * 5) Column auto sizing - columns are sized to fit a sample of their rows,
+ *    and widened as rows are added. Controlled by invoking
+ *    "setColumnAutoSizing".
  */
 public class RXTable extends JTable
 {
@@ -30,6 +44,8 @@ public class RXTable extends JTable
 	private boolean isSelectAllForMouseEvent = false;
 	private boolean isSelectAllForActionEvent = false;
 	private boolean isSelectAllForKeyEvent = false;
+	private transient RowStripCache rowStripCache = null;
+	private transient ColumnAutoSizer columnAutoSizer = null;
 
 //
 // Constructors
@@ -209,6 +225,370 @@ public class RXTable extends JTable
 		}
 	}
 
+	/*
+	 *  Override to paint rows from their cached strips, when caching is on.
+	 *  Printing, dropping and dragging a column are painted as usual, as the
+	 *  strips do not show them.
+	 */
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		if (rowStripCache == null
+		||  isPaintingForPrint()
+		||  getDropLocation() != null
+		||  (getTableHeader() != null && getTableHeader().getDraggedColumn() != null))
+		{
+			super.paintComponent(g);
+			return;
+		}
+
+		Graphics scratch = g.create();
+
+		try
+		{
+			rowStripCache.paint(scratch);
+		}
+		finally
+		{
+			scratch.dispose();
+		}
+	}
+
+	/*
+	 *  Override to discard the cached strips of whatever is to be repainted.
+	 *  All of the table's own repaints, and those of its UI delegate, come
+	 *  through here.
+	 */
+	@Override
+	public void repaint(long tm, int x, int y, int width, int height)
+	{
+		if (rowStripCache != null)
+			rowStripCache.invalidate(y, height);
+
+		super.repaint(tm, x, y, width, height);
+	}
+
+	/*
+	 *  Override to fill a LazyTableColumnModel without creating its columns
+	 */
+	@Override
+	public void createDefaultColumnsFromModel()
+	{
+		TableModel m = getModel();
+		TableColumnModel cm = getColumnModel();
+
+		if (m != null && cm instanceof LazyTableColumnModel)
+		{
+			((LazyTableColumnModel)cm).setColumnsFromModel(m);
+			return;
+		}
+
+		super.createDefaultColumnsFromModel();
+	}
+
+	/*
+	 *  Override to use the column positions kept by a LazyTableColumnModel,
+	 *  rather than adding up the widths of all of the columns to the left
+	 */
+	@Override
+	public Rectangle getCellRect(int row, int column, boolean includeSpacing)
+	{
+		TableColumnModel cm = getColumnModel();
+
+		if (! (cm instanceof LazyTableColumnModel)
+		||  column < 0
+		||  column >= cm.getColumnCount())
+			return super.getCellRect(row, column, includeSpacing);
+
+		//  Let JTable work out the row, then place the column ourselves
+
+		Rectangle r = super.getCellRect(row, -1, true);
+		r.x = getColumnX((LazyTableColumnModel)cm, column,
+			getComponentOrientation().isLeftToRight());
+		r.width = cm.getColumn(column).getWidth();
+
+		if (! includeSpacing && row >= 0 && row < getRowCount())
+		{
+			int rowMargin = Math.min(getRowMargin(), r.height);
+			int columnMargin = Math.min(cm.getColumnMargin(), r.width);
+			r.setBounds(r.x + columnMargin / 2, r.y + rowMargin / 2,
+				r.width - columnMargin, r.height - rowMargin);
+		}
+
+		return r;
+	}
+
+	/*
+	 *  Override so that the header also finds the bounds of its columns from
+	 *  a LazyTableColumnModel
+	 */
+	@Override
+	protected JTableHeader createDefaultTableHeader()
+	{
+		return new JTableHeader(columnModel)
+		{
+			/**
+			 *
+			 */
+			private static final long serialVersionUID = 5261408859937724153L;
+
+			@Override
+			public Rectangle getHeaderRect(int column)
+			{
+				TableColumnModel cm = getColumnModel();
+
+				if (! (cm instanceof LazyTableColumnModel)
+				||  column < 0
+				||  column >= cm.getColumnCount())
+					return super.getHeaderRect(column);
+
+				int width = cm.getColumn(column).getWidth();
+				int x = getColumnX((LazyTableColumnModel)cm, column, true);
+
+				//  As JTableHeader, which mirrors the columns across the table
+				//  when it resizes its columns and across itself when not
+
+				if (! getComponentOrientation().isLeftToRight())
+				{
+					JTable table = getTable();
+					int headerWidth = (table != null
+						&& table.getAutoResizeMode() != AUTO_RESIZE_OFF)
+						? table.getWidth() : getWidth();
+					x = headerWidth - x - width;
+				}
+
+				return new Rectangle(x, 0, width, getHeight());
+			}
+
+			//  As BasicTableHeaderUI sizes the header, but from the totals of a
+			//  LazyTableColumnModel and the heights of the columns created
+
+			@Override
+			public Dimension getPreferredSize()
+			{
+				LazyTableColumnModel cm = getLazyColumnModel();
+
+				if (cm == null || isPreferredSizeSet())
+					return super.getPreferredSize();
+
+				return createHeaderSize(cm, cm.getTotalPreferredColumnWidth());
+			}
+
+			@Override
+			public Dimension getMinimumSize()
+			{
+				LazyTableColumnModel cm = getLazyColumnModel();
+
+				if (cm == null || isMinimumSizeSet())
+					return super.getMinimumSize();
+
+				return createHeaderSize(cm, cm.getTotalMinColumnWidth());
+			}
+
+			@Override
+			public Dimension getMaximumSize()
+			{
+				LazyTableColumnModel cm = getLazyColumnModel();
+
+				if (cm == null || isMaximumSizeSet())
+					return super.getMaximumSize();
+
+				return createHeaderSize(cm, cm.getTotalMaxColumnWidth());
+			}
+
+			private LazyTableColumnModel getLazyColumnModel()
+			{
+				TableColumnModel cm = getColumnModel();
+
+				if (! (cm instanceof LazyTableColumnModel)
+				||  ! (getUI() instanceof BasicTableHeaderUI))
+					return null;
+
+				return (LazyTableColumnModel)cm;
+			}
+
+			private Dimension createHeaderSize(LazyTableColumnModel cm, long width)
+			{
+				if (width > Integer.MAX_VALUE)
+					width = Integer.MAX_VALUE;
+
+				return new Dimension((int)width, getHeaderHeight(cm));
+			}
+
+			/*
+			 *  The default renderer is measured once, for the first column with a
+			 *  header value, whether or not that column has been created; other
+			 *  renderers only belong to columns which have been
+			 */
+			private int getHeaderHeight(LazyTableColumnModel cm)
+			{
+				int height = 0;
+				boolean accommodatedDefault = false;
+
+				for (int i = 0; i < cm.getColumnCount(); i++)
+				{
+					TableColumn column = cm.getCreatedColumn(i);
+					TableCellRenderer renderer = (column == null)
+						? null : column.getHeaderRenderer();
+					boolean isDefault = (renderer == null);
+
+					if (isDefault && accommodatedDefault)
+						continue;
+
+					if (isDefault)
+						renderer = getDefaultRenderer();
+
+					Object value = (column == null)
+						? cm.getHeaderValue(i) : column.getHeaderValue();
+					Component c = renderer.getTableCellRendererComponent(
+						getTable(), value, false, false, -1, i);
+					int rendererHeight = c.getPreferredSize().height;
+					height = Math.max(height, rendererHeight);
+
+					if (isDefault
+					&&  rendererHeight > 0
+					&&  value != null
+					&&  ! value.toString().isEmpty())
+						accommodatedDefault = true;
+				}
+
+				return height;
+			}
+		};
+	}
+
+	/*
+	 *  Override, with getMinimumSize and getMaximumSize, to size the table from
+	 *  the totals of a LazyTableColumnModel, as BasicTableUI would from the
+	 *  columns themselves
+	 */
+	@Override
+	public Dimension getPreferredSize()
+	{
+		LazyTableColumnModel cm = getLazyColumnModel();
+
+		if (cm == null || isPreferredSizeSet())
+			return super.getPreferredSize();
+
+		return createTableSize(cm.getTotalPreferredColumnWidth());
+	}
+
+	@Override
+	public Dimension getMinimumSize()
+	{
+		LazyTableColumnModel cm = getLazyColumnModel();
+
+		if (cm == null || isMinimumSizeSet())
+			return super.getMinimumSize();
+
+		return createTableSize(cm.getTotalMinColumnWidth());
+	}
+
+	@Override
+	public Dimension getMaximumSize()
+	{
+		LazyTableColumnModel cm = getLazyColumnModel();
+
+		if (cm == null || isMaximumSizeSet())
+			return super.getMaximumSize();
+
+		return createTableSize(cm.getTotalMaxColumnWidth());
+	}
+
+	/*
+	 *  The column model, if it is a LazyTableColumnModel and the UI is one
+	 *  whose sizes are known
+	 */
+	private LazyTableColumnModel getLazyColumnModel()
+	{
+		TableColumnModel cm = getColumnModel();
+
+		if (! (cm instanceof LazyTableColumnModel)
+		||  ! (getUI() instanceof BasicTableUI))
+			return null;
+
+		return (LazyTableColumnModel)cm;
+	}
+
+	/*
+	 *  As BasicTableUI sizes a table
+	 */
+	private Dimension createTableSize(long width)
+	{
+		int height = 0;
+		int rowCount = getRowCount();
+
+		if (rowCount > 0 && getColumnCount() > 0)
+		{
+			Rectangle r = getCellRect(rowCount - 1, 0, true);
+			height = r.y + r.height;
+		}
+
+		return new Dimension((int)Math.min(Math.abs(width), Integer.MAX_VALUE), height);
+	}
+
+	/*
+	 *  Override so that a LazyTableColumnModel's columns are not all created
+	 *  to have their renderers and editors updated; those not yet created have
+	 *  none. JTable is shown an empty column model while it updates the rest.
+	 */
+	@Override
+	public void updateUI()
+	{
+		TableColumnModel cm = getColumnModel();
+
+		if (! (cm instanceof LazyTableColumnModel))
+		{
+			super.updateUI();
+			return;
+		}
+
+		try
+		{
+			columnModel = new DefaultTableColumnModel();
+			super.updateUI();
+		}
+		finally
+		{
+			columnModel = cm;
+		}
+
+		for (TableColumn column : ((LazyTableColumnModel)cm).getCreatedColumns())
+		{
+			updateRendererOrEditorUI(column.getCellRenderer());
+			updateRendererOrEditorUI(column.getCellEditor());
+			updateRendererOrEditorUI(column.getHeaderRenderer());
+		}
+	}
+
+	/*
+	 *  As JTable updates the renderers and editors of its columns
+	 */
+	private static void updateRendererOrEditorUI(Object rendererOrEditor)
+	{
+		Component component = null;
+
+		if (rendererOrEditor instanceof Component)
+			component = (Component)rendererOrEditor;
+		else if (rendererOrEditor instanceof DefaultCellEditor)
+			component = ((DefaultCellEditor)rendererOrEditor).getComponent();
+
+		if (component != null)
+			SwingUtilities.updateComponentTreeUI(component);
+	}
+
+	/*
+	 *  The x coordinate of a column, counted from the left or, right to left,
+	 *  from the right of the last column
+	 */
+	private static int getColumnX(LazyTableColumnModel cm, int column, boolean leftToRight)
+	{
+		if (leftToRight)
+			return cm.getColumnX(column);
+
+		return cm.getTotalColumnWidth() - cm.getColumnX(column + 1);
+	}
+
 //
 //  Newly added methods
 //
@@ -247,6 +627,102 @@ public class RXTable extends JTable
 		this.isSelectAllForKeyEvent = isSelectAllForKeyEvent;
 	}
 
+	/**
+	 *  Sets whether rows are painted from images of them. Each row is rendered
+	 *  into an image the first time it is painted, and the image is reused
+	 *  until the table asks for the row to be repainted, which it does whenever
+	 *  the row's data, selection or focus changes, or the columns change.
+	 *  Scrolling back over rows recently shown then costs little more than
+	 *  copying their images, however expensive the renderers, and the cost of
+	 *  scrolling depends on the number of rows which have changed rather than
+	 *  the number shown. The images of a few screenfuls of rows are kept.
+	 *  <p>
+	 *  This suits tables with costly renderers. It should not be used with
+	 *  renderers whose appearance changes without the table being repainted,
+	 *  such as animations.
+	 *
+	 *  @param isRowStripCaching  true to paint rows from images of them
+	 */
+	public void setRowStripCaching(boolean isRowStripCaching)
+	{
+		if (isRowStripCaching == isRowStripCaching())
+			return;
+
+		rowStripCache = isRowStripCaching ? new RowStripCache(this) : null;
+		repaint();
+	}
+
+	/**
+	 *  @return  true if rows are painted from images of them
+	 */
+	public boolean isRowStripCaching()
+	{
+		return rowStripCache != null;
+	}
+
+	/**
+	 *  Sets whether the columns are sized to fit their contents. When turned
+	 *  on, the columns are sized at once, and then widened to fit rows as they
+	 *  are added or changed; replacing all of the data or the columns sizes
+	 *  them afresh. Columns are never narrowed to fit changed rows, so widths
+	 *  set by the user are kept unless the contents need more room.
+	 *  <p>
+	 *  Rather than rendering every row, the columns are measured from a
+	 *  sample: the first and last rows, some rows at random, and for each
+	 *  column the rows whose values are the longest as text. The width of
+	 *  plain text shown by a label renderer is measured on a background
+	 *  thread, so the sizes are set shortly after the change, not during it.
+	 *  Every column is measured, so a LazyTableColumnModel will create all
+	 *  of its columns.
+	 *
+	 *  @param isColumnAutoSizing  true to size the columns to their contents
+	 */
+	public void setColumnAutoSizing(boolean isColumnAutoSizing)
+	{
+		if (isColumnAutoSizing == isColumnAutoSizing())
+			return;
+
+		if (isColumnAutoSizing)
+		{
+			columnAutoSizer = new ColumnAutoSizer(this);
+			columnAutoSizer.install();
+		}
+		else
+		{
+			columnAutoSizer.uninstall();
+			columnAutoSizer = null;
+		}
+	}
+
+	/**
+	 *  @return  true if the columns are sized to fit their contents
+	 */
+	public boolean isColumnAutoSizing()
+	{
+		return columnAutoSizer != null;
+	}
+
+	/**
+	 *  Sizes the columns to fit their contents once, measured from a sample
+	 *  of the rows as described for "setColumnAutoSizing". The sizes are set
+	 *  shortly afterwards, on the event dispatch thread.
+	 */
+	public void autoSizeColumns()
+	{
+		if (columnAutoSizer != null)
+			columnAutoSizer.sizeAllColumns();
+		else
+			new ColumnAutoSizer(this).sizeAllColumns();
+	}
+
+	/*
+	 *  Returns the row strip cache, or null if caching is off
+	 */
+	RowStripCache getRowStripCache()
+	{
+		return rowStripCache;
+	}
+
 //
 //  Static, convenience methods
 //
@@ -255,6 +731,13 @@ public class RXTable extends JTable
 	 *  are ordered based on the column names specified in the array. If the
 	 *  column name is not found then no column is moved. This means you can
 	 *  specify a null value to preserve the current order of a given column.
+	 *  <p>
+	 *  Each column is looked up by name only once. When the table has a
+	 *  LazyTableColumnModel, all of the columns are moved at once, with a
+	 *  single event, and without creating any of them. That event reports a
+	 *  move from the first column to the last, columnMoved(0, count - 1),
+	 *  whichever columns actually moved, so column model listeners should
+	 *  treat it as a change to the whole order.
 	 *
      *  @param table        the table containing the columns to be sorted
      *  @param columnNames  an array containing the column names in the
@@ -263,16 +746,90 @@ public class RXTable extends JTable
 	public static void reorderColumns(JTable table, Object... columnNames)
 	{
 		TableColumnModel model = table.getColumnModel();
+		LazyTableColumnModel lazyModel = (model instanceof LazyTableColumnModel)
+			? (LazyTableColumnModel)model : null;
+		int columnCount = model.getColumnCount();
+		Map<Object, Integer> indexByName = null;
 
-		for (int newIndex = 0; newIndex < columnNames.length; newIndex++)
+		if (lazyModel == null)
 		{
-			try
+			indexByName = new HashMap<Object, Integer>(columnCount * 2);
+
+			for (int index = columnCount - 1; index >= 0; index--)
 			{
-				Object columnName = columnNames[newIndex];
-				int index = model.getColumnIndex(columnName);
-				model.moveColumn(index, newIndex);
+				Object identifier = model.getColumn(index).getIdentifier();
+
+				if (identifier != null)
+					indexByName.put(identifier, index);
 			}
-			catch(IllegalArgumentException e) {}
 		}
+
+		//  Follow the moves in arrays, so that a column once found by name
+		//  need not be searched for again: order holds the original index of
+		//  the column at each position, and position the reverse
+
+		int[] order = new int[columnCount];
+		int[] position = new int[columnCount];
+
+		for (int index = 0; index < columnCount; index++)
+		{
+			order[index] = index;
+			position[index] = index;
+		}
+
+		for (int newIndex = 0; newIndex < columnNames.length && newIndex < columnCount; newIndex++)
+		{
+			Object columnName = columnNames[newIndex];
+			Integer column = null;
+
+			if (columnName == null)
+				continue;
+
+			if (lazyModel == null)
+				column = indexByName.get(columnName);
+			else
+			{
+				try
+				{
+					column = lazyModel.getColumnIndex(columnName);
+				}
+				catch(IllegalArgumentException e) {}
+			}
+
+			if (column == null)
+				continue;
+
+			int index = position[column];
+
+			if (index == newIndex)
+				continue;
+
+			moveIndex(order, position, index, newIndex);
+
+			if (lazyModel == null)
+				model.moveColumn(index, newIndex);
+		}
+
+		if (lazyModel != null)
+			lazyModel.setColumnOrder(order);
+	}
+
+	/*
+	 *  Move an entry of order, as TableColumnModel.moveColumn would move a
+	 *  column, and update position to match
+	 */
+	private static void moveIndex(int[] order, int[] position, int index, int newIndex)
+	{
+		int moved = order[index];
+
+		if (index < newIndex)
+			System.arraycopy(order, index + 1, order, index, newIndex - index);
+		else
+			System.arraycopy(order, newIndex, order, newIndex + 1, index - newIndex);
+
+		order[newIndex] = moved;
+
+		for (int i = Math.min(index, newIndex); i <= Math.max(index, newIndex); i++)
+			position[order[i]] = i;
 	}
 }  // End of Class RXTable
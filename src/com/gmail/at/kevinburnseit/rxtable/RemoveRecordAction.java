@@ -39,6 +39,18 @@ public class RemoveRecordAction extends EasyTableAction {
 		public int getRecord() {
 			return record;
 		}
+		/**
+		 * Fetches the number of the record where the removal was requested, in the model
+		 * which ultimately holds the data. This differs from {@link #getRecord()} when
+		 * the table presents its model through a RowSorter or a
+		 * {@link com.gmail.at.kevinburnseit.collections.TableModelView}.
+		 * @return the record number in the underlying model, or -1 if
+		 * {@link #getRecord()} returns -1
+		 * @see RxTableWithAddedRecords#convertRecordToSource(int)
+		 */
+		public int getSourceRecord() {
+			return this.table.convertRecordToSource(this.record);
+		}
 	}
 
 	/**
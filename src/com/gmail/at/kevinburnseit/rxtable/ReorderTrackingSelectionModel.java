@@ -0,0 +1,796 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.EventListener;
+
+import javax.swing.ListSelectionModel;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+import com.gmail.at.kevinburnseit.collections.TableModelMoveEvent;
+
+/**
+ * <p>
+ * A ListSelectionModel which stores the selection as a sorted array of disjoint index
+ * intervals rather than as one bit per row. Besides the ordinary selection operations,
+ * it supports {@link #moveIndexInterval(int, int, int)}, which carries the selection
+ * state of a block of rows to a new position in the same way that a
+ * {@link com.gmail.at.kevinburnseit.collections.CollectionReorderable} moves the rows
+ * themselves. {@link RxTableWithAddedRecords} calls this function whenever its model
+ * reports a {@link TableModelMoveEvent}, so selected rows follow their data through a
+ * reorder. Likewise, {@link #permuteIndices(int, int[])} carries the selection through a
+ * sort.
+ * </p>
+ * <p>
+ * Every operation locates the affected intervals by binary search and then touches only
+ * the intervals which must change, so inserting, removing or moving rows costs
+ * O(log k + m), where k is the number of selected intervals and m is the number of
+ * intervals lying after the affected rows. Each operation fires at most one
+ * ListSelectionEvent. Semantics otherwise follow
+ * {@link javax.swing.DefaultListSelectionModel}, which this class can replace.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class ReorderTrackingSelectionModel implements ListSelectionModel, Cloneable,
+		Serializable {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 4398517066829467032L;
+	private static final int MIN = -1;
+	private static final int MAX = Integer.MAX_VALUE;
+
+	/**
+	 * The list of registered listeners.
+	 */
+	protected EventListenerList listenerList = new EventListenerList();
+	private int selectionMode = MULTIPLE_INTERVAL_SELECTION;
+	/**
+	 * Selected intervals, stored as inclusive start/end pairs. Intervals are sorted,
+	 * disjoint, and never adjacent to one another.
+	 */
+	private int[] bounds = new int[8];
+	private int intervalCount = 0;
+	private int anchorIndex = -1;
+	private int leadIndex = -1;
+	private int firstAdjustedIndex = MAX;
+	private int lastAdjustedIndex = MIN;
+	private int firstChangedIndex = MAX;
+	private int lastChangedIndex = MIN;
+	private boolean isAdjusting = false;
+
+	/**
+	 * Constructor. The new model has nothing selected and allows multiple interval
+	 * selection.
+	 */
+	public ReorderTrackingSelectionModel() {
+		super();
+	}
+
+	@Override
+	public void setSelectionInterval(int index0, int index1) {
+		if (index0 == -1 || index1 == -1) return;
+
+		if (this.selectionMode == SINGLE_SELECTION) {
+			index0 = index1;
+		}
+		this.updateLeadAnchorIndices(index0, index1);
+
+		int setMin = Math.min(index0, index1);
+		int setMax = Math.max(index0, index1);
+		if (this.intervalCount == 1 && this.start(0) == setMin && this.end(0) == setMax) {
+			this.fireValueChanged();
+			return;
+		}
+
+		if (this.intervalCount > 0) {
+			this.markAdjusted(this.getMinSelectionIndex(), this.getMaxSelectionIndex());
+		}
+		this.intervalCount = 0;
+		this.addRange(setMin, setMax);
+		this.markAdjusted(setMin, setMax);
+		this.fireValueChanged();
+	}
+
+	@Override
+	public void addSelectionInterval(int index0, int index1) {
+		if (index0 == -1 || index1 == -1) return;
+
+		if (this.selectionMode == SINGLE_SELECTION) {
+			this.setSelectionInterval(index0, index1);
+			return;
+		}
+
+		int setMin = Math.min(index0, index1);
+		int setMax = Math.max(index0, index1);
+		if (this.selectionMode == SINGLE_INTERVAL_SELECTION && this.intervalCount > 0 &&
+				(setMax < this.getMinSelectionIndex() - 1 ||
+				setMin > this.getMaxSelectionIndex() + 1)) {
+			this.setSelectionInterval(index0, index1);
+			return;
+		}
+
+		this.updateLeadAnchorIndices(index0, index1);
+		if (this.addRange(setMin, setMax)) {
+			this.markAdjusted(setMin, setMax);
+		}
+		this.fireValueChanged();
+	}
+
+	@Override
+	public void removeSelectionInterval(int index0, int index1) {
+		this.removeSelectionIntervalImpl(index0, index1, true);
+	}
+
+	private void removeSelectionIntervalImpl(int index0, int index1,
+			boolean changeLeadAnchor) {
+		if (index0 == -1 || index1 == -1) return;
+
+		if (changeLeadAnchor) {
+			this.updateLeadAnchorIndices(index0, index1);
+		}
+
+		int clearMin = Math.min(index0, index1);
+		int clearMax = Math.max(index0, index1);
+		if (this.selectionMode != MULTIPLE_INTERVAL_SELECTION && this.intervalCount > 0 &&
+				clearMin > this.getMinSelectionIndex() &&
+				clearMax < this.getMaxSelectionIndex()) {
+			// removing from the middle would split the interval
+			clearMax = this.getMaxSelectionIndex();
+		}
+
+		if (this.removeRange(clearMin, clearMax)) {
+			this.markAdjusted(clearMin, clearMax);
+		}
+		this.fireValueChanged();
+	}
+
+	@Override
+	public int getMinSelectionIndex() {
+		return this.isSelectionEmpty() ? -1 : this.start(0);
+	}
+
+	@Override
+	public int getMaxSelectionIndex() {
+		return this.isSelectionEmpty() ? -1 : this.end(this.intervalCount - 1);
+	}
+
+	@Override
+	public boolean isSelectedIndex(int index) {
+		if (index < 0) return false;
+
+		int i = this.lastStartAtMost(index);
+		return (i >= 0 && this.end(i) >= index);
+	}
+
+	@Override
+	public int getAnchorSelectionIndex() {
+		return this.anchorIndex;
+	}
+
+	@Override
+	public void setAnchorSelectionIndex(int index) {
+		this.updateLeadAnchorIndices(index, this.leadIndex);
+		this.fireValueChanged();
+	}
+
+	@Override
+	public int getLeadSelectionIndex() {
+		return this.leadIndex;
+	}
+
+	@Override
+	public void setLeadSelectionIndex(int index) {
+		int anchor = this.anchorIndex;
+
+		if (index == -1) {
+			if (anchor == -1) {
+				this.updateLeadAnchorIndices(anchor, index);
+				this.fireValueChanged();
+			}
+			return;
+		}
+		else if (anchor == -1) {
+			return;
+		}
+
+		if (this.leadIndex == -1) {
+			this.leadIndex = index;
+		}
+
+		boolean shouldSelect = this.isSelectedIndex(this.anchorIndex);
+		if (this.selectionMode == SINGLE_SELECTION) {
+			anchor = index;
+			shouldSelect = true;
+		}
+
+		int oldMin = Math.min(this.anchorIndex, this.leadIndex);
+		int oldMax = Math.max(this.anchorIndex, this.leadIndex);
+		int newMin = Math.min(anchor, index);
+		int newMax = Math.max(anchor, index);
+
+		this.updateLeadAnchorIndices(anchor, index);
+
+		boolean changed;
+		if (shouldSelect) {
+			changed = this.removeRange(oldMin, oldMax);
+			changed = this.addRange(newMin, newMax) || changed;
+		}
+		else {
+			changed = this.addRange(oldMin, oldMax);
+			changed = this.removeRange(newMin, newMax) || changed;
+		}
+		if (changed) {
+			this.markAdjusted(Math.min(oldMin, newMin), Math.max(oldMax, newMax));
+		}
+		this.fireValueChanged();
+	}
+
+	@Override
+	public void clearSelection() {
+		if (this.isSelectionEmpty()) return;
+
+		this.removeSelectionIntervalImpl(this.getMinSelectionIndex(),
+				this.getMaxSelectionIndex(), false);
+	}
+
+	@Override
+	public boolean isSelectionEmpty() {
+		return (this.intervalCount == 0);
+	}
+
+	@Override
+	public void insertIndexInterval(int index, int length, boolean before) {
+		if (index < 0 || length <= 0) return;
+
+		int insMin = before ? index : index + 1;
+		boolean setInserted = (this.selectionMode != SINGLE_SELECTION) &&
+				this.isSelectedIndex(index);
+
+		boolean changed = this.openGap(insMin, length);
+		if (setInserted) {
+			changed = this.addRange(insMin, insMin + length - 1) || changed;
+		}
+		if (changed) {
+			this.markAdjusted(insMin, Math.max(insMin, this.getMaxSelectionIndex()));
+		}
+
+		int lead = this.leadIndex;
+		if (lead > index || (before && lead == index)) {
+			lead += length;
+		}
+		int anchor = this.anchorIndex;
+		if (anchor > index || (before && anchor == index)) {
+			anchor += length;
+		}
+		if (lead != this.leadIndex || anchor != this.anchorIndex) {
+			this.updateLeadAnchorIndices(anchor, lead);
+		}
+
+		this.fireValueChanged();
+	}
+
+	@Override
+	public void removeIndexInterval(int index0, int index1) {
+		if (index0 < 0 || index1 < 0) return;
+
+		int rmMin = Math.min(index0, index1);
+		int rmMax = Math.max(index0, index1);
+		int gap = rmMax - rmMin + 1;
+		int oldMax = this.getMaxSelectionIndex();
+
+		if (this.closeGap(rmMin, rmMax)) {
+			this.markAdjusted(rmMin, Math.max(rmMin, oldMax));
+		}
+
+		int lead = this.adjustForRemoval(this.leadIndex, rmMin, rmMax, gap);
+		int anchor = this.adjustForRemoval(this.anchorIndex, rmMin, rmMax, gap);
+		if (lead != this.leadIndex || anchor != this.anchorIndex) {
+			this.updateLeadAnchorIndices(anchor, lead);
+		}
+
+		this.fireValueChanged();
+	}
+
+	private int adjustForRemoval(int index, int rmMin, int rmMax, int gap) {
+		if (index == 0 && rmMin == 0) return index;
+		if (index > rmMax) return index - gap;
+		if (index >= rmMin) return rmMin - 1;
+		return index;
+	}
+
+	/**
+	 * Moves the selection state of a block of indices to a new position, shifting the
+	 * indices in between to make room. The arguments have the same meaning as those of
+	 * {@link TableModelMoveEvent}: after the call, the state which was held by
+	 * <code>source</code> is held by <code>destination</code>, and so on for the rest of
+	 * the block. The lead and anchor follow their rows in the same way. At most one
+	 * ListSelectionEvent is fired.
+	 * @param source Index of the first index in the block, before the move
+	 * @param length Number of indices in the block
+	 * @param destination Index of the first index in the block, after the move
+	 */
+	public void moveIndexInterval(int source, int length, int destination) {
+		if (source < 0 || destination < 0 || length <= 0) return;
+		if (source == destination) return;
+
+		int last = source + length - 1;
+		int oldMin = Math.min(source, destination);
+		int oldMax = Math.max(source, destination) + length - 1;
+
+		// remember which parts of the block were selected, relative to its first index
+		int first = this.firstEndAtLeast(source);
+		int stop = this.lastStartAtMost(last);
+		int[] moved = new int[Math.max(0, 2 * (stop - first + 1))];
+		int movedCount = 0;
+		for (int i = first; i <= stop; i++) {
+			moved[movedCount++] = Math.max(this.start(i), source) - source;
+			moved[movedCount++] = Math.min(this.end(i), last) - source;
+		}
+
+		boolean changed = this.closeGap(source, last);
+		changed = this.openGap(destination, length) || changed;
+		for (int i = 0; i < movedCount; i += 2) {
+			changed = this.addRange(destination + moved[i], destination + moved[i + 1]) ||
+					changed;
+		}
+		if (changed) {
+			this.markAdjusted(oldMin, oldMax);
+		}
+
+		int lead = this.mapMovedIndex(this.leadIndex, source, length, destination);
+		int anchor = this.mapMovedIndex(this.anchorIndex, source, length, destination);
+		if (lead != this.leadIndex || anchor != this.anchorIndex) {
+			this.updateLeadAnchorIndices(anchor, lead);
+		}
+
+		this.fireValueChanged();
+	}
+
+	private int mapMovedIndex(int index, int source, int length, int destination) {
+		if (index < 0) return index;
+		if (index >= source && index < source + length) {
+			return destination + index - source;
+		}
+
+		int ret = index;
+		if (ret >= source + length) ret -= length;
+		if (ret >= destination) ret += length;
+		return ret;
+	}
+
+	/**
+	 * Rearranges the selection state of a range of indices among themselves, in the same
+	 * way as the rows of a table model which reports a
+	 * {@link com.gmail.at.kevinburnseit.collections.TableModelPermutationEvent}, such as
+	 * when the model is sorted. Indices outside the range are unaffected.
+	 * @param first The first index of the range
+	 * @param newIndices For each index of the range, in order, the index to which its
+	 * selection state moves. These must be a rearrangement of the indices of the range.
+	 */
+	public void permuteIndices(int first, int[] newIndices) {
+		if (first < 0 || newIndices.length == 0) return;
+
+		int last = first + newIndices.length - 1;
+		int from = this.firstEndAtLeast(first);
+		int to = this.lastStartAtMost(last);
+		int selectedCount = 0;
+		for (int i = from; i <= to; i++) {
+			selectedCount += Math.min(this.end(i), last) - Math.max(this.start(i), first) + 1;
+		}
+
+		if (selectedCount > 0) {
+			int[] moved = new int[selectedCount];
+			int n = 0;
+			boolean changed = false;
+			for (int i = from; i <= to; i++) {
+				int stop = Math.min(this.end(i), last);
+				for (int index = Math.max(this.start(i), first); index <= stop; index++) {
+					moved[n] = newIndices[index - first];
+					changed = changed || (moved[n] != index);
+					n++;
+				}
+			}
+
+			if (changed) {
+				Arrays.sort(moved);
+				this.removeRange(first, last);
+				int runStart = moved[0];
+				for (int i = 1; i <= moved.length; i++) {
+					if (i == moved.length || moved[i] != moved[i - 1] + 1) {
+						this.addRange(runStart, moved[i - 1]);
+						if (i < moved.length) runStart = moved[i];
+					}
+				}
+				this.markAdjusted(first, last);
+			}
+		}
+
+		int lead = this.leadIndex;
+		int anchor = this.anchorIndex;
+		if (lead >= first && lead <= last) lead = newIndices[lead - first];
+		if (anchor >= first && anchor <= last) anchor = newIndices[anchor - first];
+		if (lead != this.leadIndex || anchor != this.anchorIndex) {
+			this.updateLeadAnchorIndices(anchor, lead);
+		}
+
+		this.fireValueChanged();
+	}
+
+	@Override
+	public void setValueIsAdjusting(boolean valueIsAdjusting) {
+		if (valueIsAdjusting == this.isAdjusting) return;
+
+		this.isAdjusting = valueIsAdjusting;
+		this.fireValueChanged(valueIsAdjusting);
+	}
+
+	@Override
+	public boolean getValueIsAdjusting() {
+		return this.isAdjusting;
+	}
+
+	@Override
+	public void setSelectionMode(int selectionMode) {
+		switch (selectionMode) {
+		case SINGLE_SELECTION:
+		case SINGLE_INTERVAL_SELECTION:
+		case MULTIPLE_INTERVAL_SELECTION:
+			break;
+		default:
+			throw new IllegalArgumentException("invalid selectionMode");
+		}
+
+		int oldMode = this.selectionMode;
+		this.selectionMode = selectionMode;
+		if (selectionMode >= oldMode || this.isSelectionEmpty()) return;
+
+		// trim the existing selection so that it complies with the new mode
+		if (selectionMode == SINGLE_SELECTION) {
+			int min = this.getMinSelectionIndex();
+			this.setSelectionInterval(min, min);
+		}
+		else {
+			this.setSelectionInterval(this.start(0), this.end(0));
+		}
+	}
+
+	@Override
+	public int getSelectionMode() {
+		return this.selectionMode;
+	}
+
+	@Override
+	public void addListSelectionListener(ListSelectionListener l) {
+		this.listenerList.add(ListSelectionListener.class, l);
+	}
+
+	@Override
+	public void removeListSelectionListener(ListSelectionListener l) {
+		this.listenerList.remove(ListSelectionListener.class, l);
+	}
+
+	/**
+	 * Returns an array of all the list selection listeners registered on this model.
+	 * @return
+	 */
+	public ListSelectionListener[] getListSelectionListeners() {
+		return this.listenerList.getListeners(ListSelectionListener.class);
+	}
+
+	/**
+	 * Returns an array of all the listeners of the given type registered on this model.
+	 * @param listenerType the type of listener requested
+	 * @return
+	 */
+	public <T extends EventListener> T[] getListeners(Class<T> listenerType) {
+		return this.listenerList.getListeners(listenerType);
+	}
+
+	/**
+	 * Returns all selected indices in increasing order. Unlike the default selection
+	 * model, this does not scan every index between the minimum and maximum.
+	 * @return
+	 */
+	public int[] getSelectedIndices() {
+		int[] ret = new int[this.getSelectedItemsCount()];
+		int n = 0;
+		for (int i = 0; i < this.intervalCount; i++) {
+			for (int j = this.start(i); j <= this.end(i); j++) {
+				ret[n++] = j;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of selected indices.
+	 * @return
+	 */
+	public int getSelectedItemsCount() {
+		int ret = 0;
+		for (int i = 0; i < this.intervalCount; i++) {
+			ret += this.end(i) - this.start(i) + 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of disjoint intervals which make up the selection.
+	 * @return the number of intervals; zero if the selection is empty
+	 */
+	public int getSelectedIntervalCount() {
+		return this.intervalCount;
+	}
+
+	/**
+	 * Returns the first index of one of the disjoint intervals which make up the
+	 * selection. Intervals are numbered in increasing order of their indices.
+	 * @param interval Number of the interval, less than {@link #getSelectedIntervalCount()}
+	 * @return the lowest selected index in the interval
+	 * @throws IndexOutOfBoundsException if there is no such interval
+	 */
+	public int getSelectedIntervalStart(int interval) {
+		if (interval < 0 || interval >= this.intervalCount) {
+			throw new IndexOutOfBoundsException("Interval: " + interval + ", Count: " +
+					this.intervalCount);
+		}
+		return this.start(interval);
+	}
+
+	/**
+	 * Returns the last index of one of the disjoint intervals which make up the
+	 * selection. Intervals are numbered in increasing order of their indices.
+	 * @param interval Number of the interval, less than {@link #getSelectedIntervalCount()}
+	 * @return the highest selected index in the interval, which is inclusive
+	 * @throws IndexOutOfBoundsException if there is no such interval
+	 */
+	public int getSelectedIntervalEnd(int interval) {
+		if (interval < 0 || interval >= this.intervalCount) {
+			throw new IndexOutOfBoundsException("Interval: " + interval + ", Count: " +
+					this.intervalCount);
+		}
+		return this.end(interval);
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		ReorderTrackingSelectionModel ret = (ReorderTrackingSelectionModel)super.clone();
+		ret.bounds = this.bounds.clone();
+		ret.listenerList = new EventListenerList();
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(this.getClass().getName());
+		sb.append(' ').append(Integer.toString(this.hashCode()));
+		sb.append(' ').append(this.getValueIsAdjusting() ? "~" : "=");
+		sb.append('[');
+		for (int i = 0; i < this.intervalCount; i++) {
+			if (i > 0) sb.append(", ");
+			sb.append(this.start(i)).append('-').append(this.end(i));
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * Notifies listeners that the selection has changed over the given range.
+	 * @param firstIndex the first index in the interval
+	 * @param lastIndex the last index in the interval
+	 * @param isAdjusting true if this is one in a series of multiple events
+	 */
+	protected void fireValueChanged(int firstIndex, int lastIndex, boolean isAdjusting) {
+		Object[] listeners = this.listenerList.getListenerList();
+		ListSelectionEvent e = null;
+
+		for (int i = listeners.length - 2; i >= 0; i -= 2) {
+			if (listeners[i] == ListSelectionListener.class) {
+				if (e == null) {
+					e = new ListSelectionEvent(this, firstIndex, lastIndex, isAdjusting);
+				}
+				((ListSelectionListener)listeners[i + 1]).valueChanged(e);
+			}
+		}
+	}
+
+	private void fireValueChanged(boolean adjusting) {
+		if (this.lastChangedIndex == MIN) return;
+
+		int first = this.firstChangedIndex;
+		int last = this.lastChangedIndex;
+		this.firstChangedIndex = MAX;
+		this.lastChangedIndex = MIN;
+		this.fireValueChanged(first, last, adjusting);
+	}
+
+	private void fireValueChanged() {
+		if (this.lastAdjustedIndex == MIN) return;
+
+		if (this.isAdjusting) {
+			this.firstChangedIndex = Math.min(this.firstChangedIndex, this.firstAdjustedIndex);
+			this.lastChangedIndex = Math.max(this.lastChangedIndex, this.lastAdjustedIndex);
+		}
+		int first = this.firstAdjustedIndex;
+		int last = this.lastAdjustedIndex;
+		this.firstAdjustedIndex = MAX;
+		this.lastAdjustedIndex = MIN;
+		this.fireValueChanged(first, last, this.isAdjusting);
+	}
+
+	private void markAdjusted(int first, int last) {
+		if (first < 0 || last < 0) return;
+
+		this.firstAdjustedIndex = Math.min(this.firstAdjustedIndex, first);
+		this.lastAdjustedIndex = Math.max(this.lastAdjustedIndex, last);
+	}
+
+	private void updateLeadAnchorIndices(int anchor, int lead) {
+		if (this.anchorIndex != anchor) {
+			this.markAdjusted(this.anchorIndex, this.anchorIndex);
+			this.markAdjusted(anchor, anchor);
+		}
+		if (this.leadIndex != lead) {
+			this.markAdjusted(this.leadIndex, this.leadIndex);
+			this.markAdjusted(lead, lead);
+		}
+		this.anchorIndex = anchor;
+		this.leadIndex = lead;
+	}
+
+	/*
+	 * Interval storage. Interval i occupies bounds[2i] (start) and bounds[2i + 1] (end).
+	 */
+
+	private int start(int interval) {
+		return this.bounds[2 * interval];
+	}
+
+	private int end(int interval) {
+		return this.bounds[2 * interval + 1];
+	}
+
+	/**
+	 * @return the last interval whose start is no greater than <code>index</code>, or -1
+	 * if there is none.
+	 */
+	private int lastStartAtMost(int index) {
+		int lo = 0;
+		int hi = this.intervalCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.start(mid) <= index) lo = mid + 1;
+			else hi = mid - 1;
+		}
+		return hi;
+	}
+
+	/**
+	 * @return the first interval whose end is no less than <code>index</code>, or the
+	 * interval count if there is none.
+	 */
+	private int firstEndAtLeast(int index) {
+		int lo = 0;
+		int hi = this.intervalCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.end(mid) >= index) hi = mid - 1;
+			else lo = mid + 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Replaces intervals <code>first</code> through <code>last</code> (inclusive; may be
+	 * an empty range) with the given pairs.
+	 */
+	private void splice(int first, int last, int... pairs) {
+		int removed = last - first + 1;
+		int added = pairs.length / 2;
+		int newCount = this.intervalCount - removed + added;
+
+		if (2 * newCount > this.bounds.length) {
+			int[] grown = new int[Math.max(2 * newCount, 2 * this.bounds.length)];
+			System.arraycopy(this.bounds, 0, grown, 0, 2 * this.intervalCount);
+			this.bounds = grown;
+		}
+		if (removed != added) {
+			System.arraycopy(this.bounds, 2 * (last + 1), this.bounds, 2 * (first + added),
+					2 * (this.intervalCount - last - 1));
+		}
+		System.arraycopy(pairs, 0, this.bounds, 2 * first, pairs.length);
+		this.intervalCount = newCount;
+	}
+
+	/**
+	 * Selects the given range, merging it with any intervals it touches.
+	 * @return <code>true</code> if the selection changed.
+	 */
+	private boolean addRange(int min, int max) {
+		int first = this.firstEndAtLeast(min - 1);
+		int last = this.lastStartAtMost(max == MAX ? max : max + 1);
+
+		if (first > last) {
+			this.splice(first, first - 1, min, max);
+			return true;
+		}
+		if (first == last && this.start(first) <= min && this.end(first) >= max) {
+			return false;
+		}
+
+		this.splice(first, last, Math.min(min, this.start(first)),
+				Math.max(max, this.end(last)));
+		return true;
+	}
+
+	/**
+	 * Deselects the given range, trimming or splitting any intervals it touches.
+	 * @return <code>true</code> if the selection changed.
+	 */
+	private boolean removeRange(int min, int max) {
+		int first = this.firstEndAtLeast(min);
+		int last = this.lastStartAtMost(max);
+		if (first > last) return false;
+
+		boolean keepLeft = this.start(first) < min;
+		boolean keepRight = this.end(last) > max;
+		int[] pairs = new int[(keepLeft ? 2 : 0) + (keepRight ? 2 : 0)];
+		int n = 0;
+		if (keepLeft) {
+			pairs[n++] = this.start(first);
+			pairs[n++] = min - 1;
+		}
+		if (keepRight) {
+			pairs[n++] = max + 1;
+			pairs[n++] = this.end(last);
+		}
+		this.splice(first, last, pairs);
+		return true;
+	}
+
+	private void shiftFrom(int interval, int delta) {
+		for (int i = 2 * interval; i < 2 * this.intervalCount; i++) {
+			this.bounds[i] += delta;
+		}
+	}
+
+	/**
+	 * Makes room for <code>length</code> unselected indices starting at
+	 * <code>index</code>, shifting everything at or after it.
+	 * @return <code>true</code> if any selected index moved.
+	 */
+	private boolean openGap(int index, int length) {
+		int first = this.firstEndAtLeast(index);
+		if (first >= this.intervalCount) return false;
+
+		if (this.start(first) < index) {
+			int oldEnd = this.end(first);
+			this.bounds[2 * first + 1] = index - 1;
+			this.splice(first + 1, first, index, oldEnd);
+			first++;
+		}
+		this.shiftFrom(first, length);
+		return true;
+	}
+
+	/**
+	 * Removes the indices from <code>min</code> to <code>max</code>, shifting everything
+	 * after them to close the gap.
+	 * @return <code>true</code> if any selected index was removed or moved.
+	 */
+	private boolean closeGap(int min, int max) {
+		boolean changed = this.removeRange(min, max);
+		int first = this.firstEndAtLeast(max + 1);
+		if (first >= this.intervalCount) return changed;
+
+		this.shiftFrom(first, min - max - 1);
+		if (first > 0 && this.end(first - 1) + 1 >= this.start(first)) {
+			this.splice(first - 1, first, this.start(first - 1), this.end(first));
+		}
+		return true;
+	}
+}
@@ -0,0 +1,236 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.TransferHandler;
+
+import com.gmail.at.kevinburnseit.collections.CollectionReorderable;
+
+/**
+ * <p>
+ * A TransferHandler which lets the user reorder the records of a
+ * {@link RxTableWithMovableRecordControls} by dragging them. Only drags which begin and
+ * end in the same table are handled here. Such a drag never touches the records
+ * themselves: the transferable carries nothing but the index and length of the dragged
+ * block, and dropping it results in one call to
+ * {@link CollectionReorderable#moveRange(int, int, int)} on the widget's model.
+ * </p>
+ * <p>
+ * Everything else, such as copying to or pasting from the clipboard, is passed on to the
+ * handler which the table had before this one was installed. For technical reasons, this
+ * class is not package-private; however, it is probably not useful for anything other
+ * than this package. Use
+ * {@link RxTableWithMovableRecordControls#setDragReorderingEnabled(boolean)} to install it.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class RowReorderTransferHandler extends TransferHandler {
+	/**
+	 * The block of rows being dragged. This is the only data a local drag carries.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public static final class RowBlock {
+		private final JTable table;
+		private final int first;
+		private final int count;
+
+		RowBlock(JTable table, int first, int count) {
+			this.table = table;
+			this.first = first;
+			this.count = count;
+		}
+
+		/**
+		 * @return the table the rows were dragged from
+		 */
+		public JTable getTable() {
+			return table;
+		}
+
+		/**
+		 * @return the index of the first dragged row
+		 */
+		public int getFirst() {
+			return first;
+		}
+
+		/**
+		 * @return the number of dragged rows
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+
+	private static class RowBlockTransferable implements Transferable {
+		private final RowBlock block;
+
+		public RowBlockTransferable(RowBlock block) {
+			this.block = block;
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return new DataFlavor[] { ROW_BLOCK_FLAVOR };
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(DataFlavor flavor) {
+			return ROW_BLOCK_FLAVOR.equals(flavor);
+		}
+
+		@Override
+		public Object getTransferData(DataFlavor flavor)
+				throws UnsupportedFlavorException, IOException {
+			if (!this.isDataFlavorSupported(flavor)) {
+				throw new UnsupportedFlavorException(flavor);
+			}
+			return this.block;
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 7203906839018233658L;
+	/**
+	 * The flavor of a drag between rows of the same table. Its representation class is
+	 * {@link RowBlock}, and it can only be transferred within this JVM.
+	 */
+	public static final DataFlavor ROW_BLOCK_FLAVOR = createRowBlockFlavor();
+
+	private RxTableWithMovableRecordControls<?> widget;
+	private TransferHandler delegate;
+	/**
+	 * The block being dragged out of this handler's table, if a drag is in progress.
+	 */
+	private RowBlock exporting = null;
+
+	/**
+	 * Constructor.
+	 * @param widget The widget whose table and model this handler operates on
+	 * @param delegate The handler to which everything other than reordering drags is
+	 * passed. May be <code>null</code>, in which case nothing else is supported.
+	 */
+	public RowReorderTransferHandler(RxTableWithMovableRecordControls<?> widget,
+			TransferHandler delegate) {
+		super();
+		this.widget = widget;
+		this.delegate = delegate;
+	}
+
+	private static DataFlavor createRowBlockFlavor() {
+		try {
+			return new DataFlavor(DataFlavor.javaJVMLocalObjectMimeType + ";class=" +
+					RowBlock.class.getName(), "Table rows",
+					RowBlock.class.getClassLoader());
+		}
+		catch (ClassNotFoundException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Returns the handler to which everything other than reordering drags is passed.
+	 * @return
+	 */
+	public TransferHandler getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Replaces the handler to which everything other than reordering drags is passed.
+	 * @param delegate The new handler. May be <code>null</code>.
+	 */
+	void setDelegate(TransferHandler delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public int getSourceActions(JComponent c) {
+		return MOVE;
+	}
+
+	@Override
+	protected Transferable createTransferable(JComponent c) {
+		RxTableWithAddedRecords table = this.widget.getTable();
+		if (c != table) return null;
+		if (table.getRowSorter() != null) return null;
+		if (!this.widget.isReorderingAllowed()) return null;
+
+		ListSelectionModel lsm = table.getSelectionModel();
+		int first = lsm.getMinSelectionIndex();
+		int last = lsm.getMaxSelectionIndex();
+		if (first == -1) return null;
+
+		// only a contiguous block can be moved as a unit
+		for (int i = first + 1; i < last; i++) {
+			if (!lsm.isSelectedIndex(i)) return null;
+		}
+
+		this.exporting = new RowBlock(table, first, last - first + 1);
+		return new RowBlockTransferable(this.exporting);
+	}
+
+	@Override
+	protected void exportDone(JComponent source, Transferable data, int action) {
+		this.exporting = null;
+	}
+
+	@Override
+	public boolean canImport(TransferSupport support) {
+		if (!support.isDataFlavorSupported(ROW_BLOCK_FLAVOR)) {
+			return (this.delegate != null) && this.delegate.canImport(support);
+		}
+
+		if (!support.isDrop()) return false;
+		if (this.exporting == null) return false;
+		if (support.getComponent() != this.exporting.getTable()) return false;
+		if (this.widget.getModel() == null) return false;
+		if ((support.getSourceDropActions() & MOVE) == 0) return false;
+
+		support.setDropAction(MOVE);
+		return true;
+	}
+
+	@Override
+	public boolean importData(TransferSupport support) {
+		if (!support.isDataFlavorSupported(ROW_BLOCK_FLAVOR)) {
+			return (this.delegate != null) && this.delegate.importData(support);
+		}
+		if (!this.canImport(support)) return false;
+
+		JTable.DropLocation dl = (JTable.DropLocation)support.getDropLocation();
+		int dropRow = dl.getRow();
+		int first = this.exporting.getFirst();
+		int count = this.exporting.getCount();
+		if (dropRow == -1 || (dropRow >= first && dropRow <= first + count)) return false;
+
+		RxTableWithAddedRecords table = this.widget.getTable();
+		if (table.isEditing()) {
+			table.getCellEditor().stopCellEditing();
+		}
+
+		// the drop row is counted with the dragged rows still in place
+		int newIndex = (dropRow > first) ? dropRow - count : dropRow;
+		this.widget.getModel().moveRange(first, count, newIndex);
+		return true;
+	}
+
+	@Override
+	public void exportToClipboard(JComponent comp, Clipboard clip, int action)
+			throws IllegalStateException {
+		if (this.delegate != null) {
+			this.delegate.exportToClipboard(comp, clip, action);
+		}
+	}
+}
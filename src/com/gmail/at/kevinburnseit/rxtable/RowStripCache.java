@@ -0,0 +1,282 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.JTable;
+
+/**
+ * <p>
+ * Paints a table from images of its rows, each rendered once and then reused until the
+ * row changes, so that scrolling a table whose renderers are expensive costs little more
+ * than copying images. Used by {@link RXTable#setRowStripCaching(boolean)}.
+ * </p>
+ * <p>
+ * A strip is discarded whenever the table asks for any part of it to be repainted. This
+ * covers every change the table shows: it repaints rows when the model reports changes
+ * to them, when they are selected or deselected, and when the focused cell moves, and
+ * repaints everything when its columns are resized, moved, added or removed. Scrolling
+ * does not ask the table to repaint, so rows which come back into view are drawn from
+ * their strips. Only the strips of the rows most recently painted are kept, a few
+ * screenfuls of them.
+ * </p>
+ * <p>
+ * A strip covers only the columns which are at least partly visible, not the whole
+ * width of the table, so a wide table costs no more memory than a narrow one; scrolling
+ * sideways past a column boundary renders the rows again. If even the visible columns
+ * span more than {@link #MAX_STRIP_WIDTH} pixels, or the table is asked to paint outside
+ * them, it is painted directly instead.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+final class RowStripCache {
+	/**
+	 * The least number of strips kept.
+	 */
+	private static final int MIN_CAPACITY = 64;
+	/**
+	 * The number of screenfuls of strips kept.
+	 */
+	private static final int SCREENFULS = 3;
+	/**
+	 * The widest strip rendered, in pixels before scaling.
+	 */
+	static final int MAX_STRIP_WIDTH = 4096;
+
+	/**
+	 * An image of a row, and the geometry it was rendered for.
+	 */
+	private static final class Strip {
+		final BufferedImage image;
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		final double scaleX;
+		final double scaleY;
+
+		Strip(BufferedImage image, int x, int y, int width, int height, double scaleX,
+				double scaleY) {
+			this.image = image;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+		}
+
+		boolean fits(int x, int y, int width, int height, double scaleX, double scaleY) {
+			return this.x == x && this.y == y && this.width == width &&
+					this.height == height &&
+					this.scaleX == scaleX && this.scaleY == scaleY;
+		}
+	}
+
+	private final JTable table;
+	/**
+	 * Strips by view row, least recently painted first. Guarded by <code>this</code>,
+	 * since repaints can be requested from any thread.
+	 */
+	private final LinkedHashMap<Integer, Strip> strips;
+	private int capacity = MIN_CAPACITY;
+	/**
+	 * Counts invalidations, so that a strip rendered while its row was invalidated is not
+	 * kept.
+	 */
+	private int generation = 0;
+	private long renderCount = 0;
+	private long hitCount = 0;
+
+	RowStripCache(JTable table) {
+		this.table = table;
+		this.strips = new LinkedHashMap<Integer, Strip>(16, 0.75f, true) {
+			/**
+			 *
+			 */
+			private static final long serialVersionUID = -6057186364092310712L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Strip> eldest) {
+				return this.size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Discards the strips which overlap a band of the table.
+	 * @param y The top of the band
+	 * @param height The height of the band
+	 */
+	synchronized void invalidate(int y, int height) {
+		this.generation++;
+		if (this.strips.isEmpty()) return;
+
+		long bottom = (long)y + height;
+		Iterator<Strip> it = this.strips.values().iterator();
+		while (it.hasNext()) {
+			Strip s = it.next();
+			if (s.y < bottom && s.y + s.height > y) it.remove();
+		}
+	}
+
+	/**
+	 * Discards all strips.
+	 */
+	synchronized void clear() {
+		this.generation++;
+		this.strips.clear();
+	}
+
+	/**
+	 * @return the number of rows rendered since the cache was created
+	 */
+	synchronized long getRenderCount() {
+		return this.renderCount;
+	}
+
+	/**
+	 * @return the number of rows drawn from their strips since the cache was created
+	 */
+	synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Paints the part of the table within the clip of <code>g</code>, as the table's UI
+	 * delegate would.
+	 * @param g Graphics for the table, which is not changed
+	 */
+	void paint(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.table.getWidth(), this.table.getHeight());
+		}
+		if (this.table.isOpaque()) {
+			g.setColor(this.table.getBackground());
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		}
+
+		int rows = this.table.getRowCount();
+		if (rows == 0 || this.table.getColumnCount() == 0) return;
+		int first = this.table.rowAtPoint(new Point(0, clip.y));
+		if (first == -1) {
+			if (clip.y >= 0) return;
+			first = 0;
+		}
+		int last = this.table.rowAtPoint(new Point(0, clip.y + clip.height - 1));
+		if (last == -1) last = rows - 1;
+
+		Rectangle visible = this.table.getVisibleRect();
+		Rectangle span = this.columnSpan(visible);
+		if (span.width > MAX_STRIP_WIDTH || clip.x < span.x ||
+				clip.x + clip.width > span.x + span.width) {
+			this.table.getUI().paint(g, this.table);
+			return;
+		}
+
+		int visibleRows = visible.height / Math.max(1, this.table.getRowHeight()) + 1;
+		synchronized (this) {
+			this.capacity = Math.max(MIN_CAPACITY, SCREENFULS * visibleRows);
+		}
+
+		double scaleX = 1;
+		double scaleY = 1;
+		if (g instanceof Graphics2D) {
+			AffineTransform t = ((Graphics2D)g).getTransform();
+			scaleX = t.getScaleX();
+			scaleY = t.getScaleY();
+		}
+		int x = span.x;
+		int width = span.width;
+		for (int r = first; r <= last; r++) {
+			Rectangle cell = this.table.getCellRect(r, 0, true);
+			Strip strip;
+			int startGeneration;
+			synchronized (this) {
+				strip = this.strips.get(r);
+				startGeneration = this.generation;
+			}
+			if (strip == null ||
+					!strip.fits(x, cell.y, width, cell.height, scaleX, scaleY)) {
+				strip = this.render(x, cell.y, width, cell.height, scaleX, scaleY);
+				synchronized (this) {
+					this.renderCount++;
+					if (this.generation == startGeneration) this.strips.put(r, strip);
+				}
+			}
+			else {
+				synchronized (this) {
+					this.hitCount++;
+				}
+			}
+			g.drawImage(strip.image, x, cell.y, width, cell.height, null);
+		}
+	}
+
+	/**
+	 * Returns the horizontal extent of the columns which are at least partly within a
+	 * rectangle of the table. Only its x and width are meaningful.
+	 */
+	private Rectangle columnSpan(Rectangle visible) {
+		int left = Math.max(0, visible.x);
+		int right = Math.min(this.table.getWidth(), visible.x + visible.width);
+		if (left >= right) return new Rectangle(left, 0, 0, 0);
+
+		int firstColumn = this.table.columnAtPoint(new Point(left, 0));
+		int lastColumn = this.table.columnAtPoint(new Point(right - 1, 0));
+		if (firstColumn != -1) {
+			left = Math.min(left, this.table.getCellRect(0, firstColumn, true).x);
+		}
+		if (lastColumn != -1) {
+			Rectangle r = this.table.getCellRect(0, lastColumn, true);
+			right = Math.max(right, r.x + r.width);
+		}
+		return new Rectangle(left, 0, right - left, 0);
+	}
+
+	private Strip render(int x, int y, int width, int height, double scaleX,
+			double scaleY) {
+		int imageWidth = Math.max(1, (int)Math.ceil(width * scaleX));
+		int imageHeight = Math.max(1, (int)Math.ceil(height * scaleY));
+		BufferedImage image = this.createImage(imageWidth, imageHeight);
+
+		Graphics2D g = image.createGraphics();
+		try {
+			g.scale(scaleX, scaleY);
+			g.translate(-x, -y);
+			g.clipRect(x, y, width, height);
+			if (this.table.isOpaque()) {
+				g.setColor(this.table.getBackground());
+				g.fillRect(x, y, width, height);
+			}
+			// the UI delegate paints only the rows within the clip
+			this.table.getUI().paint(g, this.table);
+		}
+		finally {
+			g.dispose();
+		}
+		return new Strip(image, x, y, width, height, scaleX, scaleY);
+	}
+
+	private BufferedImage createImage(int width, int height) {
+		boolean opaque = this.table.isOpaque();
+		GraphicsConfiguration gc = this.table.getGraphicsConfiguration();
+		if (gc != null) {
+			return gc.createCompatibleImage(width, height,
+					opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+		}
+		return new BufferedImage(width, height,
+				opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+	}
+}
@@ -7,7 +7,9 @@ import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Vector;
 
 import javax.accessibility.AccessibleContext;
@@ -17,12 +19,22 @@ import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
 import javax.swing.SwingUtilities;
+import javax.swing.TransferHandler;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellEditor;
+import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+import com.gmail.at.kevinburnseit.collections.TableModelMoveEvent;
+import com.gmail.at.kevinburnseit.collections.TableModelPermutationEvent;
+import com.gmail.at.kevinburnseit.collections.TableModelView;
 
 /**
  * A further extension of Rob Camick's {@link RXTable}, the source of which is available
@@ -38,6 +50,15 @@ import javax.swing.table.TableModel;
  * menu will appear when the user right-clicks outside the table. </li>
  * <li>Adds accessibility support </li>
  * <li>Allows external functions to listen for start-edit/end-edit events</li>
+ * <li>When used with a {@link ReorderTrackingSelectionModel}, keeps the selection with
+ * its rows when the model reports a {@link TableModelMoveEvent} or a
+ * {@link TableModelPermutationEvent}</li>
+ * <li>Translates record numbers through any RowSorter and {@link TableModelView} to the
+ * record of the underlying model; see {@link #convertRecordToSource(int)}</li>
+ * <li>Supports find-as-you-type searching of chosen columns, with matching rows
+ * highlighted; see {@link #installSearch(int...)}</li>
+ * <li>Copies and pastes large blocks of cells quickly, pasting them with a single model
+ * event; see {@link #installClipboardHandler()}</li>
  * </ul>
  * @author Kevin J. Burns
  * @version 1.0
@@ -179,6 +200,8 @@ public class RxTableWithAddedRecords extends RXTable {
 			new AccessibleRxTableWithAddedRecords();
 	private AddRecordAction addAction;
 	private RemoveRecordAction removeAction;
+	private TableSearch search = null;
+	private TableClipboardHandler clipboardHandler = null;
 	
 	/**
 	 * Fetches the action which, when executed, requests that a record be added to the
@@ -519,9 +542,260 @@ public class RxTableWithAddedRecords extends RXTable {
 		
 		ListSelectionModel lsm = this.getSelectionModel();
 		if (record == -1) {
-			lsm.clearSelection();
+			if (!lsm.isSelectionEmpty()) lsm.clearSelection();
+		}
+		else if (lsm.getMinSelectionIndex() != record || lsm.getMaxSelectionIndex() != record) {
+			lsm.setSelectionInterval(record, record);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.swing.JTable#tableChanged(javax.swing.event.TableModelEvent)
+	 * Overridden so that a selection model which can track reorders is told about moves
+	 * and permutations. JTable itself only sees an update of the affected rows.
+	 */
+	@Override
+	public void tableChanged(TableModelEvent e) {
+		super.tableChanged(e);
+		
+		if (this.getRowSorter() != null) return;
+		if (!(this.selectionModel instanceof ReorderTrackingSelectionModel)) return;
+		ReorderTrackingSelectionModel rtsm = (ReorderTrackingSelectionModel)this.selectionModel;
+		
+		if (e instanceof TableModelMoveEvent) {
+			TableModelMoveEvent ev = (TableModelMoveEvent)e;
+			rtsm.moveIndexInterval(ev.getMoveSource(), ev.getMoveLength(), 
+					ev.getMoveDestination());
+		}
+		else if (e instanceof TableModelPermutationEvent) {
+			TableModelPermutationEvent ev = (TableModelPermutationEvent)e;
+			rtsm.permuteIndices(ev.getFirstRow(), ev.getNewIndices());
+		}
+	}
+
+	/**
+	 * Translates a record (row) number of this table to the number of the same record in
+	 * the model which ultimately holds the data. The record number is first converted
+	 * through the table's RowSorter, if any, and then through each {@link TableModelView}
+	 * in turn, starting with the table's own model.
+	 * @param record Record number in this table, or -1
+	 * @return The record number in the underlying model, or -1 if <code>record</code>
+	 * was -1
+	 */
+	public int convertRecordToSource(int record) {
+		if (record < 0) return -1;
+		
+		int ret = this.convertRowIndexToModel(record);
+		TableModel m = this.getModel();
+		while (m instanceof TableModelView) {
+			TableModelView view = (TableModelView)m;
+			ret = view.convertRowIndexToSource(ret);
+			m = view.getSourceModel();
+		}
+		return ret;
+	}
+
+	/**
+	 * Starts indexing the text of some columns of the model, so that the table can be
+	 * searched with the returned {@link TableSearch}. If the model is replaced, the same
+	 * search goes on to index the new one, keeping its text and highlight. Any search
+	 * already installed is removed.
+	 * @param columns Indices of the model columns to search. If none are given, every
+	 * column is searched.
+	 * @return the search
+	 */
+	public TableSearch installSearch(int... columns) {
+		this.uninstallSearch();
+		this.search = new TableSearch(this, columns);
+		return this.search;
+	}
+
+	/**
+	 * Removes the search installed by {@link #installSearch(int...)}, if any, and
+	 * releases its index.
+	 */
+	public void uninstallSearch() {
+		if (this.search == null) return;
+		
+		this.search.dispose();
+		this.search = null;
+		this.repaint();
+	}
+
+	/**
+	 * @return the search installed by {@link #installSearch(int...)}, or
+	 * <code>null</code> if there is none
+	 */
+	public TableSearch getSearch() {
+		return this.search;
+	}
+
+	/**
+	 * Replaces the table's clipboard support with a {@link TableClipboardHandler}, which
+	 * copies large selections without formatting them until they are pasted, and pastes
+	 * on a background thread with a single model event. Drags and drops, including
+	 * reordering by dragging, go on working as before.
+	 * @return the handler
+	 */
+	public TableClipboardHandler installClipboardHandler() {
+		if (this.clipboardHandler != null) return this.clipboardHandler;
+		
+		TransferHandler current = this.getTransferHandler();
+		if (current instanceof RowReorderTransferHandler) {
+			RowReorderTransferHandler reorder = (RowReorderTransferHandler)current;
+			this.clipboardHandler = new TableClipboardHandler(reorder.getDelegate());
+			reorder.setDelegate(this.clipboardHandler);
+		}
+		else {
+			this.clipboardHandler = new TableClipboardHandler(current);
+			this.setTransferHandler(this.clipboardHandler);
+		}
+		return this.clipboardHandler;
+	}
+
+	/**
+	 * Removes the handler installed by {@link #installClipboardHandler()}, if any, and
+	 * restores the clipboard support the table had before.
+	 */
+	public void uninstallClipboardHandler() {
+		if (this.clipboardHandler == null) return;
+		
+		TransferHandler previous = this.clipboardHandler.getDelegate();
+		TransferHandler current = this.getTransferHandler();
+		if (current == this.clipboardHandler) {
+			this.setTransferHandler(previous);
+		}
+		else if (current instanceof RowReorderTransferHandler &&
+				((RowReorderTransferHandler)current).getDelegate() == this.clipboardHandler) {
+			((RowReorderTransferHandler)current).setDelegate(previous);
+		}
+		this.clipboardHandler = null;
+	}
+
+	/**
+	 * @return the handler installed by {@link #installClipboardHandler()}, or
+	 * <code>null</code> if there is none
+	 */
+	public TableClipboardHandler getClipboardHandler() {
+		return this.clipboardHandler;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.swing.JTable#setModel(javax.swing.table.TableModel)
+	 * Overridden so that an installed search follows the table to its new model.
+	 */
+	@Override
+	public void setModel(TableModel dataModel) {
+		super.setModel(dataModel);
+		
+		if (this.search != null) {
+			this.search.modelReplaced();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Replaces the model with another which has the same columns, without disturbing the
+	 * table any more than replacing all of its rows would. Where
+	 * {@link #setModel(TableModel)} treats the new model as a change of structure, which
+	 * recreates the columns from the model and so loses their widths, order, renderers
+	 * and editors, this keeps the column model as it is, and the table is only told that
+	 * all of its data changed. If the table has a {@link TableRowSorter}, it is given the
+	 * new model and keeps its sort keys, comparators and filter. Any other sorter is
+	 * removed unless it already sorts the new model. An installed {@link TableSearch}
+	 * carries on with the new model, keeping its text and highlight.
+	 * </p>
+	 * <p>
+	 * The selection is cleared, as it is whenever all of the data changes, and any edit
+	 * in progress is cancelled. If the new model does not have the same number of columns
+	 * as the old, this simply calls {@link #setModel(TableModel)}.
+	 * </p>
+	 * @param newModel The replacement model
+	 */
+	@SuppressWarnings("unchecked")
+	public void swapModel(TableModel newModel) {
+		if (newModel == null) {
+			throw new IllegalArgumentException("Cannot set a null TableModel");
+		}
+		TableModel oldModel = this.dataModel;
+		if (oldModel == newModel) return;
+		if (oldModel == null || oldModel.getColumnCount() != newModel.getColumnCount()) {
+			this.setModel(newModel);
+			return;
+		}
+		
+		if (this.isEditing()) this.getCellEditor().cancelCellEditing();
+		
+		// the sorter is taken away while it catches up with the new model, so that the
+		// table does not try to follow the rows it sorts
+		RowSorter<? extends TableModel> sorter = this.getRowSorter();
+		if (sorter != null) this.setRowSorter(null);
+		
+		oldModel.removeTableModelListener(this);
+		this.dataModel = newModel;
+		newModel.addTableModelListener(this);
+		this.tableChanged(new TableModelEvent(newModel));
+		this.firePropertyChange("model", oldModel, newModel);
+		
+		if (sorter instanceof TableRowSorter) {
+			TableRowSorter<TableModel> trs = (TableRowSorter<TableModel>)sorter;
+			this.moveSorter(trs, oldModel, newModel);
+			this.setRowSorter(trs);
+		}
+		else if (sorter != null && sorter.getModel() == newModel) {
+			this.setRowSorter(sorter);
+		}
+		
+		if (this.search != null) {
+			this.search.modelReplaced();
+		}
+	}
+
+	/**
+	 * Gives a sorter a new model with the same columns. Setting the model of a
+	 * DefaultRowSorter forgets its comparators and which columns are sortable, as well as
+	 * its sort keys, so they are put back afterwards and the rows sorted once.
+	 */
+	private void moveSorter(TableRowSorter<TableModel> trs, TableModel oldModel,
+			TableModel newModel) {
+		int columns = oldModel.getColumnCount();
+		List<? extends RowSorter.SortKey> keys = trs.getSortKeys();
+		RowFilter<? super TableModel, ? super Integer> filter = trs.getRowFilter();
+		// getComparator gives the default comparator when none has been set, and a
+		// default must not be set explicitly, as that stops it comparing strings
+		TableRowSorter<TableModel> defaults = new TableRowSorter<>(oldModel);
+		Comparator<?>[] comparators = new Comparator<?>[columns];
+		boolean[] sortable = new boolean[columns];
+		for (int c = 0; c < columns; c++) {
+			Comparator<?> comparator = trs.getComparator(c);
+			if (comparator != null && !comparator.equals(defaults.getComparator(c))) {
+				comparators[c] = comparator;
+			}
+			sortable[c] = trs.isSortable(c);
+		}
+		
+		trs.setModel(newModel);
+		for (int c = 0; c < columns; c++) {
+			if (comparators[c] != null) trs.setComparator(c, comparators[c]);
+			trs.setSortable(c, sortable[c]);
+		}
+		if (trs.getRowFilter() != filter) trs.setRowFilter(filter);
+		trs.setSortKeys(keys);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.swing.JTable#prepareRenderer(javax.swing.table.TableCellRenderer, int, int)
+	 * Overridden to highlight the cells which match the installed search.
+	 */
+	@Override
+	public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+		Component ret = super.prepareRenderer(renderer, row, column);
+		
+		if (this.search != null && !this.isCellSelected(row, column) &&
+				this.search.isHighlighted(row, column)) {
+			ret.setBackground(this.search.getHighlight());
 		}
-		else lsm.setSelectionInterval(record, record);
+		return ret;
 	}
 
 	/**
@@ -3,21 +3,40 @@ package com.gmail.at.kevinburnseit.rxtable;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DropMode;
 import javax.swing.Icon;
+import javax.swing.InputMap;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.TransferHandler;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.event.TableModelEvent;
@@ -25,7 +44,11 @@ import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 
+import com.gmail.at.kevinburnseit.collections.ArrayListWithTableModel;
+import com.gmail.at.kevinburnseit.collections.ChunkedLoader;
 import com.gmail.at.kevinburnseit.collections.CollectionReorderable;
+import com.gmail.at.kevinburnseit.collections.EditJournal;
+import com.gmail.at.kevinburnseit.collections.TableModelView;
 import com.gmail.at.kevinburnseit.rxtable.RxTableWithAddedRecords.MenuItemEnableListener;
 
 /**
@@ -59,6 +82,11 @@ import com.gmail.at.kevinburnseit.rxtable.RxTableWithAddedRecords.MenuItemEnable
  * setting alone.
  * </p>
  * <p>
+ * Unless a selection model is passed to the constructor, the table is given a
+ * {@link ReorderTrackingSelectionModel}, so that the selection follows a record when it
+ * is moved rather than being cleared and set again.
+ * </p>
+ * <p>
  * This class provides several constructors which are similar to those of JTable:
  * </p>
  * <ul>
@@ -102,6 +130,24 @@ import com.gmail.at.kevinburnseit.rxtable.RxTableWithAddedRecords.MenuItemEnable
  * By default, the action buttons are located below the table. You can change this
  * behavior by calling {@link #setButtonsLocation(String)}.
  * </p>
+ * <p>
+ * Records can also be reordered by dragging them within the table once
+ * {@link #setDragReorderingEnabled(boolean)} has been called, and from the keyboard
+ * once {@link #setMoveAccelerators(KeyStroke, KeyStroke)} has been called.
+ * </p>
+ * <p>
+ * Totals, averages and other aggregates of the table's columns can be shown directly
+ * below the table by calling {@link #getAggregateFooter()}.
+ * </p>
+ * <p>
+ * Large numbers of records can be loaded without freezing the user interface by calling
+ * {@link #load(Iterator, int)}. Records cannot be removed or moved until loading is
+ * finished.
+ * </p>
+ * <p>
+ * Changes to the records, including moves, can be undone and redone from the keyboard
+ * once {@link #installEditJournal(long)} has been called.
+ * </p>
  * @author Kevin J. Burns 
  *
  * @param <TableModelType> This is a virtual (anded) interface for TableModel and
@@ -205,6 +251,10 @@ public class RxTableWithMovableRecordControls
 	 * 
 	 */
 	private static final long serialVersionUID = -5984725319045224608L;
+	private static final String MOVE_UP_KEY_ACTION = "moveRecordUpByKey";
+	private static final String MOVE_DOWN_KEY_ACTION = "moveRecordDownByKey";
+	private static final String UNDO_KEY_ACTION = "undoRecordEdit";
+	private static final String REDO_KEY_ACTION = "redoRecordEdit";
 
 	private RxTableWithAddedRecords table;
 	private JScrollPane scrollPane;
@@ -220,13 +270,21 @@ public class RxTableWithMovableRecordControls
 	private HashMap<TableActionEnum, JMenuItem> actionMenus = new HashMap<>();
 	private HashMap<TableActionEnum, EasyTableAction> actions = new HashMap<>();
 	private TableModelListener currentModelListener = null;
+	private RowReorderTransferHandler reorderHandler = null;
+	private MoveKeyCoalescer moveKeyCoalescer = null;
+	private KeyStroke moveUpKey = null;
+	private KeyStroke moveDownKey = null;
+	private AggregateFooter aggregateFooter = null;
+	private ArrayList<SwingWorker<?, ?>> loaders = new ArrayList<>();
+	private EditJournal<?> editJournal = null;
 	
 	/**
 	 * See constructors for JTable.
 	 */
 	public RxTableWithMovableRecordControls() {
 		super();
-		this.table = new RxTableWithAddedRecords();
+		this.table = new RxTableWithAddedRecords(null, null, 
+				new ReorderTrackingSelectionModel());
 		this.finishConstructing();
 	}
 
@@ -246,7 +304,8 @@ public class RxTableWithMovableRecordControls
 	 */
 	public RxTableWithMovableRecordControls(TableModelType dm, TableColumnModel cm) {
 		super();
-		this.table = new RxTableWithAddedRecords(dm, cm);
+		this.table = new RxTableWithAddedRecords(dm, cm, 
+				new ReorderTrackingSelectionModel());
 		this.model = dm;
 		this.finishConstructing();
 	}
@@ -269,7 +328,8 @@ public class RxTableWithMovableRecordControls
 	 */
 	public RxTableWithMovableRecordControls(TableModelType dm) {
 		super();
-		this.table = new RxTableWithAddedRecords(dm);
+		this.table = new RxTableWithAddedRecords(dm, null, 
+				new ReorderTrackingSelectionModel());
 		this.model = dm;
 		this.finishConstructing();
 	}
@@ -311,6 +371,13 @@ public class RxTableWithMovableRecordControls
 		
 		this.table.getSelectionModel().addListSelectionListener(lsl);
 		
+		this.table.addPropertyChangeListener("rowSorter", new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				enableManipulationButtonsFromTableState();
+			}
+		});
+		
 		this.currentModelListener = new TableModelListener() {
 			@Override
 			public void tableChanged(TableModelEvent arg0) {
@@ -328,7 +395,7 @@ public class RxTableWithMovableRecordControls
 			@Override
 			public boolean popupInvoked(RxTableWithAddedRecords table1,
 					int recordNumber, JMenuItem item) {
-				return (recordNumber > 0);
+				return (recordNumber > 0) && isReorderingAllowed();
 			}
 		});
 		
@@ -382,6 +449,15 @@ public class RxTableWithMovableRecordControls
 		this.actions.put(TableActionEnum.MOVE_RECORD_DOWN, new MoveRecordDownAction(this));
 		this.actions.put(TableActionEnum.MOVE_RECORD_TO_BOTTOM, 
 				new MoveRecordToBottomAction(this));
+
+		// the move actions are disabled while loading by isReorderingAllowed()
+		EasyTableAction remove = this.actions.get(TableActionEnum.REMOVE_RECORD);
+		remove.addSupplementalEnabledCheck(remove.new SupplementalEnabledCheck() {
+			@Override
+			public boolean shouldBeEnabled() {
+				return !isLoading();
+			}
+		});
 	}
 
 	/**
@@ -406,6 +482,310 @@ public class RxTableWithMovableRecordControls
 		if (this.currentModelListener != null) {
 			this.model.addTableModelListener(this.currentModelListener);
 		}
+		this.restartEditJournal();
+	}
+
+	/**
+	 * <p>
+	 * Replaces the table's model with another which has the same columns, as a refresh
+	 * of the data rather than a change of structure; see
+	 * {@link RxTableWithAddedRecords#swapModel(TableModel)}. The columns keep their
+	 * order, widths, renderers and editors, a sorted table stays sorted, and the table
+	 * stays scrolled to the same place.
+	 * </p>
+	 * <p>
+	 * If both models are {@link ArrayListWithTableModel}s with key extractors, the records
+	 * which were selected are found in the new model by key and selected again; otherwise
+	 * the same rows are selected again, as far as the new model has them. The new model
+	 * can be built, and indexed with
+	 * {@link ArrayListWithTableModel#setKeyExtractor(com.gmail.at.kevinburnseit.collections.RecordKeyExtractor)},
+	 * on another thread, as long as nothing else is listening to it; see
+	 * {@link #swapTableModelInBackground(Callable)}.
+	 * </p>
+	 * @param model The replacement model
+	 */
+	public void swapTableModel(TableModelType model) {
+		TableModel oldModel = this.table.getModel();
+		if (oldModel == null || model == null) {
+			this.setTableModel(model);
+			return;
+		}
+		
+		JViewport viewport = this.scrollPane.getViewport();
+		Point position = viewport.getViewPosition();
+		int[] selected = this.table.getSelectedRows();
+		Object[] keys = new Object[selected.length];
+		boolean byKey = hasKeys(oldModel) && hasKeys(model);
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = this.table.convertRowIndexToModel(selected[i]);
+			if (byKey) keys[i] = keyOf((ArrayListWithTableModel<?>)oldModel, selected[i]);
+		}
+		
+		if (this.currentModelListener != null) {
+			oldModel.removeTableModelListener(this.currentModelListener);
+		}
+		this.model = model;
+		this.table.swapModel(model);
+		if (this.currentModelListener != null) {
+			this.model.addTableModelListener(this.currentModelListener);
+		}
+		this.restartEditJournal();
+		
+		ListSelectionModel lsm = this.table.getSelectionModel();
+		lsm.setValueIsAdjusting(true);
+		lsm.clearSelection();
+		for (int i = 0; i < selected.length; i++) {
+			int row = byKey ? ((ArrayListWithTableModel<?>)model).indexOfKey(keys[i]) :
+				selected[i];
+			if (row < 0 || row >= model.getRowCount()) continue;
+			
+			row = this.table.convertRowIndexToView(row);
+			if (row >= 0) lsm.addSelectionInterval(row, row);
+		}
+		lsm.setValueIsAdjusting(false);
+		
+		viewport.setViewPosition(position);
+		this.enableManipulationButtonsFromTableState();
+	}
+
+	/**
+	 * Builds a replacement model on a background thread and then swaps it in on the
+	 * event dispatch thread with {@link #swapTableModel(TableModelType)}. This suits
+	 * tables which are refreshed periodically with a freshly loaded copy of their data.
+	 * If the worker is cancelled before the model is built, the table is left alone. An
+	 * exception thrown by the builder is rethrown on the event dispatch thread, wrapped
+	 * in an {@link IllegalStateException}.
+	 * @param builder Builds the replacement model. It is called on a background thread,
+	 * so it must not touch the table or its current model.
+	 * @return The worker, which has been started
+	 */
+	public SwingWorker<TableModelType, Void> swapTableModelInBackground(
+			final Callable<? extends TableModelType> builder) {
+		SwingWorker<TableModelType, Void> ret = new SwingWorker<TableModelType, Void>() {
+			@Override
+			protected TableModelType doInBackground() throws Exception {
+				return builder.call();
+			}
+
+			@Override
+			protected void done() {
+				if (this.isCancelled()) return;
+				
+				try {
+					swapTableModel(this.get());
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				catch (ExecutionException ex) {
+					throw new IllegalStateException("Building the model failed", 
+							ex.getCause());
+				}
+			}
+		};
+		ret.execute();
+		return ret;
+	}
+
+	private static boolean hasKeys(TableModel m) {
+		return (m instanceof ArrayListWithTableModel) &&
+				((ArrayListWithTableModel<?>)m).getKeyExtractor() != null;
+	}
+
+	private static <T> Object keyOf(ArrayListWithTableModel<T> list, int row) {
+		return list.getKeyExtractor().getKey(list.get(row));
+	}
+
+	/**
+	 * Enables or disables reordering records by dragging them within the table. While
+	 * enabled, the table's transfer handler is a {@link RowReorderTransferHandler} which
+	 * passes anything other than a reordering drag to the table's previous handler, so
+	 * clipboard operations continue to work. Dropping a dragged block of records moves it
+	 * with a single call to {@link CollectionReorderable#moveRange(int, int, int)}.
+	 * Reordering by dragging is not available while the table has a row sorter.
+	 * <p>
+	 * While a drag is held near the top or bottom of the table, Swing scrolls the table
+	 * by one row at each tick of its auto-scroll timer. The viewport scrolls by copying
+	 * what it already shows, so only the row scrolled into view is painted, and moving the
+	 * drop line repaints only the lines it moves between. This depends on the viewport
+	 * keeping its default scroll mode, {@link javax.swing.JViewport#BLIT_SCROLL_MODE}.
+	 * </p>
+	 * @param enabled <code>true</code> to allow reordering by dragging
+	 */
+	public void setDragReorderingEnabled(boolean enabled) {
+		if (enabled == this.isDragReorderingEnabled()) return;
+		
+		if (enabled) {
+			this.reorderHandler = new RowReorderTransferHandler(this, 
+					this.table.getTransferHandler());
+			this.table.setTransferHandler(this.reorderHandler);
+			this.table.setDropMode(DropMode.INSERT_ROWS);
+			this.table.setDragEnabled(true);
+		}
+		else {
+			TransferHandler previous = this.reorderHandler.getDelegate();
+			this.reorderHandler = null;
+			this.table.setDragEnabled(false);
+			this.table.setDropMode(DropMode.USE_SELECTION);
+			this.table.setTransferHandler(previous);
+		}
+	}
+
+	/**
+	 * Returns whether records can be reordered by dragging them within the table.
+	 * @return
+	 */
+	public boolean isDragReorderingEnabled() {
+		return (this.reorderHandler != null);
+	}
+
+	/**
+	 * Binds keys which move the selected record up or down one slot while the table or
+	 * any other part of this widget has focus. Unlike the buttons, these bindings are
+	 * meant to be held down: presses which arrive faster than the table can repaint are
+	 * combined into one move of several slots and a single repaint, so the record keeps up
+	 * with the keyboard on large tables. Pass <code>null</code> for either key to remove
+	 * its binding.
+	 * @param up The key which moves the selected record up, such as control-UP
+	 * @param down The key which moves the selected record down, such as control-DOWN
+	 */
+	public void setMoveAccelerators(KeyStroke up, KeyStroke down) {
+		if (this.moveKeyCoalescer == null) {
+			this.moveKeyCoalescer = new MoveKeyCoalescer(this);
+			Action upAction = this.moveKeyCoalescer.createStepAction(-1, 
+					this.actions.get(TableActionEnum.MOVE_RECORD_UP));
+			Action downAction = this.moveKeyCoalescer.createStepAction(1, 
+					this.actions.get(TableActionEnum.MOVE_RECORD_DOWN));
+			this.table.getActionMap().put(MOVE_UP_KEY_ACTION, upAction);
+			this.table.getActionMap().put(MOVE_DOWN_KEY_ACTION, downAction);
+			this.getActionMap().put(MOVE_UP_KEY_ACTION, upAction);
+			this.getActionMap().put(MOVE_DOWN_KEY_ACTION, downAction);
+		}
+		
+		this.bindMoveKey(this.moveUpKey, up, MOVE_UP_KEY_ACTION);
+		this.moveUpKey = up;
+		this.bindMoveKey(this.moveDownKey, down, MOVE_DOWN_KEY_ACTION);
+		this.moveDownKey = down;
+	}
+
+	private void bindMoveKey(KeyStroke oldKey, KeyStroke newKey, String actionKey) {
+		// the table's own bindings take precedence while it has focus, so bind there too
+		InputMap[] maps = {
+				this.table.getInputMap(JComponent.WHEN_FOCUSED),
+				this.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT) };
+		for (InputMap map : maps) {
+			if (oldKey != null) map.remove(oldKey);
+			if (newKey != null) map.put(newKey, actionKey);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Starts recording changes to the records in an {@link EditJournal}, so that they can
+	 * be undone with control-Z and redone with control-Y (command-Z and command-Y on the
+	 * Mac) while the table or any other part of this widget has focus. Records moved by
+	 * several presses of a move button or key are put back with a single undo. The
+	 * journal is discarded and a new one started whenever the model is replaced.
+	 * </p>
+	 * <p>
+	 * This requires the model to be an {@link ArrayListWithTableModel}. Edits cannot be
+	 * undone or redone while records are being loaded.
+	 * </p>
+	 * @param byteBudget The most memory, in bytes, the journal may use; see
+	 * {@link EditJournal#setByteBudget(long)}
+	 * @return The journal, which can also be used directly, for example by menu items
+	 * @throws IllegalStateException if the model is not an {@link ArrayListWithTableModel}
+	 */
+	public EditJournal<?> installEditJournal(long byteBudget) {
+		if (!(this.model instanceof ArrayListWithTableModel)) {
+			throw new IllegalStateException(
+					"An edit journal requires an ArrayListWithTableModel");
+		}
+		if (this.editJournal != null) this.editJournal.dispose();
+		this.editJournal = createJournal((ArrayListWithTableModel<?>)this.model, byteBudget);
+		
+		if (this.getActionMap().get(UNDO_KEY_ACTION) == null) {
+			Action undoAction = new AbstractAction() {
+				/**
+				 *
+				 */
+				private static final long serialVersionUID = 4471902663185325717L;
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					if (editJournal != null && editJournal.canUndo() && !isLoading()) {
+						editJournal.undo();
+					}
+				}
+			};
+			Action redoAction = new AbstractAction() {
+				/**
+				 *
+				 */
+				private static final long serialVersionUID = -8063729145520938816L;
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					if (editJournal != null && editJournal.canRedo() && !isLoading()) {
+						editJournal.redo();
+					}
+				}
+			};
+			this.table.getActionMap().put(UNDO_KEY_ACTION, undoAction);
+			this.table.getActionMap().put(REDO_KEY_ACTION, redoAction);
+			this.getActionMap().put(UNDO_KEY_ACTION, undoAction);
+			this.getActionMap().put(REDO_KEY_ACTION, redoAction);
+			
+			int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+			this.bindMoveKey(null, KeyStroke.getKeyStroke(KeyEvent.VK_Z, mask), 
+					UNDO_KEY_ACTION);
+			this.bindMoveKey(null, KeyStroke.getKeyStroke(KeyEvent.VK_Y, mask), 
+					REDO_KEY_ACTION);
+		}
+		return this.editJournal;
+	}
+
+	/**
+	 * Stops recording changes to the records and removes the undo and redo keys.
+	 */
+	public void uninstallEditJournal() {
+		if (this.editJournal == null) return;
+		
+		this.editJournal.dispose();
+		this.editJournal = null;
+		int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+		this.bindMoveKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, mask), null, UNDO_KEY_ACTION);
+		this.bindMoveKey(KeyStroke.getKeyStroke(KeyEvent.VK_Y, mask), null, REDO_KEY_ACTION);
+		this.table.getActionMap().remove(UNDO_KEY_ACTION);
+		this.table.getActionMap().remove(REDO_KEY_ACTION);
+		this.getActionMap().remove(UNDO_KEY_ACTION);
+		this.getActionMap().remove(REDO_KEY_ACTION);
+	}
+
+	/**
+	 * Returns the journal recording changes to the records.
+	 * @return the journal, or <code>null</code> if
+	 * {@link #installEditJournal(long)} has not been called
+	 */
+	public EditJournal<?> getEditJournal() {
+		return this.editJournal;
+	}
+
+	private void restartEditJournal() {
+		if (this.editJournal == null) return;
+		
+		long budget = this.editJournal.getByteBudget();
+		if (this.model instanceof ArrayListWithTableModel) {
+			this.installEditJournal(budget);
+		}
+		else {
+			this.uninstallEditJournal();
+		}
+	}
+
+	private static <T> EditJournal<T> createJournal(ArrayListWithTableModel<T> list, 
+			long byteBudget) {
+		return new EditJournal<>(list, byteBudget);
 	}
 
 	/**
@@ -488,6 +868,38 @@ public class RxTableWithMovableRecordControls
 		return scrollPane;
 	}
 	
+	/**
+	 * Fetches the footer which shows aggregates of the table's columns, creating it and
+	 * placing it directly below the table the first time this function is called. The
+	 * footer scrolls sideways with the table. It is empty until a figure is chosen for at
+	 * least one column with
+	 * {@link AggregateFooter#setFunction(int, AggregateFooter.Function)}.
+	 * @return
+	 */
+	public AggregateFooter getAggregateFooter() {
+		if (this.aggregateFooter != null) return this.aggregateFooter;
+		
+		this.aggregateFooter = new AggregateFooter(this.table);
+		final JViewport footerViewport = new JViewport();
+		footerViewport.setView(this.aggregateFooter);
+		final JViewport tableViewport = this.scrollPane.getViewport();
+		tableViewport.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				footerViewport.setViewPosition(
+						new Point(tableViewport.getViewPosition().x, 0));
+			}
+		});
+		
+		JPanel tablePanel = new JPanel(new BorderLayout());
+		this.remove(this.scrollPane);
+		tablePanel.add(this.scrollPane, BorderLayout.CENTER);
+		tablePanel.add(footerViewport, BorderLayout.SOUTH);
+		this.add(tablePanel, BorderLayout.CENTER);
+		this.revalidate();
+		return this.aggregateFooter;
+	}
+	
 	/**
 	 * Changes the text on the table popup menu and the tooltip text on the manipulation
 	 * buttons.
@@ -560,6 +972,86 @@ public class RxTableWithMovableRecordControls
 		return model;
 	}
 	
+	/**
+	 * Reports whether the records of the table can currently be reordered. They cannot
+	 * be if the model is a {@link TableModelView} which does not preserve the order of
+	 * its source, such as a sorted
+	 * {@link com.gmail.at.kevinburnseit.collections.SortedFilteredTableModel}, since
+	 * the position of a record in such a view is not the user's to choose. Nor can they
+	 * be while records are being loaded; see {@link #isLoading()}, or while the table
+	 * has a {@link javax.swing.RowSorter}, since the move actions work on the selected
+	 * row and the selection is in the sorter's order rather than the model's.
+	 * @return <code>true</code> if the move actions may be used
+	 */
+	public boolean isReorderingAllowed() {
+		if (this.isLoading()) return false;
+		if (this.table.getRowSorter() != null) return false;
+		if (this.model instanceof TableModelView) {
+			return ((TableModelView)this.model).isOrderPreserving();
+		}
+		return true;
+	}
+	
+	/**
+	 * Loads records into the table's model on a background thread, appending them in
+	 * chunks so that the first rows are shown at once and the user interface stays
+	 * responsive; see {@link ChunkedLoader}. Until loading finishes, records cannot be
+	 * removed or moved. This must be called on the event dispatch thread.
+	 * @param records Supplies the records to append, and is only used on the loading
+	 * thread
+	 * @param expectedCount The number of records expected, used to report progress
+	 * through the loader's <code>progress</code> property, or a negative number if it is
+	 * unknown
+	 * @return The loader, which has been started, and which may be used to follow its
+	 * progress or to cancel it
+	 * @throws IllegalStateException if the model is not a {@link List}, as an
+	 * {@link ArrayListWithTableModel} is
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> ChunkedLoader<E> load(Iterator<? extends E> records, int expectedCount) {
+		if (!(this.model instanceof List)) {
+			throw new IllegalStateException("The model is not a list");
+		}
+		ChunkedLoader<E> ret = new ChunkedLoader<E>((List<E>)this.model, records,
+				expectedCount);
+		this.trackLoader(ret);
+		ret.execute();
+		return ret;
+	}
+
+	/**
+	 * Prevents records from being removed or moved until a worker which is changing the
+	 * model in the background is done. {@link #load(Iterator, int)} does this for the
+	 * loaders it starts. This must be called on the event dispatch thread.
+	 * @param loader The worker
+	 */
+	public void trackLoader(final SwingWorker<?, ?> loader) {
+		if (loader.isDone()) return;
+
+		this.loaders.add(loader);
+		loader.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent e) {
+				if (!"state".equals(e.getPropertyName()) ||
+						e.getNewValue() != SwingWorker.StateValue.DONE) return;
+
+				loader.removePropertyChangeListener(this);
+				loaders.remove(loader);
+				enableManipulationButtonsFromTableState();
+			}
+		});
+		this.enableManipulationButtonsFromTableState();
+	}
+
+	/**
+	 * Reports whether records are being loaded by a worker passed to
+	 * {@link #trackLoader(SwingWorker)} or started by {@link #load(Iterator, int)}.
+	 * @return <code>true</code> if loading is under way
+	 */
+	public boolean isLoading() {
+		return !this.loaders.isEmpty();
+	}
+
 	/**
 	 * Gets an action associated with this table
 	 * @param action An action enum value
@@ -0,0 +1,555 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.InputEvent;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.TransferHandler;
+import javax.swing.UIManager;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+import com.gmail.at.kevinburnseit.collections.ArrayListWithTableModel;
+import com.gmail.at.kevinburnseit.collections.DelimitedText;
+import com.gmail.at.kevinburnseit.collections.TableModelMoveEvent;
+import com.gmail.at.kevinburnseit.collections.TableModelPermutationEvent;
+import com.gmail.at.kevinburnseit.collections.TableModelView;
+
+/**
+ * <p>
+ * A TransferHandler which copies and pastes large blocks of cells quickly. Copying
+ * takes only the values of the selected cells; they are formatted as tab-separated text,
+ * a row at a time, only when the text is asked for, either as a String or as a Reader
+ * which never holds more than one row of text. Within this JVM the values themselves
+ * are also offered, so that pasting them into another table needs no text at all.
+ * </p>
+ * <p>
+ * Pasted text is parsed and converted to the classes of the target columns on a
+ * background thread. The values are then set on the event dispatch thread, starting at
+ * the first selected cell; values beyond the last row or column are ignored. The target
+ * cells are fixed when the paste starts, so sorting the table or moving its columns in
+ * the meantime does not move them. If rows or columns are added to, removed from or
+ * rearranged in the model before the values are ready, the paste is abandoned. If the
+ * table's model is an {@link ArrayListWithTableModel}, or a chain of
+ * {@link TableModelView}s over one, the values are set with
+ * {@link ArrayListWithTableModel#setValuesAt(int[], int[], Object[][])}, so listeners
+ * are notified with a single event. A value which cannot be converted to the class of
+ * its column leaves its cell unchanged. Values are converted as JTable's default editor
+ * converts them: an empty string becomes <code>null</code>, and anything else is passed
+ * to the constructor of the column class which takes a String.
+ * </p>
+ * <p>
+ * Drags and drops are passed on to the handler which the table had before this one was
+ * installed. Use {@link RxTableWithAddedRecords#installClipboardHandler()} to install it.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class TableClipboardHandler extends TransferHandler {
+	/**
+	 * The values of a block of copied cells. This is what a copy carries within this JVM.
+	 * @author Kevin J. Burns
+	 *
+	 */
+	public static final class CellBlock {
+		private final Object[][] values;
+
+		CellBlock(Object[][] values) {
+			this.values = values;
+		}
+
+		/**
+		 * @return the number of rows copied
+		 */
+		public int getRowCount() {
+			return this.values.length;
+		}
+
+		/**
+		 * Returns a copied value.
+		 * @param row The row of the value within the block
+		 * @param column The column of the value within the block
+		 * @return the value
+		 */
+		public Object getValueAt(int row, int column) {
+			return this.values[row][column];
+		}
+
+		Object[][] getValues() {
+			return this.values;
+		}
+	}
+
+	private static class CellTransferable implements Transferable {
+		private final CellBlock block;
+
+		public CellTransferable(CellBlock block) {
+			this.block = block;
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return new DataFlavor[] { CELL_BLOCK_FLAVOR, READER_FLAVOR,
+					DataFlavor.stringFlavor };
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(DataFlavor flavor) {
+			return CELL_BLOCK_FLAVOR.equals(flavor) || READER_FLAVOR.equals(flavor) ||
+					DataFlavor.stringFlavor.equals(flavor);
+		}
+
+		@Override
+		public Object getTransferData(DataFlavor flavor)
+				throws UnsupportedFlavorException, IOException {
+			if (CELL_BLOCK_FLAVOR.equals(flavor)) return this.block;
+			if (READER_FLAVOR.equals(flavor)) return new CellReader(this.block.getValues());
+			if (!DataFlavor.stringFlavor.equals(flavor)) {
+				throw new UnsupportedFlavorException(flavor);
+			}
+
+			StringBuilder sb = new StringBuilder();
+			Reader in = new CellReader(this.block.getValues());
+			char[] buf = new char[8192];
+			for (int n = in.read(buf); n > 0; n = in.read(buf)) {
+				sb.append(buf, 0, n);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Formats cells as tab-separated text a row at a time, as the text is read.
+	 */
+	private static class CellReader extends Reader {
+		private final Object[][] values;
+		private final StringBuilder line = new StringBuilder();
+		private int row = 0;
+		private int pos = 0;
+
+		CellReader(Object[][] values) {
+			this.values = values;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (len == 0) return 0;
+			while (this.pos == this.line.length()) {
+				if (this.row == this.values.length) return -1;
+				this.formatRow(this.values[this.row++]);
+			}
+
+			int n = Math.min(len, this.line.length() - this.pos);
+			this.line.getChars(this.pos, this.pos + n, cbuf, off);
+			this.pos += n;
+			return n;
+		}
+
+		private void formatRow(Object[] cells) {
+			this.line.setLength(0);
+			this.pos = 0;
+			for (int c = 0; c < cells.length; c++) {
+				if (c > 0) this.line.append('\t');
+				if (cells[c] == null) continue;
+
+				String s = cells[c].toString();
+				if (s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0 &&
+						s.indexOf('"') < 0) {
+					this.line.append(s);
+					continue;
+				}
+				this.line.append('"').append(s.replace("\"", "\"\"")).append('"');
+			}
+			this.line.append('\n');
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -2715508816389471046L;
+	/**
+	 * The flavor of copied cells within this JVM. Its representation class is
+	 * {@link CellBlock}.
+	 */
+	public static final DataFlavor CELL_BLOCK_FLAVOR = createFlavor(
+			DataFlavor.javaJVMLocalObjectMimeType + ";class=" + CellBlock.class.getName(),
+			"Table cells");
+	/**
+	 * The flavor of copied cells as tab-separated text, read as it is formatted.
+	 */
+	public static final DataFlavor READER_FLAVOR = createFlavor(
+			"text/plain;class=java.io.Reader", "Tab-separated text");
+	/**
+	 * Stands for a value which could not be converted to the class of its column.
+	 */
+	private static final Object UNCONVERTIBLE = new Object();
+	private static final HashMap<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+	static {
+		WRAPPERS.put(boolean.class, Boolean.class);
+		WRAPPERS.put(byte.class, Byte.class);
+		WRAPPERS.put(short.class, Short.class);
+		WRAPPERS.put(char.class, Character.class);
+		WRAPPERS.put(int.class, Integer.class);
+		WRAPPERS.put(long.class, Long.class);
+		WRAPPERS.put(float.class, Float.class);
+		WRAPPERS.put(double.class, Double.class);
+	}
+
+	private TransferHandler delegate;
+
+	/**
+	 * Constructor.
+	 * @param delegate The handler to which drags and drops are passed. May be
+	 * <code>null</code>, in which case they are not supported.
+	 */
+	public TableClipboardHandler(TransferHandler delegate) {
+		super();
+		this.delegate = delegate;
+	}
+
+	private static DataFlavor createFlavor(String mimeType, String name) {
+		try {
+			return new DataFlavor(mimeType, name, CellBlock.class.getClassLoader());
+		}
+		catch (ClassNotFoundException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Returns the handler to which drags and drops are passed.
+	 * @return
+	 */
+	public TransferHandler getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public int getSourceActions(JComponent c) {
+		return COPY;
+	}
+
+	/**
+	 * Takes the values of the selected cells: the selected rows of the selected columns,
+	 * or of every column if columns cannot be selected on their own.
+	 */
+	@Override
+	protected Transferable createTransferable(JComponent c) {
+		if (!(c instanceof JTable)) return null;
+
+		JTable table = (JTable)c;
+		int[] rows = table.getRowSelectionAllowed() ? table.getSelectedRows() :
+			allIndices(table.getRowCount());
+		int[] columns = table.getColumnSelectionAllowed() ? table.getSelectedColumns() :
+			allIndices(table.getColumnCount());
+		if (rows.length == 0 || columns.length == 0) return null;
+
+		Object[][] values = new Object[rows.length][columns.length];
+		for (int i = 0; i < rows.length; i++) {
+			for (int j = 0; j < columns.length; j++) {
+				values[i][j] = table.getValueAt(rows[i], columns[j]);
+			}
+		}
+		return new CellTransferable(new CellBlock(values));
+	}
+
+	private static int[] allIndices(int count) {
+		int[] ret = new int[count];
+		for (int i = 0; i < count; i++) ret[i] = i;
+		return ret;
+	}
+
+	@Override
+	public void exportAsDrag(JComponent comp, InputEvent e, int action) {
+		if (this.delegate != null) this.delegate.exportAsDrag(comp, e, action);
+	}
+
+	@Override
+	public void exportToClipboard(JComponent comp, Clipboard clip, int action)
+			throws IllegalStateException {
+		super.exportToClipboard(comp, clip, COPY & action);
+	}
+
+	@Override
+	public boolean canImport(TransferSupport support) {
+		if (support.isDrop()) {
+			return (this.delegate != null) && this.delegate.canImport(support);
+		}
+		if (!(support.getComponent() instanceof JTable)) return false;
+		return support.isDataFlavorSupported(CELL_BLOCK_FLAVOR) ||
+				support.isDataFlavorSupported(DataFlavor.stringFlavor);
+	}
+
+	@Override
+	public boolean importData(TransferSupport support) {
+		if (support.isDrop()) {
+			return (this.delegate != null) && this.delegate.importData(support);
+		}
+		if (!this.canImport(support)) return false;
+
+		JTable table = (JTable)support.getComponent();
+		int row = table.getSelectedRow();
+		int column = table.getSelectedColumn();
+		if (row < 0) return false;
+		if (column < 0) column = 0;
+
+		Object data;
+		try {
+			if (support.isDataFlavorSupported(CELL_BLOCK_FLAVOR)) {
+				data = ((CellBlock)support.getTransferable().getTransferData(
+						CELL_BLOCK_FLAVOR)).getValues();
+			}
+			else {
+				data = support.getTransferable().getTransferData(DataFlavor.stringFlavor);
+			}
+		}
+		catch (UnsupportedFlavorException | IOException ex) {
+			return false;
+		}
+
+		// the target cells are found now, as the table may be sorted or its columns
+		// moved before the values are ready
+		TableColumnModel tcm = table.getColumnModel();
+		int[] columns = new int[table.getColumnCount() - column];
+		Class<?>[] classes = new Class<?>[columns.length];
+		for (int j = 0; j < columns.length; j++) {
+			columns[j] = tcm.getColumn(column + j).getModelIndex();
+			classes[j] = table.getModel().getColumnClass(columns[j]);
+		}
+
+		// find the model which holds the data, so the values can be set in one batch
+		TableModel m = table.getModel();
+		int[] rows = new int[Math.min(countRows(data), table.getRowCount() - row)];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = table.convertRowIndexToModel(row + i);
+		}
+		while (m instanceof TableModelView) {
+			TableModelView view = (TableModelView)m;
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = view.convertRowIndexToSource(rows[i]);
+			}
+			m = view.getSourceModel();
+		}
+
+		new PasteWorker(table, m, rows, columns, data, classes).execute();
+		return true;
+	}
+
+	/**
+	 * Returns the number of rows of pasted data, or for text, a number no smaller. A
+	 * record of text ends at a line feed, though a quoted field may hold line feeds too.
+	 */
+	private static int countRows(Object data) {
+		if (data instanceof Object[][]) return ((Object[][])data).length;
+
+		String text = (String)data;
+		int ret = 1;
+		for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+			ret++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Parses and converts pasted values on a background thread, and sets them on the
+	 * event dispatch thread.
+	 */
+	private static class PasteWorker extends SwingWorker<Object[][], Void> {
+		private final JTable table;
+		private final TableModel model;
+		private final TableModel source;
+		private final int[] rows;
+		private final int[] columns;
+		private final Object data;
+		private final Class<?>[] classes;
+		private final TableModelListener sourceListener;
+		private boolean stale = false;
+
+		/**
+		 * @param source The model which holds the data
+		 * @param rows The rows of <code>source</code> into which values may be pasted
+		 * @param columns The columns into which values may be pasted
+		 */
+		PasteWorker(JTable table, TableModel source, int[] rows, int[] columns,
+				Object data, Class<?>[] classes) {
+			this.table = table;
+			this.model = table.getModel();
+			this.source = source;
+			this.rows = rows;
+			this.columns = columns;
+			this.data = data;
+			this.classes = classes;
+			this.sourceListener = new TableModelListener() {
+				@Override
+				public void tableChanged(TableModelEvent e) {
+					sourceChanged(e);
+				}
+			};
+			source.addTableModelListener(this.sourceListener);
+		}
+
+		/**
+		 * Notes whether the rows and columns into which the values are to be pasted
+		 * may no longer be the ones the user chose. Only values set in place leave them
+		 * alone.
+		 */
+		private void sourceChanged(TableModelEvent e) {
+			if (e.getType() != TableModelEvent.UPDATE ||
+					e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+					e.getLastRow() == Integer.MAX_VALUE ||
+					e instanceof TableModelMoveEvent ||
+					e instanceof TableModelPermutationEvent) {
+				this.stale = true;
+			}
+		}
+
+		@Override
+		protected Object[][] doInBackground() throws Exception {
+			Converter converter = new Converter(this.classes);
+			if (this.data instanceof Object[][]) {
+				Object[][] values = (Object[][])this.data;
+				Object[][] ret = new Object[values.length][];
+				for (int i = 0; i < values.length; i++) {
+					ret[i] = converter.convertRow(values[i]);
+				}
+				return ret;
+			}
+
+			Iterator<String[]> lines = DelimitedText.TSV.reader(
+					new StringReader((String)this.data), false,
+					new DelimitedText.RecordParser<String[]>() {
+						@Override
+						public String[] parse(String[] fields) {
+							return fields;
+						}
+					});
+			List<Object[]> ret = new ArrayList<>();
+			while (lines.hasNext()) {
+				ret.add(converter.convertRow(lines.next()));
+			}
+			return ret.toArray(new Object[ret.size()][]);
+		}
+
+		@Override
+		protected void done() {
+			this.source.removeTableModelListener(this.sourceListener);
+			Object[][] values;
+			try {
+				values = this.get();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException ex) {
+				throw new IllegalStateException("Pasting failed", ex.getCause());
+			}
+			if (this.stale || this.table.getModel() != this.model) {
+				UIManager.getLookAndFeel().provideErrorFeedback(this.table);
+				return;
+			}
+
+			if (this.table.isEditing()) this.table.getCellEditor().cancelCellEditing();
+			int rowCount = Math.min(values.length, this.rows.length);
+			int columnCount = this.columns.length;
+			if (rowCount <= 0 || columnCount <= 0) return;
+
+			TableModel m = this.source;
+			int[] rows = Arrays.copyOf(this.rows, rowCount);
+			int[] columns = this.columns;
+			for (int i = 0; i < rowCount; i++) {
+				Object[] rowValues = values[i];
+				for (int j = 0; j < rowValues.length && j < columnCount; j++) {
+					if (rowValues[j] == UNCONVERTIBLE) {
+						rowValues[j] = m.getValueAt(rows[i], columns[j]);
+					}
+				}
+			}
+
+			if (m instanceof ArrayListWithTableModel) {
+				((ArrayListWithTableModel<?>)m).setValuesAt(rows, columns, values);
+				return;
+			}
+			for (int i = 0; i < rowCount; i++) {
+				for (int j = 0; j < values[i].length && j < columnCount; j++) {
+					if (m.isCellEditable(rows[i], columns[j])) {
+						m.setValueAt(values[i][j], rows[i], columns[j]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts values to the classes of the columns into which they are pasted.
+	 */
+	private static class Converter {
+		private final Class<?>[] classes;
+		private final Constructor<?>[] constructors;
+
+		Converter(Class<?>[] classes) {
+			this.classes = new Class<?>[classes.length];
+			this.constructors = new Constructor<?>[classes.length];
+			for (int j = 0; j < classes.length; j++) {
+				Class<?> c = classes[j];
+				if (WRAPPERS.containsKey(c)) c = WRAPPERS.get(c);
+				this.classes[j] = c;
+				if (c == Object.class || c == String.class) continue;
+				try {
+					this.constructors[j] = c.getConstructor(String.class);
+				}
+				catch (NoSuchMethodException | SecurityException ex) {
+					// values which are not already of the class are left alone
+				}
+			}
+		}
+
+		Object[] convertRow(Object[] values) {
+			int n = Math.min(values.length, this.classes.length);
+			Object[] ret = new Object[n];
+			for (int j = 0; j < n; j++) {
+				ret[j] = this.convert(values[j], j);
+			}
+			return ret;
+		}
+
+		private Object convert(Object value, int column) {
+			Class<?> c = this.classes[column];
+			if (value == null || c.isInstance(value)) return value;
+
+			String s = value.toString();
+			if (c == Object.class || c == String.class) return s;
+			if (s.isEmpty()) return null;
+			if (this.constructors[column] == null) return UNCONVERTIBLE;
+			try {
+				return this.constructors[column].newInstance(s.trim());
+			}
+			catch (ReflectiveOperationException | RuntimeException ex) {
+				return UNCONVERTIBLE;
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package com.gmail.at.kevinburnseit.rxtable;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import javax.swing.JTable;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.gmail.at.kevinburnseit.collections.RowSearchIndex;
+
+/**
+ * Find-as-you-type searching for a {@link RxTableWithAddedRecords}. The search text is
+ * looked up in a {@link RowSearchIndex} over the table's model, so neither typing nor
+ * moving between matches reads the model. The rows which match are highlighted by the
+ * table, and {@link #findNext()} and {@link #findPrevious()} select and scroll to the
+ * next or previous matching row in the order the table displays them.
+ * <p>
+ * Instances are created by {@link RxTableWithAddedRecords#installSearch(int...)}.
+ * </p>
+ * @author Kevin J. Burns
+ *
+ */
+public class TableSearch {
+	/**
+	 * The default background of matching cells.
+	 */
+	public static final Color DEFAULT_HIGHLIGHT = new Color(255, 240, 150);
+
+	private final JTable table;
+	private final RowSearchIndex index;
+	private ChangeListener indexListener;
+	private String text = "";
+	private Color highlight = DEFAULT_HIGHLIGHT;
+	/**
+	 * Matching rows, as model indices in increasing order, or <code>null</code> if they
+	 * must be looked up again.
+	 */
+	private int[] matches = new int[0];
+	/**
+	 * Matching rows, as view indices in increasing order, or <code>null</code> if they
+	 * must be worked out again.
+	 */
+	private int[] viewMatches = new int[0];
+
+	TableSearch(JTable table, int... columns) {
+		this.table = table;
+		this.index = new RowSearchIndex(table.getModel(), columns);
+		this.indexListener = new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				matches = null;
+				viewMatches = null;
+			}
+		};
+		this.index.addChangeListener(this.indexListener);
+	}
+
+	/**
+	 * Points the index at the table's current model. The search text, highlight and the
+	 * index's listeners are kept; the matches are looked up again in the new model.
+	 */
+	void modelReplaced() {
+		this.index.setModel(this.table.getModel());
+		this.table.repaint();
+	}
+
+	/**
+	 * Stops the index from listening to the table's model.
+	 */
+	void dispose() {
+		this.index.removeChangeListener(this.indexListener);
+		this.index.dispose();
+	}
+
+	/**
+	 * @return the index used to answer searches
+	 */
+	public RowSearchIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the text being searched for; never <code>null</code>
+	 */
+	public String getText() {
+		return this.text;
+	}
+
+	/**
+	 * Sets the text to search for and highlights the matching rows. Case is ignored.
+	 * @param text The text to search for. An empty string or <code>null</code> ends the
+	 * search.
+	 */
+	public void setText(String text) {
+		if (text == null) text = "";
+		if (text.equals(this.text)) return;
+
+		this.text = text;
+		this.matches = null;
+		this.viewMatches = null;
+		this.table.repaint();
+	}
+
+	/**
+	 * @return the background given to cells of matching rows
+	 */
+	public Color getHighlight() {
+		return this.highlight;
+	}
+
+	/**
+	 * Sets the background given to cells of matching rows.
+	 * @param highlight The color
+	 */
+	public void setHighlight(Color highlight) {
+		this.highlight = highlight;
+		this.table.repaint();
+	}
+
+	/**
+	 * @return the number of rows which match the search text and are displayed by the
+	 * table
+	 */
+	public int getMatchCount() {
+		return this.getViewMatches().length;
+	}
+
+	/**
+	 * Tells whether a row of the table matches the search text.
+	 * @param row Row index in the table (view)
+	 * @return <code>true</code> if the row matches
+	 */
+	public boolean isMatch(int row) {
+		if (this.text.isEmpty()) return false;
+		int modelRow = this.table.convertRowIndexToModel(row);
+		return Arrays.binarySearch(this.getMatches(), modelRow) >= 0;
+	}
+
+	/**
+	 * Tells whether a cell of the table should be highlighted: its row matches, and its
+	 * column is one of those searched.
+	 * @param row Row index in the table (view)
+	 * @param column Column index in the table (view)
+	 * @return <code>true</code> if the cell should be highlighted
+	 */
+	public boolean isHighlighted(int row, int column) {
+		return this.isMatch(row) &&
+				this.index.isIndexed(this.table.convertColumnIndexToModel(column));
+	}
+
+	/**
+	 * Selects the first matching row after the current lead selection, wrapping around
+	 * to the top of the table, and scrolls it into view.
+	 * @return <code>false</code> if no row matches
+	 */
+	public boolean findNext() {
+		int[] vm = this.getViewMatches();
+		if (vm.length == 0) return false;
+
+		int lead = this.table.getSelectionModel().getLeadSelectionIndex();
+		int i = Arrays.binarySearch(vm, lead + 1);
+		if (i < 0) i = -i - 1;
+		this.select(vm[(i == vm.length) ? 0 : i]);
+		return true;
+	}
+
+	/**
+	 * Selects the last matching row before the current lead selection, wrapping around
+	 * to the bottom of the table, and scrolls it into view.
+	 * @return <code>false</code> if no row matches
+	 */
+	public boolean findPrevious() {
+		int[] vm = this.getViewMatches();
+		if (vm.length == 0) return false;
+
+		int lead = this.table.getSelectionModel().getLeadSelectionIndex();
+		if (lead < 0) lead = this.table.getRowCount();
+		int i = Arrays.binarySearch(vm, lead);
+		if (i < 0) i = -i - 1;
+		this.select(vm[(i == 0) ? vm.length - 1 : i - 1]);
+		return true;
+	}
+
+	private void select(int row) {
+		this.table.getSelectionModel().setSelectionInterval(row, row);
+		this.table.scrollRectToVisible(this.table.getCellRect(row, 0, true));
+	}
+
+	private int[] getMatches() {
+		if (this.matches == null) {
+			this.matches = this.index.find(this.text);
+		}
+		return this.matches;
+	}
+
+	private int[] getViewMatches() {
+		if (this.viewMatches != null && this.table.getRowSorter() == null) {
+			return this.viewMatches;
+		}
+
+		int[] m = this.getMatches();
+		if (this.table.getRowSorter() == null) {
+			this.viewMatches = m;
+			return m;
+		}
+
+		// the sorter may have changed without the model changing, so this is not kept
+		int[] ret = new int[m.length];
+		int count = 0;
+		for (int modelRow : m) {
+			int viewRow = this.table.convertRowIndexToView(modelRow);
+			if (viewRow >= 0) ret[count++] = viewRow;
+		}
+		ret = Arrays.copyOf(ret, count);
+		Arrays.sort(ret);
+		return ret;
+	}
+}